@@ -0,0 +1,523 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.apache.tools.bzip2.CBZip2InputStream;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Extracts ZIP, TAR, TAR.GZ and TAR.BZ2 archives to a directory, writing files through NIO
+ * channels. The entries of ZIP archives are independent from each other and are therefore
+ * inflated in parallel; TAR entries are read in sequence from their (compressed) stream.<br>
+ * <br>
+ * Timestamps and, when the archive carries them and the file system supports them, POSIX
+ * permissions are applied once all entries have been written, so that writing a file in a
+ * directory does not alter the timestamp already set on that directory.
+ */
+public class ArchiveExtractor extends LoggedObject
+{
+    /**
+     * Size of the buffers used when writing files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * POSIX permissions, in the order of the bits of a UNIX file mode, highest bit first.
+     */
+    private static final PosixFilePermission[] PERMISSIONS = {
+        PosixFilePermission.OWNER_READ,
+        PosixFilePermission.OWNER_WRITE,
+        PosixFilePermission.OWNER_EXECUTE,
+        PosixFilePermission.GROUP_READ,
+        PosixFilePermission.GROUP_WRITE,
+        PosixFilePermission.GROUP_EXECUTE,
+        PosixFilePermission.OTHERS_READ,
+        PosixFilePermission.OTHERS_WRITE,
+        PosixFilePermission.OTHERS_EXECUTE,
+    };
+
+    /**
+     * Number of threads used to inflate ZIP entries.
+     */
+    private int threads;
+
+    /**
+     * Creates an extractor using as many threads as there are available processors.
+     */
+    public ArchiveExtractor()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads Number of threads used to inflate ZIP entries.
+     */
+    public ArchiveExtractor(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param archiveName Name of an archive file.
+     * @return <code>true</code> if the archive type is supported, judging by its name.
+     */
+    public static boolean isSupported(String archiveName)
+    {
+        String name = archiveName.toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tgz")
+            || name.endsWith(".tar.gz") || name.endsWith(".bz2");
+    }
+
+    /**
+     * Extracts an archive, the archive type being guessed from its file name.
+     * @param archive Archive to extract.
+     * @param targetDir Directory in which to extract the archive.
+     * @throws BrokenArchiveException If the archive is broken.
+     * @throws IOException If the archive cannot be written to the target directory.
+     */
+    public void extract(File archive, File targetDir) throws IOException
+    {
+        String name = archive.getName().toLowerCase();
+        if (!isSupported(name))
+        {
+            throw new IllegalArgumentException("Unsupported archive type: [" + name + "]");
+        }
+
+        Path target = targetDir.getCanonicalFile().toPath();
+        Files.createDirectories(target);
+
+        List<EntryAttributes> attributes;
+        if (name.endsWith(".zip"))
+        {
+            attributes = extractZip(archive, target);
+        }
+        else
+        {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(archive),
+                BUFFER_SIZE))
+            {
+                InputStream tar;
+                try
+                {
+                    if (name.endsWith(".tgz") || name.endsWith(".tar.gz"))
+                    {
+                        tar = new GZIPInputStream(in, BUFFER_SIZE);
+                    }
+                    else if (name.endsWith(".bz2"))
+                    {
+                        if (in.read() != 'B' || in.read() != 'Z')
+                        {
+                            throw new IOException("The file [" + archive
+                                + "] is not a BZIP2 file");
+                        }
+                        tar = new CBZip2InputStream(in);
+                    }
+                    else
+                    {
+                        tar = in;
+                    }
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    throw new BrokenArchiveException(archive, e);
+                }
+                attributes = extractTar(tar, archive, target);
+            }
+        }
+
+        applyAttributes(attributes);
+    }
+
+    /**
+     * Extracts a ZIP archive, inflating the file entries in parallel.
+     * @param archive Archive to extract.
+     * @param target Directory in which to extract the archive.
+     * @return Attributes to apply to the extracted entries.
+     * @throws BrokenArchiveException If the archive is broken.
+     * @throws IOException If the archive cannot be written to the target directory.
+     */
+    private List<EntryAttributes> extractZip(final File archive, Path target) throws IOException
+    {
+        List<EntryAttributes> attributes = new ArrayList<EntryAttributes>();
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try (final ZipFile zip = openZip(archive))
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                final ZipEntry entry = entries.nextElement();
+                final Path path = resolve(target, entry.getName());
+                if (entry.isDirectory())
+                {
+                    Files.createDirectories(path);
+                }
+                else
+                {
+                    futures.add(executor.submit(new Callable<Void>()
+                    {
+                        @Override
+                        public Void call() throws IOException
+                        {
+                            InputStream in;
+                            try
+                            {
+                                in = zip.getInputStream(entry);
+                            }
+                            catch (IOException | RuntimeException e)
+                            {
+                                throw new BrokenArchiveException(archive, e);
+                            }
+                            try (InputStream entryIn = new ArchiveInputStream(in, archive))
+                            {
+                                write(entryIn, path);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                attributes.add(new EntryAttributes(path, entry.getTime(), -1));
+            }
+
+            for (Future<Void> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting [" + archive + "]", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to extract [" + archive + "]", e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return attributes;
+    }
+
+    /**
+     * Opens a ZIP archive.
+     * @param archive Archive to open.
+     * @return The opened archive.
+     * @throws BrokenArchiveException If the archive is not a ZIP file.
+     * @throws IOException If the archive cannot be read.
+     */
+    private static ZipFile openZip(File archive) throws IOException
+    {
+        try
+        {
+            return new ZipFile(archive);
+        }
+        catch (ZipException e)
+        {
+            throw new BrokenArchiveException(archive, e);
+        }
+    }
+
+    /**
+     * Extracts a TAR stream.
+     * @param in TAR stream, already decompressed.
+     * @param archive Archive the TAR stream is read from.
+     * @param target Directory in which to extract the archive.
+     * @return Attributes to apply to the extracted entries.
+     * @throws BrokenArchiveException If the archive is broken.
+     * @throws IOException If the archive cannot be written to the target directory.
+     */
+    private List<EntryAttributes> extractTar(InputStream in, File archive, Path target)
+        throws IOException
+    {
+        List<EntryAttributes> attributes = new ArrayList<EntryAttributes>();
+        TarInputStream tar = new TarInputStream(in);
+        InputStream entryIn = new ArchiveInputStream(tar, archive);
+        TarEntry entry;
+        while ((entry = getNextEntry(tar, archive)) != null)
+        {
+            Path path = resolve(target, entry.getName());
+            if (entry.isDirectory())
+            {
+                Files.createDirectories(path);
+            }
+            else
+            {
+                write(entryIn, path);
+            }
+            attributes.add(
+                new EntryAttributes(path, entry.getModTime().getTime(), entry.getMode()));
+        }
+        return attributes;
+    }
+
+    /**
+     * Reads the next entry of a TAR stream.
+     * @param tar TAR stream.
+     * @param archive Archive the TAR stream is read from.
+     * @return The next entry, <code>null</code> if there are no more entries.
+     * @throws BrokenArchiveException If the archive is broken.
+     */
+    private static TarEntry getNextEntry(TarInputStream tar, File archive)
+        throws BrokenArchiveException
+    {
+        try
+        {
+            return tar.getNextEntry();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw new BrokenArchiveException(archive, e);
+        }
+    }
+
+    /**
+     * Writes the contents of a stream to a file, creating parent directories as needed.
+     * @param in Stream to read from, not closed by this method.
+     * @param path File to write.
+     * @throws IOException If reading or writing fails.
+     */
+    private static void write(InputStream in, Path path) throws IOException
+    {
+        Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int n;
+            while ((n = in.read(bytes)) != -1)
+            {
+                buffer.clear();
+                buffer.limit(n);
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves an entry name in the target directory, refusing entries that would be written
+     * outside of it.
+     * @param target Directory in which the archive is extracted.
+     * @param entryName Name of the archive entry.
+     * @return Path of the entry.
+     * @throws IOException If the entry points outside of the target directory.
+     */
+    private static Path resolve(Path target, String entryName) throws IOException
+    {
+        String name = entryName.replace('\\', '/');
+        while (name.startsWith("/"))
+        {
+            name = name.substring(1);
+        }
+        Path path = target.resolve(name).normalize();
+        if (!path.startsWith(target))
+        {
+            throw new IOException("Archive entry [" + entryName
+                + "] is outside of the target directory");
+        }
+        return path;
+    }
+
+    /**
+     * Applies timestamps and permissions of all extracted entries. Entries are processed from the
+     * last to the first one, so that directories are handled after the files they contain.
+     * @param attributes Attributes to apply.
+     * @throws IOException If the attributes cannot be applied.
+     */
+    private void applyAttributes(List<EntryAttributes> attributes) throws IOException
+    {
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        for (int i = attributes.size() - 1; i >= 0; i--)
+        {
+            EntryAttributes entry = attributes.get(i);
+            if (posix && entry.mode > 0)
+            {
+                Files.setPosixFilePermissions(entry.path, toPermissions(entry.mode));
+            }
+            if (entry.time > 0)
+            {
+                Files.setLastModifiedTime(entry.path, FileTime.fromMillis(entry.time));
+            }
+        }
+    }
+
+    /**
+     * @param mode UNIX file mode.
+     * @return POSIX permissions corresponding to the mode, always readable and writable by the
+     * owner so that the extracted tree can be cleaned up.
+     */
+    private static Set<PosixFilePermission> toPermissions(int mode)
+    {
+        Set<PosixFilePermission> permissions = EnumSet.of(PosixFilePermission.OWNER_READ,
+            PosixFilePermission.OWNER_WRITE);
+        for (int i = 0; i < PERMISSIONS.length; i++)
+        {
+            if ((mode & (1 << (PERMISSIONS.length - 1 - i))) != 0)
+            {
+                permissions.add(PERMISSIONS[i]);
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * Stream reading the contents of an archive entry, which reports failures to read it as
+     * {@link BrokenArchiveException}s so that they can be told apart from failures to write the
+     * extracted files.
+     */
+    private static class ArchiveInputStream extends FilterInputStream
+    {
+        /**
+         * Archive the entry is read from.
+         */
+        private File archive;
+
+        /**
+         * @param in Stream reading the contents of the entry.
+         * @param archive Archive the entry is read from.
+         */
+        public ArchiveInputStream(InputStream in, File archive)
+        {
+            super(in);
+            this.archive = archive;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() throws IOException
+        {
+            try
+            {
+                return super.read();
+            }
+            catch (IOException | RuntimeException e)
+            {
+                throw new BrokenArchiveException(this.archive, e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            try
+            {
+                return super.read(b, off, len);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                throw new BrokenArchiveException(this.archive, e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long skip(long n) throws IOException
+        {
+            try
+            {
+                return super.skip(n);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                throw new BrokenArchiveException(this.archive, e);
+            }
+        }
+    }
+
+    /**
+     * Attributes of an extracted entry, applied once all entries have been written.
+     */
+    private static class EntryAttributes
+    {
+        /**
+         * Path of the entry.
+         */
+        private Path path;
+
+        /**
+         * Modification time of the entry, <code>-1</code> if unknown.
+         */
+        private long time;
+
+        /**
+         * UNIX file mode of the entry, <code>-1</code> if unknown.
+         */
+        private int mode;
+
+        /**
+         * @param path Path of the entry.
+         * @param time Modification time of the entry, <code>-1</code> if unknown.
+         * @param mode UNIX file mode of the entry, <code>-1</code> if unknown.
+         */
+        public EntryAttributes(Path path, long time, int mode)
+        {
+            this.path = path;
+            this.time = time;
+            this.mode = mode;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Exception thrown by {@link ArchiveExtractor} when the archive itself cannot be read, for example
+ * because it is truncated or corrupt, as opposed to failures writing the extracted files.
+ */
+public class BrokenArchiveException extends IOException
+{
+
+    /**
+     * @param archive The broken archive.
+     * @param cause The error cause, may be {@code null}.
+     */
+    public BrokenArchiveException(File archive, Throwable cause)
+    {
+        super("The archive [" + archive + "] is broken", cause);
+    }
+
+}
@@ -0,0 +1,611 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.cargo.util.Base64;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Downloads a file from a URL, keeping partially downloaded data on failure so that the next
+ * attempt can resume where the previous one stopped. When the remote server supports byte ranges,
+ * the file can also be fetched as several ranges in parallel.<br>
+ * <br>
+ * While downloading, data is written to a <code>.part</code> file next to the target file and the
+ * resume information (remote validator, length, range size and completed ranges) is kept in a
+ * <code>.part.state</code> file. The target file only appears once the download is complete.
+ */
+public class ResumableDownloader extends LoggedObject
+{
+    /**
+     * Suffix of the file receiving the data while the download is in progress.
+     */
+    public static final String PARTIAL_SUFFIX = ".part";
+
+    /**
+     * Suffix of the file holding the resume information of a partial download.
+     */
+    public static final String STATE_SUFFIX = ".part.state";
+
+    /**
+     * Default size of each of the ranges fetched in parallel.
+     */
+    public static final long DEFAULT_RANGE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Size of the buffers / chunks used when downloading files.
+     */
+    private static final int BUFFER_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * HTTP response code when the requested range cannot be satisfied.
+     */
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * Resume information key for the remote validator (<code>ETag</code> or
+     * <code>Last-Modified</code> header).
+     */
+    private static final String STATE_VALIDATOR = "validator";
+
+    /**
+     * Resume information key for the total length of the remote file.
+     */
+    private static final String STATE_LENGTH = "length";
+
+    /**
+     * Resume information key for the list of ranges already downloaded.
+     */
+    private static final String STATE_RANGES = "ranges";
+
+    /**
+     * Resume information key for the size of the ranges, which the completed range indexes refer
+     * to.
+     */
+    private static final String STATE_RANGE_SIZE = "rangeSize";
+
+    /**
+     * URL to download.
+     */
+    private URL remoteLocation;
+
+    /**
+     * File in which the download will be saved.
+     */
+    private File targetFile;
+
+    /**
+     * Number of parallel range requests, <code>1</code> means sequential download.
+     */
+    private int threads;
+
+    /**
+     * Size of each of the ranges fetched in parallel.
+     */
+    private long rangeSize = DEFAULT_RANGE_SIZE;
+
+    /**
+     * Resume information of the current download.
+     */
+    private Properties state;
+
+    /**
+     * @param remoteLocation URL to download.
+     * @param targetFile File in which the download will be saved.
+     * @param threads Number of parallel range requests, <code>1</code> means sequential download.
+     */
+    public ResumableDownloader(URL remoteLocation, File targetFile, int threads)
+    {
+        this.remoteLocation = remoteLocation;
+        this.targetFile = targetFile;
+        this.threads = threads;
+    }
+
+    /**
+     * @param rangeSize Size of each of the ranges fetched in parallel.
+     */
+    public void setRangeSize(long rangeSize)
+    {
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * @return File receiving the data while the download is in progress.
+     */
+    public File getPartialFile()
+    {
+        return new File(this.targetFile.getPath() + PARTIAL_SUFFIX);
+    }
+
+    /**
+     * @return File holding the resume information of a partial download.
+     */
+    public File getStateFile()
+    {
+        return new File(this.targetFile.getPath() + STATE_SUFFIX);
+    }
+
+    /**
+     * Downloads the file, resuming any partial download left by a previous attempt.
+     * @throws IOException If the download fails. Partially downloaded data is kept.
+     */
+    public void download() throws IOException
+    {
+        this.state = loadState();
+
+        long lastModified;
+        RemoteInfo remote = null;
+        if (this.threads > 1)
+        {
+            remote = probe();
+        }
+        if (remote != null && remote.acceptsRanges && remote.validator != null
+            && remote.length > this.rangeSize)
+        {
+            downloadRanges(remote);
+            lastModified = remote.lastModified;
+        }
+        else
+        {
+            lastModified = downloadSequentially();
+        }
+
+        Files.move(getPartialFile().toPath(), this.targetFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        getStateFile().delete();
+
+        if (lastModified != 0)
+        {
+            this.targetFile.setLastModified(lastModified);
+        }
+    }
+
+    /**
+     * Downloads the file as one single stream, asking for the missing bytes only when a partial
+     * download of the same remote file exists.
+     * @return Remote timestamp of the file, <code>0</code> if unknown.
+     * @throws IOException If the download fails.
+     */
+    private long downloadSequentially() throws IOException
+    {
+        File partialFile = getPartialFile();
+        String validator = this.state.getProperty(STATE_VALIDATOR);
+        long offset = 0;
+        if (partialFile.isFile() && validator != null
+            && this.state.getProperty(STATE_RANGES) == null)
+        {
+            offset = partialFile.length();
+        }
+
+        URLConnection connection = openConnection(null);
+        if (offset > 0 && connection instanceof HttpURLConnection)
+        {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+            connection.setRequestProperty("If-Range", validator);
+        }
+
+        boolean append = false;
+        if (offset > 0 && connection instanceof HttpURLConnection)
+        {
+            int responseCode = ((HttpURLConnection) connection).getResponseCode();
+            if (responseCode == HTTP_RANGE_NOT_SATISFIABLE)
+            {
+                // The partial file does not match the remote file anymore, start over
+                ((HttpURLConnection) connection).disconnect();
+                partialFile.delete();
+                this.state.clear();
+                return downloadSequentially();
+            }
+            append = responseCode == HttpURLConnection.HTTP_PARTIAL;
+        }
+        if (append)
+        {
+            getLogger().info("Resuming download of [" + this.remoteLocation + "] at byte "
+                + offset, getClass().getName());
+        }
+        else
+        {
+            this.state.clear();
+            String remoteValidator = getValidator(connection);
+            if (remoteValidator != null)
+            {
+                this.state.setProperty(STATE_VALIDATOR, remoteValidator);
+            }
+        }
+        saveState();
+
+        try (InputStream httpStream = connection.getInputStream();
+            OutputStream fileStream = new FileOutputStream(partialFile, append))
+        {
+            int n;
+            byte[] bytes = new byte[BUFFER_CHUNK_SIZE];
+            while ((n = httpStream.read(bytes)) != -1)
+            {
+                fileStream.write(bytes, 0, n);
+            }
+        }
+
+        return connection.getLastModified();
+    }
+
+    /**
+     * Downloads the file as a number of byte ranges fetched in parallel, skipping the ranges that
+     * a previous attempt already downloaded.
+     * @param remote Information about the remote file.
+     * @throws IOException If the download of any of the ranges fails.
+     */
+    private void downloadRanges(RemoteInfo remote) throws IOException
+    {
+        if (!remote.validator.equals(this.state.getProperty(STATE_VALIDATOR))
+            || !Long.toString(remote.length).equals(this.state.getProperty(STATE_LENGTH))
+            || !Long.toString(this.rangeSize).equals(this.state.getProperty(STATE_RANGE_SIZE))
+            || this.state.getProperty(STATE_RANGES) == null)
+        {
+            getPartialFile().delete();
+            this.state.clear();
+            this.state.setProperty(STATE_VALIDATOR, remote.validator);
+            this.state.setProperty(STATE_LENGTH, Long.toString(remote.length));
+            this.state.setProperty(STATE_RANGE_SIZE, Long.toString(this.rangeSize));
+            this.state.setProperty(STATE_RANGES, "");
+            saveState();
+        }
+
+        SortedSet<Integer> completed = getCompletedRanges();
+        int nbRanges = (int) ((remote.length + this.rangeSize - 1) / this.rangeSize);
+        getLogger().info("Downloading [" + this.remoteLocation + "] as " + nbRanges
+            + " ranges using " + this.threads + " threads, " + completed.size()
+            + " ranges already downloaded", getClass().getName());
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try (RandomAccessFile file = new RandomAccessFile(getPartialFile(), "rw"))
+        {
+            file.setLength(remote.length);
+            FileChannel channel = file.getChannel();
+
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < nbRanges; i++)
+            {
+                if (!completed.contains(i))
+                {
+                    long start = i * this.rangeSize;
+                    long end = Math.min(start + this.rangeSize, remote.length) - 1;
+                    futures.add(executor.submit(
+                        new RangeDownload(i, start, end, remote.validator, channel)));
+                }
+            }
+            for (Future<Void> future : futures)
+            {
+                future.get();
+            }
+            channel.force(false);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading [" + this.remoteLocation + "]",
+                e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to download [" + this.remoteLocation + "]",
+                e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends a <code>HEAD</code> request to find out whether the remote file can be downloaded in
+     * ranges.
+     * @return Information about the remote file, <code>null</code> if not an HTTP URL.
+     * @throws IOException If the request fails.
+     */
+    private RemoteInfo probe() throws IOException
+    {
+        URLConnection connection = openConnection("HEAD");
+        if (!(connection instanceof HttpURLConnection))
+        {
+            return null;
+        }
+
+        HttpURLConnection httpConnection = (HttpURLConnection) connection;
+        try
+        {
+            if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK)
+            {
+                return null;
+            }
+
+            RemoteInfo remote = new RemoteInfo();
+            remote.length = httpConnection.getContentLengthLong();
+            remote.acceptsRanges = "bytes".equalsIgnoreCase(
+                httpConnection.getHeaderField("Accept-Ranges"));
+            remote.validator = getValidator(httpConnection);
+            remote.lastModified = httpConnection.getLastModified();
+            return remote;
+        }
+        finally
+        {
+            httpConnection.disconnect();
+        }
+    }
+
+    /**
+     * Opens a connection to the remote location.
+     * @param method HTTP method to use, <code>null</code> for the default.
+     * @return Connection to the remote location, not connected yet.
+     * @throws IOException If the connection cannot be opened.
+     */
+    private URLConnection openConnection(String method) throws IOException
+    {
+        URLConnection connection = this.remoteLocation.openConnection();
+        connection.addRequestProperty("Accept", "*/*");
+        connection.addRequestProperty("Accept-Encoding", "identity");
+
+        connection.setUseCaches(false);
+        if (connection instanceof HttpURLConnection)
+        {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            httpConnection.setInstanceFollowRedirects(true);
+            if (method != null)
+            {
+                httpConnection.setRequestMethod(method);
+            }
+
+            String userInfo = this.remoteLocation.getUserInfo();
+            if (userInfo != null)
+            {
+                connection.setRequestProperty("Authorization",
+                    "Basic " + new String(Base64.encode(userInfo)));
+            }
+        }
+
+        return connection;
+    }
+
+    /**
+     * @param connection Connection to read the validator from.
+     * @return Strong validator identifying the remote file, <code>null</code> if none.
+     */
+    private static String getValidator(URLConnection connection)
+    {
+        String validator = connection.getHeaderField("ETag");
+        if (validator != null && validator.startsWith("W/"))
+        {
+            // Weak validators cannot be used in an If-Range header
+            validator = null;
+        }
+        if (validator == null)
+        {
+            validator = connection.getHeaderField("Last-Modified");
+        }
+        return validator;
+    }
+
+    /**
+     * @return Indexes of the ranges already downloaded.
+     */
+    private synchronized SortedSet<Integer> getCompletedRanges()
+    {
+        SortedSet<Integer> completed = new TreeSet<Integer>();
+        for (String range : this.state.getProperty(STATE_RANGES, "").split(","))
+        {
+            if (!range.isEmpty())
+            {
+                completed.add(Integer.valueOf(range));
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Records that a range has been fully downloaded.
+     * @param index Index of the range.
+     * @throws IOException If the resume information cannot be saved.
+     */
+    private synchronized void markCompleted(int index) throws IOException
+    {
+        String ranges = this.state.getProperty(STATE_RANGES, "");
+        if (!ranges.isEmpty())
+        {
+            ranges += ",";
+        }
+        this.state.setProperty(STATE_RANGES, ranges + index);
+        saveState();
+    }
+
+    /**
+     * @return Resume information of a previous attempt, empty if there is none.
+     * @throws IOException If the resume information cannot be read.
+     */
+    private Properties loadState() throws IOException
+    {
+        Properties properties = new Properties();
+        File stateFile = getStateFile();
+        if (stateFile.isFile() && getPartialFile().isFile())
+        {
+            try (InputStream in = new FileInputStream(stateFile))
+            {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Saves the resume information of the current download.
+     * @throws IOException If the resume information cannot be saved.
+     */
+    private synchronized void saveState() throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(getStateFile()))
+        {
+            this.state.store(out, "Cargo partial download of " + this.remoteLocation);
+        }
+    }
+
+    /**
+     * Information about the remote file, as returned by a <code>HEAD</code> request.
+     */
+    private static class RemoteInfo
+    {
+        /**
+         * Length of the remote file.
+         */
+        private long length;
+
+        /**
+         * Whether the server accepts byte ranges.
+         */
+        private boolean acceptsRanges;
+
+        /**
+         * Strong validator identifying the remote file.
+         */
+        private String validator;
+
+        /**
+         * Timestamp of the remote file.
+         */
+        private long lastModified;
+    }
+
+    /**
+     * Downloads one byte range into the partial file.
+     */
+    private class RangeDownload implements Callable<Void>
+    {
+        /**
+         * Index of the range.
+         */
+        private int index;
+
+        /**
+         * First byte of the range.
+         */
+        private long start;
+
+        /**
+         * Last byte of the range, inclusive.
+         */
+        private long end;
+
+        /**
+         * Validator the remote file must still match.
+         */
+        private String validator;
+
+        /**
+         * Channel of the partial file.
+         */
+        private FileChannel channel;
+
+        /**
+         * @param index Index of the range.
+         * @param start First byte of the range.
+         * @param end Last byte of the range, inclusive.
+         * @param validator Validator the remote file must still match.
+         * @param channel Channel of the partial file.
+         */
+        public RangeDownload(int index, long start, long end, String validator,
+            FileChannel channel)
+        {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.validator = validator;
+            this.channel = channel;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Void call() throws IOException
+        {
+            HttpURLConnection connection = (HttpURLConnection) openConnection(null);
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+            connection.setRequestProperty("If-Range", validator);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+            {
+                connection.disconnect();
+                throw new IOException("Server did not return the range " + start + "-" + end
+                    + " of [" + remoteLocation + "], response code was "
+                    + connection.getResponseCode());
+            }
+
+            long position = start;
+            try (InputStream httpStream = connection.getInputStream())
+            {
+                byte[] bytes = new byte[BUFFER_CHUNK_SIZE];
+                int n = httpStream.read(bytes);
+                while (n != -1 && position <= end)
+                {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, n);
+                    while (buffer.hasRemaining())
+                    {
+                        position += channel.write(buffer, position);
+                    }
+                    n = httpStream.read(bytes);
+                }
+            }
+            if (position != end + 1)
+            {
+                throw new IOException("Range " + start + "-" + end + " of [" + remoteLocation
+                    + "] is incomplete, received " + (position - start) + " bytes");
+            }
+
+            // The range must be on disk before the resume information says it is
+            channel.force(false);
+            markCompleted(index);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.codehaus.cargo.util.Sha256;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Machine-wide cache of container distributions, shared by all {@link ZipURLInstaller}s pointing
+ * to the same cache directory, be it in the same JVM or in other JVMs. The cache directory
+ * contains:
+ * <ul>
+ * <li><code>archives/&lt;URL hash&gt;/</code>: downloaded archives, one directory per URL.</li>
+ * <li><code>trees/&lt;archive checksum&gt;/</code>: extracted archives, one directory per archive
+ * contents.</li>
+ * <li><code>locks/</code>: lock files coordinating concurrent downloads and extractions.</li>
+ * </ul>
+ * Extracted trees are prepared in a staging directory and then published with an atomic rename,
+ * so a tree is either absent or complete.
+ */
+public class SharedInstallationCache extends LoggedObject
+{
+    /**
+     * Suffix of the file holding the checksum of a cached archive.
+     */
+    private static final String CHECKSUM_SUFFIX = ".sha256";
+
+    /**
+     * Locks held by threads of this JVM, file locks being held on behalf of the whole JVM.
+     */
+    private static final ConcurrentMap<String, ReentrantLock> JVM_LOCKS =
+        new ConcurrentHashMap<String, ReentrantLock>();
+
+    /**
+     * Cache directory.
+     */
+    private File cacheDir;
+
+    /**
+     * @param cacheDir Cache directory.
+     */
+    public SharedInstallationCache(File cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @param url URL of a container distribution.
+     * @return Directory in which the archive downloaded from that URL is cached.
+     */
+    public File getArchiveDirectory(String url)
+    {
+        return new File(new File(this.cacheDir, "archives"), hash(url));
+    }
+
+    /**
+     * @param checksum Checksum of a container distribution archive.
+     * @return Directory in which the archive with that checksum is extracted.
+     */
+    public File getTree(String checksum)
+    {
+        return new File(new File(this.cacheDir, "trees"), checksum);
+    }
+
+    /**
+     * Returns the checksum of a cached archive, computing it only once.
+     * @param archive Cached archive.
+     * @return SHA-256 checksum of the archive.
+     * @throws IOException If the archive cannot be read.
+     */
+    public String getChecksum(File archive) throws IOException
+    {
+        File checksumFile = new File(archive.getPath() + CHECKSUM_SUFFIX);
+        if (checksumFile.isFile() && checksumFile.lastModified() >= archive.lastModified())
+        {
+            return new String(Files.readAllBytes(checksumFile.toPath()),
+                StandardCharsets.US_ASCII).trim();
+        }
+
+        String checksum;
+        try (InputStream in = new FileInputStream(archive))
+        {
+            checksum = Sha256.digest(in);
+        }
+        Files.write(checksumFile.toPath(), checksum.getBytes(StandardCharsets.US_ASCII));
+        return checksum;
+    }
+
+    /**
+     * Removes a cached archive, for example because it is broken.
+     * @param archive Cached archive.
+     */
+    public void deleteArchive(File archive)
+    {
+        archive.delete();
+        new File(archive.getPath() + CHECKSUM_SUFFIX).delete();
+    }
+
+    /**
+     * @return A new staging directory, on the same file system as the published trees.
+     * @throws IOException If the directory cannot be created.
+     */
+    public File createStagingDirectory() throws IOException
+    {
+        File trees = new File(this.cacheDir, "trees");
+        Files.createDirectories(trees.toPath());
+        return Files.createTempDirectory(trees.toPath(), ".staging-").toFile();
+    }
+
+    /**
+     * Removes a staging directory which will not be published, for example because the archive
+     * extracted in it is broken.
+     * @param staging Staging directory.
+     * @throws IOException If the directory cannot be deleted.
+     */
+    public void discard(File staging) throws IOException
+    {
+        if (staging.exists())
+        {
+            delete(staging.toPath());
+        }
+    }
+
+    /**
+     * Publishes a fully extracted tree with an atomic rename. If the tree has already been
+     * published, the staging directory is removed instead.
+     * @param staging Staging directory containing the extracted tree.
+     * @param tree Directory under which the tree is to be published.
+     * @throws IOException If the tree cannot be published.
+     */
+    public void publish(File staging, File tree) throws IOException
+    {
+        if (tree.isDirectory())
+        {
+            discard(staging);
+            return;
+        }
+        Files.move(staging.toPath(), tree.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Creates a copy of a published tree for one build.
+     * @param tree Published tree.
+     * @param home Directory to create the copy in.
+     * @param hardLinks Whether to create hard links instead of copying the files. Files which
+     * cannot be hard linked, for example because the cache is on another file system, are copied.
+     * Hard links must only be used if the container does not modify files of its home in place.
+     * @throws IOException If the copy fails.
+     */
+    public void materialize(File tree, File home, final boolean hardLinks) throws IOException
+    {
+        final Path source = tree.toPath();
+        final Path target = home.toPath();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                throws IOException
+            {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                throws IOException
+            {
+                Path copy = target.resolve(source.relativize(file).toString());
+                Files.deleteIfExists(copy);
+                if (!hardLinks || !link(copy, file))
+                {
+                    Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Acquires the lock protecting a cache entry, against both other threads of this JVM and
+     * other processes.
+     * @param key Cache entry to lock.
+     * @return Lock, to be closed in order to release it.
+     * @throws IOException If the lock file cannot be locked.
+     */
+    public Closeable lock(String key) throws IOException
+    {
+        File lockFile = new File(new File(this.cacheDir, "locks"), key + ".lock");
+        Files.createDirectories(lockFile.getParentFile().toPath());
+
+        ReentrantLock jvmLock = new ReentrantLock();
+        ReentrantLock existing = JVM_LOCKS.putIfAbsent(lockFile.getAbsolutePath(), jvmLock);
+        if (existing != null)
+        {
+            jvmLock = existing;
+        }
+        jvmLock.lock();
+
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+            getLogger().debug("Waiting for lock [" + lockFile + "]", getClass().getName());
+            return new CacheLock(jvmLock, channel, channel.lock());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            if (channel != null)
+            {
+                channel.close();
+            }
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * @param value Value to hash.
+     * @return Hexadecimal SHA-256 hash of the value.
+     */
+    public static String hash(String value)
+    {
+        return Sha256.digest(value);
+    }
+
+    /**
+     * Creates a hard link, returning whether that worked.
+     * @param link Link to create.
+     * @param existing Existing file.
+     * @return <code>true</code> if the link has been created.
+     */
+    private boolean link(Path link, Path existing)
+    {
+        try
+        {
+            Files.createLink(link, existing);
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            getLogger().debug("Cannot hard link [" + existing + "], copying it instead: " + e,
+                getClass().getName());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a directory recursively.
+     * @param directory Directory to delete.
+     * @throws IOException If the directory cannot be deleted.
+     */
+    private static void delete(Path directory) throws IOException
+    {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Lock on a cache entry, held both within the JVM and on the lock file.
+     */
+    private static class CacheLock implements Closeable
+    {
+        /**
+         * Lock within the JVM.
+         */
+        private ReentrantLock jvmLock;
+
+        /**
+         * Channel of the lock file.
+         */
+        private FileChannel channel;
+
+        /**
+         * Lock on the lock file.
+         */
+        private FileLock fileLock;
+
+        /**
+         * @param jvmLock Lock within the JVM.
+         * @param channel Channel of the lock file.
+         * @param fileLock Lock on the lock file.
+         */
+        public CacheLock(ReentrantLock jvmLock, FileChannel channel, FileLock fileLock)
+        {
+            this.jvmLock = jvmLock;
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                this.fileLock.release();
+                this.channel.close();
+            }
+            finally
+            {
+                this.jvmLock.unlock();
+            }
+        }
+    }
+}
@@ -20,22 +20,13 @@
 package org.codehaus.cargo.container.installer;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
 
-import org.apache.tools.ant.taskdefs.Expand;
-import org.apache.tools.ant.taskdefs.Untar;
-import org.apache.tools.ant.taskdefs.Untar.UntarCompressionMethod;
 import org.codehaus.cargo.container.ContainerException;
-import org.codehaus.cargo.util.AntUtils;
-import org.codehaus.cargo.util.Base64;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
 import org.codehaus.cargo.util.log.LoggedObject;
@@ -56,11 +47,6 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         ".tar.gz",
     };
 
-    /**
-     * Size of the buffers / chunks used when downloading files.
-     */
-    private static final int BUFFER_CHUNK_SIZE = 256 * 1024;
-
     /**
      * URL where the zipped container is located.
      */
@@ -82,9 +68,19 @@ public class ZipURLInstaller extends LoggedObject implements Installer
     private Proxy proxy;
 
     /**
-     * Ant utility class.
+     * Number of byte ranges downloaded in parallel, <code>1</code> means sequential download.
+     */
+    private int downloadThreads = 1;
+
+    /**
+     * Directory of the installation cache shared with other installers, <code>null</code> if none.
      */
-    private AntUtils antUtils;
+    private String cacheDir;
+
+    /**
+     * Whether to hard link the files of the shared installation cache instead of copying them.
+     */
+    private boolean cacheHardLinks;
 
     /**
      * File utility class.
@@ -110,7 +106,6 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         this.downloadDir = downloadDir;
         this.extractDir = extractDir;
         this.fileHandler = new DefaultFileHandler();
-        this.antUtils = new AntUtils();
     }
 
     /**
@@ -133,10 +128,15 @@ public class ZipURLInstaller extends LoggedObject implements Installer
 
     /**
      * @return The destination directory where the zipped container install will be downloaded.
+     * When a shared installation cache is used, this is a directory of that cache.
      */
     public String getDownloadDir()
     {
-        if (this.downloadDir == null)
+        if (this.cacheDir != null)
+        {
+            return getCache().getArchiveDirectory(this.remoteLocation.toString()).getPath();
+        }
+        else if (this.downloadDir == null)
         {
             return getFileHandler().getTmpPath("installs");
         }
@@ -185,6 +185,59 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         return getFileHandler().append(extractDir, name);
     }
 
+    /**
+     * @param downloadThreads the number of byte ranges downloaded in parallel. Values greater than
+     * <code>1</code> are only used when the remote server supports byte ranges.
+     */
+    public void setDownloadThreads(int downloadThreads)
+    {
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * @return the number of byte ranges downloaded in parallel.
+     */
+    public int getDownloadThreads()
+    {
+        return this.downloadThreads;
+    }
+
+    /**
+     * @param cacheDir the directory of an installation cache shared with other installers, be
+     * they in this JVM or in other processes. Archives are then downloaded and extracted once per
+     * cache, and the extracted tree is copied (or hard linked) into the extract directory.
+     */
+    public void setCacheDir(String cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @return the directory of the shared installation cache, <code>null</code> if none.
+     */
+    public String getCacheDir()
+    {
+        return this.cacheDir;
+    }
+
+    /**
+     * @param cacheHardLinks whether to hard link the files of the shared installation cache into
+     * the extract directory instead of copying them. Only use this with containers which do not
+     * modify the files of their installation in place.
+     */
+    public void setCacheHardLinks(boolean cacheHardLinks)
+    {
+        this.cacheHardLinks = cacheHardLinks;
+    }
+
+    /**
+     * @return whether to hard link the files of the shared installation cache.
+     */
+    public boolean isCacheHardLinks()
+    {
+        return this.cacheHardLinks;
+    }
+
     /**
      * @return the file utility class to use for performing all file I/O.
      */
@@ -207,7 +260,18 @@ public class ZipURLInstaller extends LoggedObject implements Installer
     @Override
     public void install()
     {
-        if (!isAlreadyExtracted())
+        if (this.cacheDir != null && !isAlreadyExtracted())
+        {
+            getLogger().debug("Container [" + getSourceFileName() + "] is not yet installed, "
+                + "looking it up in the shared installation cache.", this.getClass().getName());
+
+            // Do not lock the cache nor download an archive which cannot be extracted anyway
+            verifyArchiveType();
+            installFromCache();
+
+            registerInstallation();
+        }
+        else if (!isAlreadyExtracted())
         {
             getLogger().debug("Container [" + getSourceFileName() + "] is not yet installed.",
                 this.getClass().getName());
@@ -232,6 +296,8 @@ public class ZipURLInstaller extends LoggedObject implements Installer
                 getLogger().debug("Container [" + getSourceFileName() + "] is broken.",
                     this.getClass().getName());
 
+                // Interrupted downloads are kept aside and resumed by download(), so we only get
+                // here when a complete archive is corrupt: that one cannot be resumed.
                 File sourceFile = new File(getDownloadDir(), getSourceFileName());
                 sourceFile.delete();
 
@@ -354,23 +420,133 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         return home;
     }
 
+    /**
+     * Installs the container from the shared installation cache, downloading and extracting it
+     * into the cache first if needed. If the cached archive is broken, it is downloaded again
+     * once; the retry happens after releasing the lock on the broken archive's checksum, as the
+     * archive downloaded again can have the same checksum.
+     */
+    private void installFromCache()
+    {
+        SharedInstallationCache cache = getCache();
+        File archive = new File(getDownloadFile());
+        String urlKey = SharedInstallationCache.hash(this.remoteLocation.toString());
+        try
+        {
+            File tree = null;
+            for (boolean retry = true; tree == null; retry = false)
+            {
+                tree = extractIntoCache(cache, archive, urlKey, retry);
+            }
+
+            getLogger().info("Installing container [" + getSourceFileName() + "] from the "
+                + "shared installation cache [" + tree + "] in [" + getExtractDir() + "]",
+                    getClass().getName());
+            cache.materialize(tree, new File(getExtractDir()), this.cacheHardLinks);
+        }
+        catch (IOException e)
+        {
+            throw new ContainerException("Failed to install [" + getSourceFileName()
+                + "] using the shared installation cache [" + this.cacheDir + "]", e);
+        }
+    }
+
+    /**
+     * Downloads the archive into the shared installation cache if needed, and extracts it into
+     * the cache unless another build already did.
+     * @param cache Shared installation cache.
+     * @param archive Cached archive.
+     * @param urlKey Key of the archive's URL in the cache.
+     * @param retry Whether the archive will be downloaded again if it is broken.
+     * @return Directory of the cache the archive is extracted in, <code>null</code> if the archive
+     * is broken and has been deleted for it to be downloaded again.
+     * @throws IOException If the archive cannot be downloaded or the cache cannot be written. The
+     * archive is only deleted if it is broken.
+     */
+    private File extractIntoCache(SharedInstallationCache cache, File archive, String urlKey,
+        boolean retry) throws IOException
+    {
+        String checksum;
+        try (Closeable lock = cache.lock(urlKey))
+        {
+            if (!isAlreadyDownloaded())
+            {
+                download();
+            }
+            checksum = cache.getChecksum(archive);
+        }
+
+        File tree = cache.getTree(checksum);
+        try (Closeable lock = cache.lock(checksum))
+        {
+            if (!tree.isDirectory())
+            {
+                File staging = cache.createStagingDirectory();
+                try
+                {
+                    unpack(staging);
+                }
+                catch (BrokenArchiveException e)
+                {
+                    getLogger().debug("Container [" + getSourceFileName() + "] is broken.",
+                        this.getClass().getName());
+                    cache.discard(staging);
+                    cache.deleteArchive(archive);
+                    if (!retry)
+                    {
+                        throw new ContainerException(
+                            "Failed to unpack [" + getSourceFileName() + "]", e);
+                    }
+                    return null;
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    cache.discard(staging);
+                    throw e;
+                }
+                cache.publish(staging, tree);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * @return the shared installation cache.
+     */
+    private SharedInstallationCache getCache()
+    {
+        SharedInstallationCache cache = new SharedInstallationCache(new File(this.cacheDir));
+        cache.setLogger(getLogger());
+        return cache;
+    }
+
     /**
      * Unpacks the zip file containing the container files.
      * @throws IOException If the ZIP file is broken
      */
     private void unpack() throws IOException
     {
-        File targetDir = new File(getExtractDir());
+        unpack(new File(getExtractDir()));
+    }
+
+    /**
+     * Unpacks the zip file containing the container files.
+     * @param targetDir Directory in which to unpack the container files.
+     * @throws IOException If the ZIP file is broken
+     */
+    private void unpack(File targetDir) throws IOException
+    {
         File sourceFile = new File(getDownloadDir(), getSourceFileName());
 
         getLogger().info(
             "Installing container [" + sourceFile + "] in [" + targetDir.getPath() + "]",
                 getClass().getName());
 
-        Expand expandTask = createExpandTask();
-        expandTask.setSrc(sourceFile);
-        expandTask.setDest(targetDir);
-        expandTask.execute();
+        verifyArchiveType();
+
+        ArchiveExtractor extractor = new ArchiveExtractor();
+        extractor.setLogger(getLogger());
+        extractor.extract(sourceFile, targetDir);
 
         if (!targetDir.isDirectory())
         {
@@ -379,45 +555,18 @@ public class ZipURLInstaller extends LoggedObject implements Installer
     }
 
     /**
-     * Create an ant Expand task.
-     * @return The expand task
+     * Checks that the archive containing the container files can be extracted.
+     * @throws IllegalArgumentException If the archive type is not supported.
      */
-    private Expand createExpandTask()
+    private void verifyArchiveType()
     {
-        String archivename = getSourceFileName().toLowerCase();
-        Expand expand = null;
-        if (archivename.endsWith(".zip"))
-        {
-            expand = (Expand) this.antUtils.createAntTask("unzip");
-        }
-        else if (archivename.endsWith(".tar"))
-        {
-            expand = (Expand) this.antUtils.createAntTask("untar");
-        }
-        else if (archivename.endsWith(".tgz") || archivename.endsWith(".tar.gz"))
-        {
-            Untar untar = (Untar) this.antUtils.createAntTask("untar");
-            UntarCompressionMethod compressionMethod = new Untar.UntarCompressionMethod();
-            compressionMethod.setValue("gzip");
-            untar.setCompression(compressionMethod);
-            expand = untar;
-        }
-        else if (archivename.endsWith(".bz2"))
-        {
-            Untar untar = (Untar) this.antUtils.createAntTask("untar");
-            UntarCompressionMethod compressionMethod = new Untar.UntarCompressionMethod();
-            compressionMethod.setValue("bzip2");
-            untar.setCompression(compressionMethod);
-            expand = untar;
-        }
-        else
+        String archiveName = getSourceFileName();
+        if (!ArchiveExtractor.isSupported(archiveName))
         {
-            String errorMessage = "Unsupported archive type: [" + archivename + "]";
+            String errorMessage = "Unsupported archive type: [" + archiveName.toLowerCase() + "]";
             getLogger().warn(errorMessage, getClass().getName());
             throw new IllegalArgumentException(errorMessage);
         }
-
-        return expand;
     }
 
     /**
@@ -466,7 +615,8 @@ public class ZipURLInstaller extends LoggedObject implements Installer
     }
 
     /**
-     * Perform the actual HTTP download.
+     * Perform the actual HTTP download. If a previous download has been interrupted, only the
+     * missing bytes are downloaded.
      * @throws IOException if any I/O exception occurs (with the URL connection or file streams)
      */
     protected void doDownload() throws IOException
@@ -481,40 +631,10 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         getLogger().info("Downloading container from [" + this.remoteLocation + "] to ["
             + targetFile + "]", getClass().getName());
 
-        final URLConnection connection = this.remoteLocation.openConnection();
-        connection.addRequestProperty("Accept", "*/*");
-        connection.addRequestProperty("Accept-Encoding", "identity");
-
-        connection.setUseCaches(false);
-        if (connection instanceof HttpURLConnection)
-        {
-            HttpURLConnection httpConnection = (HttpURLConnection) connection;
-            httpConnection.setInstanceFollowRedirects(true);
-
-            String userInfo = this.remoteLocation.getUserInfo();
-            if (userInfo != null)
-            {
-                connection.setRequestProperty("Authorization",
-                    "Basic " + new String(Base64.encode(userInfo)));
-            }
-        }
-
-        try (InputStream httpStream = connection.getInputStream();
-            OutputStream fileStream = new FileOutputStream(targetFile))
-        {
-            int n;
-            byte[] bytes = new byte[BUFFER_CHUNK_SIZE];
-            while ((n = httpStream.read(bytes)) != -1)
-            {
-                fileStream.write(bytes, 0, n);
-            }
-        }
-
-        final long remoteTimestamp = connection.getLastModified();
-        if (remoteTimestamp != 0)
-        {
-            targetFile.setLastModified(remoteTimestamp);
-        }
+        ResumableDownloader downloader =
+            new ResumableDownloader(this.remoteLocation, targetFile, this.downloadThreads);
+        downloader.setLogger(getLogger());
+        downloader.download();
     }
 
     /**
@@ -22,14 +22,18 @@ package org.codehaus.cargo.container.internal.http;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.PasswordAuthentication;
 import java.net.URL;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,6 +41,7 @@ import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
@@ -44,10 +49,30 @@ import org.codehaus.cargo.util.Base64;
 import org.codehaus.cargo.util.log.LoggedObject;
 
 /**
- * HTTP(S) connection class.
+ * HTTP(S) connection class. Connections are kept alive and pooled by the JDK between calls to the
+ * same server, which avoids a TCP and TLS handshake on every call of ping loops and remote
+ * deployers.
  */
 public class HttpConnection extends LoggedObject
 {
+    /**
+     * Charset used to decode response bodies which do not specify one.
+     */
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    /**
+     * HostnameVerifier shared by all HTTPS connections.
+     */
+    private static final HostnameVerifier PERMISSIVE_HOSTNAME_VERIFIER =
+        new PermissiveHostnameVerifier();
+
+    /**
+     * Socket factory shared by all HTTPS connections, created on first use. Sharing it means the
+     * TLS context is initialized only once, and lets the JDK reuse kept-alive connections (which
+     * it pools per socket factory).
+     */
+    private static SSLSocketFactory permissiveSocketFactory;
+
     /**
      * URL to be called.
      */
@@ -185,15 +210,10 @@ public class HttpConnection extends LoggedObject
             HttpURLConnection connection;
             if (url.getProtocol().equalsIgnoreCase("https"))
             {
-                TrustManager[] trustAll = {new PermissiveTrustManager()};
-                SSLContext sc = SSLContext.getInstance("SSL");
-                sc.init(null, trustAll, new java.security.SecureRandom());
-                HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-
-                connection = (HttpsURLConnection) url.openConnection();
-
-                HostnameVerifier verifyAll = new PermissiveHostnameVerifier();
-                ((HttpsURLConnection) connection).setHostnameVerifier(verifyAll);
+                HttpsURLConnection httpsConnection = (HttpsURLConnection) url.openConnection();
+                httpsConnection.setSSLSocketFactory(getPermissiveSocketFactory());
+                httpsConnection.setHostnameVerifier(PERMISSIVE_HOSTNAME_VERIFIER);
+                connection = httpsConnection;
             }
             else
             {
@@ -209,7 +229,6 @@ public class HttpConnection extends LoggedObject
                 connection.setRequestProperty("Authorization", "Basic " + userInfo);
             }
 
-            connection.setRequestProperty("Connection", "close");
             if (timeout != 0)
             {
                 connection.setReadTimeout((int) timeout);
@@ -257,11 +276,10 @@ public class HttpConnection extends LoggedObject
             connection.connect();
             result.setResponseCode(connection.getResponseCode());
             result.setResponseMessage(connection.getResponseMessage());
+            // Do not disconnect, reading the body fully lets the connection be reused instead
             result.setResponseBody(readFully(connection));
-
-            connection.disconnect();
         }
-        catch (KeyManagementException|IOException|NoSuchAlgorithmException e)
+        catch (GeneralSecurityException | IOException e)
         {
             result.setResponseCode(-1);
             result.setResponseMessage(e.toString());
@@ -274,8 +292,25 @@ public class HttpConnection extends LoggedObject
     }
 
     /**
-     * Fully reads the input stream from the passed HTTP URL connection to prevent (harmless)
-     * server-side exception.
+     * @return Socket factory shared by all HTTPS connections, trusting all certificates.
+     * @throws GeneralSecurityException If the TLS context cannot be initialized.
+     */
+    private static synchronized SSLSocketFactory getPermissiveSocketFactory()
+        throws GeneralSecurityException
+    {
+        if (permissiveSocketFactory == null)
+        {
+            TrustManager[] trustAll = {new PermissiveTrustManager()};
+            SSLContext sc = SSLContext.getInstance("SSL");
+            sc.init(null, trustAll, new SecureRandom());
+            permissiveSocketFactory = sc.getSocketFactory();
+        }
+        return permissiveSocketFactory;
+    }
+
+    /**
+     * Fully reads and closes the input stream from the passed HTTP URL connection, which both
+     * prevents (harmless) server-side exceptions and lets the connection be kept alive.
      * 
      * @param connection the HTTP URL connection to read from
      * @exception IOException if an error happens during the read
@@ -283,53 +318,78 @@ public class HttpConnection extends LoggedObject
      */
     private String readFully(HttpURLConnection connection) throws IOException
     {
-        String responseBody = "";
+        // try getting data from the input stream for successful response,
+        // otherwise from the error stream
+        InputStream in;
+        int responseCode = connection.getResponseCode();
+        if (responseCode >= 200 && responseCode < 300)
+        {
+            in = connection.getInputStream();
+        }
+        else
+        {
+            in = connection.getErrorStream();
+        }
 
-        // Only read if there is data to read ... The problem is that not all servers return a
-        // content-length header. If there is no header getContentLength() returns -1. It seems to
-        // work and it seems that all servers that return no content-length header also do not
-        // block on read() operations!
-        if (connection.getContentLength() != 0)
+        if (in == null)
         {
-            // try getting data from the input stream for successful response,
-            // otherwise from the error stream
-            int responseCode = connection.getResponseCode();
-            if (responseCode >= 200 && responseCode < 300)
-            {
-                InputStream in = connection.getInputStream();
-                if (in != null)
-                {
-                    responseBody = readStreamData(in);
-                }
-            }
-            else
+            return "";
+        }
+        return readStreamData(in, getCharset(connection.getContentType()));
+    }
+
+    /**
+     * @param contentType Content type of the response, can be <code>null</code>.
+     * @return Charset specified by the content type, {@link #DEFAULT_CHARSET} if it specifies no
+     * supported charset.
+     */
+    static String getCharset(String contentType)
+    {
+        if (contentType != null)
+        {
+            for (String parameter : contentType.split(";"))
             {
-                InputStream in = connection.getErrorStream();
-                if (in != null)
+                parameter = parameter.trim();
+                if (parameter.regionMatches(true, 0, "charset=", 0, "charset=".length()))
                 {
-                    responseBody = readStreamData(in);
+                    String charset = parameter.substring("charset=".length()).replace("\"", "");
+                    try
+                    {
+                        if (Charset.isSupported(charset))
+                        {
+                            return charset;
+                        }
+                    }
+                    catch (IllegalCharsetNameException e)
+                    {
+                        // Use the default charset
+                    }
                 }
             }
         }
-
-        return responseBody;
+        return DEFAULT_CHARSET;
     }
 
     /**
-     * @param stream the stream from which to read data from
+     * @param stream the stream from which to read data from, closed afterwards
+     * @param charset the charset the data is encoded with
      * @return the stream data
      * @throws IOException in case of error
      */
-    private String readStreamData(InputStream stream) throws IOException
+    private String readStreamData(InputStream stream, String charset) throws IOException
     {
         StringBuilder body = new StringBuilder();
-        byte[] buf = new byte[256];
+        char[] buf = new char[4096];
 
-        // Make sure we read all the data in the stream
-        int n;
-        while ((n = stream.read(buf)) != -1)
+        // Decode through a reader, so that characters spanning two reads are decoded correctly
+        try (Reader reader = new InputStreamReader(stream, charset))
         {
-            body.append(new String(buf, 0, n));
+            int n = reader.read(buf);
+            while (n != -1)
+            {
+                body.append(buf, 0, n);
+                n = reader.read(buf);
+            }
         }
 
         return body.toString();
@@ -338,7 +398,7 @@ public class HttpConnection extends LoggedObject
     /**
      * A TrustManager that does not validate certificate chains.
      */
-    private class PermissiveTrustManager implements X509TrustManager
+    private static class PermissiveTrustManager implements X509TrustManager
     {
         /**
          * {@inheritDoc}
@@ -375,7 +435,7 @@ public class HttpConnection extends LoggedObject
      * A HostnameVerifier that does not care whether the name on the certificate matches the
      * hostname.
      */
-    private class PermissiveHostnameVerifier implements HostnameVerifier
+    private static class PermissiveHostnameVerifier implements HostnameVerifier
     {
         /**
          * {@inheritDoc}
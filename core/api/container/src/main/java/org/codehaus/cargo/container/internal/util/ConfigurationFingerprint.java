@@ -0,0 +1,126 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.cargo.util.Sha256;
+
+/**
+ * Fingerprint of the inputs of a configuration, used to find out whether a configuration needs to
+ * be generated again. Values are added with a name; files are represented by their path, size and
+ * timestamp (recursively for directories), not by their contents, so that computing the
+ * fingerprint stays much cheaper than regenerating the configuration.
+ */
+public class ConfigurationFingerprint
+{
+    /**
+     * Digest accumulating the inputs.
+     */
+    private final MessageDigest digest = Sha256.createDigest();
+
+    /**
+     * Adds a named value to the fingerprint.
+     * @param name Name of the input.
+     * @param value Value of the input, can be <code>null</code>.
+     */
+    public void add(String name, String value)
+    {
+        update(name);
+        update(value);
+    }
+
+    /**
+     * Adds a map of values to the fingerprint, in the order of the keys.
+     * @param name Name of the input.
+     * @param values Values of the input.
+     */
+    public void add(String name, Map<String, String> values)
+    {
+        for (Map.Entry<String, String> value : new TreeMap<String, String>(values).entrySet())
+        {
+            add(name + "." + value.getKey(), value.getValue());
+        }
+    }
+
+    /**
+     * Adds a file or a directory to the fingerprint.
+     * @param name Name of the input.
+     * @param file File or directory, can be <code>null</code> or not exist.
+     */
+    public void addFile(String name, File file)
+    {
+        if (file == null)
+        {
+            add(name, (String) null);
+        }
+        else if (file.isDirectory())
+        {
+            add(name, file.getAbsolutePath() + "/");
+            String[] children = file.list();
+            if (children != null)
+            {
+                Arrays.sort(children);
+                for (String child : children)
+                {
+                    addFile(name, new File(file, child));
+                }
+            }
+        }
+        else
+        {
+            add(name, file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+        }
+    }
+
+    /**
+     * @return Hexadecimal value of the fingerprint. The fingerprint cannot be modified afterwards.
+     */
+    public String getValue()
+    {
+        return Sha256.toHex(this.digest.digest());
+    }
+
+    /**
+     * Adds a length-prefixed string to the digest, so that values cannot be confused with each
+     * other.
+     * @param value String to add, can be <code>null</code>.
+     */
+    private void update(String value)
+    {
+        if (value == null)
+        {
+            this.digest.update((byte) 0);
+        }
+        else
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.digest.update((byte) 1);
+            this.digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            this.digest.update((byte) ':');
+            this.digest.update(bytes);
+        }
+    }
+}
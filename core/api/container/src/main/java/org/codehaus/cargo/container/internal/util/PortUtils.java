@@ -0,0 +1,272 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Set of common port utility methods: checking which local ports are open, all at once, and
+ * allocating ranges of free ports.
+ */
+public class PortUtils extends LoggedObject
+{
+    /**
+     * Number of attempts to find a range of free ports.
+     */
+    private static final int ALLOCATION_ATTEMPTS = 100;
+
+    /**
+     * Ports allocated with {@link #allocatePorts(int)} and not released yet, shared by all
+     * instances so that concurrent allocations within the JVM never return the same ports.
+     */
+    private static final Set<Integer> ALLOCATED_PORTS = new TreeSet<Integer>();
+
+    /**
+     * Checks which of the specified local ports are open, attempting to connect to all of them at
+     * once with non-blocking connections.
+     * 
+     * @param ports The port numbers.
+     * @param connectTimeout The connect timeout, in milliseconds.
+     * @return Ports which accepted a connection within the connect timeout.
+     */
+    public Set<Integer> getOpenPorts(Collection<Integer> ports, int connectTimeout)
+    {
+        Set<Integer> openPorts = new TreeSet<Integer>();
+        if (ports.isEmpty())
+        {
+            return openPorts;
+        }
+
+        try (Selector selector = Selector.open())
+        {
+            for (Integer port : ports)
+            {
+                SocketChannel channel = SocketChannel.open();
+                try
+                {
+                    channel.configureBlocking(false);
+                    if (channel.connect(new InetSocketAddress("localhost", port)))
+                    {
+                        openPorts.add(port);
+                        channel.close();
+                    }
+                    else
+                    {
+                        channel.register(selector, SelectionKey.OP_CONNECT, port);
+                    }
+                }
+                catch (IOException e)
+                {
+                    // If an IOException has occured, this means port is shut down
+                    channel.close();
+                }
+            }
+
+            long deadline = System.currentTimeMillis() + connectTimeout;
+            long remaining = connectTimeout;
+            while (!selector.keys().isEmpty() && remaining > 0)
+            {
+                selector.select(remaining);
+                for (SelectionKey key : selector.selectedKeys())
+                {
+                    try
+                    {
+                        if (((SocketChannel) key.channel()).finishConnect())
+                        {
+                            openPorts.add((Integer) key.attachment());
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        // If an IOException has occured, this means port is shut down
+                    }
+                    key.channel().close();
+                }
+                selector.selectedKeys().clear();
+                // Flush the keys of the closed channels
+                selector.selectNow();
+                remaining = deadline - System.currentTimeMillis();
+            }
+
+            // Ports which did not answer in time are considered as shut down
+            for (SelectionKey key : selector.keys())
+            {
+                key.channel().close();
+            }
+        }
+        catch (IOException e)
+        {
+            getLogger().debug("\tCannot check ports at once, checking them one by one: " + e,
+                this.getClass().getName());
+            openPorts.clear();
+            for (Integer port : ports)
+            {
+                if (isPortOpen(port, connectTimeout))
+                {
+                    openPorts.add(port);
+                }
+            }
+        }
+        return openPorts;
+    }
+
+    /**
+     * Checks if the specified local port is open.
+     * 
+     * @param port The port number.
+     * @param connectTimeout The connect timeout, in milliseconds; <code>0</code> for none.
+     * @return <code>true</code> if <code>port</code> accepted a connection, <code>false</code>
+     * otherwise.
+     */
+    public boolean isPortOpen(int port, int connectTimeout)
+    {
+        try (Socket s = new Socket())
+        {
+            s.bind(null);
+
+            // If the remote port is closed, s.connect will throw an exception
+            s.connect(new InetSocketAddress("localhost", port), connectTimeout);
+            getLogger().debug("\tSocket " + s + " for port " + port + " managed to connect",
+                this.getClass().getName());
+            return true;
+        }
+        catch (IOException ignored)
+        {
+            // If an IOException has occured, this means port is shut down
+            return false;
+        }
+    }
+
+    /**
+     * Allocates a range of consecutive free ports, for example to run several containers in
+     * parallel. The allocation is atomic within the JVM: ports allocated and not released are never
+     * allocated again, and each port of the range could be bound when allocated.
+     * 
+     * @param count Number of ports.
+     * @return First port of the range.
+     * @throws CargoException If no range of free ports could be found.
+     */
+    public int allocatePorts(int count) throws CargoException
+    {
+        synchronized (ALLOCATED_PORTS)
+        {
+            for (int attempt = 0; attempt < ALLOCATION_ATTEMPTS; attempt++)
+            {
+                // Let the system choose where to start from
+                int first;
+                try (ServerSocket probe = new ServerSocket(0))
+                {
+                    first = probe.getLocalPort();
+                }
+                catch (IOException e)
+                {
+                    throw new CargoException("Cannot allocate ports", e);
+                }
+
+                if (first + count - 1 <= 65535 && isRangeFree(first, count))
+                {
+                    for (int port = first; port < first + count; port++)
+                    {
+                        ALLOCATED_PORTS.add(port);
+                    }
+                    getLogger().debug("Allocated ports " + first + " to " + (first + count - 1),
+                        this.getClass().getName());
+                    return first;
+                }
+            }
+        }
+        throw new CargoException("Cannot find " + count + " consecutive free ports");
+    }
+
+    /**
+     * Releases a range of ports allocated with {@link #allocatePorts(int)}.
+     * 
+     * @param first First port of the range.
+     * @param count Number of ports.
+     */
+    public void releasePorts(int first, int count)
+    {
+        synchronized (ALLOCATED_PORTS)
+        {
+            for (int port = first; port < first + count; port++)
+            {
+                ALLOCATED_PORTS.remove(port);
+            }
+        }
+    }
+
+    /**
+     * @param first First port of the range.
+     * @param count Number of ports.
+     * @return <code>true</code> if no port of the range is allocated and all can be bound.
+     */
+    private boolean isRangeFree(int first, int count)
+    {
+        for (int port = first; port < first + count; port++)
+        {
+            if (ALLOCATED_PORTS.contains(port))
+            {
+                return false;
+            }
+        }
+
+        List<ServerSocket> bound = new ArrayList<ServerSocket>();
+        try
+        {
+            for (int port = first; port < first + count; port++)
+            {
+                bound.add(new ServerSocket(port));
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            for (ServerSocket serverSocket : bound)
+            {
+                try
+                {
+                    serverSocket.close();
+                }
+                catch (IOException ignored)
+                {
+                    // Ignored
+                }
+            }
+        }
+    }
+}
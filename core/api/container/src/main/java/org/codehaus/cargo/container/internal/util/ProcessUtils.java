@@ -0,0 +1,86 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import org.codehaus.cargo.container.spi.jvm.JvmLauncherException;
+
+/**
+ * Set of common utility methods following a {@link Process}, used by the JVM launchers which
+ * start their container with a {@link ProcessBuilder}.
+ */
+public final class ProcessUtils
+{
+    /**
+     * Ensures that this utility class cannot be instantiated.
+     */
+    private ProcessUtils()
+    {
+    }
+
+    /**
+     * Gets the failure of a process.
+     * 
+     * @param process Process, <code>null</code> if it has not been launched.
+     * @return The failure if the process has exited with a non-zero code, <code>null</code> if it
+     * is still running, has exited normally or has not been launched.
+     */
+    public static JvmLauncherException getFailure(Process process)
+    {
+        if (process != null)
+        {
+            try
+            {
+                int exitValue = process.exitValue();
+                if (exitValue != 0)
+                {
+                    return new JvmLauncherException("Process exited with code " + exitValue);
+                }
+            }
+            catch (IllegalThreadStateException e)
+            {
+                // The process is still running
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a process is still running.
+     * 
+     * @param process Process, <code>null</code> if it has not been launched.
+     * @return <code>true</code> if the process is still running, <code>false</code> if it has
+     * exited or has not been launched.
+     */
+    public static boolean isRunning(Process process)
+    {
+        if (process != null)
+        {
+            try
+            {
+                process.exitValue();
+            }
+            catch (IllegalThreadStateException e)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
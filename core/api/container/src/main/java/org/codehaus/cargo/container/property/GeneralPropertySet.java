@@ -81,6 +81,14 @@ public interface GeneralPropertySet
      */
     String IGNORE_NON_EXISTING_PROPERTIES = "cargo.standalone.ignoreNonExistingProperties";
 
+    /**
+     * Specify if CARGO's configuration generator for standalone containers should reuse the
+     * configuration generated previously, as long as none of the inputs of the configuration
+     * (properties, files, resources, datasources, users, deployables and the container itself)
+     * have changed.
+     */
+    String INCREMENTAL_CONFIGURATION = "cargo.standalone.incremental";
+
     /**
      * The port offset to apply to the container ports.
      */
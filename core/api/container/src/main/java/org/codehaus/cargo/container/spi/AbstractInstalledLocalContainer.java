@@ -33,6 +33,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.tools.ant.taskdefs.condition.Os;
 import org.codehaus.cargo.container.ContainerException;
@@ -49,6 +50,7 @@ import org.codehaus.cargo.container.spi.jvm.DefaultJvmLauncherFactory;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherFactory;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherRequest;
+import org.codehaus.cargo.container.spi.jvm.MonitoredJvmLauncher;
 import org.codehaus.cargo.util.AntUtils;
 import org.codehaus.cargo.util.log.Logger;
 
@@ -58,6 +60,12 @@ import org.codehaus.cargo.util.log.Logger;
 public abstract class AbstractInstalledLocalContainer extends AbstractLocalContainer implements
     InstalledLocalContainer
 {
+    /**
+     * Time in milliseconds to wait for the container process to exit once its ports are shut
+     * down, when the {@link JvmLauncher} cannot follow that process.
+     */
+    private static final long UNFOLLOWED_PROCESS_EXIT_GRACE = 5000;
+
     /**
      * List of system properties to set in the container JVM.
      */
@@ -317,6 +325,51 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Exception getContainerProcessFailure()
+    {
+        if (jvmStartLauncher instanceof MonitoredJvmLauncher)
+        {
+            return ((MonitoredJvmLauncher) jvmStartLauncher).getFailure();
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isContainerProcessRunning()
+    {
+        return jvmStartLauncher instanceof MonitoredJvmLauncher
+            && ((MonitoredJvmLauncher) jvmStartLauncher).isRunning();
+    }
+
+    /**
+     * {@inheritDoc}. If the container has been started with a {@link JvmLauncher} which cannot
+     * follow its process, for example because the process was spawned, also waits up to 5 more
+     * seconds, bounded by the deadline, as many containers do not fully stop even after having
+     * destroyed all their sockets.
+     */
+    @Override
+    protected void waitForStopping(Set<Integer> ports, long deadline) throws InterruptedException
+    {
+        super.waitForStopping(ports, deadline);
+        if (jvmStartLauncher != null
+            && (!(jvmStartLauncher instanceof MonitoredJvmLauncher) || isSpawned()))
+        {
+            long grace = Math.min(UNFOLLOWED_PROCESS_EXIT_GRACE,
+                deadline - System.currentTimeMillis());
+            if (grace > 0)
+            {
+                Thread.sleep(grace);
+            }
+        }
+    }
+
     /**
      * Creates a preinitialized instance of a JVM launcher to be used for starting, stopping and
      * controlling the container.
@@ -664,22 +717,28 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
      */
     private void addSpawn(JvmLauncher java)
     {
-        boolean spawnProcess = Boolean.parseBoolean(getConfiguration().getPropertyValue(
-            GeneralPropertySet.SPAWN_PROCESS));
-        if (spawnProcess)
+        if (isSpawned())
         {
-            if (getOutput() == null)
-            {
-                java.setSpawn(spawnProcess);
-            }
-            else
-            {
-                getLogger().warn("Process cannot be spawned unless output is null",
-                    this.getClass().getName());
-            }
+            java.setSpawn(true);
+        }
+        else if (Boolean.parseBoolean(getConfiguration().getPropertyValue(
+            GeneralPropertySet.SPAWN_PROCESS)))
+        {
+            getLogger().warn("Process cannot be spawned unless output is null",
+                this.getClass().getName());
         }
     }
 
+    /**
+     * @return <code>true</code> if the container process is spawned, in which case the
+     * {@link JvmLauncher} cannot follow it.
+     */
+    private boolean isSpawned()
+    {
+        return Boolean.parseBoolean(getConfiguration().getPropertyValue(
+            GeneralPropertySet.SPAWN_PROCESS)) && getOutput() == null;
+    }
+
     /**
      * {@inheritDoc}
      */
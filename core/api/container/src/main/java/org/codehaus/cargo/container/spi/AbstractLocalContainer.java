@@ -19,10 +19,24 @@
  */
 package org.codehaus.cargo.container.spi;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
@@ -30,19 +44,40 @@ import org.codehaus.cargo.container.State;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.URLDeployableMonitor;
+import org.codehaus.cargo.container.internal.util.PortUtils;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.ServletPropertySet;
-import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.container.spi.startup.CombinedContainerMonitor;
+import org.codehaus.cargo.container.spi.startup.DeployableContainerMonitor;
+import org.codehaus.cargo.container.spi.startup.LogMarkerContainerMonitor;
+import org.codehaus.cargo.container.spi.startup.PortAcceptContainerMonitor;
 import org.codehaus.cargo.container.spi.util.ContainerUtils;
 import org.codehaus.cargo.container.startup.ContainerMonitor;
 import org.codehaus.cargo.util.CargoException;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.log.Logger;
 
 /**
  * Default container implementation that all local container implementations must extend.
  */
 public abstract class AbstractLocalContainer extends AbstractContainer implements LocalContainer
 {
+    /**
+     * Timeout in milliseconds when checking whether ports are shut down.
+     */
+    private static final int PORT_CONNECT_TIMEOUT = 250;
+
+    /**
+     * Timeout in milliseconds for the container process to exit once its ports are shut down.
+     */
+    private static final long PROCESS_EXIT_TIMEOUT = 5000;
+
+    /**
+     * Port utilities, used to check which ports are in use.
+     */
+    private PortUtils portUtils = new PortUtils();
+
     /**
      * The file to which output of the container should be written.
      */
@@ -74,6 +109,12 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
      */
     private FileHandler fileHandler;
 
+    /**
+     * Length of the output file when the container was last started, as only what the container
+     * writes afterwards is relevant to detect that it is started.
+     */
+    private long startOutputOffset;
+
     /**
      * Default constructor.
      * @param configuration the configuration to associate to this container. It can be changed
@@ -86,6 +127,18 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         this.fileHandler = new DefaultFileHandler();
     }
 
+    /**
+     * Overriden in order to set the logger on ancillary components.
+     * 
+     * @param logger the logger to set and set in the ancillary objects
+     */
+    @Override
+    public void setLogger(Logger logger)
+    {
+        super.setLogger(logger);
+        this.portUtils.setLogger(logger);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -171,6 +224,56 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
      */
     @Override
     public final void start()
+    {
+        setStarting();
+        doStart();
+    }
+
+    /**
+     * Starts the container in the background. The state of the container is
+     * {@link State#STARTING} as soon as this method returns, and it fails at once if the container
+     * is already starting or started. Cancelling the returned future interrupts waiting for the
+     * container to start and then stops the container.
+     * 
+     * @return Future of the start, failing with the exception {@link #start()} would throw.
+     */
+    public Future<Void> startAsync()
+    {
+        setStarting();
+        return runAsync(true);
+    }
+
+    /**
+     * Stops the container in the background. The state of the container is
+     * {@link State#STOPPING} as soon as this method returns.
+     * 
+     * @return Future of the stop, failing with the exception {@link #stop()} would throw.
+     */
+    public Future<Void> stopAsync()
+    {
+        setState(State.STOPPING);
+        return runAsync(false);
+    }
+
+    /**
+     * Starts or stops the container in a new thread.
+     * 
+     * @param starting <code>true</code> to start the container, <code>false</code> to stop it.
+     * @return Future of the action.
+     */
+    private Future<Void> runAsync(boolean starting)
+    {
+        AsyncAction action = new AsyncAction(starting);
+        Thread thread = new Thread(action, getName() + (starting ? " start" : " stop"));
+        thread.setDaemon(true);
+        thread.start();
+        return action;
+    }
+
+    /**
+     * Checks that the container can be started and sets its state to {@link State#STARTING}.
+     */
+    private void setStarting()
     {
         synchronized (this)
         {
@@ -185,7 +288,13 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
                 setState(State.STARTING);
             }
         }
+    }
 
+    /**
+     * Starts the container, which is in the {@link State#STARTING} state.
+     */
+    private void doStart()
+    {
         getLogger().info(getName() + " starting...", this.getClass().getName());
 
         try
@@ -197,7 +306,8 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
             // Ensure that the configuration is done before starting the container.
             getConfiguration().configure(this);
 
-            // CARGO-365: Check if ports are in use
+            // CARGO-365: Check if ports are in use, probing all of them at once
+            Map<Integer, String> portProperties = new TreeMap<Integer, String>();
             for (Map.Entry<String, String> property
                 : getConfiguration().getProperties().entrySet())
             {
@@ -208,12 +318,9 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
                     try
                     {
                         int port = Integer.parseInt(property.getValue());
-                        if (!isPortShutdown(port, 0))
+                        if (port > 0 && port <= 65535 && !portProperties.containsKey(port))
                         {
-                            throw new ContainerException("Port number " + property.getValue()
-                                + " (defined with the property " + property.getKey() + ") is "
-                                    + "in use. Please free it on the system or set it to a "
-                                        + "different port in the container configuration.");
+                            portProperties.put(port, property.getKey());
                         }
                     }
                     catch (NumberFormatException e)
@@ -222,6 +329,37 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
                     }
                 }
             }
+            Set<Integer> portsInUse =
+                this.portUtils.getOpenPorts(portProperties.keySet(), PORT_CONNECT_TIMEOUT);
+            if (!portsInUse.isEmpty())
+            {
+                StringBuilder message = new StringBuilder();
+                for (Integer port : portsInUse)
+                {
+                    message.append("Port number " + port + " (defined with the property "
+                        + portProperties.get(port) + ") is in use. ");
+                }
+                message.append("Please free " + (portsInUse.size() > 1 ? "them" : "it")
+                    + " on the system or set " + (portsInUse.size() > 1 ? "them" : "it")
+                        + " to a different port in the container configuration.");
+                throw new ContainerException(message.toString());
+            }
+
+            this.startOutputOffset = 0;
+            if (getOutput() != null)
+            {
+                File output = new File(getOutput());
+                if (isAppend())
+                {
+                    this.startOutputOffset = output.length();
+                }
+                else if (output.isFile())
+                {
+                    // The container only truncates its output file later, asynchronously, and
+                    // the start markers of its previous run must not be found until then
+                    truncateOutput(output);
+                }
+            }
 
             startInternal();
 
@@ -261,6 +399,28 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         }
     }
 
+    /**
+     * Empties the output file before the container is started. If the file cannot be emptied, only
+     * what is written after its current end, or after the container has truncated it, is looked at
+     * when waiting for the container to start.
+     * 
+     * @param output Output file of the container.
+     */
+    private void truncateOutput(File output)
+    {
+        try (FileOutputStream out = new FileOutputStream(output, false))
+        {
+            getLogger().debug("Emptied the output file [" + output + "]",
+                this.getClass().getName());
+        }
+        catch (IOException e)
+        {
+            this.startOutputOffset = output.length();
+            getLogger().debug("Cannot empty the output file [" + output + "]: " + e,
+                this.getClass().getName());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -268,6 +428,14 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
     public final void stop()
     {
         setState(State.STOPPING);
+        doStop();
+    }
+
+    /**
+     * Stops the container, which is in the {@link State#STOPPING} state.
+     */
+    private void doStop()
+    {
         getLogger().info(getName() + " is stopping...", this.getClass().getName());
 
         final boolean isAppend = isAppend();
@@ -332,17 +500,89 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
     }
 
     /**
-     * Use container monitor to verify if the container is started.
+     * Returns the markers the container writes to its output once it is started, for example
+     * <code>Server startup in</code> for Tomcat. When the container has markers and its output is
+     * written to a file, {@link #waitForCompletion(boolean)} detects that the container is started
+     * by looking for these markers instead of pinging the Cargo Ping Component.
+     * 
+     * @return Markers, any of which means that the container is started. None by default.
+     */
+    protected String[] getStartedMarkers()
+    {
+        return new String[0];
+    }
+
+    /**
+     * Gets the failure of the container process, so that waiting for the container to start
+     * fails as soon as the container process has died.
+     * 
+     * @return The failure if the container process has exited with an error, <code>null</code>
+     * otherwise. Always <code>null</code> by default.
+     */
+    protected Exception getContainerProcessFailure()
+    {
+        return null;
+    }
+
+    /**
+     * Creates a monitor detecting that the container is started from the markers it writes to its
+     * output file and from its servlet port accepting connections.
+     * 
+     * @return Monitor, <code>null</code> if the container has no {@link #getStartedMarkers()} or
+     * if its output is not written to a file.
+     */
+    protected ContainerMonitor createStartedMarkersMonitor()
+    {
+        String[] markers = getStartedMarkers();
+        if (markers.length == 0 || getOutput() == null)
+        {
+            return null;
+        }
+
+        ContainerMonitor logMonitor = new LogMarkerContainerMonitor(this, new File(getOutput()),
+            this.startOutputOffset, markers);
+        try
+        {
+            int port = Integer.parseInt(
+                getConfiguration().getPropertyValue(ServletPropertySet.PORT));
+            String hostname = getConfiguration().getPropertyValue(GeneralPropertySet.HOSTNAME);
+            return new CombinedContainerMonitor(this, logMonitor,
+                new PortAcceptContainerMonitor(this, hostname == null ? "localhost" : hostname,
+                    port));
+        }
+        catch (NumberFormatException e)
+        {
+            return logMonitor;
+        }
+    }
+
+    /**
+     * Use container monitor to verify if the container is started. The monitor is checked as soon
+     * as the container output file changes, and at least every 100 ms. Waiting fails as soon as
+     * {@link #getContainerProcessFailure()} reports that the container process has died.
      * @param monitor Container monitor checking container availability.
      * @throws InterruptedException if the thread sleep is interrupted.
      */
     protected void waitForStarting(ContainerMonitor monitor) throws InterruptedException
     {
+        WatchService outputWatcher = createOutputWatcher();
         try
         {
             long startTime = System.currentTimeMillis();
-            do
+            while (true)
             {
+                Exception failure = getContainerProcessFailure();
+                if (failure != null)
+                {
+                    throw new ContainerException("The " + getName() + " container process has "
+                        + "exited before the container was started", failure);
+                }
+
+                if (monitor.isRunning())
+                {
+                    break;
+                }
+
                 if (System.currentTimeMillis() - startTime > getTimeout())
                 {
                     String message = "Monitor [" + monitor.getClass().getName()
@@ -352,18 +592,90 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
                     throw new ContainerException(message);
                 }
 
-                Thread.sleep(100);
+                if (outputWatcher == null)
+                {
+                    Thread.sleep(100);
+                }
+                else
+                {
+                    WatchKey key = outputWatcher.poll(100, TimeUnit.MILLISECONDS);
+                    if (key != null)
+                    {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                }
             }
-            while (!monitor.isRunning());
         }
         catch (InterruptedException e)
         {
             throw new ContainerException("Failed to monitor container", e);
         }
+        finally
+        {
+            close(outputWatcher);
+            if (monitor instanceof Closeable)
+            {
+                close((Closeable) monitor);
+            }
+        }
+    }
+
+    /**
+     * Creates a watch service for the directory of the container output file, so that waiting for
+     * the container can wake up as soon as the container writes to its output.
+     * 
+     * @return Watch service, <code>null</code> if the output is not written to a file or if the
+     * directory cannot be watched.
+     */
+    private WatchService createOutputWatcher()
+    {
+        if (getOutput() == null)
+        {
+            return null;
+        }
+        Path directory = new File(getOutput()).getAbsoluteFile().getParentFile().toPath();
+        WatchService watcher = null;
+        try
+        {
+            watcher = FileSystems.getDefault().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            return watcher;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            getLogger().debug("Cannot watch [" + directory + "]: " + e,
+                this.getClass().getName());
+            close(watcher);
+            return null;
+        }
     }
 
     /**
-     * Ping the WAR CPC to verify if the container is started or stopped.
+     * Closes a resource, ignoring failures.
+     * 
+     * @param closeable Resource to close, can be <code>null</code>.
+     */
+    private void close(Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch (IOException ignored)
+            {
+                // Ignored
+            }
+        }
+    }
+
+    /**
+     * Wait for the container to be started or stopped. The container is detected as started using
+     * {@link #createStartedMarkersMonitor()} if possible, by pinging the Cargo Ping Component
+     * otherwise. The container is detected as stopped using {@link #waitForStopping(Set, long)}.
      * 
      * @param waitForStarting if <code>true</code> then wait for container start, if
      * <code>false</code> wait for container stop
@@ -375,53 +687,68 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
 
         if (waitForStarting)
         {
-            DeployableMonitor monitor =
-                new URLDeployableMonitor(ContainerUtils.getCPCURL(config), getTimeout(),
-                    "Cargo Ping Component used to verify if the container is started.");
-            monitor.setLogger(getLogger());
-            DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
-            watchdog.setLogger(getLogger());
-
-            watchdog.watch(waitForStarting);
+            ContainerMonitor monitor = createStartedMarkersMonitor();
+            if (monitor == null)
+            {
+                DeployableMonitor deployableMonitor =
+                    new URLDeployableMonitor(ContainerUtils.getCPCURL(config), getTimeout(),
+                        "Cargo Ping Component used to verify if the container is started.");
+                deployableMonitor.setLogger(getLogger());
+                monitor = new DeployableContainerMonitor(this, deployableMonitor);
+            }
+            waitForStarting(monitor);
         }
         else
         {
-            long deadline = System.currentTimeMillis() + getTimeout();
-
-            int connectTimeout = 0;
-            for (Map.Entry<String, String> property : getConfiguration().getProperties().entrySet())
-            {
-                // CARGO-1438: Only check ports for property names prefixed with "cargo."
-                if (!property.getKey().startsWith("cargo.") || !property.getKey().endsWith(".port")
-                    || property.getValue() == null)
-                {
-                    continue;
-                }
-                int port;
-                try
-                {
-                    port = Integer.parseInt(property.getValue());
-                }
-                catch (NumberFormatException e)
-                {
-                    continue;
-                }
-                if (port < 1 || port > 65535)
-                {
-                    continue;
-                }
+            waitForStopping(getPortsToShutdown(), System.currentTimeMillis() + getTimeout());
+        }
+    }
 
-                waitForPortShutdown(port, connectTimeout, deadline);
-                getLogger().debug("\tPort " + port + " is shutdown", this.getClass().getName());
+    /**
+     * Checks whether the container process is still running, so that waiting for the container to
+     * stop can also wait for its process to exit.
+     * 
+     * @return <code>true</code> if the container process is known to be still running,
+     * <code>false</code> otherwise. Always <code>false</code> by default.
+     */
+    protected boolean isContainerProcessRunning()
+    {
+        return false;
+    }
 
-                connectTimeout = 250;
+    /**
+     * Returns the ports to wait for when stopping the container, which are all valid ports set
+     * with properties named <code>cargo.*.port</code>.
+     * 
+     * @return Ports to wait for.
+     */
+    protected Set<Integer> getPortsToShutdown()
+    {
+        Set<Integer> ports = new TreeSet<Integer>();
+        for (Map.Entry<String, String> property : getConfiguration().getProperties().entrySet())
+        {
+            // CARGO-1438: Only check ports for property names prefixed with "cargo."
+            if (!property.getKey().startsWith("cargo.") || !property.getKey().endsWith(".port")
+                || property.getValue() == null)
+            {
                 continue;
             }
-
-            // Many container do not fully stop even after having destroyed all their sockets;
-            // as a result wait 5 more seconds
-            Thread.sleep(5000);
+            int port;
+            try
+            {
+                port = Integer.parseInt(property.getValue());
+            }
+            catch (NumberFormatException e)
+            {
+                continue;
+            }
+            if (port < 1 || port > 65535)
+            {
+                continue;
+            }
+            ports.add(port);
         }
+        return ports;
     }
 
     /**
@@ -439,20 +766,51 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         getLogger().debug("Waiting for port " + port + " to shutdown, deadline " + deadline,
             this.getClass().getName());
 
-        while (true)
+        Set<Integer> ports = Collections.singleton(port);
+        while (!this.portUtils.getOpenPorts(ports, connectTimeout).isEmpty())
         {
-            if (isPortShutdown(port, connectTimeout))
-            {
-                break;
-            }
-
             if (System.currentTimeMillis() > deadline)
             {
                 throw new ContainerException("Server port " + port
                     + " did not shutdown within the timeout period [" + getTimeout() + "]");
             }
 
-            Thread.sleep(1000);
+            Thread.sleep(100);
+        }
+        getLogger().debug("\tPort " + port + " is shutdown", this.getClass().getName());
+    }
+
+    /**
+     * Waits for all specified ports to be shut down, using
+     * {@link #waitForPortShutdown(int, int, long)}, and then for the container process to exit.
+     * Waiting for the process to exit is bounded separately, as the container is forcibly stopped
+     * after this method returns anyway.
+     * 
+     * @param ports The port numbers.
+     * @param deadline The deadline for the ports to shutdown.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    protected void waitForStopping(Set<Integer> ports, long deadline) throws InterruptedException
+    {
+        for (Integer port : ports)
+        {
+            waitForPortShutdown(port, PORT_CONNECT_TIMEOUT, deadline);
+        }
+
+        long processDeadline = Math.min(deadline,
+            System.currentTimeMillis() + PROCESS_EXIT_TIMEOUT);
+        while (isContainerProcessRunning())
+        {
+            if (System.currentTimeMillis() > processDeadline)
+            {
+                // The process will be killed by forceStopInternal
+                getLogger().debug("\tContainer process did not exit within ["
+                    + PROCESS_EXIT_TIMEOUT + "] ms after its ports were shut down",
+                        this.getClass().getName());
+                break;
+            }
+
+            Thread.sleep(100);
         }
     }
 
@@ -531,61 +889,98 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
 
 
     /**
-     * Checks if the specified server port is shutdown.
-     * 
-     * @param port The port number.
-     * @param connectTimeout The connect timeout.
-     * @return <code>true</code> if <code>port</code> is shut down, <code>false</code> otherwise.
+     * Container start or stop running in the background.
      */
-    private boolean isPortShutdown(int port, int connectTimeout)
+    private class AsyncAction extends FutureTask<Void>
     {
-        try (Socket s = new Socket())
+        /**
+         * <code>true</code> if starting the container, <code>false</code> if stopping it.
+         */
+        private boolean starting;
+
+        /**
+         * @param starting <code>true</code> to start the container, <code>false</code> to stop
+         * it.
+         */
+        AsyncAction(final boolean starting)
         {
-            getLogger().debug("\tConnection attempt with socket " + s + ", current time is "
-                + System.currentTimeMillis(), this.getClass().getName());
-
-            s.bind(null);
+            super(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    if (starting)
+                    {
+                        doStart();
+                    }
+                    else
+                    {
+                        doStop();
+                    }
+                    return null;
+                }
+            });
+            this.starting = starting;
+        }
 
-            // If the remote port is closed, s.connect will throw an exception
-            s.connect(new InetSocketAddress("localhost", port), connectTimeout);
-            getLogger().debug("\tSocket " + s + " for port " + port + " managed to connect",
-                this.getClass().getName());
+        /**
+         * Runs the action, and then stops the container if the start has been cancelled. Running
+         * the action returns only once it has finished, even if it has been cancelled.
+         */
+        @Override
+        public void run()
+        {
+            super.run();
 
-            try
+            if (this.starting && isCancelled())
             {
-                s.shutdownOutput();
+                // Cancelling with cancel(true) interrupts this thread, which must not interrupt
+                // the cleanup; the interrupt is restored once done
+                boolean interrupted = Thread.interrupted();
+                try
+                {
+                    stopCancelledStart();
+                }
+                finally
+                {
+                    if (interrupted)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
             }
-            catch (IOException e)
+        }
+
+        /**
+         * Stops the container after its start has been cancelled, depending on how far the start
+         * went.
+         */
+        private void stopCancelledStart()
+        {
+            State state = getState();
+            getLogger().info(getName() + " start has been cancelled, current state is "
+                + state, AbstractLocalContainer.this.getClass().getName());
+            if (State.STARTING == state)
             {
-                // ignored, irrelevant
-                getLogger().debug("\tFailed to shutdown output for socket " + s + ": " + e,
-                    this.getClass().getName());
+                // Cancelled before starting anything
+                setState(State.STOPPED);
             }
-            try
+            else if (State.STARTED == state)
             {
-                s.shutdownInput();
+                try
+                {
+                    stop();
+                }
+                catch (ContainerException e)
+                {
+                    getLogger().warn(e.toString(),
+                        AbstractLocalContainer.this.getClass().getName());
+                }
             }
-            catch (IOException e)
+            else
             {
-                // ignored, irrelevant
-                getLogger().debug("\tFailed to shutdown input for socket " + s + ": " + e,
-                    this.getClass().getName());
+                forceStopInternal();
             }
-
-            getLogger().debug("\tSocket " + s + " for port " + port + " shutdown",
-                this.getClass().getName());
         }
-        catch (IOException ignored)
-        {
-            // If an IOException has occured, this means port is shut down
-            return true;
-        }
-        finally
-        {
-            getLogger().debug("\tSocket for port " + port + " closed",
-                this.getClass().getName());
-        }
-
-        return false;
     }
 }
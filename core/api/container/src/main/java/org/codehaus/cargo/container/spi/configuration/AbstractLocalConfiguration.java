@@ -20,6 +20,9 @@
 package org.codehaus.cargo.container.spi.configuration;
 
 import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -28,6 +31,7 @@ import java.util.Set;
 import org.apache.tools.ant.types.FilterChain;
 
 import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.configuration.FileConfig;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
@@ -35,6 +39,7 @@ import org.codehaus.cargo.container.configuration.builder.ConfigurationEntryType
 import org.codehaus.cargo.container.configuration.entry.DataSource;
 import org.codehaus.cargo.container.configuration.entry.Resource;
 import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.internal.util.ConfigurationFingerprint;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
 import org.codehaus.cargo.container.property.DataSourceConverter;
 import org.codehaus.cargo.container.property.DatasourcePropertySet;
@@ -69,6 +74,12 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
     private static final String PORT_OFFSET_APPLIED_PREFIX = LocalConfiguration.class.getName()
         + "_portOffsetApplied_";
 
+    /**
+     * Name of the file, in the configuration home, holding the fingerprint of the inputs the
+     * configuration has been generated from.
+     */
+    private static final String FINGERPRINT_FILE = ".cargo-fingerprint";
+
     /**
      * List of {@link Deployable}s to deploy into the container.
      */
@@ -279,6 +290,27 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
         parsePropertiesForPendingConfiguration();
         verify();
 
+        String fingerprint = null;
+        String fingerprintFile = getFileHandler().append(getHome(), FINGERPRINT_FILE);
+        if (isIncrementalConfiguration())
+        {
+            ConfigurationFingerprint inputs = new ConfigurationFingerprint();
+            addFingerprintInputs(inputs, container);
+            fingerprint = inputs.getValue();
+
+            if (getFileHandler().exists(fingerprintFile) && fingerprint.equals(
+                getFileHandler().readTextFile(fingerprintFile, StandardCharsets.UTF_8)))
+            {
+                getLogger().info("The inputs of the " + getType().getType() + " configuration in ["
+                    + getHome() + "] have not changed, reusing it", this.getClass().getName());
+                return;
+            }
+            if (getFileHandler().exists(fingerprintFile))
+            {
+                getFileHandler().delete(fingerprintFile);
+            }
+        }
+
         try
         {
             doConfigure(container);
@@ -290,6 +322,86 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
         }
 
         configureFiles(getFilterChain(), container);
+
+        if (fingerprint != null)
+        {
+            getFileHandler().writeTextFile(fingerprintFile, fingerprint, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Whether {@link #configure(LocalContainer)} may skip generating the configuration when none
+     * of its inputs changed since the previous generation. Disabled by default.
+     * @return <code>true</code> if the configuration is generated incrementally.
+     */
+    protected boolean isIncrementalConfiguration()
+    {
+        return false;
+    }
+
+    /**
+     * Adds all inputs the configuration is generated from to a fingerprint: the container, the
+     * Cargo implementation, properties, files, resources, datasources, users and deployables.
+     * Configurations generated from additional inputs must override this method and add them.
+     * @param fingerprint Fingerprint to add the inputs to.
+     * @param container Container being configured.
+     */
+    protected void addFingerprintInputs(ConfigurationFingerprint fingerprint,
+        LocalContainer container)
+    {
+        fingerprint.add("container.id", container.getId());
+        fingerprint.add("container.name", container.getName());
+        if (container instanceof InstalledLocalContainer)
+        {
+            fingerprint.add("container.home", ((InstalledLocalContainer) container).getHome());
+        }
+
+        // Templates are inside the Cargo JARs, hence the implementation is also an input
+        CodeSource codeSource = getClass().getProtectionDomain().getCodeSource();
+        if (codeSource != null && "file".equals(codeSource.getLocation().getProtocol()))
+        {
+            try
+            {
+                fingerprint.addFile("cargo", new File(codeSource.getLocation().toURI()));
+            }
+            catch (URISyntaxException e)
+            {
+                fingerprint.add("cargo", codeSource.getLocation().toString());
+            }
+        }
+
+        fingerprint.add("property", getProperties());
+
+        for (FileConfig fileConfig : getFileProperties())
+        {
+            fingerprint.addFile("file", new File(fileConfig.getFile()));
+            fingerprint.add("file.toDir", fileConfig.getToDir());
+            fingerprint.add("file.toFile", fileConfig.getToFile());
+            fingerprint.add("file.overwrite", Boolean.toString(fileConfig.getOverwrite()));
+            fingerprint.add("file.configfile", Boolean.toString(fileConfig.getConfigfile()));
+            fingerprint.add("file.encoding", fileConfig.getEncoding());
+        }
+
+        for (Resource resource : getResources())
+        {
+            fingerprint.add("resource", new ResourceConverter().toPropertyString(resource));
+        }
+        for (DataSource dataSource : getDataSources())
+        {
+            fingerprint.add("datasource",
+                new DataSourceConverter().toPropertyString(dataSource));
+        }
+        for (User user : getUsers())
+        {
+            fingerprint.add("user", user.getName() + ":" + user.getPassword() + ":"
+                + user.getRoles());
+        }
+
+        for (Deployable deployable : getDeployables())
+        {
+            fingerprint.add("deployable", deployable.getType() + ":" + deployable.getName());
+            fingerprint.addFile("deployable.file", new File(deployable.getFile()));
+        }
     }
 
     /**
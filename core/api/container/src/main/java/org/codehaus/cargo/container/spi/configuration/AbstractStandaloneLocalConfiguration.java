@@ -23,21 +23,21 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.tools.ant.types.FilterChain;
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.configuration.ConfigurationType;
 import org.codehaus.cargo.container.configuration.StandaloneLocalConfiguration;
+import org.codehaus.cargo.container.internal.util.ConfigurationFingerprint;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.LoggingLevel;
 import org.codehaus.cargo.util.CargoException;
 import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
 import org.codehaus.cargo.util.XmlReplacement;
+import org.codehaus.cargo.util.XmlReplacementSession;
 
 /**
  * Base implementation for a standalone local configuration.
@@ -67,7 +67,8 @@ public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocal
     }
 
     /**
-     * Perform the XML replacements for the specified container.
+     * Perform the XML replacements for the specified container. All replacements are applied in one
+     * {@link XmlReplacementSession}, so that each XML file is parsed and saved only once.
      * @param container the container to configure
      */
     protected void performXmlReplacements(LocalContainer container)
@@ -75,10 +76,11 @@ public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocal
         boolean ignoreNonExistingProperties = Boolean.parseBoolean(
             getPropertyValue(GeneralPropertySet.IGNORE_NON_EXISTING_PROPERTIES));
 
+        XmlReplacementSession session = new XmlReplacementSession(getFileHandler());
+        session.setLogger(getLogger());
         for (Map.Entry<String, Map<XmlReplacementDetails, String>> xmlReplacementDetails
             : this.xmlReplacements.entrySet())
         {
-            Set<XmlReplacement> replacements = new HashSet<XmlReplacement>();
             String destinationFile = getFileHandler().append(
                 container.getConfiguration().getHome(), xmlReplacementDetails.getKey());
 
@@ -104,16 +106,10 @@ public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocal
                             XmlReplacement.ReplacementBehavior.IGNORE_IF_NON_EXISTING);
                 }
 
-                replacements.add(xmlReplacement);
-            }
-
-            if (!replacements.isEmpty())
-            {
-                XmlReplacement[] replacementsArray = new XmlReplacement[replacements.size()];
-                replacementsArray = replacements.toArray(replacementsArray);
-                getFileHandler().replaceInXmlFile(replacementsArray);
+                session.add(xmlReplacement);
             }
         }
+        session.commit();
     }
 
     /**
@@ -322,6 +318,31 @@ public abstract class AbstractStandaloneLocalConfiguration extends AbstractLocal
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * @return <code>true</code> if {@link GeneralPropertySet#INCREMENTAL_CONFIGURATION} is set.
+     */
+    @Override
+    protected boolean isIncrementalConfiguration()
+    {
+        return Boolean.parseBoolean(getPropertyValue(GeneralPropertySet.INCREMENTAL_CONFIGURATION));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addFingerprintInputs(ConfigurationFingerprint fingerprint,
+        LocalContainer container)
+    {
+        super.addFingerprintInputs(fingerprint, container);
+
+        for (XmlReplacement xmlReplacement : getXmlReplacements())
+        {
+            fingerprint.add("xmlReplacement", xmlReplacement.toString());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
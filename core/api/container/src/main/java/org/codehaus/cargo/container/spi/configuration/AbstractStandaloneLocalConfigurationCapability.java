@@ -40,6 +40,8 @@ public abstract class AbstractStandaloneLocalConfigurationCapability
         this.propertySupportMap.put(GeneralPropertySet.IGNORE_NON_EXISTING_PROPERTIES,
             Boolean.TRUE);
 
+        this.propertySupportMap.put(GeneralPropertySet.INCREMENTAL_CONFIGURATION, Boolean.TRUE);
+
         this.propertySupportMap.put(ServletPropertySet.USERS, Boolean.TRUE);
     }
 }
@@ -0,0 +1,473 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.deployer.DeployableMonitor;
+import org.codehaus.cargo.container.deployer.DeployableMonitorListener;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Waits for any number of deployables to be deployed or undeployed, all at the same time: the
+ * total wait is the one of the slowest deployable rather than the sum of all waits. The monitors
+ * are polled on a scheduler shared by all instances, starting every 100 ms and backing off to
+ * once a second for deployables which take longer.
+ */
+public class DeployerWatchdogService extends LoggedObject
+{
+    /**
+     * Delay before polling a monitor again the first time, in milliseconds.
+     */
+    private static final long INITIAL_DELAY = 100L;
+
+    /**
+     * Maximum delay between two polls of a monitor, in milliseconds.
+     */
+    private static final long MAX_DELAY = 1000L;
+
+    /**
+     * Number of threads of the shared scheduler. Polling a monitor usually means waiting for an
+     * HTTP answer, hence more threads than processors are useful.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Scheduler shared by all instances, created on first use. Its threads are daemon threads and
+     * stop when idle.
+     */
+    private static ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Monitors to watch.
+     */
+    private List<DeployableMonitor> monitors = new ArrayList<DeployableMonitor>();
+
+    /**
+     * @param monitor Monitor of one more deployable to watch.
+     */
+    public void addMonitor(DeployableMonitor monitor)
+    {
+        this.monitors.add(monitor);
+    }
+
+    /**
+     * Wait till all monitored Deployables are made available or throw an exception if the timeout
+     * period of any of them is reached. Equivalent to <code>watch(true)</code>.
+     * @return Time it took for each deployable to become available, in milliseconds.
+     */
+    public Map<String, Long> watchForAvailability()
+    {
+        return watch(true);
+    }
+
+    /**
+     * Wait till all monitored Deployables are made unavailable or throw an exception if the
+     * timeout period of any of them is reached. Equivalent to <code>watch(false)</code>.
+     * @return Time it took for each deployable to become unavailable, in milliseconds.
+     */
+    public Map<String, Long> watchForUnavailability()
+    {
+        return watch(false);
+    }
+
+    /**
+     * @param shouldWatchForAvailability if true then wait till the Deployables are made available,
+     * if false wait till the Deployables are made unavailable
+     * @return Time it took for each deployable to reach the expected state, in milliseconds.
+     */
+    public Map<String, Long> watch(boolean shouldWatchForAvailability)
+    {
+        Future<Map<String, Long>> future = start(shouldWatchForAvailability);
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw (ContainerException) e.getCause();
+        }
+        catch (InterruptedException e)
+        {
+            future.cancel(true);
+            throw new ContainerException("Failed to monitor deployment", e);
+        }
+    }
+
+    /**
+     * Starts watching all monitored Deployables without waiting. If the timeout period of any
+     * Deployable is reached, the returned future fails with a {@link ContainerException} and
+     * watching the other Deployables stops.
+     * @param shouldWatchForAvailability if true then wait till the Deployables are made available,
+     * if false wait till the Deployables are made unavailable
+     * @return Future giving the time it took for each deployable to reach the expected state, in
+     * milliseconds, in the order they reached it.
+     */
+    public Future<Map<String, Long>> start(boolean shouldWatchForAvailability)
+    {
+        WatchFuture future = new WatchFuture(this.monitors.size());
+        for (DeployableMonitor monitor : this.monitors)
+        {
+            MonitorTask task = new MonitorTask(monitor, shouldWatchForAvailability, future);
+            future.tasks.add(task);
+            monitor.registerListener(task);
+        }
+        for (MonitorTask task : future.tasks)
+        {
+            task.schedule(0L);
+        }
+        return future;
+    }
+
+    /**
+     * @return Scheduler shared by all instances.
+     */
+    private static synchronized ScheduledThreadPoolExecutor getScheduler()
+    {
+        if (scheduler == null)
+        {
+            scheduler = new ScheduledThreadPoolExecutor(THREADS, new ThreadFactory()
+            {
+                private AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable,
+                        "cargo-deployer-watchdog-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.setKeepAliveTime(60, TimeUnit.SECONDS);
+            scheduler.allowCoreThreadTimeOut(true);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Polls one monitor until its Deployable reaches the expected state or its timeout is reached.
+     */
+    private class MonitorTask implements Runnable, DeployableMonitorListener
+    {
+        /**
+         * Monitor to poll.
+         */
+        private DeployableMonitor monitor;
+
+        /**
+         * Whether to wait till the Deployable is made available or unavailable.
+         */
+        private boolean shouldWatchForAvailability;
+
+        /**
+         * Future to report to.
+         */
+        private WatchFuture future;
+
+        /**
+         * Time watching started.
+         */
+        private long startTime = System.currentTimeMillis();
+
+        /**
+         * Delay before the next poll.
+         */
+        private long delay = INITIAL_DELAY;
+
+        /**
+         * Status flag set to true when the Deployable is deployed.
+         */
+        private volatile boolean isDeployed;
+
+        /**
+         * Next scheduled poll.
+         */
+        private volatile ScheduledFuture<?> scheduled;
+
+        /**
+         * @param monitor Monitor to poll.
+         * @param shouldWatchForAvailability Whether to wait till the Deployable is made available
+         * or unavailable.
+         * @param future Future to report to.
+         */
+        MonitorTask(DeployableMonitor monitor, boolean shouldWatchForAvailability,
+            WatchFuture future)
+        {
+            this.monitor = monitor;
+            this.shouldWatchForAvailability = shouldWatchForAvailability;
+            this.future = future;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void deployed()
+        {
+            this.isDeployed = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void undeployed()
+        {
+            this.isDeployed = false;
+        }
+
+        /**
+         * Polls the monitor once, and schedules the next poll if needed.
+         */
+        @Override
+        public void run()
+        {
+            if (this.future.isDone())
+            {
+                return;
+            }
+
+            try
+            {
+                this.monitor.monitor();
+            }
+            catch (RuntimeException e)
+            {
+                this.future.fail(new ContainerException("Failed to monitor deployment", e));
+                return;
+            }
+
+            long elapsed = System.currentTimeMillis() - this.startTime;
+            if (this.isDeployed == this.shouldWatchForAvailability)
+            {
+                getLogger().debug("Deployable [" + this.monitor.getDeployableName() + "] "
+                    + (this.shouldWatchForAvailability ? "deployed" : "undeployed") + " after "
+                        + elapsed + " ms", DeployerWatchdogService.class.getName());
+                this.future.complete(this.monitor.getDeployableName(), elapsed);
+            }
+            else if (elapsed > this.monitor.getTimeout())
+            {
+                String message = "Deployable [" + this.monitor.getDeployableName()
+                    + "] failed to finish "
+                    + (this.shouldWatchForAvailability ? "deploying" : "undeploying")
+                    + " within the timeout period [" + this.monitor.getTimeout()
+                    + "]. The Deployable state is thus unknown.";
+                getLogger().info(message, DeployerWatchdogService.class.getName());
+                this.future.fail(new ContainerException(message));
+            }
+            else
+            {
+                long remaining = this.monitor.getTimeout() - elapsed + 1;
+                schedule(Math.min(this.delay, remaining));
+                this.delay = Math.min(this.delay * 3 / 2, MAX_DELAY);
+            }
+        }
+
+        /**
+         * @param pollDelay Delay before the next poll, in milliseconds.
+         */
+        void schedule(long pollDelay)
+        {
+            this.scheduled = getScheduler().schedule(this, pollDelay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Cancels the next poll.
+         */
+        void cancel()
+        {
+            ScheduledFuture<?> next = this.scheduled;
+            if (next != null)
+            {
+                next.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Future of the wait for all Deployables.
+     */
+    private static class WatchFuture implements Future<Map<String, Long>>
+    {
+        /**
+         * Tasks polling the monitors.
+         */
+        private List<MonitorTask> tasks = new ArrayList<MonitorTask>();
+
+        /**
+         * Time it took for each deployable to reach the expected state.
+         */
+        private Map<String, Long> timings =
+            Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+        /**
+         * Counted down once per Deployable, or fully on failure or cancellation.
+         */
+        private CountDownLatch remaining;
+
+        /**
+         * First failure, <code>null</code> if none.
+         */
+        private volatile ContainerException failure;
+
+        /**
+         * Whether the wait has been cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * @param count Number of Deployables.
+         */
+        WatchFuture(int count)
+        {
+            this.remaining = new CountDownLatch(count);
+        }
+
+        /**
+         * @param deployableName Name of the Deployable which reached the expected state.
+         * @param elapsed Time it took, in milliseconds.
+         */
+        void complete(String deployableName, long elapsed)
+        {
+            this.timings.put(deployableName, elapsed);
+            this.remaining.countDown();
+        }
+
+        /**
+         * @param e Failure of one Deployable, which fails the wait for all of them.
+         */
+        synchronized void fail(ContainerException e)
+        {
+            if (!isDone())
+            {
+                this.failure = e;
+                stop();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning)
+        {
+            if (isDone())
+            {
+                return false;
+            }
+            this.cancelled = true;
+            stop();
+            return true;
+        }
+
+        /**
+         * Stops polling all monitors and releases the waiting threads.
+         */
+        private void stop()
+        {
+            for (MonitorTask task : this.tasks)
+            {
+                task.cancel();
+            }
+            while (this.remaining.getCount() > 0)
+            {
+                this.remaining.countDown();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isCancelled()
+        {
+            return this.cancelled;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isDone()
+        {
+            return this.remaining.getCount() == 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Map<String, Long> get() throws InterruptedException, ExecutionException
+        {
+            this.remaining.await();
+            return getResult();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Map<String, Long> get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            if (!this.remaining.await(timeout, unit))
+            {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+
+        /**
+         * @return Time it took for each deployable to reach the expected state.
+         * @throws ExecutionException If the wait has failed.
+         */
+        private Map<String, Long> getResult() throws ExecutionException
+        {
+            if (this.cancelled)
+            {
+                throw new CancellationException();
+            }
+            if (this.failure != null)
+            {
+                throw new ExecutionException(this.failure);
+            }
+            synchronized (this.timings)
+            {
+                return new LinkedHashMap<String, Long>(this.timings);
+            }
+        }
+    }
+}
@@ -33,7 +33,7 @@ import org.codehaus.cargo.container.internal.AntContainerExecutorThread;
 /**
  * The default JVM launcher.
  */
-class DefaultJvmLauncher implements JvmLauncher
+class DefaultJvmLauncher implements MonitoredJvmLauncher
 {
 
     /**
@@ -46,6 +46,11 @@ class DefaultJvmLauncher implements JvmLauncher
      */
     private boolean spawn;
 
+    /**
+     * Thread executing the JVM launched with {@link #start()}, {@code null} if none.
+     */
+    private AntContainerExecutorThread runner;
+
     /**
      * List of extra environment variables. Ant's Java task doesn't offer a getter for the
      * environment variable, forcing us to keep track of them ourselves.
@@ -316,6 +321,30 @@ class DefaultJvmLauncher implements JvmLauncher
         // Not supported by Ant Java Task
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JvmLauncherException getFailure()
+    {
+        // A spawned JVM cannot be followed, the Ant Java Task returns as soon as it is launched
+        if (this.runner == null || this.spawn || !this.runner.isFinished()
+            || this.runner.getBuildException() == null)
+        {
+            return null;
+        }
+        return new JvmLauncherException(this.runner.getBuildException().getMessage(),
+            this.runner.getBuildException());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning()
+    {
+        return this.runner != null && !this.spawn && !this.runner.isFinished();
+    }
 
     /**
      * {@inheritDoc}
@@ -348,8 +377,8 @@ class DefaultJvmLauncher implements JvmLauncher
     @Override
     public void start() throws JvmLauncherException
     {
-        Thread runner = new AntContainerExecutorThread(this.java, this.spawn);
-        runner.start();
+        this.runner = new AntContainerExecutorThread(this.java, this.spawn);
+        this.runner.start();
     }
 
     /**
@@ -0,0 +1,44 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.jvm;
+
+/**
+ * A JVM launcher which can follow the process it has launched. Implementing this interface is
+ * optional: containers check whether their {@link JvmLauncher} implements it, and otherwise
+ * behave as if the process could not be followed.
+ */
+public interface MonitoredJvmLauncher extends JvmLauncher
+{
+    /**
+     * Gets the failure of the process that was launched with {@link #start()}.
+     * 
+     * @return The failure if the process has exited with an error, {@code null} if it is still
+     * running, has exited normally or if the JvmLauncher implementation cannot tell.
+     */
+    JvmLauncherException getFailure();
+
+    /**
+     * Checks whether the process that was launched with {@link #start()} is still running.
+     * 
+     * @return {@code true} if the process is known to be still running, {@code false} if it has
+     * exited, has not been launched or if the JvmLauncher implementation cannot tell.
+     */
+    boolean isRunning();
+}
@@ -19,6 +19,8 @@
  */
 package org.codehaus.cargo.container.spi.startup;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -26,9 +28,10 @@ import org.codehaus.cargo.container.Container;
 import org.codehaus.cargo.container.startup.ContainerMonitor;
 
 /**
- * Monitor which gathers information from multiple monitors.
+ * Monitor which gathers information from multiple monitors. Closing it closes the underlying
+ * monitors which can be closed.
  */
-public class CombinedContainerMonitor extends AbstractContainerMonitor
+public class CombinedContainerMonitor extends AbstractContainerMonitor implements Closeable
 {
 
     /**
@@ -68,4 +71,18 @@ public class CombinedContainerMonitor extends AbstractContainerMonitor
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        for (ContainerMonitor monitor : monitors)
+        {
+            if (monitor instanceof Closeable)
+            {
+                ((Closeable) monitor).close();
+            }
+        }
+    }
 }
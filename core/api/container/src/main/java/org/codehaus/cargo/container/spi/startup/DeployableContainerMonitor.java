@@ -0,0 +1,83 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import org.codehaus.cargo.container.Container;
+import org.codehaus.cargo.container.deployer.DeployableMonitor;
+import org.codehaus.cargo.container.deployer.DeployableMonitorListener;
+
+/**
+ * Monitor checking container status with a {@link DeployableMonitor}, for example pinging the
+ * Cargo Ping Component.
+ */
+public class DeployableContainerMonitor extends AbstractContainerMonitor
+    implements DeployableMonitorListener
+{
+    /**
+     * Deployable monitor.
+     */
+    private DeployableMonitor monitor;
+
+    /**
+     * Whether the deployable monitor has reported the deployable as deployed.
+     */
+    private boolean isDeployed;
+
+    /**
+     * Constructor.
+     * 
+     * @param container Container to be monitored.
+     * @param monitor Deployable monitor.
+     */
+    public DeployableContainerMonitor(Container container, DeployableMonitor monitor)
+    {
+        super(container);
+        this.monitor = monitor;
+        monitor.registerListener(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deployed()
+    {
+        this.isDeployed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void undeployed()
+    {
+        this.isDeployed = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning()
+    {
+        this.monitor.monitor();
+        return this.isDeployed;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.codehaus.cargo.container.Container;
+
+/**
+ * Monitor checking container status by looking for container-specific "started" markers in the
+ * lines the container writes to its output file. Only the lines written after the monitor has been
+ * created, or after a given offset, are considered; each call only reads what has been appended to
+ * the file since the previous call.
+ */
+public class LogMarkerContainerMonitor extends AbstractContainerMonitor
+{
+    /**
+     * Size of the buffer used to read the output file.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Output file of the container.
+     */
+    private File logFile;
+
+    /**
+     * Markers, any of which means that the container is started.
+     */
+    private String[] markers;
+
+    /**
+     * Offset in the output file up to which it has been read.
+     */
+    private long offset;
+
+    /**
+     * Beginning of the last line read, without its end.
+     */
+    private StringBuilder line = new StringBuilder();
+
+    /**
+     * Whether a marker has been found.
+     */
+    private boolean found;
+
+    /**
+     * Constructor, looking for markers written from now on.
+     * 
+     * @param container Container to be monitored.
+     * @param logFile Output file of the container.
+     * @param markers Markers, any of which means that the container is started.
+     */
+    public LogMarkerContainerMonitor(Container container, File logFile, String... markers)
+    {
+        this(container, logFile, logFile.length(), markers);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param container Container to be monitored.
+     * @param logFile Output file of the container.
+     * @param offset Offset in the output file from which to look for markers.
+     * @param markers Markers, any of which means that the container is started.
+     */
+    public LogMarkerContainerMonitor(Container container, File logFile, long offset,
+        String... markers)
+    {
+        super(container);
+        this.logFile = logFile;
+        this.offset = offset;
+        this.markers = markers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning()
+    {
+        if (!this.found)
+        {
+            try
+            {
+                readAppendedLines();
+            }
+            catch (IOException e)
+            {
+                getLogger().debug("Cannot read [" + this.logFile + "]: " + e,
+                    this.getClass().getName());
+            }
+        }
+        return this.found;
+    }
+
+    /**
+     * Reads the lines appended to the output file, looking for the markers.
+     * 
+     * @throws IOException If reading the output file fails.
+     */
+    private void readAppendedLines() throws IOException
+    {
+        long length = this.logFile.length();
+        if (length < this.offset)
+        {
+            // The output file has been truncated, hence restart from its beginning
+            this.offset = 0;
+            this.line.setLength(0);
+        }
+        if (length == this.offset)
+        {
+            return;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(this.logFile, "r"))
+        {
+            file.seek(this.offset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = file.read(buffer);
+            while (read != -1 && !this.found)
+            {
+                this.offset += read;
+
+                // Markers are plain ASCII, which all usual encodings of the output file share
+                String text = new String(buffer, 0, read, StandardCharsets.ISO_8859_1);
+                int start = 0;
+                int end = text.indexOf('\n');
+                while (end != -1 && !this.found)
+                {
+                    this.line.append(text, start, end);
+                    this.found = containsMarker();
+                    this.line.setLength(0);
+                    start = end + 1;
+                    end = text.indexOf('\n', start);
+                }
+                this.line.append(text, start, text.length());
+
+                read = file.read(buffer);
+            }
+        }
+
+        // A marker can be on the last line, even if that line is not complete yet
+        this.found = this.found || containsMarker();
+    }
+
+    /**
+     * @return <code>true</code> if the current line contains one of the markers.
+     */
+    private boolean containsMarker()
+    {
+        for (String marker : this.markers)
+        {
+            if (this.line.indexOf(marker) != -1)
+            {
+                getLogger().debug("Found marker [" + marker + "] in [" + this.logFile + "]",
+                    this.getClass().getName());
+                return true;
+            }
+        }
+        return false;
+    }
+}
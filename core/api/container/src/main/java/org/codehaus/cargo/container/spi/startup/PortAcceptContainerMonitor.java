@@ -0,0 +1,120 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+import org.codehaus.cargo.container.Container;
+
+/**
+ * Monitor checking container status by checking whether the container accepts connections on a
+ * port. Connections are attempted without blocking: each call either completes the pending
+ * connection attempt or starts a new one, hence never waits for the container.
+ */
+public class PortAcceptContainerMonitor extends AbstractContainerMonitor implements Closeable
+{
+    /**
+     * Address the container is expected to accept connections on.
+     */
+    private InetSocketAddress address;
+
+    /**
+     * Pending connection attempt, <code>null</code> if none.
+     */
+    private SocketChannel channel;
+
+    /**
+     * Whether the container has accepted a connection.
+     */
+    private boolean accepted;
+
+    /**
+     * Constructor.
+     * 
+     * @param container Container to be monitored.
+     * @param host Host the container runs on.
+     * @param port Port the container is expected to accept connections on.
+     */
+    public PortAcceptContainerMonitor(Container container, String host, int port)
+    {
+        super(container);
+        this.address = new InetSocketAddress(host, port);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning()
+    {
+        if (!this.accepted)
+        {
+            try
+            {
+                if (this.channel == null)
+                {
+                    this.channel = SocketChannel.open();
+                    this.channel.configureBlocking(false);
+                    this.accepted = this.channel.connect(this.address);
+                }
+                else
+                {
+                    this.accepted = this.channel.finishConnect();
+                }
+            }
+            catch (IOException e)
+            {
+                // Connection refused, the next call will try again
+                close();
+            }
+
+            if (this.accepted)
+            {
+                getLogger().debug("Port " + this.address.getPort() + " accepts connections",
+                    this.getClass().getName());
+                close();
+            }
+        }
+        return this.accepted;
+    }
+
+    /**
+     * Closes the pending connection attempt, if any.
+     */
+    @Override
+    public void close()
+    {
+        if (this.channel != null)
+        {
+            try
+            {
+                this.channel.close();
+            }
+            catch (IOException ignored)
+            {
+                // Ignored
+            }
+            this.channel = null;
+        }
+    }
+}
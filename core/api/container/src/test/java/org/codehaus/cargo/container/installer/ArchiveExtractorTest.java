@@ -0,0 +1,273 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.codehaus.cargo.util.DefaultFileHandler;
+
+/**
+ * Unit tests for {@link ArchiveExtractor}.
+ */
+public class ArchiveExtractorTest extends TestCase
+{
+    /**
+     * Timestamp of the archive entries.
+     */
+    private static final long TIMESTAMP = 1262304000000L;
+
+    /**
+     * Working directory.
+     */
+    private File workDir;
+
+    /**
+     * Creates the working directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.workDir = Files.createTempDirectory("cargo-extract").toFile();
+    }
+
+    /**
+     * Deletes the working directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        new DefaultFileHandler().delete(this.workDir.getPath());
+        super.tearDown();
+    }
+
+    /**
+     * Test extracting a ZIP archive.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractZip() throws Exception
+    {
+        File archive = new File(this.workDir, "container-1.0.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive)))
+        {
+            ZipEntry directory = new ZipEntry("container-1.0/");
+            directory.setTime(TIMESTAMP);
+            zip.putNextEntry(directory);
+            for (int i = 0; i < 20; i++)
+            {
+                ZipEntry entry = new ZipEntry("container-1.0/lib/file" + i + ".txt");
+                entry.setTime(TIMESTAMP);
+                zip.putNextEntry(entry);
+                zip.write(("content " + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        File target = new File(this.workDir, "target");
+        new ArchiveExtractor(4).extract(archive, target);
+
+        for (int i = 0; i < 20; i++)
+        {
+            File file = new File(target, "container-1.0/lib/file" + i + ".txt");
+            assertEquals("content " + i,
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+        assertEquals(TIMESTAMP, new File(target, "container-1.0").lastModified());
+    }
+
+    /**
+     * Test extracting a TAR.GZ archive.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractTarGz() throws Exception
+    {
+        File archive = new File(this.workDir, "container-1.0.tar.gz");
+        writeTar(new GZIPOutputStream(new FileOutputStream(archive)));
+
+        File target = new File(this.workDir, "target");
+        new ArchiveExtractor().extract(archive, target);
+
+        assertTar(target);
+    }
+
+    /**
+     * Test extracting a TAR.BZ2 archive.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractTarBz2() throws Exception
+    {
+        File archive = new File(this.workDir, "container-1.0.tar.bz2");
+        OutputStream out = new FileOutputStream(archive);
+        out.write('B');
+        out.write('Z');
+        writeTar(new CBZip2OutputStream(out));
+
+        File target = new File(this.workDir, "target");
+        new ArchiveExtractor().extract(archive, target);
+
+        assertTar(target);
+    }
+
+    /**
+     * Test that a truncated TAR.GZ archive is reported as broken.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractTruncatedTarGz() throws Exception
+    {
+        File archive = new File(this.workDir, "container-1.0.tar.gz");
+        writeTar(new GZIPOutputStream(new FileOutputStream(archive)));
+        byte[] content = Files.readAllBytes(archive.toPath());
+        Files.write(archive.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        try
+        {
+            new ArchiveExtractor().extract(archive, new File(this.workDir, "target"));
+            fail("Should have reported the truncated archive as broken");
+        }
+        catch (BrokenArchiveException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(archive.getName()));
+        }
+    }
+
+    /**
+     * Test that a file which is not a ZIP archive is reported as broken.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractCorruptZip() throws Exception
+    {
+        File archive = new File(this.workDir, "container-1.0.zip");
+        Files.write(archive.toPath(), "<html>Not found</html>".getBytes(StandardCharsets.UTF_8));
+
+        try
+        {
+            new ArchiveExtractor().extract(archive, new File(this.workDir, "target"));
+            fail("Should have reported the corrupt archive as broken");
+        }
+        catch (BrokenArchiveException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(archive.getName()));
+        }
+    }
+
+    /**
+     * Test that entries outside of the target directory are refused.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractEntryOutsideTarget() throws Exception
+    {
+        File archive = new File(this.workDir, "evil.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive)))
+        {
+            zip.putNextEntry(new ZipEntry("../evil.txt"));
+            zip.write(1);
+        }
+
+        try
+        {
+            new ArchiveExtractor().extract(archive, new File(this.workDir, "target"));
+            fail("Should have refused the entry outside of the target directory");
+        }
+        catch (IOException expected)
+        {
+            assertFalse(new File(this.workDir, "evil.txt").exists());
+        }
+    }
+
+    /**
+     * Test that unsupported archive types are refused.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testExtractUnsupportedArchive() throws Exception
+    {
+        try
+        {
+            new ArchiveExtractor().extract(new File(this.workDir, "container.rar"),
+                new File(this.workDir, "target"));
+            fail("Should have refused the RAR archive");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            assertEquals("Unsupported archive type: [container.rar]", expected.getMessage());
+        }
+    }
+
+    /**
+     * Writes a test TAR archive.
+     * @param out Stream to write to, closed by this method.
+     * @throws IOException If anything goes wrong.
+     */
+    private void writeTar(OutputStream out) throws IOException
+    {
+        TarOutputStream tar = new TarOutputStream(out);
+        TarEntry directory = new TarEntry("container-1.0/bin/");
+        directory.setModTime(TIMESTAMP);
+        tar.putNextEntry(directory);
+        tar.closeEntry();
+
+        byte[] content = "#!/bin/sh".getBytes(StandardCharsets.UTF_8);
+        TarEntry script = new TarEntry("container-1.0/bin/startup.sh");
+        script.setModTime(TIMESTAMP);
+        script.setMode(0100755);
+        script.setSize(content.length);
+        tar.putNextEntry(script);
+        tar.write(content);
+        tar.closeEntry();
+
+        // The TAR output stream only flushes its last record when closed
+        tar.close();
+    }
+
+    /**
+     * Checks the extraction of the test TAR archive.
+     * @param target Directory where the archive has been extracted.
+     * @throws IOException If anything goes wrong.
+     */
+    private void assertTar(File target) throws IOException
+    {
+        File script = new File(target, "container-1.0/bin/startup.sh");
+        assertEquals("#!/bin/sh",
+            new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8));
+        assertEquals(TIMESTAMP, script.lastModified());
+        assertEquals(TIMESTAMP, script.getParentFile().lastModified());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            assertTrue(Files.getPosixFilePermissions(script.toPath()).contains(
+                PosixFilePermission.OTHERS_EXECUTE));
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link ResumableDownloader}.
+ */
+public class ResumableDownloaderTest extends TestCase
+{
+    /**
+     * Content served by the test HTTP server.
+     */
+    private static final byte[] CONTENT = new byte[100 * 1024];
+
+    /**
+     * ETag of the content served by the test HTTP server.
+     */
+    private static final String ETAG = "\"cargo\"";
+
+    static
+    {
+        for (int i = 0; i < CONTENT.length; i++)
+        {
+            CONTENT[i] = (byte) (i % 251);
+        }
+    }
+
+    /**
+     * Test HTTP server.
+     */
+    private HttpServer server;
+
+    /**
+     * Number of bytes served by the test HTTP server.
+     */
+    private AtomicInteger bytesServed = new AtomicInteger();
+
+    /**
+     * Target file.
+     */
+    private File target;
+
+    /**
+     * Starts the test HTTP server. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", new RangeHandler());
+        this.server.start();
+
+        File directory = Files.createTempDirectory("cargo-download").toFile();
+        this.target = new File(directory, "container.zip");
+    }
+
+    /**
+     * Stops the test HTTP server. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.server.stop(0);
+        File directory = this.target.getParentFile();
+        for (File file : directory.listFiles())
+        {
+            file.delete();
+        }
+        directory.delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Test a download in one single stream.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSequentialDownload() throws Exception
+    {
+        new ResumableDownloader(getURL(), this.target, 1).download();
+
+        assertTrue(Arrays.equals(CONTENT, Files.readAllBytes(this.target.toPath())));
+        assertEquals(CONTENT.length, this.bytesServed.get());
+    }
+
+    /**
+     * Test a download in parallel ranges.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testParallelDownload() throws Exception
+    {
+        ResumableDownloader downloader = new ResumableDownloader(getURL(), this.target, 4);
+        downloader.setRangeSize(7 * 1024);
+        downloader.download();
+
+        assertTrue(Arrays.equals(CONTENT, Files.readAllBytes(this.target.toPath())));
+        assertEquals(CONTENT.length, this.bytesServed.get());
+        assertFalse(downloader.getPartialFile().exists());
+        assertFalse(downloader.getStateFile().exists());
+    }
+
+    /**
+     * Test that an interrupted sequential download only fetches the missing bytes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testResumeSequentialDownload() throws Exception
+    {
+        ResumableDownloader downloader = new ResumableDownloader(getURL(), this.target, 1);
+        int alreadyDownloaded = 30 * 1024;
+        try (OutputStream out = new FileOutputStream(downloader.getPartialFile()))
+        {
+            out.write(CONTENT, 0, alreadyDownloaded);
+        }
+        Properties state = new Properties();
+        state.setProperty("validator", ETAG);
+        try (OutputStream out = new FileOutputStream(downloader.getStateFile()))
+        {
+            state.store(out, null);
+        }
+
+        downloader.download();
+
+        assertTrue(Arrays.equals(CONTENT, Files.readAllBytes(this.target.toPath())));
+        assertEquals(CONTENT.length - alreadyDownloaded, this.bytesServed.get());
+    }
+
+    /**
+     * Test that a partial download of another version of the remote file is discarded.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testResumeWithChangedRemoteFile() throws Exception
+    {
+        ResumableDownloader downloader = new ResumableDownloader(getURL(), this.target, 1);
+        try (OutputStream out = new FileOutputStream(downloader.getPartialFile()))
+        {
+            out.write(new byte[1024]);
+        }
+        Properties state = new Properties();
+        state.setProperty("validator", "\"old\"");
+        try (OutputStream out = new FileOutputStream(downloader.getStateFile()))
+        {
+            state.store(out, null);
+        }
+
+        downloader.download();
+
+        assertTrue(Arrays.equals(CONTENT, Files.readAllBytes(this.target.toPath())));
+        assertEquals(CONTENT.length, this.bytesServed.get());
+    }
+
+    /**
+     * Test that a parallel download resumes the ranges already downloaded.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testResumeParallelDownload() throws Exception
+    {
+        ResumableDownloader downloader = new ResumableDownloader(getURL(), this.target, 4);
+        downloader.setRangeSize(10 * 1024);
+        writePartialRanges(downloader, 10 * 1024, "0,1,2");
+
+        downloader.download();
+
+        assertTrue(Arrays.equals(CONTENT, Files.readAllBytes(this.target.toPath())));
+        assertEquals(CONTENT.length - 30 * 1024, this.bytesServed.get());
+    }
+
+    /**
+     * Test that a parallel download done with another range size is started over, as the
+     * completed range indexes do not designate the same bytes anymore.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testResumeParallelDownloadWithOtherRangeSize() throws Exception
+    {
+        ResumableDownloader downloader = new ResumableDownloader(getURL(), this.target, 4);
+        downloader.setRangeSize(7 * 1024);
+        writePartialRanges(downloader, 10 * 1024, "0,1,2");
+
+        downloader.download();
+
+        assertTrue(Arrays.equals(CONTENT, Files.readAllBytes(this.target.toPath())));
+        assertEquals(CONTENT.length, this.bytesServed.get());
+    }
+
+    /**
+     * Writes a partial parallel download, where the bytes of the completed ranges are correct and
+     * the others are zeros.
+     * @param downloader Downloader.
+     * @param rangeSize Size of the ranges of the partial download.
+     * @param ranges Completed ranges.
+     * @throws Exception If anything goes wrong.
+     */
+    private void writePartialRanges(ResumableDownloader downloader, int rangeSize, String ranges)
+        throws Exception
+    {
+        byte[] partial = new byte[CONTENT.length];
+        for (String range : ranges.split(","))
+        {
+            int start = Integer.parseInt(range) * rangeSize;
+            System.arraycopy(CONTENT, start, partial, start, rangeSize);
+        }
+        Files.write(downloader.getPartialFile().toPath(), partial);
+        Properties state = new Properties();
+        state.setProperty("validator", ETAG);
+        state.setProperty("length", Integer.toString(CONTENT.length));
+        state.setProperty("rangeSize", Integer.toString(rangeSize));
+        state.setProperty("ranges", ranges);
+        try (OutputStream out = new FileOutputStream(downloader.getStateFile()))
+        {
+            state.store(out, null);
+        }
+    }
+
+    /**
+     * @return URL of the content served by the test HTTP server.
+     * @throws Exception If anything goes wrong.
+     */
+    private URL getURL() throws Exception
+    {
+        return new URL("http://localhost:" + this.server.getAddress().getPort()
+            + "/container.zip");
+    }
+
+    /**
+     * HTTP handler serving {@link ResumableDownloaderTest#CONTENT}, supporting byte ranges.
+     */
+    private class RangeHandler implements HttpHandler
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handle(HttpExchange exchange) throws IOException
+        {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().add("ETag", ETAG);
+
+            int start = 0;
+            int end = CONTENT.length - 1;
+            int status = 200;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            if (range != null && (ifRange == null || ETAG.equals(ifRange)))
+            {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(bounds[0]);
+                if (bounds.length > 1)
+                {
+                    end = Integer.parseInt(bounds[1]);
+                }
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range",
+                    "bytes " + start + "-" + end + "/" + CONTENT.length);
+            }
+
+            if ("HEAD".equals(exchange.getRequestMethod()))
+            {
+                exchange.getResponseHeaders().add("Content-Length",
+                    Integer.toString(CONTENT.length));
+                exchange.sendResponseHeaders(status, -1);
+            }
+            else
+            {
+                int length = end - start + 1;
+                exchange.sendResponseHeaders(status, length);
+                try (OutputStream out = exchange.getResponseBody())
+                {
+                    out.write(CONTENT, start, length);
+                }
+                bytesServed.addAndGet(length);
+            }
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.installer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.util.DefaultFileHandler;
+
+/**
+ * Unit tests for {@link SharedInstallationCache}, through the {@link ZipURLInstaller}.
+ */
+public class SharedInstallationCacheTest extends TestCase
+{
+    /**
+     * Working directory.
+     */
+    private File workDir;
+
+    /**
+     * Container distribution.
+     */
+    private File archive;
+
+    /**
+     * Creates the working directory and a container distribution. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.workDir = Files.createTempDirectory("cargo-cache").toFile();
+
+        this.archive = new File(this.workDir, "container-1.0.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(this.archive)))
+        {
+            zip.putNextEntry(new ZipEntry("container-1.0/bin/startup.sh"));
+            zip.write("#!/bin/sh".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Deletes the working directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        new DefaultFileHandler().delete(this.workDir.getPath());
+        super.tearDown();
+    }
+
+    /**
+     * Test that two installers sharing a cache only download and extract the container once.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testInstallersShareCache() throws Exception
+    {
+        File cacheDir = new File(this.workDir, "cache");
+
+        ZipURLInstaller first = createInstaller(cacheDir, "build1", false);
+        first.install();
+        assertStartupScript(first);
+
+        // The second installer must not need the original archive anymore
+        this.archive.delete();
+
+        ZipURLInstaller second = createInstaller(cacheDir, "build2", true);
+        second.install();
+        assertStartupScript(second);
+        assertTrue(second.isAlreadyExtracted());
+
+        File[] trees = new File(cacheDir, "trees").listFiles();
+        assertEquals(1, trees.length);
+        assertEquals(64, trees[0].getName().length());
+    }
+
+    /**
+     * Test that a broken archive in the cache is downloaded again.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCorruptCachedArchive() throws Exception
+    {
+        ZipURLInstaller installer =
+            createInstaller(new File(this.workDir, "cache"), "build", false);
+        File cached = new File(installer.getDownloadFile());
+        cached.getParentFile().mkdirs();
+        Files.write(cached.toPath(), "corrupt".getBytes(StandardCharsets.UTF_8));
+
+        installer.install();
+        assertStartupScript(installer);
+    }
+
+    /**
+     * Test that a broken remote archive, which has the same checksum once downloaded again, makes
+     * the installation fail instead of blocking on the cache locks.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCorruptRemoteArchive() throws Exception
+    {
+        Files.write(this.archive.toPath(), "corrupt".getBytes(StandardCharsets.UTF_8));
+        ZipURLInstaller installer =
+            createInstaller(new File(this.workDir, "cache"), "build", false);
+        try
+        {
+            installer.install();
+            fail("The broken archive should not have been installed");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Failed to unpack"));
+        }
+    }
+
+    /**
+     * Test that a lock can be acquired again once released.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLockReleased() throws Exception
+    {
+        SharedInstallationCache cache = new SharedInstallationCache(this.workDir);
+        cache.lock("key").close();
+        cache.lock("key").close();
+    }
+
+    /**
+     * @param cacheDir Cache directory.
+     * @param build Name of the build.
+     * @param hardLinks Whether to hard link the cached files.
+     * @return Installer for the test container distribution.
+     * @throws Exception If anything goes wrong.
+     */
+    private ZipURLInstaller createInstaller(File cacheDir, String build, boolean hardLinks)
+        throws Exception
+    {
+        ZipURLInstaller installer = new ZipURLInstaller(this.archive.toURI().toURL(), null,
+            new File(this.workDir, build).getPath());
+        installer.setCacheDir(cacheDir.getPath());
+        installer.setCacheHardLinks(hardLinks);
+        return installer;
+    }
+
+    /**
+     * @param installer Installer.
+     * @throws Exception If anything goes wrong.
+     */
+    private void assertStartupScript(ZipURLInstaller installer) throws Exception
+    {
+        File script = new File(installer.getHome(), "bin/startup.sh");
+        assertEquals("#!/bin/sh",
+            new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8));
+    }
+}
@@ -211,4 +211,36 @@ public class ZipURLInstallerTest extends TestCase
 
         assertEquals("ram:///tmp/resin-3.0.18/resin-3.0.18", this.installer.getHome());
     }
+
+    /**
+     * Test that an unsupported archive type is refused before downloading it into the shared
+     * installation cache.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testInstallUnsupportedArchiveIntoCache() throws Exception
+    {
+        final boolean[] downloaded = new boolean[1];
+        ZipURLInstaller installer = new ZipURLInstaller(new URL("http://some/url/resin-3.0.18.rar"))
+        {
+            @Override
+            protected void doDownload() throws IOException
+            {
+                downloaded[0] = true;
+            }
+        };
+        installer.setFileHandler(this.fileHandler);
+        installer.setExtractDir("ram:///tmp");
+        installer.setCacheDir("ram:///cache");
+
+        try
+        {
+            installer.install();
+            fail("Should have refused the RAR archive");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            assertEquals("Unsupported archive type: [resin-3.0.18.rar]", expected.getMessage());
+        }
+        assertFalse("Unsupported archive downloaded", downloaded[0]);
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link HttpConnection}.
+ */
+public class HttpConnectionTest extends TestCase
+{
+    /**
+     * Body served by the test HTTP server, long enough for characters to span several reads.
+     */
+    private static final String BODY;
+
+    static
+    {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+        {
+            body.append("\u00e9\u20ac\u4e2d");
+        }
+        BODY = body.toString();
+    }
+
+    /**
+     * Test HTTP server.
+     */
+    private HttpServer server;
+
+    /**
+     * Client ports of the connections the test HTTP server has seen.
+     */
+    private Set<Integer> clientPorts = new ConcurrentSkipListSet<Integer>();
+
+    /**
+     * Starts the test HTTP server. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", new BodyHandler());
+        this.server.start();
+    }
+
+    /**
+     * Stops the test HTTP server. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.server.stop(0);
+
+        super.tearDown();
+    }
+
+    /**
+     * Test that the response body is decoded with the charset of the response.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testResponseBodyCharset() throws Exception
+    {
+        HttpResult result = new HttpConnection(getURL("UTF-16")).get();
+        assertEquals(200, result.getResponseCode());
+        assertEquals(BODY, result.getResponseBody());
+
+        result = new HttpConnection(getURL("UTF-8")).get();
+        assertEquals(BODY, result.getResponseBody());
+    }
+
+    /**
+     * Test that successive calls reuse the same connection.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testKeepAlive() throws Exception
+    {
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(200, new HttpConnection(getURL("UTF-8")).get().getResponseCode());
+        }
+        assertEquals(1, this.clientPorts.size());
+    }
+
+    /**
+     * Test the charset parsing of content types.
+     */
+    public void testGetCharset()
+    {
+        assertEquals("UTF-8", HttpConnection.getCharset(null));
+        assertEquals("UTF-8", HttpConnection.getCharset("text/plain"));
+        assertEquals("UTF-8", HttpConnection.getCharset("text/plain; charset=unknown"));
+        assertEquals("ISO-8859-1", HttpConnection.getCharset("text/html; Charset=\"ISO-8859-1\""));
+    }
+
+    /**
+     * @param charset Charset the test HTTP server is to encode the body with.
+     * @return URL of the test HTTP server.
+     * @throws Exception If anything goes wrong.
+     */
+    private URL getURL(String charset) throws Exception
+    {
+        return new URL("http://localhost:" + this.server.getAddress().getPort() + "/" + charset);
+    }
+
+    /**
+     * Serves {@link HttpConnectionTest#BODY} encoded with the charset named by the request path.
+     */
+    private class BodyHandler implements HttpHandler
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handle(HttpExchange exchange) throws IOException
+        {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            String charset = exchange.getRequestURI().getPath().substring(1);
+            byte[] content = BODY.getBytes(charset);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=" + charset);
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(content);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link ConfigurationFingerprint}.
+ */
+public class ConfigurationFingerprintTest extends TestCase
+{
+    /**
+     * Test that the same inputs give the same fingerprint, regardless of the order of maps.
+     */
+    public void testSameInputsSameFingerprint()
+    {
+        Map<String, String> first = new LinkedHashMap<String, String>();
+        first.put("cargo.servlet.port", "8080");
+        first.put("cargo.rmi.port", "1099");
+        Map<String, String> second = new LinkedHashMap<String, String>();
+        second.put("cargo.rmi.port", "1099");
+        second.put("cargo.servlet.port", "8080");
+
+        ConfigurationFingerprint fingerprint1 = new ConfigurationFingerprint();
+        fingerprint1.add("property", first);
+        ConfigurationFingerprint fingerprint2 = new ConfigurationFingerprint();
+        fingerprint2.add("property", second);
+
+        assertEquals(fingerprint1.getValue(), fingerprint2.getValue());
+    }
+
+    /**
+     * Test that values are not confused with each other when concatenated.
+     */
+    public void testValuesAreDelimited()
+    {
+        ConfigurationFingerprint fingerprint1 = new ConfigurationFingerprint();
+        fingerprint1.add("a", "bc");
+        ConfigurationFingerprint fingerprint2 = new ConfigurationFingerprint();
+        fingerprint2.add("ab", "c");
+        ConfigurationFingerprint fingerprint3 = new ConfigurationFingerprint();
+        fingerprint3.add("ab", (String) null);
+
+        assertFalse(fingerprint1.getValue().equals(fingerprint2.getValue()));
+        assertFalse(fingerprint2.getValue().equals(fingerprint3.getValue()));
+    }
+
+    /**
+     * Test that modifying a file changes the fingerprint.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testModifiedFileChangesFingerprint() throws Exception
+    {
+        File directory = Files.createTempDirectory("cargo-fingerprint").toFile();
+        File file = new File(directory, "server.xml");
+        try
+        {
+            Files.write(file.toPath(), new byte[] {1, 2, 3});
+            ConfigurationFingerprint before = new ConfigurationFingerprint();
+            before.addFile("file", directory);
+
+            Files.write(file.toPath(), new byte[] {1, 2, 3, 4});
+            ConfigurationFingerprint after = new ConfigurationFingerprint();
+            after.addFile("file", directory);
+
+            assertFalse(before.getValue().equals(after.getValue()));
+        }
+        finally
+        {
+            file.delete();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PortUtils}.
+ */
+public class PortUtilsTest extends TestCase
+{
+    /**
+     * Port utilities being tested.
+     */
+    private PortUtils portUtils = new PortUtils();
+
+    /**
+     * Test that only the ports being listened to are reported as open.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testGetOpenPorts() throws Exception
+    {
+        int first = this.portUtils.allocatePorts(2);
+        try (ServerSocket serverSocket = new ServerSocket())
+        {
+            serverSocket.bind(new InetSocketAddress("localhost", first));
+
+            Set<Integer> openPorts =
+                this.portUtils.getOpenPorts(Arrays.asList(first, first + 1), 1000);
+            assertEquals(Collections.singleton(first), openPorts);
+            assertTrue(this.portUtils.isPortOpen(first, 1000));
+            assertFalse(this.portUtils.isPortOpen(first + 1, 1000));
+        }
+        finally
+        {
+            this.portUtils.releasePorts(first, 2);
+        }
+    }
+
+    /**
+     * Test that allocated ports are free and never allocated twice until released.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testAllocatePorts() throws Exception
+    {
+        int first = this.portUtils.allocatePorts(3);
+        int second = this.portUtils.allocatePorts(3);
+        try
+        {
+            assertTrue(second + 3 <= first || first + 3 <= second);
+            for (int port = first; port < first + 3; port++)
+            {
+                new ServerSocket(port).close();
+            }
+        }
+        finally
+        {
+            this.portUtils.releasePorts(first, 3);
+            this.portUtils.releasePorts(second, 3);
+        }
+    }
+}
@@ -22,18 +22,37 @@
  */
 package org.codehaus.cargo.container.spi;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import junit.framework.TestCase;
 
 import org.apache.commons.vfs2.impl.StandardFileSystemManager;
 import org.codehaus.cargo.container.ContainerCapability;
+import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.State;
 import org.codehaus.cargo.container.configuration.ConfigurationCapability;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.configuration.entry.Resource;
 import org.codehaus.cargo.container.internal.util.JdkUtils;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.container.property.ServletPropertySet;
 import org.codehaus.cargo.container.spi.configuration.AbstractStandaloneLocalConfiguration;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.container.spi.jvm.JvmLauncherException;
+import org.codehaus.cargo.container.spi.jvm.MonitoredJvmLauncher;
 import org.codehaus.cargo.container.stub.JvmLauncherStub;
 import org.codehaus.cargo.util.FileHandler;
 import org.codehaus.cargo.util.VFSFileHandler;
@@ -197,6 +216,33 @@ public class InstalledLocalContainerTest extends TestCase
 
     }
 
+    /**
+     * {@link JvmLauncherStub} following the process it has launched.
+     */
+    private static class MonitoredJvmLauncherStub extends JvmLauncherStub implements
+        MonitoredJvmLauncher
+    {
+        /**
+         * {@inheritDoc}
+         * @return <code>null</code>.
+         */
+        @Override
+        public JvmLauncherException getFailure()
+        {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @return <code>false</code>.
+         */
+        @Override
+        public boolean isRunning()
+        {
+            return false;
+        }
+    }
+
     /**
      * Tests that <code>tools.jar</code> is not set on MacOS X.
      * @throws Exception If anything goes wrong.
@@ -548,4 +594,275 @@ public class InstalledLocalContainerTest extends TestCase
         assertTrue("Expected argument \"" + needle + "\", got \"" + haystack + "\"",
             haystack.contains(needle));
     }
+
+    /**
+     * Tests that waiting for a container to stop returns as soon as its ports are shut down.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWaitForStoppingReturnsWhenPortsShutdown() throws Exception
+    {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        int port = serverSocket.getLocalPort();
+        Thread closer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(300);
+                    serverSocket.close();
+                }
+                catch (InterruptedException | IOException e)
+                {
+                    // Ignored
+                }
+            }
+        };
+        closer.start();
+
+        AbstractInstalledLocalContainer container =
+            new AbstractInstalledLocalContainerStub(configuration);
+        long start = System.currentTimeMillis();
+        container.waitForStopping(Collections.singleton(port), start + 10000);
+        assertTrue(serverSocket.isClosed());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        closer.join();
+    }
+
+    /**
+     * Tests that waiting for a container to stop fails when its ports are not shut down in time.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWaitForStoppingFailsWhenPortsOpen() throws Exception
+    {
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            AbstractInstalledLocalContainer container =
+                new AbstractInstalledLocalContainerStub(configuration);
+            try
+            {
+                container.waitForStopping(Collections.singleton(serverSocket.getLocalPort()),
+                    System.currentTimeMillis() + 500);
+                fail("Open port not detected");
+            }
+            catch (ContainerException expected)
+            {
+                assertTrue(expected.getMessage(), expected.getMessage().contains(
+                    Integer.toString(serverSocket.getLocalPort())));
+            }
+        }
+    }
+
+    /**
+     * Tests that waiting for a container to stop waits for each port with
+     * {@link AbstractLocalContainer#waitForPortShutdown(int, int, long)}, so that subclasses
+     * overriding it are still called.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWaitForStoppingCallsWaitForPortShutdown() throws Exception
+    {
+        final Set<Integer> waitedPorts = new TreeSet<Integer>();
+        AbstractInstalledLocalContainer container =
+            new AbstractInstalledLocalContainerStub(configuration)
+            {
+                @Override
+                protected void waitForPortShutdown(int port, int connectTimeout, long deadline)
+                {
+                    waitedPorts.add(port);
+                }
+            };
+        container.waitForStopping(new TreeSet<Integer>(Arrays.asList(1, 2)),
+            System.currentTimeMillis() + 10000);
+        assertEquals(new TreeSet<Integer>(Arrays.asList(1, 2)), waitedPorts);
+    }
+
+    /**
+     * Tests that waiting for the container process to exit once its ports are shut down is bounded
+     * independently from the container timeout.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWaitForStoppingBoundsProcessExit() throws Exception
+    {
+        AbstractInstalledLocalContainer container =
+            new AbstractInstalledLocalContainerStub(configuration)
+            {
+                @Override
+                protected boolean isContainerProcessRunning()
+                {
+                    return true;
+                }
+            };
+        long start = System.currentTimeMillis();
+        container.waitForStopping(Collections.<Integer>emptySet(), start + 120000);
+        assertTrue(System.currentTimeMillis() - start < 60000);
+    }
+
+    /**
+     * Tests that waiting for a spawned container to stop still waits for its process to exit
+     * after its ports are shut down, within the deadline, as the process cannot be followed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWaitForStoppingWaitsForSpawnedProcess() throws Exception
+    {
+        configuration.setProperty(GeneralPropertySet.SPAWN_PROCESS, "true");
+        AbstractInstalledLocalContainer container =
+            new AbstractInstalledLocalContainerStub(configuration)
+            {
+                @Override
+                protected JvmLauncher createJvmLauncher(boolean server)
+                {
+                    return new MonitoredJvmLauncherStub();
+                }
+            };
+        container.startInternal();
+
+        long start = System.currentTimeMillis();
+        container.waitForStopping(Collections.<Integer>emptySet(), start + 1000);
+        long waited = System.currentTimeMillis() - start;
+        assertTrue("Waited " + waited + " ms", waited >= 900 && waited < 5000);
+    }
+
+    /**
+     * Test that starting a started container in the background fails at once.
+     */
+    public void testStartAsyncFailsWhenStarted()
+    {
+        AbstractInstalledLocalContainer container =
+            new AbstractInstalledLocalContainerStub(configuration);
+        container.setState(State.STARTED);
+        try
+        {
+            container.startAsync();
+            fail("Started container started again");
+        }
+        catch (ContainerException expected)
+        {
+            assertEquals(State.STARTED, container.getState());
+        }
+    }
+
+    /**
+     * Test that cancelling a start in the background cleans up without the interrupt flag set.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCancelStartAsyncCleansUpUninterrupted() throws Exception
+    {
+        final CountDownLatch starting = new CountDownLatch(1);
+        final CountDownLatch cleanedUp = new CountDownLatch(1);
+        final AtomicBoolean interruptedCleanup = new AtomicBoolean(true);
+        AbstractInstalledLocalContainer container =
+            new AbstractInstalledLocalContainerStub(configuration)
+            {
+                @Override
+                protected JvmLauncher createJvmLauncher(boolean server)
+                {
+                    return new JvmLauncherStub()
+                    {
+                        @Override
+                        public void kill()
+                        {
+                            interruptedCleanup.set(Thread.currentThread().isInterrupted());
+                            cleanedUp.countDown();
+                        }
+                    };
+                }
+
+                @Override
+                protected void doStart(JvmLauncher java) throws Exception
+                {
+                    starting.countDown();
+                    try
+                    {
+                        Thread.sleep(60000);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Keep the interrupt, as well-behaved code does
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            };
+        container.setFileHandler(fileHandler);
+        fileHandler.mkdirs("ram:/home");
+        container.setHome("ram:/home");
+
+        Future<Void> start = container.startAsync();
+        assertTrue("Start not called", starting.await(10, TimeUnit.SECONDS));
+        start.cancel(true);
+        assertTrue("Cancelled start not cleaned up", cleanedUp.await(10, TimeUnit.SECONDS));
+        assertFalse("Cleanup ran with the interrupt flag set", interruptedCleanup.get());
+    }
+
+    /**
+     * Test that the start marker of a previous run, left in an output file which is not appended
+     * to, does not make the container look started.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStartIgnoresStaleMarker() throws Exception
+    {
+        File output = File.createTempFile("cargo", ".log");
+        final ServerSocket[] connector = new ServerSocket[1];
+        try
+        {
+            Files.write(output.toPath(),
+                "Server startup in 100 ms\n".getBytes(StandardCharsets.UTF_8));
+            final int port;
+            try (ServerSocket serverSocket = new ServerSocket(0))
+            {
+                port = serverSocket.getLocalPort();
+            }
+            configuration.setProperty(ServletPropertySet.PORT, Integer.toString(port));
+
+            AbstractInstalledLocalContainer container =
+                new AbstractInstalledLocalContainerStub(configuration)
+                {
+                    @Override
+                    protected JvmLauncher createJvmLauncher(boolean server)
+                    {
+                        return new JvmLauncherStub();
+                    }
+
+                    @Override
+                    protected void doStart(JvmLauncher java) throws Exception
+                    {
+                        // As Tomcat does, bind the connector before being started
+                        connector[0] = new ServerSocket(port);
+                    }
+
+                    @Override
+                    protected String[] getStartedMarkers()
+                    {
+                        return new String[] {"Server startup in"};
+                    }
+                };
+            container.setFileHandler(fileHandler);
+            fileHandler.mkdirs("ram:/home");
+            container.setHome("ram:/home");
+            container.setOutput(output.getPath());
+            container.setAppend(false);
+            container.setTimeout(1000);
+
+            try
+            {
+                container.start();
+                fail("Container started from the marker of its previous run");
+            }
+            catch (ContainerException expected)
+            {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("timeout"));
+            }
+            assertNotNull("Connector not bound", connector[0]);
+            assertEquals(0, output.length());
+        }
+        finally
+        {
+            if (connector[0] != null)
+            {
+                connector[0].close();
+            }
+            output.delete();
+        }
+    }
 }
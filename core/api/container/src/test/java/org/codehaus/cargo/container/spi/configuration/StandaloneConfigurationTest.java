@@ -33,6 +33,7 @@ import org.codehaus.cargo.container.configuration.ConfigurationCapability;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.LoggingLevel;
 import org.codehaus.cargo.container.property.ServletPropertySet;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
 import org.codehaus.cargo.util.VFSFileHandler;
 
 /**
@@ -47,6 +48,11 @@ public class StandaloneConfigurationTest extends TestCase
     public class TestableAbstractStandaloneConfiguration
         extends AbstractStandaloneLocalConfiguration
     {
+        /**
+         * Number of times the configuration has been generated.
+         */
+        private int configureCount;
+
         /**
          * {@inheritDoc}
          * @param dir Configuration directory.
@@ -57,13 +63,21 @@ public class StandaloneConfigurationTest extends TestCase
         }
 
         /**
-         * Doesn't do anything. {@inheritDoc}
+         * Only counts invocations. {@inheritDoc}
          * @param container Ignored.
          */
         @Override
         protected void doConfigure(LocalContainer container)
         {
-            // Do nothing voluntarily for testing
+            this.configureCount++;
+        }
+
+        /**
+         * @return Number of times the configuration has been generated.
+         */
+        public int getConfigureCount()
+        {
+            return this.configureCount;
         }
 
         /**
@@ -198,4 +212,32 @@ public class StandaloneConfigurationTest extends TestCase
         assertEquals("8081", configuration.getPropertyValue(ServletPropertySet.PORT));
     }
 
+    /**
+     * Test that an incremental configuration is only generated again when its inputs change.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testIncrementalConfiguration() throws Exception
+    {
+        String configDir = "ram:///cargo/testIncrementalConfiguration";
+        VFS.getManager().resolveFile(configDir).createFolder();
+
+        TestableAbstractStandaloneConfiguration configuration =
+            new TestableAbstractStandaloneConfiguration(configDir);
+        configuration.setFileHandler(new VFSFileHandler());
+        configuration.setProperty(GeneralPropertySet.INCREMENTAL_CONFIGURATION, "true");
+        InstalledLocalContainerStub container = new InstalledLocalContainerStub(configuration);
+
+        configuration.configure(container);
+        assertEquals(1, configuration.getConfigureCount());
+
+        configuration.configure(container);
+        assertEquals("Unchanged configuration should have been reused", 1,
+            configuration.getConfigureCount());
+
+        configuration.setProperty(ServletPropertySet.PORT, "8081");
+        configuration.configure(container);
+        assertEquals("Changed configuration should have been generated again", 2,
+            configuration.getConfigureCount());
+    }
+
 }
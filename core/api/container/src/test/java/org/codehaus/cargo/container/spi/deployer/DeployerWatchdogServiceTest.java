@@ -0,0 +1,149 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.deployer.AbstractDeployableMonitor;
+
+/**
+ * Unit tests for {@link DeployerWatchdogService}.
+ */
+public class DeployerWatchdogServiceTest extends TestCase
+{
+    /**
+     * Test that deployables are watched at the same time.
+     */
+    public void testWatchesConcurrently()
+    {
+        DeployerWatchdogService watchdog = new DeployerWatchdogService();
+        for (int i = 0; i < 10; i++)
+        {
+            watchdog.addMonitor(new DelayedDeployableMonitor("war" + i, 500L, 5000L));
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, Long> timings = watchdog.watchForAvailability();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(10, timings.size());
+        for (Long timing : timings.values())
+        {
+            assertTrue("Timing " + timing + " too short", timing >= 500L);
+        }
+        assertTrue("Watching took " + elapsed + " ms", elapsed < 2500L);
+    }
+
+    /**
+     * Test that the wait fails as soon as one deployable reaches its timeout.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTimeout() throws Exception
+    {
+        DeployerWatchdogService watchdog = new DeployerWatchdogService();
+        watchdog.addMonitor(new DelayedDeployableMonitor("fast", 100L, 5000L));
+        watchdog.addMonitor(new DelayedDeployableMonitor("slow", 60000L, 300L));
+
+        long start = System.currentTimeMillis();
+        Future<Map<String, Long>> future = watchdog.start(true);
+        try
+        {
+            future.get();
+            fail("No exception thrown");
+        }
+        catch (ExecutionException expected)
+        {
+            assertTrue(expected.getCause() instanceof ContainerException);
+            assertTrue(expected.getCause().getMessage(),
+                expected.getCause().getMessage().contains("[slow]"));
+        }
+        assertTrue(future.isDone());
+        assertTrue(System.currentTimeMillis() - start < 5000L);
+    }
+
+    /**
+     * Test that an empty watchdog returns at once.
+     */
+    public void testNoMonitor()
+    {
+        assertTrue(new DeployerWatchdogService().watchForUnavailability().isEmpty());
+    }
+
+    /**
+     * Deployable monitor finding its deployable deployed after a given delay.
+     */
+    private static class DelayedDeployableMonitor extends AbstractDeployableMonitor
+    {
+        /**
+         * Deployable name.
+         */
+        private String deployableName;
+
+        /**
+         * Delay after which the deployable is deployed.
+         */
+        private long delay;
+
+        /**
+         * Time when the deployable is deployed, set when first monitored.
+         */
+        private long deployedTime;
+
+        /**
+         * @param deployableName Deployable name.
+         * @param delay Delay after which the deployable is deployed.
+         * @param timeout Timeout.
+         */
+        public DelayedDeployableMonitor(String deployableName, long delay, long timeout)
+        {
+            super(timeout);
+            this.deployableName = deployableName;
+            this.delay = delay;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void monitor()
+        {
+            // The delay starts when watching starts, not when the monitor is created
+            if (this.deployedTime == 0)
+            {
+                this.deployedTime = System.currentTimeMillis() + this.delay;
+            }
+            notifyListeners(System.currentTimeMillis() >= this.deployedTime);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDeployableName()
+        {
+            return this.deployableName;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.startup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
+
+/**
+ * Unit tests for {@link LogMarkerContainerMonitor} and {@link PortAcceptContainerMonitor}.
+ */
+public class StartedMarkersContainerMonitorTest extends TestCase
+{
+    /**
+     * Container output file.
+     */
+    private File logFile;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.logFile = File.createTempFile("cargo-", ".log");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.logFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that only markers written after the given offset are found, including on a line which
+     * is not complete yet.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLogMarkerAfterOffset() throws Exception
+    {
+        append("INFO: Server startup in 100 ms\n");
+        LogMarkerContainerMonitor monitor = new LogMarkerContainerMonitor(
+            new InstalledLocalContainerStub(), this.logFile, "Server startup in");
+        assertFalse(monitor.isRunning());
+
+        append("INFO: Deploying web application\nINFO: Server star");
+        assertFalse(monitor.isRunning());
+
+        append("tup in 200 ms");
+        assertTrue(monitor.isRunning());
+    }
+
+    /**
+     * Test that markers are found from the beginning of the output file when it is truncated.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLogMarkerAfterTruncation() throws Exception
+    {
+        append("INFO: Deploying web application\nINFO: Deploying web application\n");
+        LogMarkerContainerMonitor monitor = new LogMarkerContainerMonitor(
+            new InstalledLocalContainerStub(), this.logFile, "WFLYSRV0025", "WFLYSRV0026");
+        assertFalse(monitor.isRunning());
+
+        this.logFile.delete();
+        append("WFLYSRV0026: started (with errors)\n");
+        assertTrue(monitor.isRunning());
+    }
+
+    /**
+     * Test that the port monitor detects when a port accepts connections.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testPortAccept() throws Exception
+    {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            port = serverSocket.getLocalPort();
+        }
+
+        try (PortAcceptContainerMonitor monitor = new PortAcceptContainerMonitor(
+            new InstalledLocalContainerStub(), "localhost", port))
+        {
+            assertFalse(monitor.isRunning());
+
+            try (ServerSocket serverSocket = new ServerSocket(port))
+            {
+                long deadline = System.currentTimeMillis() + 10000;
+                while (!monitor.isRunning() && System.currentTimeMillis() < deadline)
+                {
+                    Thread.sleep(10);
+                }
+                assertTrue(monitor.isRunning());
+            }
+        }
+    }
+
+    /**
+     * @param text Text to append to the container output file.
+     * @throws IOException If writing fails.
+     */
+    private void append(String text) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(this.logFile, true))
+        {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -19,10 +19,16 @@
  */
 package org.codehaus.cargo.generic;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.commons.discovery.jdk.JDKHooks;
 import org.apache.commons.discovery.resource.ClassLoaders;
@@ -53,6 +59,14 @@ import org.codehaus.cargo.generic.packager.PackagerFactory;
  */
 public abstract class AbstractFactoryRegistry
 {
+    /**
+     * Registries discovered with each class loader, so that discovery runs once per class loader
+     * whatever the number of factories created. The registries are softly referenced, as they
+     * reference their class loader and would otherwise keep the weak keys from being collected.
+     */
+    private static final Map<ClassLoader, SoftReference<List<AbstractFactoryRegistry>>> REGISTRIES =
+        new WeakHashMap<ClassLoader, SoftReference<List<AbstractFactoryRegistry>>>();
+
     /**
      * Discovers all the {@link org.codehaus.cargo.container.deployable.Deployable}s and adds them
      * to the given {@link DeployableFactory}.
@@ -220,57 +234,67 @@ public abstract class AbstractFactoryRegistry
      */
     private static List<AbstractFactoryRegistry> list(ClassLoader classLoader)
     {
-        ClassLoader cl;
-        ClassLoaders loaders = new ClassLoaders();
+        Set<ClassLoader> loaders = new LinkedHashSet<ClassLoader>();
+        loaders.add(classLoader);
+        loaders.add(Thread.currentThread().getContextClassLoader());
+        loaders.add(AbstractFactoryRegistry.class.getClassLoader());
+        loaders.add(ResourceUtils.getResourceLoader());
+        loaders.add(JDKHooks.getJDKHooks().getSystemClassLoader());
+        loaders.remove(null);
 
-        cl = classLoader;
-        if (cl != null)
+        // Registries found by several class loaders are only registered once
+        Map<String, AbstractFactoryRegistry> registries =
+            new LinkedHashMap<String, AbstractFactoryRegistry>();
+        for (ClassLoader loader : loaders)
         {
-            loaders.put(cl);
-        }
-
-        cl = Thread.currentThread().getContextClassLoader();
-        if (cl != null)
-        {
-            loaders.put(cl);
-        }
-
-        cl = AbstractFactoryRegistry.class.getClassLoader();
-        if (cl != null)
-        {
-            loaders.put(cl);
+            for (AbstractFactoryRegistry registry : discover(loader))
+            {
+                String name = registry.getClass().getName();
+                if (!registries.containsKey(name))
+                {
+                    registries.put(name, registry);
+                }
+            }
         }
 
-        cl = ResourceUtils.getResourceLoader();
-        if (cl != null)
-        {
-            loaders.put(cl);
-        }
+        return new ArrayList<AbstractFactoryRegistry>(registries.values());
+    }
 
-        cl = JDKHooks.getJDKHooks().getSystemClassLoader();
-        if (cl != null)
+    /**
+     * Discovers the {@link AbstractFactoryRegistry}s visible from a class loader, unless they have
+     * been discovered before.
+     * 
+     * @param classLoader Class loader to search service provide configuration files with.
+     * @return always non-null but can be empty.
+     */
+    private static List<AbstractFactoryRegistry> discover(ClassLoader classLoader)
+    {
+        synchronized (REGISTRIES)
         {
-            loaders.put(cl);
-        }
+            SoftReference<List<AbstractFactoryRegistry>> cached = REGISTRIES.get(classLoader);
+            List<AbstractFactoryRegistry> registries = cached == null ? null : cached.get();
+            if (registries == null)
+            {
+                ClassLoaders loaders = new ClassLoaders();
+                loaders.put(classLoader);
 
-        if (loaders.size() == 0)
-        {
-            // this is not our day. bail out.
-            return Collections.EMPTY_LIST;
-        }
+                registries = new ArrayList<AbstractFactoryRegistry>();
+                Enumeration providers = Service.providers(
+                        new SPInterface(AbstractFactoryRegistry.class), loaders);
+                while (providers.hasMoreElements())
+                {
+                    Object provider = providers.nextElement();
+                    if (provider instanceof AbstractFactoryRegistry)
+                    {
+                        registries.add((AbstractFactoryRegistry) provider);
+                    }
+                }
 
-        List<AbstractFactoryRegistry> registries = new ArrayList<AbstractFactoryRegistry>();
-        Enumeration providers = Service.providers(
-                new SPInterface(AbstractFactoryRegistry.class), loaders);
-        while (providers.hasMoreElements())
-        {
-            Object provider = providers.nextElement();
-            if (provider instanceof AbstractFactoryRegistry)
-            {
-                registries.add((AbstractFactoryRegistry) provider);
+                registries = Collections.unmodifiableList(registries);
+                REGISTRIES.put(classLoader,
+                    new SoftReference<List<AbstractFactoryRegistry>>(registries));
             }
+            return registries;
         }
-
-        return registries;
     }
 }
@@ -0,0 +1,315 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.generic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Group of local containers started and stopped together, for example a Tomcat, a WildFly and a
+ * mock backend for one test suite. All containers are started in parallel, except that each
+ * container is started only once the containers it depends on are started; they are stopped in
+ * parallel the other way round. Groups are not thread-safe.
+ */
+public class ContainerGroup extends LoggedObject
+{
+    /**
+     * Time to wait for the containers still starting or stopping to give up once interrupted, in
+     * milliseconds.
+     */
+    private static final long CANCEL_TIMEOUT = 30000L;
+
+    /**
+     * Containers of the group in the order they have been added, with the containers each of them
+     * depends on.
+     */
+    private Map<LocalContainer, List<LocalContainer>> containers =
+        new LinkedHashMap<LocalContainer, List<LocalContainer>>();
+
+    /**
+     * Adds a container to the group. As the containers it depends on must have been added before,
+     * there can be no dependency cycle.
+     * 
+     * @param container Container to add.
+     * @param dependencies Containers to start before <code>container</code> and to stop after it.
+     * @throws ContainerException If one of the dependencies is not part of the group yet.
+     */
+    public void addContainer(LocalContainer container, LocalContainer... dependencies)
+        throws ContainerException
+    {
+        for (LocalContainer dependency : dependencies)
+        {
+            if (!this.containers.containsKey(dependency))
+            {
+                throw new ContainerException("Container [" + dependency.getName() + "] must be "
+                    + "added to the group before container [" + container.getName() + "], which "
+                        + "depends on it");
+            }
+        }
+        this.containers.put(container, new ArrayList<LocalContainer>(Arrays.asList(dependencies)));
+    }
+
+    /**
+     * @return Containers of the group, in the order they have been added.
+     */
+    public List<LocalContainer> getContainers()
+    {
+        return new ArrayList<LocalContainer>(this.containers.keySet());
+    }
+
+    /**
+     * Starts all containers of the group. If any container fails to start, or if the start is
+     * interrupted, the containers which have been started or were still starting are stopped
+     * again.
+     * 
+     * @throws ContainerException If any container fails to start.
+     */
+    public void start() throws ContainerException
+    {
+        List<LocalContainer> started = new ArrayList<LocalContainer>();
+        try
+        {
+            run(getContainers(), this.containers, true, started);
+        }
+        catch (ContainerException e)
+        {
+            // An interrupted start must not interrupt the cleanup; the interrupt is restored once
+            // done
+            boolean interrupted = Thread.interrupted();
+            try
+            {
+                Collections.reverse(started);
+                for (LocalContainer container : started)
+                {
+                    try
+                    {
+                        container.stop();
+                    }
+                    catch (ContainerException stopFailure)
+                    {
+                        getLogger().warn("Failed to stop container [" + container.getName()
+                            + "]: " + stopFailure, this.getClass().getName());
+                    }
+                }
+            }
+            finally
+            {
+                if (interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops all containers of the group. All containers are stopped even if some fail to stop.
+     * 
+     * @throws ContainerException If any container fails to stop.
+     */
+    public void stop() throws ContainerException
+    {
+        Map<LocalContainer, List<LocalContainer>> dependents =
+            new LinkedHashMap<LocalContainer, List<LocalContainer>>();
+        for (LocalContainer container : this.containers.keySet())
+        {
+            dependents.put(container, new ArrayList<LocalContainer>());
+        }
+        for (Map.Entry<LocalContainer, List<LocalContainer>> container
+            : this.containers.entrySet())
+        {
+            for (LocalContainer dependency : container.getValue())
+            {
+                dependents.get(dependency).add(container.getKey());
+            }
+        }
+
+        List<LocalContainer> order = getContainers();
+        Collections.reverse(order);
+        run(order, dependents, false, new ArrayList<LocalContainer>());
+    }
+
+    /**
+     * Starts or stops containers in parallel.
+     * 
+     * @param order Containers, each of them after the containers it waits for.
+     * @param waitFor Containers each container waits for.
+     * @param starting <code>true</code> to start the containers, <code>false</code> to stop them.
+     * @param succeeded Filled with the containers which have been started or stopped. When
+     * starting is interrupted, the containers which were still starting are added too.
+     * @throws ContainerException If any container fails to start or to stop, or if waiting for
+     * them is interrupted, in which case the interrupt flag is set.
+     */
+    private void run(List<LocalContainer> order, Map<LocalContainer, List<LocalContainer>> waitFor,
+        final boolean starting, List<LocalContainer> succeeded) throws ContainerException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, order.size()));
+        Map<LocalContainer, Future<Void>> futures =
+            new LinkedHashMap<LocalContainer, Future<Void>>();
+        final Set<LocalContainer> attempted =
+            Collections.synchronizedSet(new LinkedHashSet<LocalContainer>());
+        try
+        {
+            for (final LocalContainer container : order)
+            {
+                final List<Future<Void>> awaited = new ArrayList<Future<Void>>();
+                for (LocalContainer other : waitFor.get(container))
+                {
+                    awaited.add(futures.get(other));
+                }
+                futures.put(container, executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        for (Future<Void> future : awaited)
+                        {
+                            try
+                            {
+                                future.get();
+                            }
+                            catch (ExecutionException e)
+                            {
+                                // A container fails to start if the ones it depends on did,
+                                // whereas it is stopped whatever happened to its dependents
+                                if (starting)
+                                {
+                                    throw e;
+                                }
+                            }
+                        }
+                        attempted.add(container);
+                        if (starting)
+                        {
+                            container.start();
+                        }
+                        else
+                        {
+                            container.stop();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            // Containers are listed after the ones they wait for, hence the first failure found
+            // is the one which has made the others fail
+            ContainerException failure = null;
+            for (Map.Entry<LocalContainer, Future<Void>> future : futures.entrySet())
+            {
+                try
+                {
+                    future.getValue().get();
+                    succeeded.add(future.getKey());
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = new ContainerException("Failed to "
+                            + (starting ? "start" : "stop") + " container ["
+                                + future.getKey().getName() + "]", e.getCause());
+                    }
+                }
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Interrupt the containers still starting or stopping, and the ones waiting for them
+            for (Future<Void> future : futures.values())
+            {
+                future.cancel(true);
+            }
+            awaitCancellation(executor);
+            if (starting)
+            {
+                // Containers interrupted while starting may have been partly started
+                synchronized (attempted)
+                {
+                    for (LocalContainer container : attempted)
+                    {
+                        if (!succeeded.contains(container))
+                        {
+                            succeeded.add(container);
+                        }
+                    }
+                }
+            }
+            Thread.currentThread().interrupt();
+            throw new ContainerException("Interrupted while waiting for the containers to "
+                + (starting ? "start" : "stop"), e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the cancelled containers to give up starting or stopping, for at most
+     * {@link #CANCEL_TIMEOUT} milliseconds. Interrupts are ignored while waiting.
+     * 
+     * @param executor Executor running the cancelled containers.
+     */
+    private void awaitCancellation(ExecutorService executor)
+    {
+        executor.shutdownNow();
+        long deadline = System.currentTimeMillis() + CANCEL_TIMEOUT;
+        long remaining = CANCEL_TIMEOUT;
+        while (remaining > 0)
+        {
+            try
+            {
+                if (executor.awaitTermination(remaining, TimeUnit.MILLISECONDS))
+                {
+                    return;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // Keep waiting, the caller restores the interrupt
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        getLogger().warn("Containers still starting or stopping after having been interrupted",
+            this.getClass().getName());
+    }
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.generic.internal.util.ContainerIdentity;
@@ -42,6 +43,13 @@ public abstract class AbstractGenericHintFactory<T> extends LoggedObject
      */
     private Map<RegistrationKey, Class<? extends T>> mappings;
 
+    /**
+     * Constructors resolved with {@link #getConstructor(Class, String, GenericParameters)}, so
+     * that creating many instances of the same implementation resolves its constructor only once.
+     */
+    private Map<RegistrationKey, Constructor<? extends T>> constructors =
+        new ConcurrentHashMap<RegistrationKey, Constructor<? extends T>>();
+
     /**
      * Generic class to be extended by implementors of {@link AbstractGenericHintFactory} in order
      * to provide possible additional parameters.
@@ -95,6 +103,7 @@ public abstract class AbstractGenericHintFactory<T> extends LoggedObject
         Class<? extends T> implementationClass)
     {
         getMappings().put(key, implementationClass);
+        this.constructors.remove(key);
     }
 
     /**
@@ -143,8 +152,14 @@ public abstract class AbstractGenericHintFactory<T> extends LoggedObject
         T implementation;
         try
         {
-            Constructor< ? extends T> constructor =
-                getConstructor(implementationClass, key.getHint(), parameters);
+            // Check the cached constructor is still the one of the registered class, as mappings
+            // can also be modified directly
+            Constructor< ? extends T> constructor = this.constructors.get(key);
+            if (constructor == null || constructor.getDeclaringClass() != implementationClass)
+            {
+                constructor = getConstructor(implementationClass, key.getHint(), parameters);
+                this.constructors.put(key, constructor);
+            }
             implementation = createInstance(constructor, key.getHint(), parameters);
         }
         catch (Exception e)
@@ -158,7 +173,8 @@ public abstract class AbstractGenericHintFactory<T> extends LoggedObject
     }
 
     /**
-     * Create a constructor.
+     * Create a constructor. Constructors are cached per registration key, hence the constructor
+     * returned must only depend on the implementation class and on the hint.
      * 
      * @param implementationClass implementation class for which to create the constructor
      * @param hint the hint to differentiate this implementation class from others
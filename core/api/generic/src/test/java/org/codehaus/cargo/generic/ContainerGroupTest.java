@@ -0,0 +1,211 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.generic;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.State;
+import org.codehaus.cargo.container.stub.EmbeddedLocalContainerStub;
+
+/**
+ * Unit tests for {@link ContainerGroup}.
+ */
+public class ContainerGroupTest extends TestCase
+{
+    /**
+     * Start and stop events, in the order they happened.
+     */
+    private List<String> events = new CopyOnWriteArrayList<String>();
+
+    /**
+     * Test that independent containers start in parallel and dependent ones after their
+     * dependencies.
+     */
+    public void testStartWithDependencies()
+    {
+        SlowContainer database = new SlowContainer("database", false);
+        SlowContainer backend = new SlowContainer("backend", false);
+        SlowContainer frontend = new SlowContainer("frontend", false);
+        ContainerGroup group = new ContainerGroup();
+        group.addContainer(database);
+        group.addContainer(backend);
+        group.addContainer(frontend, database, backend);
+
+        long start = System.currentTimeMillis();
+        group.start();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(State.STARTED, frontend.getState());
+        assertEquals("started frontend", this.events.get(2));
+        assertTrue("Starting took " + elapsed + " ms", elapsed < 900L);
+
+        this.events.clear();
+        group.stop();
+        assertEquals("stopped frontend", this.events.get(0));
+        assertEquals(State.STOPPED, database.getState());
+        assertEquals(State.STOPPED, backend.getState());
+    }
+
+    /**
+     * Test that a failure to start fails the dependent containers and stops the started ones.
+     */
+    public void testStartFailure()
+    {
+        SlowContainer database = new SlowContainer("database", true);
+        SlowContainer cache = new SlowContainer("cache", false);
+        SlowContainer frontend = new SlowContainer("frontend", false);
+        ContainerGroup group = new ContainerGroup();
+        group.addContainer(database);
+        group.addContainer(cache);
+        group.addContainer(frontend, database);
+
+        try
+        {
+            group.start();
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("[database]"));
+        }
+        assertFalse(this.events.contains("started frontend"));
+        assertEquals(State.STOPPED, cache.getState());
+    }
+
+    /**
+     * Test that interrupting the start stops the containers which were still starting, and does
+     * not start the ones waiting for them.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStartInterrupted() throws Exception
+    {
+        SlowContainer database = new SlowContainer("database", false);
+        SlowContainer frontend = new SlowContainer("frontend", false);
+        final ContainerGroup group = new ContainerGroup();
+        group.addContainer(database);
+        group.addContainer(frontend, database);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    group.start();
+                }
+                catch (ContainerException e)
+                {
+                    failure.set(e);
+                }
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        };
+        thread.start();
+        Thread.sleep(100);
+        thread.interrupt();
+        thread.join(10000);
+
+        assertNotNull("No exception thrown", failure.get());
+        assertTrue("Interrupt not restored", interrupted.get());
+        assertTrue(this.events.toString(), this.events.contains("stopped database"));
+        assertFalse(this.events.contains("started frontend"));
+        assertEquals(State.STOPPED, frontend.getState());
+    }
+
+    /**
+     * Test that dependencies must be added first.
+     */
+    public void testUnknownDependency()
+    {
+        try
+        {
+            new ContainerGroup().addContainer(new SlowContainer("frontend", false),
+                new SlowContainer("backend", false));
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("[backend]"));
+        }
+    }
+
+    /**
+     * Container taking some time to start.
+     */
+    private class SlowContainer extends EmbeddedLocalContainerStub
+    {
+        /**
+         * Whether starting fails.
+         */
+        private boolean failing;
+
+        /**
+         * @param name Container name.
+         * @param failing Whether starting fails.
+         */
+        public SlowContainer(String name, boolean failing)
+        {
+            setName(name);
+            setState(State.STOPPED);
+            this.failing = failing;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start()
+        {
+            try
+            {
+                Thread.sleep(300);
+            }
+            catch (InterruptedException e)
+            {
+                throw new ContainerException("Interrupted", e);
+            }
+            if (this.failing)
+            {
+                throw new ContainerException("Cannot start " + getName());
+            }
+            setState(State.STARTED);
+            events.add("started " + getName());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void stop()
+        {
+            setState(State.STOPPED);
+            events.add("stopped " + getName());
+        }
+    }
+}
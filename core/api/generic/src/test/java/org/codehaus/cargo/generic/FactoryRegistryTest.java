@@ -58,4 +58,17 @@ public class FactoryRegistryTest extends TestCase
             ContainerType.INSTALLED, ConfigurationType.STANDALONE);
         assertTrue(cc instanceof SuperConfigurationCapability);
     }
+
+    /**
+     * Test that the factory registries are discovered only once.
+     */
+    public void testDiscoveryIsCached()
+    {
+        new DefaultDeployableFactory(getClass().getClassLoader());
+        int instances = TestFactoryRegistry.getInstances();
+        DefaultDeployableFactory f = new DefaultDeployableFactory(getClass().getClassLoader());
+        assertEquals(instances, TestFactoryRegistry.getInstances());
+        assertTrue(f.createDeployable("super-container", ".", DeployableType.WAR)
+            instanceof SuperContainerWar);
+    }
 }
@@ -33,6 +33,30 @@ import org.codehaus.cargo.generic.packager.PackagerFactory;
  */
 public class TestFactoryRegistry extends AbstractFactoryRegistry
 {
+    /**
+     * Number of instances created.
+     */
+    private static int instances;
+
+    /**
+     * Counts the instances created.
+     */
+    public TestFactoryRegistry()
+    {
+        synchronized (TestFactoryRegistry.class)
+        {
+            instances++;
+        }
+    }
+
+    /**
+     * @return Number of instances created.
+     */
+    public static synchronized int getInstances()
+    {
+        return instances;
+    }
+
     @Override
     protected void register(DeployableFactory factory)
     {
@@ -24,6 +24,7 @@ import junit.framework.TestCase;
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployable.DeployableType;
 import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.generic.SuperContainerWar;
 
 /**
  * Unit tests for {@link DefaultDeployableFactory}.
@@ -40,4 +41,22 @@ public class DefaultDeployableFactoryTest extends TestCase
             DeployableType.WAR);
         assertTrue(deployable instanceof WAR);
     }
+
+    /**
+     * Test that registering another implementation replaces the one created before.
+     */
+    public void testReregisterDeployable()
+    {
+        DeployableFactory factory = new DefaultDeployableFactory();
+        factory.registerDeployable("any container", DeployableType.WAR, WAR.class);
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals("some/deployable" + i, factory.createDeployable("any container",
+                "some/deployable" + i, DeployableType.WAR).getFile());
+        }
+
+        factory.registerDeployable("any container", DeployableType.WAR, SuperContainerWar.class);
+        assertTrue(factory.createDeployable("any container", "some/deployable",
+            DeployableType.WAR) instanceof SuperContainerWar);
+    }
 }
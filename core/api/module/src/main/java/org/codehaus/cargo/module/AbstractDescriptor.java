@@ -23,12 +23,16 @@
 package org.codehaus.cargo.module;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.jdom.Comment;
 import org.jdom.Content;
 import org.jdom.Document;
 import org.jdom.Element;
+import org.jdom.Parent;
 
 /**
  * Encapsulates the DOM representation of a deployment descriptor to provide convenience methods for
@@ -322,6 +326,147 @@ public abstract class AbstractDescriptor extends Document implements Descriptor
         return importedNode;
     }
 
+    /**
+     * Adds elements of the specified tag to the descriptor, in the same way as
+     * {@link #addElement(DescriptorTag, Element, Element)} does for each of them. Elements already
+     * in the parent are looked up in a hash set rather than compared with each child of the parent,
+     * so that adding many elements scales linearly. When {@link #supportsElementKeys()} returns
+     * <code>false</code>, each element is added with
+     * {@link #addElement(DescriptorTag, Element, Element)} instead.
+     * 
+     * @param tag The descriptor tag
+     * @param children The child elements to add, in order
+     * @param parent The parent element to add the children to
+     */
+    public void addElements(DescriptorTag tag, List<Element> children, Element parent)
+    {
+        if (!supportsElementKeys())
+        {
+            for (Element child : new ArrayList<Element>(children))
+            {
+                addElement(tag, child, parent);
+            }
+            return;
+        }
+
+        List<Element> elements = new ArrayList<Element>(children);
+        Set<Element> added = new HashSet<Element>(elements);
+        Set<String> keys = new HashSet<String>();
+        for (Element element : (List<Element>) parent.getChildren())
+        {
+            if (!added.contains(element))
+            {
+                keys.add(getElementKey(element));
+            }
+        }
+
+        // Detach the children with one pass over each of their parents, as detaching them one by
+        // one searches the content of their parent each time
+        Set<Parent> parents = new HashSet<Parent>();
+        for (Element child : elements)
+        {
+            if (child.getParent() != null && parents.add(child.getParent()))
+            {
+                for (Iterator<Content> it = child.getParent().getContent().iterator();
+                    it.hasNext();)
+                {
+                    if (added.contains(it.next()))
+                    {
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        // Elements of the tag do not change the insertion point, so compute it once
+        Element refNode = getInsertionPointFor(tag, parent.getName());
+        int idx = parent.getContent().indexOf(refNode);
+        if (idx != -1)
+        {
+            // Navigate backwards if the previous item is a comment
+            while (idx > 0 && parent.getContent(idx - 1) instanceof Comment)
+            {
+                idx--;
+            }
+        }
+
+        for (Element child : elements)
+        {
+            if (keys.add(getElementKey(child)))
+            {
+                if (idx == -1)
+                {
+                    parent.addContent(child);
+                }
+                else
+                {
+                    parent.addContent(idx, child);
+                    idx++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether elements can be looked up by key when adding them with
+     * {@link #addElements(DescriptorTag, List, Element)}. The keys match the
+     * {@link #sameElement(Element, Element)} and {@link #sameContent(Element, Element)} methods of
+     * this class: descriptors overriding how elements are added or compared must override this
+     * method and return <code>false</code>.
+     * 
+     * @return Whether elements can be looked up by key, <code>true</code> by default.
+     */
+    protected boolean supportsElementKeys()
+    {
+        return true;
+    }
+
+    /**
+     * Computes a key for an element, equal for two elements if and only if they are the same as
+     * defined by {@link #sameElement(Element, Element)} in this class.
+     * 
+     * @param element Element.
+     * @return Key for <code>element</code>.
+     */
+    private String getElementKey(Element element)
+    {
+        StringBuilder key = new StringBuilder();
+        appendElementKey(element, key);
+        return key.toString();
+    }
+
+    /**
+     * Appends the key of an element, each name and value being prefixed with its length so that
+     * keys cannot be ambiguous.
+     * 
+     * @param element Element.
+     * @param key Key being built.
+     */
+    private void appendElementKey(Element element, StringBuilder key)
+    {
+        key.append(element.getName().length()).append(':').append(element.getName());
+        List<Element> children = element.getChildren();
+        if (children.isEmpty())
+        {
+            key.append('[');
+            for (Content content : getContentExceptComments(element))
+            {
+                String value = content.getValue();
+                key.append(value.length()).append(':').append(value);
+            }
+            key.append(']');
+        }
+        else
+        {
+            key.append('(').append(children.size()).append(';');
+            for (Element child : children)
+            {
+                appendElementKey(child, key);
+            }
+            key.append(')');
+        }
+    }
+
     /**
      * Checks if <code>haystack</code> contains <code>needle</code>.
      * @param haystack List of element to look into.
@@ -384,6 +529,14 @@ public abstract class AbstractDescriptor extends Document implements Descriptor
      */
     protected boolean sameContent(Element element1, Element element2)
     {
+        if (element1.getContentSize() == 1 && element2.getContentSize() == 1
+            && !(element1.getContent(0) instanceof Comment)
+            && !(element2.getContent(0) instanceof Comment))
+        {
+            // Most elements only contain text, compare it without copying the content lists
+            return element1.getContent(0).getValue().equals(element2.getContent(0).getValue());
+        }
+
         List<Content> content1 = getContentExceptComments(element1);
         List<Content> content2 = getContentExceptComments(element2);
         if (content1.size() != content2.size())
@@ -450,12 +603,10 @@ public abstract class AbstractDescriptor extends Document implements Descriptor
                 for (int j = i + 1; j < elementOrder.size(); j++)
                 {
                     DescriptorTag theTag = elementOrder.get(j);
-                    List<Element> elements =
-                        getRootElement().getChildren(
-                            theTag.getTagName(), theTag.getTagNamespace());
-                    if (elements.size() > 0)
+                    Element result =
+                        getRootElement().getChild(theTag.getTagName(), theTag.getTagNamespace());
+                    if (result != null)
                     {
-                        Element result = elements.get(0);
                         return result;
                     }
                 }
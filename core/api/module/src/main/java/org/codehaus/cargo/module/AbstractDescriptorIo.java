@@ -117,7 +117,8 @@ public abstract class AbstractDescriptorIo implements DescriptorIo
     }
 
     /**
-     * Create a document from the input stream and resolver.
+     * Create a document from the input stream and resolver. The document is parsed with the SAX
+     * builder of the current thread for this descriptor type, see {@link SAXBuilderCache}.
      * 
      * @param input the input stream
      * @param resolver entity resolver, or null
@@ -129,7 +130,18 @@ public abstract class AbstractDescriptorIo implements DescriptorIo
     public Document parseXml(InputStream input, EntityResolver resolver)
         throws JDOMException, IOException
     {
-        SAXBuilder builder = createDocumentBuilder(resolver);
+        EntityResolver entityResolver = resolver;
+        if (entityResolver == null)
+        {
+            entityResolver = getEntityResolver();
+        }
+        if (entityResolver == null)
+        {
+            entityResolver = new XmlEntityResolver();
+        }
+
+        SAXBuilder builder =
+            SAXBuilderCache.getBuilder(this.factory.getJDOMFactory(), entityResolver);
         return builder.build(input);
     }
 
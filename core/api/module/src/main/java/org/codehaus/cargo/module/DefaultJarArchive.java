@@ -85,6 +85,14 @@ public class DefaultJarArchive implements JarArchive
         this.content = streamToByteArray(inputStream);
     }
 
+    /**
+     * @return the archive file, <code>null</code> if the archive has been read from a stream.
+     */
+    public String getSourceFile()
+    {
+        return this.sourceFile;
+    }
+
     /**
      * @return the file utility class to use for performing all file I/O.
      */
@@ -23,15 +23,18 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
+import org.codehaus.cargo.util.XmlFactoryCache;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXNotRecognizedException;
@@ -39,10 +42,17 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.ext.DeclHandler;
 
 /**
- * Contains methods for getting information from a dtd.
+ * Contains methods for getting information from a dtd. Each DTD is parsed once, and its element
+ * orders shared by all instances for the same DTD.
  */
 public class Dtd implements Grammar
 {
+    /**
+     * Element orders of the DTDs parsed so far, indexed by DTD path.
+     */
+    private static final ConcurrentMap<String, Map<String, List<DescriptorTag>>> REGISTRY =
+        new ConcurrentHashMap<String, Map<String, List<DescriptorTag>>>();
+
     /**
      * Map containing all possible tag name as keys and the tags that they can contain as a List of
      * {@link DescriptorTag}s. The list is ordered in the order that the tag can appear accordingly
@@ -104,7 +114,7 @@ public class Dtd implements Grammar
                     elements.add(tag);
                 }
             }
-            this.elementOrders.put(name, elements);
+            this.elementOrders.put(name, Collections.unmodifiableList(elements));
         }
 
         /**
@@ -141,11 +151,31 @@ public class Dtd implements Grammar
      * @param dtdPath path (URL) of the dtd to parse
      */
     public Dtd(String dtdPath)
+    {
+        Map<String, List<DescriptorTag>> parsed = REGISTRY.get(dtdPath);
+        if (parsed == null)
+        {
+            parsed = parse(dtdPath);
+            Map<String, List<DescriptorTag>> previous = REGISTRY.putIfAbsent(dtdPath, parsed);
+            if (previous != null)
+            {
+                parsed = previous;
+            }
+        }
+        this.elementOrders = parsed;
+    }
+
+    /**
+     * Parses a DTD.
+     * 
+     * @param dtdPath path (URL) of the dtd to parse
+     * @return Element orders of the DTD.
+     */
+    private static Map<String, List<DescriptorTag>> parse(String dtdPath)
     {
         try
         {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser parser = factory.newSAXParser();
+            SAXParser parser = XmlFactoryCache.getSAXParserFactory().newSAXParser();
             XMLReader reader = parser.getXMLReader();
             reader.setEntityResolver(new XmlEntityResolver());
             DtdHandler dtdHandler = new DtdHandler();
@@ -161,7 +191,7 @@ public class Dtd implements Grammar
             String xml = "<!DOCTYPE dummy SYSTEM \"" + dtdPath + "\"><dummy/>";
             reader.parse(
                 new InputSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
-            this.elementOrders = dtdHandler.getElementOrders();
+            return Collections.unmodifiableMap(dtdHandler.getElementOrders());
         }
         catch (IOException|ParserConfigurationException|SAXException e)
         {
@@ -0,0 +1,615 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Jar archive which reads the zip central directory once into an index of entries, so that
+ * looking up an entry does not require reading the archive sequentially. Archives on disk are
+ * read using a {@link ZipFile}, opened for each operation so that no file handle is kept open;
+ * archives in memory (for example JARs nested in a WAR) have their central directory parsed
+ * directly from memory and their entries are only inflated when read. The index is built on first
+ * use.
+ */
+public class IndexedJarArchive implements JarArchive
+{
+    /**
+     * Signature of the zip end of central directory record.
+     */
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    /**
+     * Signature of a zip central directory file header.
+     */
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+
+    /**
+     * Signature of a zip local file header.
+     */
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+    /**
+     * Size of the fixed part of the end of central directory record.
+     */
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    /**
+     * Size of the fixed part of a central directory file header.
+     */
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
+    /**
+     * Size of the fixed part of a local file header.
+     */
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+
+    /**
+     * Maximum length of the zip file comment.
+     */
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    /**
+     * The archive, if on disk.
+     */
+    private File sourceFile;
+
+    /**
+     * The content of the archive, if in memory.
+     */
+    private byte[] content;
+
+    /**
+     * Entries of the archive, in the order of the archive. <code>null</code> until indexed.
+     */
+    private Map<String, IndexEntry> entries;
+
+    /**
+     * Path of the first entry with a given file name, indexed by file name.
+     */
+    private Map<String, String> pathsByName;
+
+    /**
+     * File utility class to use for expanding the archive.
+     */
+    private FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * Constructor.
+     *
+     * @param file The archive file
+     */
+    public IndexedJarArchive(File file)
+    {
+        if (file == null)
+        {
+            throw new NullPointerException();
+        }
+        this.sourceFile = file;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputStream The input stream for the archive (it will be closed after the constructor
+     * returns)
+     * @throws java.io.IOException If there was a problem reading the archive
+     */
+    public IndexedJarArchive(InputStream inputStream) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[40960];
+            int bytesRead = inputStream.read(buffer);
+            while (bytesRead != -1)
+            {
+                baos.write(buffer, 0, bytesRead);
+                bytesRead = inputStream.read(buffer);
+            }
+            this.content = baos.toByteArray();
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @return the file utility class to use for expanding the archive.
+     */
+    public FileHandler getFileHandler()
+    {
+        return this.fileHandler;
+    }
+
+    /**
+     * @param fileHandler the file utility class to use for expanding the archive.
+     */
+    public void setFileHandler(FileHandler fileHandler)
+    {
+        this.fileHandler = fileHandler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsClass(String className) throws IOException
+    {
+        return getEntries().containsKey(className.replace('.', '/') + ".class");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String findResource(String name) throws IOException
+    {
+        getEntries();
+        return this.pathsByName.get(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getResource(String path) throws IOException
+    {
+        IndexEntry entry = getEntries().get(path);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        if (this.content == null)
+        {
+            try (ZipFile zipFile = new ZipFile(this.sourceFile))
+            {
+                return new ByteArrayInputStream(read(zipFile, path));
+            }
+        }
+        return new ByteArrayInputStream(read(entry));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getResources(String path) throws IOException
+    {
+        String normalizedPath = path;
+        if (!path.endsWith("/") && !path.equals(""))
+        {
+            normalizedPath = path + "/";
+        }
+
+        List<String> resources = new ArrayList<String>();
+        for (String name : getEntries().keySet())
+        {
+            if (name.startsWith(normalizedPath) && !name.equals(normalizedPath))
+            {
+                resources.add(name);
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void expandToPath(String path) throws IOException
+    {
+        expandToPath(path, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void expandToPath(String path, FileFilter filter) throws IOException
+    {
+        ZipFile zipFile = null;
+        if (this.content == null)
+        {
+            zipFile = new ZipFile(this.sourceFile);
+        }
+        try
+        {
+            for (Map.Entry<String, IndexEntry> entry : getEntries().entrySet())
+            {
+                String entryName = entry.getKey();
+                String outFile = getFileHandler().append(path, entryName);
+
+                if (filter == null || filter.accept(new File(entryName)))
+                {
+                    if (outFile.endsWith("/"))
+                    {
+                        getFileHandler().mkdirs(outFile);
+                    }
+                    else
+                    {
+                        String parent = getFileHandler().getParent(outFile);
+                        if (!getFileHandler().exists(parent))
+                        {
+                            getFileHandler().mkdirs(parent);
+                        }
+
+                        byte[] data;
+                        if (zipFile != null)
+                        {
+                            data = read(zipFile, entryName);
+                        }
+                        else
+                        {
+                            data = read(entry.getValue());
+                        }
+                        try (OutputStream out = getFileHandler().getOutputStream(outFile))
+                        {
+                            out.write(data);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if (zipFile != null)
+            {
+                zipFile.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the index of entries, building it if needed. In order to behave like
+     * {@link DefaultJarArchive}, the manifest and its directory are not considered as entries if
+     * at the beginning of the archive, as with a JarInputStream.
+     *
+     * @return Entries of the archive, indexed by path.
+     * @throws IOException If the archive cannot be read.
+     */
+    private synchronized Map<String, IndexEntry> getEntries() throws IOException
+    {
+        if (this.entries == null)
+        {
+            Map<String, IndexEntry> index;
+            if (this.content == null)
+            {
+                index = indexFile();
+            }
+            else
+            {
+                index = indexContent();
+                if (index == null)
+                {
+                    index = indexContentSequentially();
+                }
+            }
+
+            Iterator<String> first = index.keySet().iterator();
+            String name = first.hasNext() ? first.next() : null;
+            if ("META-INF/".equalsIgnoreCase(name))
+            {
+                first.remove();
+                name = first.hasNext() ? first.next() : null;
+            }
+            if (JarFile.MANIFEST_NAME.equalsIgnoreCase(name))
+            {
+                first.remove();
+            }
+
+            Map<String, String> names = new HashMap<String, String>();
+            for (String entryPath : index.keySet())
+            {
+                String entryName = entryPath.substring(entryPath.lastIndexOf('/') + 1);
+                if (!names.containsKey(entryName))
+                {
+                    names.put(entryName, entryPath);
+                }
+            }
+
+            this.pathsByName = names;
+            this.entries = index;
+        }
+        return this.entries;
+    }
+
+    /**
+     * Indexes an archive on disk.
+     *
+     * @return Entries of the archive.
+     * @throws IOException If the archive cannot be read.
+     */
+    private Map<String, IndexEntry> indexFile() throws IOException
+    {
+        Map<String, IndexEntry> index = new LinkedHashMap<String, IndexEntry>();
+        try (ZipFile zipFile = new ZipFile(this.sourceFile))
+        {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements())
+            {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                if (!index.containsKey(zipEntry.getName()))
+                {
+                    index.put(zipEntry.getName(), new IndexEntry());
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Indexes an archive in memory by parsing its central directory.
+     *
+     * @return Entries of the archive, <code>null</code> if the central directory cannot be parsed
+     * (for example because of ZIP64 extensions).
+     */
+    private Map<String, IndexEntry> indexContent()
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(this.content).order(ByteOrder.LITTLE_ENDIAN);
+
+        int end = -1;
+        int lowest = Math.max(0,
+            this.content.length - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_SIZE);
+        for (int i = this.content.length - END_OF_CENTRAL_DIRECTORY_SIZE; i >= lowest; i--)
+        {
+            if (buffer.getInt(i) == END_OF_CENTRAL_DIRECTORY)
+            {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1)
+        {
+            return null;
+        }
+
+        int count = buffer.getShort(end + 10) & 0xffff;
+        long offset = buffer.getInt(end + 16) & 0xffffffffL;
+        if (count == 0xffff || offset >= this.content.length)
+        {
+            return null;
+        }
+
+        Map<String, IndexEntry> index = new LinkedHashMap<String, IndexEntry>();
+        int position = (int) offset;
+        for (int i = 0; i < count; i++)
+        {
+            if (position + CENTRAL_DIRECTORY_HEADER_SIZE > this.content.length
+                || buffer.getInt(position) != CENTRAL_DIRECTORY_HEADER)
+            {
+                return null;
+            }
+
+            IndexEntry entry = new IndexEntry();
+            entry.method = buffer.getShort(position + 10) & 0xffff;
+            entry.compressedSize = buffer.getInt(position + 20) & 0xffffffffL;
+            entry.size = buffer.getInt(position + 24) & 0xffffffffL;
+            int nameLength = buffer.getShort(position + 28) & 0xffff;
+            int extraLength = buffer.getShort(position + 30) & 0xffff;
+            int commentLength = buffer.getShort(position + 32) & 0xffff;
+            entry.localHeaderOffset = buffer.getInt(position + 42) & 0xffffffffL;
+            if (entry.localHeaderOffset >= this.content.length
+                || entry.compressedSize >= this.content.length
+                || entry.size >= Integer.MAX_VALUE)
+            {
+                return null;
+            }
+
+            String name = new String(this.content, position + CENTRAL_DIRECTORY_HEADER_SIZE,
+                nameLength, StandardCharsets.UTF_8);
+            if (!index.containsKey(name))
+            {
+                index.put(name, entry);
+            }
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return index;
+    }
+
+    /**
+     * Indexes an archive in memory by reading it sequentially, keeping the inflated entries.
+     * Only used when the central directory cannot be parsed.
+     *
+     * @return Entries of the archive.
+     * @throws IOException If the archive cannot be read.
+     */
+    private Map<String, IndexEntry> indexContentSequentially() throws IOException
+    {
+        Map<String, IndexEntry> index = new LinkedHashMap<String, IndexEntry>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(this.content)))
+        {
+            ZipEntry zipEntry = in.getNextEntry();
+            while (zipEntry != null)
+            {
+                if (!index.containsKey(zipEntry.getName()))
+                {
+                    ByteArrayOutputStream data = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int bytesRead = in.read(buffer);
+                    while (bytesRead != -1)
+                    {
+                        data.write(buffer, 0, bytesRead);
+                        bytesRead = in.read(buffer);
+                    }
+
+                    IndexEntry entry = new IndexEntry();
+                    entry.data = data.toByteArray();
+                    index.put(zipEntry.getName(), entry);
+                }
+                zipEntry = in.getNextEntry();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reads an entry of an archive on disk.
+     *
+     * @param zipFile Archive.
+     * @param path Path of the entry.
+     * @return Contents of the entry.
+     * @throws IOException If the entry cannot be read.
+     */
+    private byte[] read(ZipFile zipFile, String path) throws IOException
+    {
+        ZipEntry zipEntry = zipFile.getEntry(path);
+        ByteArrayOutputStream data = new ByteArrayOutputStream(
+            zipEntry.getSize() > 0 ? (int) zipEntry.getSize() : 32);
+        try (InputStream in = zipFile.getInputStream(zipEntry))
+        {
+            byte[] buffer = new byte[8192];
+            int bytesRead = in.read(buffer);
+            while (bytesRead != -1)
+            {
+                data.write(buffer, 0, bytesRead);
+                bytesRead = in.read(buffer);
+            }
+        }
+        return data.toByteArray();
+    }
+
+    /**
+     * Reads an entry of an archive in memory, inflating it if needed.
+     *
+     * @param entry Entry to read.
+     * @return Contents of the entry.
+     * @throws IOException If the entry cannot be read.
+     */
+    private byte[] read(IndexEntry entry) throws IOException
+    {
+        if (entry.data != null)
+        {
+            return entry.data;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(this.content).order(ByteOrder.LITTLE_ENDIAN);
+        int local = (int) entry.localHeaderOffset;
+        if (buffer.getInt(local) != LOCAL_FILE_HEADER)
+        {
+            throw new IOException("Invalid local file header at offset " + local);
+        }
+        int dataOffset = local + LOCAL_FILE_HEADER_SIZE
+            + (buffer.getShort(local + 26) & 0xffff) + (buffer.getShort(local + 28) & 0xffff);
+        int compressedSize = (int) entry.compressedSize;
+
+        if (entry.method == ZipEntry.STORED)
+        {
+            byte[] data = new byte[compressedSize];
+            System.arraycopy(this.content, dataOffset, data, 0, compressedSize);
+            return data;
+        }
+        else if (entry.method != ZipEntry.DEFLATED)
+        {
+            throw new IOException("Unsupported compression method " + entry.method);
+        }
+
+        byte[] data = new byte[(int) entry.size];
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(this.content, dataOffset, compressedSize);
+            int inflated = 0;
+            boolean dummyByte = false;
+            while (inflated < data.length && !inflater.finished())
+            {
+                int bytesInflated = inflater.inflate(data, inflated, data.length - inflated);
+                if (bytesInflated == 0 && inflater.needsInput())
+                {
+                    if (dummyByte)
+                    {
+                        throw new IOException("Truncated entry at offset " + local);
+                    }
+                    // Inflater in nowrap mode might need an extra dummy byte
+                    inflater.setInput(new byte[1]);
+                    dummyByte = true;
+                }
+                inflated += bytesInflated;
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Invalid compressed entry at offset " + local, e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+        return data;
+    }
+
+    /**
+     * Entry of the index.
+     */
+    private static class IndexEntry
+    {
+        /**
+         * Offset of the local file header, for archives in memory.
+         */
+        private long localHeaderOffset;
+
+        /**
+         * Compression method, for archives in memory.
+         */
+        private int method;
+
+        /**
+         * Compressed size, for archives in memory.
+         */
+        private long compressedSize;
+
+        /**
+         * Uncompressed size, for archives in memory.
+         */
+        private long size;
+
+        /**
+         * Inflated contents, if already read.
+         */
+        private byte[] data;
+    }
+}
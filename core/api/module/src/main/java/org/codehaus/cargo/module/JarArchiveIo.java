@@ -22,6 +22,11 @@ package org.codehaus.cargo.module;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
 
 /**
  * Utility IO class for constructing Jar Archives. Use this class in preference to the concrete
@@ -46,7 +51,68 @@ public class JarArchiveIo
      */
     public static JarArchive open(String file) throws IOException
     {
-        return new DefaultJarArchive(file);
+        return open(file, new DefaultFileHandler());
+    }
+
+    /**
+     * Open a jar archive, read through the given file handler. Archives which are local files are
+     * read with random access, other archives are read in memory.
+     * 
+     * @param file Input File
+     * @param fileHandler File handler to read the archive with
+     * @return WarArchive
+     * @throws IOException if an IO error occurs
+     */
+    public static JarArchive open(String file, FileHandler fileHandler) throws IOException
+    {
+        if (file == null || !fileHandler.exists(file) || fileHandler.isDirectory(file))
+        {
+            DefaultJarArchive jarArchive = new DefaultJarArchive(file);
+            jarArchive.setFileHandler(fileHandler);
+            return jarArchive;
+        }
+
+        IndexedJarArchive jarArchive;
+        File localFile = getLocalFile(file, fileHandler);
+        if (localFile != null)
+        {
+            jarArchive = new IndexedJarArchive(localFile);
+        }
+        else
+        {
+            jarArchive = new IndexedJarArchive(fileHandler.getInputStream(file));
+        }
+        jarArchive.setFileHandler(fileHandler);
+        return jarArchive;
+    }
+
+    /**
+     * Returns the local file a path of a file handler designates, so that it can be read with
+     * random access.
+     * 
+     * @param file Path of an existing file
+     * @param fileHandler File handler the path belongs to
+     * @return Local file, <code>null</code> if the path is not on the local file system
+     */
+    private static File getLocalFile(String file, FileHandler fileHandler)
+    {
+        try
+        {
+            URI uri = new URI(fileHandler.getURL(file));
+            if ("file".equals(uri.getScheme()))
+            {
+                File localFile = new File(uri);
+                if (localFile.isFile())
+                {
+                    return localFile;
+                }
+            }
+        }
+        catch (URISyntaxException | IllegalArgumentException e)
+        {
+            // Not a local file
+        }
+        return null;
     }
 
     /**
@@ -58,7 +124,7 @@ public class JarArchiveIo
      */
     public static JarArchive open(InputStream is) throws IOException
     {
-        return new DefaultJarArchive(is);
+        return new IndexedJarArchive(is);
     }
 
     /**
@@ -70,7 +136,7 @@ public class JarArchiveIo
      */
     public static JarArchive open(File f) throws IOException
     {
-        return new DefaultJarArchive(f.getAbsolutePath());
+        return open(f.getAbsolutePath());
     }
 
 }
@@ -0,0 +1,477 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Copies a zip archive to a new archive, replacing some of its entries, without inflating and
+ * deflating the entries which are kept: their local headers and compressed data are transferred
+ * as-is from the source file, and their central directory records are reused with updated
+ * offsets. Only the new entries are compressed. ZIP64 archives and archives with data before the
+ * first entry are not supported, in which case {@link #copy(File, Set, Map)} returns
+ * <code>false</code> without writing anything.
+ */
+public class RawZipCopier
+{
+    /**
+     * Signature of the zip end of central directory record.
+     */
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    /**
+     * Signature of a zip central directory file header.
+     */
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+
+    /**
+     * Signature of a zip local file header.
+     */
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+    /**
+     * Size of the fixed part of the end of central directory record.
+     */
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    /**
+     * Size of the fixed part of a central directory file header.
+     */
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
+    /**
+     * Size of the fixed part of a local file header.
+     */
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+
+    /**
+     * Maximum length of the zip file comment.
+     */
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    /**
+     * Largest number of entries of a zip file without ZIP64 extensions, the entry count of the
+     * end of central directory record being set to 0xffff in ZIP64 archives.
+     */
+    private static final int MAX_ENTRIES = 0xfffe;
+
+    /**
+     * Largest value of 32-bit zip fields, above which ZIP64 extensions are needed.
+     */
+    private static final long MAX_32BIT = 0xffffffffL;
+
+    /**
+     * Zip version needed to extract deflated entries.
+     */
+    private static final short VERSION = 20;
+
+    /**
+     * General purpose flag indicating UTF-8 entry names.
+     */
+    private static final short UTF8_FLAG = 0x0800;
+
+    /**
+     * Source archive.
+     */
+    private File source;
+
+    /**
+     * Offset of the central directory of the source archive.
+     */
+    private long centralDirectoryOffset;
+
+    /**
+     * @param source Source archive.
+     */
+    public RawZipCopier(File source)
+    {
+        this.source = source;
+    }
+
+    /**
+     * Copies the source archive.
+     *
+     * @param target Archive to create.
+     * @param excluded Names of the source entries not to copy.
+     * @param added Entries to add after the copied entries, indexed by name.
+     * @return <code>true</code> if the archive has been copied, <code>false</code> if the source
+     * archive is not supported, in which case the target has not been written.
+     * @throws IOException If reading or writing fails.
+     */
+    public boolean copy(File target, Set<String> excluded, Map<String, byte[]> added)
+        throws IOException
+    {
+        try (FileChannel in = FileChannel.open(this.source.toPath(), StandardOpenOption.READ))
+        {
+            List<ByteBuffer> records = readCentralDirectory(in);
+            if (records == null)
+            {
+                return false;
+            }
+
+            // Only count the excluded names which are actually entries of the source archive
+            int copied = 0;
+            for (ByteBuffer record : records)
+            {
+                if (!excluded.contains(getName(record)))
+                {
+                    copied++;
+                }
+            }
+            if (copied + added.size() > MAX_ENTRIES)
+            {
+                return false;
+            }
+
+            // The end of each entry is the start of the next one, whatever is between (for
+            // example a data descriptor) is copied along
+            long[] starts = new long[records.size() + 1];
+            for (int i = 0; i < records.size(); i++)
+            {
+                starts[i] = records.get(i).getInt(42) & MAX_32BIT;
+            }
+            starts[records.size()] = this.centralDirectoryOffset;
+            Arrays.sort(starts);
+
+            try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+                int count = 0;
+
+                for (ByteBuffer record : records)
+                {
+                    if (excluded.contains(getName(record)))
+                    {
+                        continue;
+                    }
+
+                    long start = record.getInt(42) & MAX_32BIT;
+                    long end = starts[Arrays.binarySearch(starts, start) + 1];
+                    record.putInt(42, (int) checkOffset(out.position()));
+                    transfer(in, start, end - start, out);
+                    centralDirectory.write(record.array(), 0, record.limit());
+                    count++;
+                }
+
+                for (Map.Entry<String, byte[]> entry : added.entrySet())
+                {
+                    writeEntry(out, centralDirectory, entry.getKey(), entry.getValue());
+                    count++;
+                }
+
+                long offset = checkOffset(out.position());
+                write(out, ByteBuffer.wrap(centralDirectory.toByteArray()));
+
+                ByteBuffer endRecord = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+                endRecord.putInt(END_OF_CENTRAL_DIRECTORY);
+                endRecord.putShort((short) 0);
+                endRecord.putShort((short) 0);
+                endRecord.putShort((short) count);
+                endRecord.putShort((short) count);
+                endRecord.putInt(centralDirectory.size());
+                endRecord.putInt((int) offset);
+                endRecord.putShort((short) 0);
+                endRecord.flip();
+                write(out, endRecord);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads the central directory of the source archive.
+     *
+     * @param in Source archive.
+     * @return Central directory records, <code>null</code> if the archive is not supported.
+     * @throws IOException If reading fails.
+     */
+    private List<ByteBuffer> readCentralDirectory(FileChannel in) throws IOException
+    {
+        long end = findEndOfCentralDirectory(in);
+        if (end == -1)
+        {
+            return null;
+        }
+
+        ByteBuffer endRecord = read(in, end, END_OF_CENTRAL_DIRECTORY_SIZE);
+        int count = endRecord.getShort(10) & 0xffff;
+        long size = endRecord.getInt(12) & MAX_32BIT;
+        long offset = endRecord.getInt(16) & MAX_32BIT;
+        if (count == 0xffff || size == MAX_32BIT || offset == MAX_32BIT
+            || offset + size != end)
+        {
+            return null;
+        }
+
+        this.centralDirectoryOffset = offset;
+        ByteBuffer centralDirectory = read(in, offset, (int) size);
+        List<ByteBuffer> records = new ArrayList<ByteBuffer>(count);
+        int position = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (position + CENTRAL_DIRECTORY_HEADER_SIZE > size
+                || centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER)
+            {
+                return null;
+            }
+            int length = CENTRAL_DIRECTORY_HEADER_SIZE
+                + (centralDirectory.getShort(position + 28) & 0xffff)
+                + (centralDirectory.getShort(position + 30) & 0xffff)
+                + (centralDirectory.getShort(position + 32) & 0xffff);
+            byte[] record = new byte[length];
+            centralDirectory.position(position);
+            centralDirectory.get(record);
+            ByteBuffer recordBuffer = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+            if ((recordBuffer.getInt(20) & MAX_32BIT) == MAX_32BIT
+                || (recordBuffer.getInt(42) & MAX_32BIT) == MAX_32BIT)
+            {
+                return null;
+            }
+            records.add(recordBuffer);
+            position += length;
+        }
+
+        if (!records.isEmpty()
+            && read(in, 0, 4).getInt(0) != LOCAL_FILE_HEADER)
+        {
+            // Data before the first entry, for example a self-extracting archive
+            return null;
+        }
+        return records;
+    }
+
+    /**
+     * @param in Source archive.
+     * @return Offset of the end of central directory record, -1 if not found.
+     * @throws IOException If reading fails.
+     */
+    private long findEndOfCentralDirectory(FileChannel in) throws IOException
+    {
+        long size = in.size();
+        if (size < END_OF_CENTRAL_DIRECTORY_SIZE)
+        {
+            return -1;
+        }
+        long start = Math.max(0, size - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(in, start, (int) (size - start));
+        for (int i = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--)
+        {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY)
+            {
+                return start + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a new deflated entry.
+     *
+     * @param out Target archive.
+     * @param centralDirectory Central directory to add the entry's record to.
+     * @param name Name of the entry.
+     * @param data Contents of the entry.
+     * @throws IOException If writing fails.
+     */
+    private void writeEntry(FileChannel out, ByteArrayOutputStream centralDirectory, String name,
+        byte[] data) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+        try
+        {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished())
+            {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int dosTime = toDosTime(System.currentTimeMillis());
+        long offset = checkOffset(out.position());
+
+        ByteBuffer local = ByteBuffer.allocate(LOCAL_FILE_HEADER_SIZE + nameBytes.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        local.putInt(LOCAL_FILE_HEADER);
+        local.putShort(VERSION);
+        local.putShort(UTF8_FLAG);
+        local.putShort((short) ZipEntry.DEFLATED);
+        local.putInt(dosTime);
+        local.putInt((int) crc.getValue());
+        local.putInt(compressed.size());
+        local.putInt(data.length);
+        local.putShort((short) nameBytes.length);
+        local.putShort((short) 0);
+        local.put(nameBytes);
+        local.flip();
+        write(out, local);
+        write(out, ByteBuffer.wrap(compressed.toByteArray()));
+
+        ByteBuffer record = ByteBuffer.allocate(CENTRAL_DIRECTORY_HEADER_SIZE + nameBytes.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(CENTRAL_DIRECTORY_HEADER);
+        record.putShort(VERSION);
+        record.putShort(VERSION);
+        record.putShort(UTF8_FLAG);
+        record.putShort((short) ZipEntry.DEFLATED);
+        record.putInt(dosTime);
+        record.putInt((int) crc.getValue());
+        record.putInt(compressed.size());
+        record.putInt(data.length);
+        record.putShort((short) nameBytes.length);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putInt(0);
+        record.putInt((int) offset);
+        record.put(nameBytes);
+        centralDirectory.write(record.array(), 0, record.position());
+    }
+
+    /**
+     * @param record Central directory record.
+     * @return Name of the entry.
+     */
+    private static String getName(ByteBuffer record)
+    {
+        int nameLength = record.getShort(28) & 0xffff;
+        return new String(record.array(), CENTRAL_DIRECTORY_HEADER_SIZE, nameLength,
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param offset Offset in the target archive.
+     * @return The offset.
+     * @throws IOException If the offset requires ZIP64 extensions.
+     */
+    private static long checkOffset(long offset) throws IOException
+    {
+        if (offset >= MAX_32BIT)
+        {
+            throw new IOException("Archive too large for a zip file without ZIP64");
+        }
+        return offset;
+    }
+
+    /**
+     * Reads bytes from a file.
+     *
+     * @param in File to read.
+     * @param position Position to read at.
+     * @param length Number of bytes to read.
+     * @return Bytes read, in little endian order.
+     * @throws IOException If reading fails.
+     */
+    private static ByteBuffer read(FileChannel in, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining())
+        {
+            if (in.read(buffer, position + buffer.position()) == -1)
+            {
+                throw new IOException("Unexpected end of file " + in);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a buffer fully.
+     *
+     * @param out File to write to.
+     * @param buffer Bytes to write.
+     * @throws IOException If writing fails.
+     */
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Transfers bytes between files, letting the operating system copy them where possible.
+     *
+     * @param in File to read.
+     * @param position Position to read at.
+     * @param length Number of bytes to transfer.
+     * @param out File to write to, at its current position.
+     * @throws IOException If reading or writing fails.
+     */
+    private static void transfer(FileChannel in, long position, long length, FileChannel out)
+        throws IOException
+    {
+        long transferred = 0;
+        while (transferred < length)
+        {
+            long bytes = in.transferTo(position + transferred, length - transferred, out);
+            if (bytes <= 0)
+            {
+                throw new IOException("Unexpected end of file " + in);
+            }
+            transferred += bytes;
+        }
+    }
+
+    /**
+     * @param time Time in milliseconds.
+     * @return Time in MS-DOS format, as used by zip files.
+     */
+    private static int toDosTime(long time)
+    {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = Math.max(calendar.get(Calendar.YEAR), 1980);
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21
+            | calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11
+            | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+}
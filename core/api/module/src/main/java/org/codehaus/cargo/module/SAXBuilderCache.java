@@ -0,0 +1,102 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jdom.JDOMFactory;
+import org.jdom.input.SAXBuilder;
+import org.xml.sax.EntityResolver;
+
+/**
+ * Cache of non-validating JDOM SAX builders, keyed by JDOM factory. A SAX builder reuses its
+ * parser from one document to the next, which saves the JAXP lookup and the parser setup of each
+ * document. SAX builders are not thread-safe, hence the cache is kept per thread.
+ */
+public final class SAXBuilderCache
+{
+    /**
+     * Maximum number of SAX builders kept per thread.
+     */
+    private static final int MAX_SIZE = 32;
+
+    /**
+     * SAX builders of each thread, least recently used first.
+     */
+    private static final ThreadLocal<Map<JDOMFactory, SAXBuilder>> CACHE =
+        new ThreadLocal<Map<JDOMFactory, SAXBuilder>>()
+        {
+            @Override
+            protected Map<JDOMFactory, SAXBuilder> initialValue()
+            {
+                return new LinkedHashMap<JDOMFactory, SAXBuilder>(16, 0.75f, true)
+                {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<JDOMFactory, SAXBuilder> eldest)
+                    {
+                        return size() > MAX_SIZE;
+                    }
+                };
+            }
+        };
+
+    /**
+     * Utility class.
+     */
+    private SAXBuilderCache()
+    {
+        // Nothing
+    }
+
+    /**
+     * Returns the non-validating SAX builder of the current thread for a JDOM factory, set up with
+     * the given entity resolver. The returned builder must neither be modified nor shared with
+     * other threads, and must be used before this method is called again on the same thread.
+     * @param factory JDOM factory, <code>null</code> for the default JDOM factory.
+     * @param entityResolver Entity resolver, required as the reused parser would otherwise keep
+     * the entity resolver of the previous document.
+     * @return SAX builder.
+     */
+    public static SAXBuilder getBuilder(JDOMFactory factory, EntityResolver entityResolver)
+    {
+        if (entityResolver == null)
+        {
+            throw new IllegalArgumentException("Entity resolver cannot be null");
+        }
+
+        Map<JDOMFactory, SAXBuilder> cache = CACHE.get();
+        SAXBuilder builder = cache.get(factory);
+        if (builder == null)
+        {
+            builder = new SAXBuilder();
+            builder.setValidation(false);
+            if (factory != null)
+            {
+                builder.setFactory(factory);
+            }
+            cache.put(factory, builder);
+        }
+        builder.setEntityResolver(entityResolver);
+        return builder;
+    }
+}
@@ -19,12 +19,14 @@
  */
 package org.codehaus.cargo.module;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
@@ -32,9 +34,23 @@ import org.xml.sax.SAXException;
 
 /**
  * Implementation of the SAX EntityResolver interface that looks up the web-app DTDs from the JAR.
+ * Grammars are never downloaded: those which are not in the JAR resolve to an empty grammar, which
+ * is what non-validating parsing needs to go on.
  */
 public class XmlEntityResolver implements EntityResolver
 {
+    /**
+     * Path of the grammars in the JAR.
+     */
+    private static final String RESOURCE_PATH = "/org/codehaus/cargo/module/internal/resource/";
+
+    /**
+     * Grammars read from the JAR, indexed by file name. Grammars which are not in the JAR are
+     * empty.
+     */
+    private static final ConcurrentMap<String, byte[]> GRAMMARS =
+        new ConcurrentHashMap<String, byte[]>();
+
     /**
      * Properties containing mappings of public identifiers to system identifiers.
      */
@@ -97,37 +113,46 @@ public class XmlEntityResolver implements EntityResolver
     public InputSource resolveEntity(String thePublicId, String theSystemId)
         throws SAXException, IOException
     {
-        InputSource inSource = null;
         String fileName = getDtdFileName(thePublicId, theSystemId);
 
-        InputStream in = this.getClass().getResourceAsStream(
-            "/org/codehaus/cargo/module/internal/resource/" + fileName);
+        InputSource inSource = new InputSource(new ByteArrayInputStream(getGrammar(fileName)));
+        inSource.setPublicId(thePublicId);
+        inSource.setSystemId(theSystemId);
+        return inSource;
+    }
 
-        if (in == null)
+    /**
+     * Returns a grammar from the JAR, reading it only the first time it is requested.
+     * 
+     * @param fileName File name of the grammar.
+     * @return Grammar, empty if not in the JAR.
+     * @throws IOException If the grammar cannot be read.
+     */
+    private static byte[] getGrammar(String fileName) throws IOException
+    {
+        byte[] grammar = GRAMMARS.get(fileName);
+        if (grammar == null)
         {
-            URL url = new URL(theSystemId);
-            try
-            {
-                in = url.openStream();
-            }
-            catch (IOException ignored)
+            grammar = new byte[0];
+            String resource = RESOURCE_PATH + fileName;
+            try (InputStream in = XmlEntityResolver.class.getResourceAsStream(resource))
             {
-                // Failed to connect to remote resource, is internet down?
+                if (in != null)
+                {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int read = in.read(buffer);
+                    while (read != -1)
+                    {
+                        out.write(buffer, 0, read);
+                        read = in.read(buffer);
+                    }
+                    grammar = out.toByteArray();
+                }
             }
+            GRAMMARS.putIfAbsent(fileName, grammar);
         }
-
-        if (in != null)
-        {
-            inSource = new InputSource(in);
-        }
-        else
-        {
-            inSource = new InputSource(new StringReader(""));
-        }
-
-        inSource.setPublicId(thePublicId);
-        inSource.setSystemId(theSystemId);
-        return inSource;
+        return grammar;
     }
 
     /**
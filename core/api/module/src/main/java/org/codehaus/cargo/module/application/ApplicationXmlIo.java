@@ -31,8 +31,8 @@ import java.io.OutputStream;
 import java.nio.charset.Charset;
 
 import org.codehaus.cargo.module.AbstractDescriptorIo;
+import org.codehaus.cargo.module.XmlEntityResolver;
 import org.jdom.JDOMException;
-import org.jdom.input.SAXBuilder;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import org.xml.sax.EntityResolver;
@@ -57,7 +57,7 @@ public final class ApplicationXmlIo extends AbstractDescriptorIo
      * Implementation of the SAX EntityResolver interface that looks up the application DTDs from
      * the JAR.
      */
-    private static class ApplicationXmlEntityResolver implements EntityResolver
+    private static class ApplicationXmlEntityResolver extends XmlEntityResolver
     {
         /**
          * {@inheritDoc}
@@ -79,7 +79,7 @@ public final class ApplicationXmlIo extends AbstractDescriptorIo
                     return new InputSource(in);
                 }
             }
-            return null;
+            return super.resolveEntity(thePublicId, theSystemId);
         }
 
     }
@@ -115,17 +115,15 @@ public final class ApplicationXmlIo extends AbstractDescriptorIo
         EntityResolver entityResolver) throws IOException, JDOMException
     {
         ApplicationXmlIo io = new ApplicationXmlIo();
-        SAXBuilder builder = io.createDocumentBuilder();
 
         if (entityResolver != null)
         {
-            builder.setEntityResolver(entityResolver);
+            return (ApplicationXml) io.parseXml(input, entityResolver);
         }
         else
         {
-            builder.setEntityResolver(new ApplicationXmlEntityResolver());
+            return (ApplicationXml) io.parseXml(input, new ApplicationXmlEntityResolver());
         }
-        return (ApplicationXml) builder.build(input);
     }
 
     /**
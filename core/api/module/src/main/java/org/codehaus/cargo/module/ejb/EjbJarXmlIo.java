@@ -23,8 +23,8 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.codehaus.cargo.module.AbstractDescriptorIo;
+import org.codehaus.cargo.module.XmlEntityResolver;
 import org.jdom.JDOMException;
-import org.jdom.input.SAXBuilder;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -46,7 +46,7 @@ public class EjbJarXmlIo extends AbstractDescriptorIo
      * Implementation of the SAX EntityResolver interface that looks up the application DTDs from
      * the JAR.
      */
-    private static class EjbJarXmlEntityResolver implements EntityResolver
+    private static class EjbJarXmlEntityResolver extends XmlEntityResolver
     {
         /**
          * {@inheritDoc}
@@ -68,7 +68,7 @@ public class EjbJarXmlIo extends AbstractDescriptorIo
                     return new InputSource(in);
                 }
             }
-            return null;
+            return super.resolveEntity(thePublicId, theSystemId);
         }
 
     }
@@ -87,16 +87,14 @@ public class EjbJarXmlIo extends AbstractDescriptorIo
         throws IOException, JDOMException
     {
         EjbJarXmlIo io = new EjbJarXmlIo();
-        SAXBuilder builder = io.createDocumentBuilder();
         if (entityResolver != null)
         {
-            builder.setEntityResolver(entityResolver);
+            return (EjbJarXml) io.parseXml(input, entityResolver);
         }
         else
         {
-            builder.setEntityResolver(new EjbJarXmlEntityResolver());
+            return (EjbJarXml) io.parseXml(input, new EjbJarXmlEntityResolver());
         }
-        return (EjbJarXml) builder.build(input);
     }
 
 }
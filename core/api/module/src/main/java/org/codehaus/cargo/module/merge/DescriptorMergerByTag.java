@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.cargo.module.AbstractDescriptor;
 import org.codehaus.cargo.module.Descriptor;
 import org.codehaus.cargo.module.DescriptorElement;
 import org.codehaus.cargo.module.DescriptorTag;
@@ -187,12 +188,16 @@ public class DescriptorMergerByTag implements DescriptorMerger
 
                 try
                 {
+                    // Look elements up by identifier in hash maps rather than scanning the
+                    // descriptors for each element, which is quadratic for large descriptors
+                    Map<String, Element> rightIndex =
+                        index(right.getTags(tag.getTagName()), identifier);
+
                     for (Element itemL : itemsL)
                     {
                         DescriptorElement lElement = (DescriptorElement) itemL;
-                        DescriptorElement rElement =
-                            (DescriptorElement) right.getTagByIdentifier(tag.getTagName(),
-                                identifier.getIdentifier(lElement));
+                        DescriptorElement rElement = (DescriptorElement)
+                            rightIndex.get(identifier.getIdentifier(lElement));
 
                         if (rElement != null)
                         {
@@ -204,16 +209,22 @@ public class DescriptorMergerByTag implements DescriptorMerger
                         }
                     }
 
+                    Map<String, Element> leftIndex =
+                        index(left.getTags(tag.getTagName()), identifier);
                     for (Element itemR : itemsR)
                     {
                         DescriptorElement rElement = (DescriptorElement) itemR;
-                        DescriptorElement lElement =
-                            (DescriptorElement) left.getTagByIdentifier(tag.getTagName(),
-                                identifier.getIdentifier(rElement));
+                        String id = identifier.getIdentifier(rElement);
 
-                        if (lElement == null)
+                        if (!leftIndex.containsKey(id) && strategy.inRight(left, rElement) > 0)
                         {
-                            strategy.inRight(left, rElement);
+                            // The strategy may also have added a copy of the element, or nothing
+                            Element added = rElement.getDocument() == left ? rElement
+                                : left.getTagByIdentifier(tag.getTagName(), id);
+                            if (added != null)
+                            {
+                                leftIndex.put(id, added);
+                            }
                         }
                     }
                 }
@@ -236,10 +247,17 @@ public class DescriptorMergerByTag implements DescriptorMerger
                     // identifying tags
                     // From each other, then the best we can do is merge them
                     // together by addition...
-                    for (Element itemR : itemsR)
+                    if (left instanceof AbstractDescriptor)
+                    {
+                        ((AbstractDescriptor) left).addElements(tag, itemsR,
+                            left.getRootElement());
+                    }
+                    else
                     {
-                        DescriptorElement rightElement = (DescriptorElement) itemR;
-                        left.addElement(tag, rightElement, left.getRootElement());
+                        for (Element itemR : itemsR)
+                        {
+                            left.addElement(tag, itemR, left.getRootElement());
+                        }
                     }
                 }
                 else
@@ -280,6 +298,28 @@ public class DescriptorMergerByTag implements DescriptorMerger
         }
     }
 
+    /**
+     * Indexes elements by identifier. As when looking up an element by identifier in a
+     * descriptor, the first element with a given identifier wins.
+     * 
+     * @param elements elements to index
+     * @param identifier identifier of the elements
+     * @return the elements by identifier
+     */
+    private static Map<String, Element> index(List<Element> elements, Identifier identifier)
+    {
+        Map<String, Element> index = new HashMap<String, Element>(elements.size() * 2);
+        for (Element element : elements)
+        {
+            String id = identifier.getIdentifier(element);
+            if (!index.containsKey(id))
+            {
+                index.put(id, element);
+            }
+        }
+        return index;
+    }
+
     /**
      * @param tag tag to get the merge strategy for
      * @return the merge strategy
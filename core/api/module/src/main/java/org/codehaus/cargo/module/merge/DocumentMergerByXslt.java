@@ -21,21 +21,27 @@ package org.codehaus.cargo.module.merge;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import org.codehaus.cargo.module.SAXBuilderCache;
 import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.XmlFactoryCache;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.input.SAXBuilder;
-import org.jdom.output.DOMOutputter;
+import org.jdom.transform.JDOMSource;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -44,16 +50,27 @@ import org.xml.sax.SAXException;
  */
 public class DocumentMergerByXslt implements MergeProcessor
 {
+    /**
+     * Compiled XSLT files, indexed by path. An entry is replaced when its file is modified.
+     */
+    private static final ConcurrentMap<String, CompiledXslt> TEMPLATES =
+        new ConcurrentHashMap<String, CompiledXslt>();
+
     /**
      * The list of merge documents.
      */
     private List<Document> documents = new ArrayList<Document>();
 
     /**
-     * The XSLT source to use.
+     * The XSLT source to use, <code>null</code> if read from a file.
      */
     private StreamSource xsltSource;
 
+    /**
+     * The XSLT file to use, <code>null</code> if read from a stream.
+     */
+    private File xsltFile;
+
     /**
      * The lazily-compiled XSLT transformer.
      */
@@ -68,6 +85,16 @@ public class DocumentMergerByXslt implements MergeProcessor
         xsltSource = new StreamSource(stream);
     }
 
+    /**
+     * Constructor. The XSLT file is compiled once, and shared with all other mergers using the
+     * same file as long as the file is not modified.
+     * @param file Source XSLT file
+     */
+    public DocumentMergerByXslt(File file)
+    {
+        xsltFile = file;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -118,16 +145,19 @@ public class DocumentMergerByXslt implements MergeProcessor
         {
             Document doc = createUnifiedDocument(left, right);
 
-            DOMOutputter outputter = new DOMOutputter();
-            org.w3c.dom.Document domDocument = outputter.output(doc);
-
-            javax.xml.transform.Source xmlSource =
-                new javax.xml.transform.dom.DOMSource(domDocument);
+            javax.xml.transform.Source xmlSource = new JDOMSource(doc);
 
             if (transformer == null)
             {
-                TransformerFactory tFactory = TransformerFactory.newInstance();
-                transformer = tFactory.newTransformer(xsltSource);
+                if (xsltFile != null)
+                {
+                    transformer = getTemplates(xsltFile).newTransformer();
+                }
+                else
+                {
+                    transformer =
+                        XmlFactoryCache.getTransformerFactory().newTransformer(xsltSource);
+                }
             }
 
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -137,13 +167,10 @@ public class DocumentMergerByXslt implements MergeProcessor
             transformer.transform(xmlSource, xmlResult);
 
             // PArse it back into a JDOM document
-            SAXBuilder factory = new SAXBuilder();
-            factory.setValidation(false);
-
             // We don't know what the DTD of the document is, so we won't have a local
             // copy - so we don't want to fail if we can't get it!
 
-            factory.setEntityResolver(new EntityResolver()
+            SAXBuilder factory = SAXBuilderCache.getBuilder(null, new EntityResolver()
             {
                 @Override
                 public InputSource resolveEntity(String thePublicId,
@@ -161,6 +188,30 @@ public class DocumentMergerByXslt implements MergeProcessor
         }
     }
 
+    /**
+     * Returns the compiled XSLT of a file, compiling it only if not compiled yet since the file
+     * was last modified.
+     * 
+     * @param file XSLT file
+     * @return Compiled XSLT
+     * @throws TransformerConfigurationException If the XSLT cannot be compiled
+     */
+    private static Templates getTemplates(File file) throws TransformerConfigurationException
+    {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        CompiledXslt compiled = TEMPLATES.get(path);
+        if (compiled == null || compiled.length != length
+            || compiled.lastModified != lastModified)
+        {
+            compiled = new CompiledXslt(length, lastModified,
+                XmlFactoryCache.getTransformerFactory().newTemplates(new StreamSource(file)));
+            TEMPLATES.put(path, compiled);
+        }
+        return compiled.templates;
+    }
+
     /**
      * Create a document that has both the left and the right items.
      * 
@@ -187,4 +238,36 @@ public class DocumentMergerByXslt implements MergeProcessor
         return mergedDocument;
     }
 
+    /**
+     * Compiled XSLT file, with the size and modification time of the file it was compiled from.
+     */
+    private static final class CompiledXslt
+    {
+        /**
+         * Size of the XSLT file.
+         */
+        private final long length;
+
+        /**
+         * Modification time of the XSLT file.
+         */
+        private final long lastModified;
+
+        /**
+         * Compiled XSLT.
+         */
+        private final Templates templates;
+
+        /**
+         * @param length Size of the XSLT file.
+         * @param lastModified Modification time of the XSLT file.
+         * @param templates Compiled XSLT.
+         */
+        private CompiledXslt(long length, long lastModified, Templates templates)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.templates = templates;
+        }
+    }
 }
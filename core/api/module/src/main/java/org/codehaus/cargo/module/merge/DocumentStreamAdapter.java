@@ -26,6 +26,7 @@ import java.io.InputStream;
 import java.io.StringReader;
 
 import org.codehaus.cargo.module.DescriptorIo;
+import org.codehaus.cargo.module.SAXBuilderCache;
 import org.jdom.Document;
 import org.jdom.JDOMException;
 import org.jdom.input.SAXBuilder;
@@ -132,13 +133,10 @@ public class DocumentStreamAdapter implements MergeProcessor
     {
         if (descriptorIo == null)
         {
-            SAXBuilder builder = new SAXBuilder();
-            builder.setValidation(false);
-
             // We don't know what the DTD of the document is, so we won't have a local
             // copy - so we don't want to fail if we can't get it!
 
-            builder.setEntityResolver(new EntityResolver()
+            SAXBuilder builder = SAXBuilderCache.getBuilder(null, new EntityResolver()
             {
                 @Override
                 public InputSource resolveEntity(String thePublicId,
@@ -151,7 +149,7 @@ public class DocumentStreamAdapter implements MergeProcessor
             return builder.build(theInput);
         }
 
-        return descriptorIo.createDocumentBuilder().build(theInput);
+        return descriptorIo.parseXml(theInput, null);
 
     }
 
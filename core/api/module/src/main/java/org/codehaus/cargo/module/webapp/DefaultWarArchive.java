@@ -22,13 +22,16 @@
  */
 package org.codehaus.cargo.module.webapp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
@@ -36,7 +39,9 @@ import java.util.jar.JarOutputStream;
 import org.codehaus.cargo.module.AbstractDescriptorIo;
 import org.codehaus.cargo.module.DefaultJarArchive;
 import org.codehaus.cargo.module.Descriptor;
+import org.codehaus.cargo.module.IndexedJarArchive;
 import org.codehaus.cargo.module.JarArchive;
+import org.codehaus.cargo.module.RawZipCopier;
 import org.codehaus.cargo.module.webapp.jboss.JBossWebXml;
 import org.codehaus.cargo.module.webapp.jboss.JBossWebXmlIo;
 import org.codehaus.cargo.module.webapp.orion.OrionWebXml;
@@ -57,6 +62,21 @@ import org.jdom.JDOMException;
  */
 public class DefaultWarArchive extends DefaultJarArchive implements WarArchive
 {
+    /**
+     * Directory containing the classes of the web application.
+     */
+    private static final String CLASSES_DIRECTORY = "WEB-INF/classes/";
+
+    /**
+     * Directory containing the libraries of the web application.
+     */
+    private static final String LIB_DIRECTORY = "WEB-INF/lib/";
+
+    /**
+     * Size of the buffer used when copying entries which cannot be copied raw.
+     */
+    private static final int COPY_BUFFER_SIZE = 40960;
+
     /**
      * The parsed deployment descriptor.
      */
@@ -67,6 +87,12 @@ public class DefaultWarArchive extends DefaultJarArchive implements WarArchive
      */
     private String file;
 
+    /**
+     * Location of each class of the web application, indexed by class name. <code>null</code>
+     * until first needed.
+     */
+    private Map<String, String> classIndex;
+
     /**
      * {@inheritDoc}
      * @see DefaultJarArchive#DefaultJarArchive(String)
@@ -128,47 +154,58 @@ public class DefaultWarArchive extends DefaultJarArchive implements WarArchive
     @Override
     public void store(File warFile) throws IOException, JDOMException
     {
-        FileHandler fileHandler = new DefaultFileHandler();
-        JarInputStream in = getContentAsStream();
-        JarOutputStream out = new JarOutputStream(new FileOutputStream(warFile));
-
-        // Find all deployment descriptors that Cargo is handling for this WAR file.
-        List<String> descriptorNames = new ArrayList<String>();
-        descriptorNames.add("WEB-INF/" + getWebXml().getFileName());
+        // Serialize all deployment descriptors that Cargo is handling for this WAR file, starting
+        // with the web.xml file and then the vendor descriptors. They are not copied from the
+        // original WAR file as they may have been modified since they were initially read.
+        Map<String, byte[]> descriptors = new LinkedHashMap<String, byte[]>();
+        descriptors.put("WEB-INF/" + getWebXml().getFileName(), serialize(getWebXml()));
         for (Descriptor vendorDescriptor : getWebXml().getVendorDescriptors())
         {
-            descriptorNames.add("WEB-INF/" + vendorDescriptor.getFileName());
+            descriptors.put("WEB-INF/" + vendorDescriptor.getFileName(),
+                serialize(vendorDescriptor));
         }
 
-        // Copy all entries from the original WAR file except for deployment descriptors. The
-        // reason we do not copy deployment descriptors is because they may have been modified
-        // since they were initially read from the original WAR file.
-        JarEntry entry;
-        while ((entry = in.getNextJarEntry()) != null)
+        // When the WAR is a file, copy all other entries without recompressing them
+        if (this.file != null && new File(this.file).isFile()
+            && new RawZipCopier(new File(this.file)).copy(
+                warFile, descriptors.keySet(), descriptors))
         {
-            if (!descriptorNames.contains(entry.getName()))
-            {
-                out.putNextEntry(entry);
-                fileHandler.copy(in, out);
-            }
+            return;
         }
-        in.close();
-
-        // Copy the deployment descriptors to the output file. Start by writing the web.xml file
-        // and then the vendor descriptors.
-
-        JarEntry webXmlEntry = new JarEntry("WEB-INF/" + getWebXml().getFileName());
-        out.putNextEntry(webXmlEntry);
-        AbstractDescriptorIo.writeDescriptor(getWebXml(), out, StandardCharsets.UTF_8, true);
 
-        for (Descriptor descriptor : getWebXml().getVendorDescriptors())
+        FileHandler fileHandler = new DefaultFileHandler();
+        try (JarInputStream in = getContentAsStream();
+            JarOutputStream out = new JarOutputStream(new FileOutputStream(warFile)))
         {
-            JarEntry descriptorEntry = new JarEntry("WEB-INF/" + descriptor.getFileName());
-            out.putNextEntry(descriptorEntry);
-            AbstractDescriptorIo.writeDescriptor(descriptor, out, StandardCharsets.UTF_8, true);
+            JarEntry entry = in.getNextJarEntry();
+            while (entry != null)
+            {
+                if (!descriptors.containsKey(entry.getName()))
+                {
+                    out.putNextEntry(entry);
+                    fileHandler.copy(in, out, COPY_BUFFER_SIZE);
+                }
+                entry = in.getNextJarEntry();
+            }
+
+            for (Map.Entry<String, byte[]> descriptor : descriptors.entrySet())
+            {
+                out.putNextEntry(new JarEntry(descriptor.getKey()));
+                out.write(descriptor.getValue());
+            }
         }
+    }
 
-        out.close();
+    /**
+     * @param descriptor Deployment descriptor.
+     * @return Serialized deployment descriptor.
+     * @throws IOException If the descriptor cannot be serialized.
+     */
+    private static byte[] serialize(Descriptor descriptor) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AbstractDescriptorIo.writeDescriptor(descriptor, out, StandardCharsets.UTF_8, true);
+        return out.toByteArray();
     }
 
     /**
@@ -184,26 +221,84 @@ public class DefaultWarArchive extends DefaultJarArchive implements WarArchive
     @Override
     public boolean containsClass(String className) throws IOException
     {
-        boolean containsClass = false;
+        return getClassLocation(className) != null;
+    }
 
-        // Look in WEB-INF/classes first
-        String resourceName = "WEB-INF/classes/" + className.replace('.', '/') + ".class";
-        if (getResource(resourceName) != null)
+    /**
+     * Returns where a class of the web application is, using an index of all classes in
+     * WEB-INF/classes and in the JARs in WEB-INF/lib. The index is built the first time it is
+     * needed, reading the WAR once.
+     * 
+     * @param className The name of the class to search for
+     * @return <code>WEB-INF/classes/</code> or the path of the JAR containing the class,
+     * <code>null</code> if the class is not in the archive
+     * @throws java.io.IOException If an I/O error occurred reading the archive
+     */
+    public synchronized String getClassLocation(String className) throws IOException
+    {
+        if (this.classIndex == null)
         {
-            containsClass = true;
+            this.classIndex = buildClassIndex();
         }
+        return this.classIndex.get(className);
+    }
 
-        // Next scan the JARs in WEB-INF/lib
-        for (String resource : getResources("WEB-INF/lib/"))
+    /**
+     * Builds the class index, reading the WAR once and indexing the JARs it contains.
+     * 
+     * @return Location of each class, indexed by class name.
+     * @throws IOException If the archive cannot be read.
+     */
+    private Map<String, String> buildClassIndex() throws IOException
+    {
+        Map<String, String> index = new HashMap<String, String>();
+        try (JarInputStream in = getContentAsStream())
         {
-            JarArchive jar = new DefaultJarArchive(getResource(resource));
-            if (jar.containsClass(className))
+            JarEntry entry = in.getNextJarEntry();
+            while (entry != null)
             {
-                containsClass = true;
+                String name = entry.getName();
+                if (name.startsWith(CLASSES_DIRECTORY) && name.endsWith(".class"))
+                {
+                    addClass(index, name.substring(CLASSES_DIRECTORY.length()),
+                        CLASSES_DIRECTORY);
+                }
+                else if (name.startsWith(LIB_DIRECTORY) && !entry.isDirectory())
+                {
+                    ByteArrayOutputStream jarContent = new ByteArrayOutputStream();
+                    getFileHandler().copy(in, jarContent);
+                    JarArchive jar = new IndexedJarArchive(
+                        new ByteArrayInputStream(jarContent.toByteArray()));
+                    for (String resource : jar.getResources(""))
+                    {
+                        if (resource.endsWith(".class"))
+                        {
+                            addClass(index, resource, name);
+                        }
+                    }
+                }
+                entry = in.getNextJarEntry();
             }
         }
+        return index;
+    }
 
-        return containsClass;
+    /**
+     * Adds a class to the class index. Classes in WEB-INF/classes take precedence over classes in
+     * JARs, as they do when loading classes.
+     * 
+     * @param index Class index.
+     * @param resource Path of the class file, relative to its classpath element.
+     * @param location Classpath element.
+     */
+    private static void addClass(Map<String, String> index, String resource, String location)
+    {
+        String className =
+            resource.substring(0, resource.length() - ".class".length()).replace('/', '.');
+        if (CLASSES_DIRECTORY.equals(location) || !index.containsKey(className))
+        {
+            index.put(className, location);
+        }
     }
 
     /**
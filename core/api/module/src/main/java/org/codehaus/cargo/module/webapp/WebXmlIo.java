@@ -29,6 +29,7 @@ import java.io.InputStream;
 
 import org.codehaus.cargo.module.AbstractDescriptorIo;
 import org.codehaus.cargo.module.DescriptorType;
+import org.codehaus.cargo.module.XmlEntityResolver;
 import org.codehaus.cargo.util.CargoException;
 import org.jdom.DocType;
 import org.jdom.Document;
@@ -57,7 +58,7 @@ public final class WebXmlIo extends AbstractDescriptorIo
      * Implementation of the SAX EntityResolver interface that looks up the web-app DTDs and XSDs
      * from the JAR.
      */
-    private static class WebXmlEntityResolver implements EntityResolver
+    private static class WebXmlEntityResolver extends XmlEntityResolver
     {
         /**
          * {@inheritDoc}
@@ -79,7 +80,7 @@ public final class WebXmlIo extends AbstractDescriptorIo
                     return new InputSource(in);
                 }
             }
-            return null;
+            return super.resolveEntity(thePublicId, theSystemId);
         }
 
     }
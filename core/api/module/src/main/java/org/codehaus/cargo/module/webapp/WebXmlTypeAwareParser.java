@@ -26,9 +26,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.XmlFactoryCache;
 import org.jdom.JDOMException;
 import org.xml.sax.Attributes;
 import org.xml.sax.EntityResolver;
@@ -119,7 +119,7 @@ public class WebXmlTypeAwareParser extends DefaultHandler
             {
                 bufferedStream.reset();
                 bufferedStream.mark(1024 * 1024);
-                SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+                SAXParser parser = XmlFactoryCache.getSAXParserFactory().newSAXParser();
 
                 parser.parse(new InputSource(bufferedStream), this);
             }
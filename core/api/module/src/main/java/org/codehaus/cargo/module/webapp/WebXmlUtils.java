@@ -186,8 +186,19 @@ public final class WebXmlUtils
         {
             throw new NullPointerException();
         }
+        return getServletRunAsRoleName(webXml, getServlet(webXml, theServletName));
+    }
+
+    /**
+     * For a servlet, return the run-as role name.
+     * 
+     * @param webXml The webXml file to use
+     * @param servlet the servlet
+     * @return the run-as role name
+     */
+    public static String getServletRunAsRoleName(WebXml webXml, Servlet servlet)
+    {
         String roleName = null;
-        Servlet servlet = getServlet(webXml, theServletName);
         List<Element> nodeList = servlet.getChildren(WebXmlType.RUN_AS, servlet.getNamespace());
         if (nodeList != null && nodeList.size() > 0)
         {
@@ -407,12 +418,26 @@ public final class WebXmlUtils
     public static void addServletInitParam(WebXml webXml, String theServletName, String name,
         String value)
     {
-        WebXmlTag tag = (WebXmlTag) webXml.getDescriptorType().getTagByName("init-param");
         Servlet servletElement = getServlet(webXml, theServletName);
         if (servletElement == null)
         {
             throw new IllegalStateException("Servlet '" + theServletName + "' not defined");
         }
+        addServletInitParam(webXml, servletElement, name, value);
+    }
+
+    /**
+     * Add an init param to a servlet.
+     * 
+     * @param webXml The webXml file to use
+     * @param servletElement The servlet
+     * @param name The name of the init param
+     * @param value The value for the init param
+     */
+    public static void addServletInitParam(WebXml webXml, Servlet servletElement, String name,
+        String value)
+    {
+        WebXmlTag tag = (WebXmlTag) webXml.getDescriptorType().getTagByName("init-param");
         InitParam ip = new InitParam(tag);
         ip.setParamName(name);
         ip.setParamValue(value);
@@ -444,6 +469,18 @@ public final class WebXmlUtils
         return getInitParamNames(webXml, getServlet(webXml, theServletName));
     }
 
+    /**
+     * Get the names of all the servlet init parameters.
+     * 
+     * @param webXml The webXml file to use
+     * @param theServlet The servlet
+     * @return A list of the parameter names
+     */
+    public static List<String> getServletInitParamNames(WebXml webXml, Servlet theServlet)
+    {
+        return getInitParamNames(webXml, theServlet);
+    }
+
     /**
      * Get the names of all the servlet init parameters.
      * 
@@ -864,9 +901,22 @@ public final class WebXmlUtils
             throw new IllegalStateException("Filter '" + filterName + "' not defined");
         }
 
-        List<FilterMapping> mappings = WebXmlUtils.getFilterMappingElements(webXml,
-            filterName);
+        addFilterMapping(webXml, rhs, getFilterMappingElements(webXml, filterName));
+    }
 
+    /**
+     * Adds a filter mapping, or adds its dispatchers to the mapping of the filter to the same URL
+     * pattern or servlet if there is one.
+     * 
+     * @param webXml The webXml file to use
+     * @param rhs The mapping to add, of a filter defined in the descriptor
+     * @param mappings The mappings of that filter in the descriptor
+     * @return The mapping added or updated
+     */
+    public static FilterMapping addFilterMapping(WebXml webXml, FilterMapping rhs,
+        List<FilterMapping> mappings)
+    {
+        String filterName = rhs.getFilterName();
         FilterMapping filterMappingElement = null;
         for (FilterMapping mapping : mappings)
         {
@@ -933,7 +983,7 @@ public final class WebXmlUtils
 
         webXml.addElement(filterMappingElement.getTag(), filterMappingElement, webXml
                 .getRootElement());
-
+        return filterMappingElement;
     }
 
     /**
@@ -948,6 +998,18 @@ public final class WebXmlUtils
         return getInitParam(theWebXml, getServlet(theWebXml, servletName), paramName);
     }
 
+    /**
+     * @param theWebXml The webXml file to use
+     * @param theServlet The servlet
+     * @param paramName The parameter Name
+     * @return The value of the init param
+     */
+    public static String getServletInitParam(WebXml theWebXml, Servlet theServlet,
+        String paramName)
+    {
+        return getInitParam(theWebXml, theServlet, paramName);
+    }
+
     /**
      * @param theWebXml The webXml file to use
      * @param theElement The element to get the parameter from
@@ -983,7 +1045,17 @@ public final class WebXmlUtils
     public static void addServletRunAsRoleName(WebXml webXml, String theServletName,
         String theRoleName)
     {
-        Element servlet = getServlet(webXml, theServletName);
+        addServletRunAsRoleName(webXml, getServlet(webXml, theServletName), theRoleName);
+    }
+
+    /**
+     * @param webXml The webXml file to use
+     * @param servlet The servlet
+     * @param theRoleName The role name to add
+     */
+    public static void addServletRunAsRoleName(WebXml webXml, Servlet servlet,
+        String theRoleName)
+    {
         Element runAsElement = webXml.getDescriptorType().getTagByName(WebXmlType.RUN_AS).create();
 
         runAsElement.addContent(webXml.getDescriptorType().getTagByName(
@@ -1001,10 +1073,23 @@ public final class WebXmlUtils
     public static void addServletMapping(WebXml webXml, String theServletName,
         String theUrlPattern)
     {
-        if (!hasServlet(webXml, theServletName))
+        Servlet servlet = getServlet(webXml, theServletName);
+        if (servlet == null)
         {
             throw new IllegalStateException("Servlet '" + theServletName + "' not defined");
         }
+        addServletMapping(webXml, servlet, theUrlPattern);
+    }
+
+    /**
+     * @param webXml The webXml file to use
+     * @param theServlet The servlet, which must be defined in the descriptor
+     * @param theUrlPattern the URL PAttern to add
+     */
+    public static void addServletMapping(WebXml webXml, Servlet theServlet,
+        String theUrlPattern)
+    {
+        String theServletName = theServlet.getServletName();
         DescriptorElement servletMappingElement = webXml.getDescriptorType().getTagByName(
             WebXmlType.SERVLET_MAPPING).create();
 
@@ -19,6 +19,7 @@
  */
 package org.codehaus.cargo.module.webapp.merge;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
@@ -54,14 +55,29 @@ public class ArchiveResourceMerger
         this.resource = resource;
     }
 
+    /**
+     * @return name of the resource path
+     */
+    public String getResource()
+    {
+        return this.resource;
+    }
+
     /**
      * Add an item into the merge.
      * 
-     * @param mergeItem the item
+     * @param mergeItem the item, either the archive to read the resource from or the content of
+     * the resource itself as an <code>InputStream</code>
      * @throws MergeException if a problem
      */
     public void addMergeItem(Object mergeItem) throws MergeException
     {
+        if (mergeItem instanceof InputStream)
+        {
+            this.next.addMergeItem(mergeItem);
+            return;
+        }
+
         try
         {
             JarArchive jar = (JarArchive) mergeItem;
@@ -83,12 +99,12 @@ public class ArchiveResourceMerger
     }
 
     /**
-     * Execute the merge into the assembly directory.
+     * Execute the merge in memory.
      * 
-     * @param assembleDir the directory to save to
+     * @return the merged resource, <code>null</code> if none of the merge items had the resource
      * @throws MergeException if a problem
      */
-    public void execute(File assembleDir) throws MergeException
+    public byte[] performMerge() throws MergeException
     {
         try (InputStream is = (InputStream) this.next.performMerge())
         {
@@ -96,24 +112,52 @@ public class ArchiveResourceMerger
             // had this resource to do the merge.
             if (is == null)
             {
-                return;
+                return null;
             }
 
-            File outputFile = new File(assembleDir.getAbsolutePath() + File.separator
-                + this.resource);
-
-            // Make sure the directory actually exists
-            outputFile.getParentFile().mkdir();
-
-            try (FileOutputStream fos = new FileOutputStream(outputFile))
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count = is.read(buffer);
+            while (count > 0)
             {
-                byte[] buffer = new byte[1024];
-                int count;
-                while ((count = is.read(buffer)) > 0)
-                {
-                    fos.write(buffer, 0, count);
-                }
+                out.write(buffer, 0, count);
+                count = is.read(buffer);
             }
+            return out.toByteArray();
+        }
+        catch (MergeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new MergeException("Problem executing merge", e);
+        }
+    }
+
+    /**
+     * Execute the merge into the assembly directory.
+     * 
+     * @param assembleDir the directory to save to
+     * @throws MergeException if a problem
+     */
+    public void execute(File assembleDir) throws MergeException
+    {
+        byte[] merged = performMerge();
+        if (merged == null)
+        {
+            return;
+        }
+
+        File outputFile = new File(assembleDir.getAbsolutePath() + File.separator
+            + this.resource);
+
+        // Make sure the directory actually exists
+        outputFile.getParentFile().mkdir();
+
+        try (FileOutputStream fos = new FileOutputStream(outputFile))
+        {
+            fos.write(merged);
         }
         catch (Exception e)
         {
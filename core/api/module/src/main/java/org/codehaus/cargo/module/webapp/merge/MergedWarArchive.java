@@ -19,21 +19,44 @@
  */
 package org.codehaus.cargo.module.webapp.merge;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 import org.codehaus.cargo.module.AbstractDescriptorIo;
+import org.codehaus.cargo.module.Descriptor;
 import org.codehaus.cargo.module.merge.MergeException;
 import org.codehaus.cargo.module.merge.MergeProcessor;
 import org.codehaus.cargo.module.webapp.WarArchive;
 import org.codehaus.cargo.module.webapp.WebXml;
+import org.codehaus.cargo.util.CargoException;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
-import org.codehaus.cargo.util.JarUtils;
 import org.jdom.JDOMException;
 
 /**
@@ -41,6 +64,11 @@ import org.jdom.JDOMException;
  */
 public class MergedWarArchive implements WarArchive
 {
+    /**
+     * Size of the buffer used to copy the extra JAR files.
+     */
+    private static final int COPY_BUFFER_SIZE = 40960;
+
     /**
      * War files making up this merged war, or type MergeWarFileDetails.
      */
@@ -180,28 +208,340 @@ public class MergedWarArchive implements WarArchive
     }
 
     /**
-     * Here we do actual merge and store resulting war file into the new location. {@inheritDoc}
+     * Here we do actual merge and store resulting war file into the new location. Entries are
+     * streamed from the WAR files being merged directly into the new WAR file, without expanding
+     * anything on disk. When several WAR files have the same entry, the one of the WAR file added
+     * last wins, as it does with {@link #merge(String)}. The WAR files are read in parallel.
+     * {@inheritDoc}
      */
     @Override
     public void store(File warFile) throws MergeException, IOException, JDOMException
     {
-        DefaultFileHandler fileHandler = new DefaultFileHandler();
+        int threads = Math.min(this.warFiles.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            Map<String, byte[]> generatedEntries = mergeInMemory(executor);
+            byte[] manifest = generatedEntries.remove(JarFile.MANIFEST_NAME);
+
+            Map<String, File> jarEntries = new LinkedHashMap<String, File>();
+            for (File jarFile : this.jarFiles)
+            {
+                jarEntries.put("WEB-INF/lib/" + jarFile.getName(), jarFile);
+            }
+
+            Set<String> excluded = new HashSet<String>(generatedEntries.keySet());
+            excluded.addAll(jarEntries.keySet());
+            excluded.add(JarFile.MANIFEST_NAME);
+            excluded = Collections.unmodifiableSet(excluded);
+
+            // Readers are submitted in the order they are consumed, so that the reader being
+            // consumed is always running
+            List<WarEntryReader> readers = new ArrayList<WarEntryReader>();
+            for (int i = this.warFiles.size() - 1; i >= 0; i--)
+            {
+                WarEntryReader reader =
+                    new WarEntryReader(this.warFiles.get(i), excluded, this.mergeJarFiles);
+                readers.add(reader);
+                executor.submit(reader);
+            }
+
+            if (warFile.getParentFile() != null && !warFile.getParentFile().exists())
+            {
+                warFile.getParentFile().mkdirs();
+            }
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(warFile)))
+            {
+                if (manifest != null)
+                {
+                    out.putNextEntry(new JarEntry(JarFile.MANIFEST_NAME));
+                    out.write(manifest);
+                    out.closeEntry();
+                }
+
+                Set<String> written = new HashSet<String>(excluded);
+                for (WarEntryReader reader : readers)
+                {
+                    copyEntries(reader, out, written);
+                }
 
-        // Create place for merge
-        String assembleDir = fileHandler.createUniqueTmpDirectory();
+                for (Map.Entry<String, byte[]> generatedEntry : generatedEntries.entrySet())
+                {
+                    out.putNextEntry(new JarEntry(generatedEntry.getKey()));
+                    out.write(generatedEntry.getValue());
+                    out.closeEntry();
+                }
+
+                FileHandler fileHandler = new DefaultFileHandler();
+                for (Map.Entry<String, File> jarEntry : jarEntries.entrySet())
+                {
+                    out.putNextEntry(new JarEntry(jarEntry.getKey()));
+                    try (InputStream in = new FileInputStream(jarEntry.getValue()))
+                    {
+                        fileHandler.copy(in, out, COPY_BUFFER_SIZE);
+                    }
+                    out.closeEntry();
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Merges the web XML items and executes the merge processors in memory. The WAR files are
+     * read in parallel beforehand, each of them only once.
+     * @param executor Executor to read the WAR files with.
+     * @return Merged entries, indexed by path.
+     * @throws MergeException If one of merge processors fails
+     * @throws IOException If there was a problem reading the WAR files
+     * @throws JDOMException If the deployment descriptor of a WAR could not be parsed
+     */
+    private Map<String, byte[]> mergeInMemory(ExecutorService executor)
+        throws MergeException, IOException, JDOMException
+    {
+        final Set<String> resources = new HashSet<String>();
+        for (ArchiveResourceMerger processor : this.mergeProcessors)
+        {
+            resources.add(processor.getResource());
+        }
 
-        // Do actual merge
-        merge(assembleDir);
+        List<Future<Map<String, byte[]>>> mergeItems =
+            new ArrayList<Future<Map<String, byte[]>>>();
+        for (MergeWarFileDetails details : this.warFiles)
+        {
+            final WarArchive wa = details.getWarFile();
+            mergeItems.add(executor.submit(new Callable<Map<String, byte[]>>()
+            {
+                @Override
+                public Map<String, byte[]> call() throws Exception
+                {
+                    // Parse the web.xml now, as getWebXml() will need it
+                    wa.getWebXml();
+
+                    Map<String, byte[]> items = new HashMap<String, byte[]>();
+                    Manifest manifest = readManifest(wa);
+                    if (manifest != null)
+                    {
+                        ByteArrayOutputStream item = new ByteArrayOutputStream();
+                        manifest.write(item);
+                        items.put(JarFile.MANIFEST_NAME, item.toByteArray());
+                    }
+                    for (String resource : resources)
+                    {
+                        try (InputStream is = wa.getResource(resource))
+                        {
+                            if (is != null)
+                            {
+                                ByteArrayOutputStream item = new ByteArrayOutputStream();
+                                new DefaultFileHandler().copy(is, item);
+                                items.put(resource, item.toByteArray());
+                            }
+                        }
+                    }
+                    return items;
+                }
+            }));
+        }
+        List<Map<String, byte[]>> warResources = new ArrayList<Map<String, byte[]>>();
+        for (Future<Map<String, byte[]>> mergeItem : mergeItems)
+        {
+            try
+            {
+                warResources.add(mergeItem.get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the WAR files");
+            }
+            catch (ExecutionException e)
+            {
+                rethrow(e.getCause());
+            }
+        }
 
-        // Create a jar file
-        new JarUtils().createJarFromDirectory(assembleDir, warFile);
+        // 1: Merge together the web XML items
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        WebXml mergedWebXml = getWebXml();
+        entries.put("WEB-INF/web.xml", serialize(mergedWebXml));
+        for (Descriptor descriptor : mergedWebXml.getVendorDescriptors())
+        {
+            entries.put("WEB-INF/" + descriptor.getFileName(), serialize(descriptor));
+        }
 
-        // Delete temp directory.
-        fileHandler.delete(assembleDir);
+        // 2: Merge together the manifests, the attributes of the WAR file added last win
+        Manifest mergedManifest = null;
+        for (Map<String, byte[]> items : warResources)
+        {
+            byte[] item = items.get(JarFile.MANIFEST_NAME);
+            if (item != null)
+            {
+                Manifest manifest = new Manifest(new ByteArrayInputStream(item));
+                if (mergedManifest == null)
+                {
+                    mergedManifest = manifest;
+                }
+                else
+                {
+                    mergedManifest.getMainAttributes().putAll(manifest.getMainAttributes());
+                    mergedManifest.getEntries().putAll(manifest.getEntries());
+                }
+            }
+        }
+        if (mergedManifest != null)
+        {
+            ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+            mergedManifest.write(manifest);
+            entries.put(JarFile.MANIFEST_NAME, manifest.toByteArray());
+        }
+
+        // 3: Execute the merge processors, which override the web XML items
+        for (ArchiveResourceMerger processor : this.mergeProcessors)
+        {
+            for (Map<String, byte[]> items : warResources)
+            {
+                byte[] item = items.get(processor.getResource());
+                if (item != null)
+                {
+                    processor.addMergeItem(new ByteArrayInputStream(item));
+                }
+            }
+
+            byte[] merged = processor.performMerge();
+            if (merged != null)
+            {
+                entries.put(processor.getResource(), merged);
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Copies the entries handed over by a reader which have not been written yet.
+     * @param reader Reader of the WAR file to copy.
+     * @param out Merged WAR file.
+     * @param written Entries written already, updated with the entries copied.
+     * @throws MergeException If reading the WAR file failed
+     * @throws IOException If reading the WAR file or writing the merged WAR file failed
+     * @throws JDOMException If reading the WAR file failed
+     */
+    private void copyEntries(WarEntryReader reader, JarOutputStream out, Set<String> written)
+        throws MergeException, IOException, JDOMException
+    {
+        boolean copying = false;
+        WarEntryReader.Chunk chunk = reader.take();
+        while (chunk.getFailure() != null || chunk.getEntryName() != null
+            || chunk.getData() != null)
+        {
+            if (chunk.getFailure() != null)
+            {
+                rethrow(chunk.getFailure());
+            }
+            else if (chunk.getEntryName() != null)
+            {
+                if (copying)
+                {
+                    out.closeEntry();
+                }
+                copying = written.add(chunk.getEntryName());
+                if (copying)
+                {
+                    out.putNextEntry(new JarEntry(chunk.getEntryName()));
+                }
+            }
+            else
+            {
+                if (copying)
+                {
+                    out.write(chunk.getData(), 0, chunk.getLength());
+                }
+                reader.release();
+            }
+            chunk = reader.take();
+        }
+        if (copying)
+        {
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * Reads the manifest of a WAR file, which reading its entries sequentially skips.
+     * @param warArchive WAR file.
+     * @return Manifest of the WAR file, <code>null</code> if it has none.
+     * @throws IOException If the WAR file cannot be read.
+     */
+    private static Manifest readManifest(WarArchive warArchive) throws IOException
+    {
+        try (JarInputStream in = WarEntryReader.openContent(warArchive))
+        {
+            if (in != null)
+            {
+                return in.getManifest();
+            }
+        }
+        try (InputStream in = warArchive.getResource(JarFile.MANIFEST_NAME))
+        {
+            if (in != null)
+            {
+                return new Manifest(in);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param descriptor Descriptor to serialize.
+     * @return Serialized descriptor.
+     * @throws IOException If the descriptor cannot be serialized.
+     */
+    private static byte[] serialize(Descriptor descriptor) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AbstractDescriptorIo.writeDescriptor(descriptor, out, StandardCharsets.UTF_8, true);
+        return out.toByteArray();
+    }
+
+    /**
+     * Rethrows a failure of another thread.
+     * @param failure Failure.
+     * @throws MergeException If the failure is a merge failure
+     * @throws IOException If the failure is an I/O failure
+     * @throws JDOMException If the failure is an XML parse failure
+     */
+    private static void rethrow(Throwable failure)
+        throws MergeException, IOException, JDOMException
+    {
+        if (failure instanceof MergeException)
+        {
+            throw (MergeException) failure;
+        }
+        else if (failure instanceof IOException)
+        {
+            throw (IOException) failure;
+        }
+        else if (failure instanceof JDOMException)
+        {
+            throw (JDOMException) failure;
+        }
+        else if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException) failure;
+        }
+        else if (failure instanceof Error)
+        {
+            throw (Error) failure;
+        }
+        throw new CargoException("Failed reading WAR file", failure);
     }
 
     /**
-     * Here we write combined archive file structure out into the new location.
+     * Here we write combined archive file structure out into the new location. Unlike
+     * {@link #store(File)}, this expands all WAR files to the target directory.
      * @param assembleDir target directory to write to
      * @throws IOException If there was a problem reading the deployment descriptor in the WAR
      * @throws JDOMException If the deployment descriptor of the WAR could not be parsed
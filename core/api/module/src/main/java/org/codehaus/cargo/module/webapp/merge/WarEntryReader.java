@@ -0,0 +1,312 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module.webapp.merge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.codehaus.cargo.module.DefaultJarArchive;
+import org.codehaus.cargo.module.webapp.WarArchive;
+
+/**
+ * Reads the entries of a WAR file being merged ahead of the thread writing the merged WAR. Entries
+ * are handed over in chunks, and the reader blocks once a bounded number of chunks are waiting to
+ * be written, so that the memory used does not depend on the size of the entries.
+ */
+class WarEntryReader implements Callable<Void>
+{
+    /**
+     * Size of the chunks entries are read in.
+     */
+    private static final int CHUNK_SIZE = 65536;
+
+    /**
+     * Maximum number of chunks read ahead.
+     */
+    private static final int READ_AHEAD_CHUNKS = 64;
+
+    /**
+     * WAR file to read, with its merge options.
+     */
+    private MergeWarFileDetails details;
+
+    /**
+     * Entries not to read at all.
+     */
+    private Set<String> excluded;
+
+    /**
+     * Whether the JAR files in WEB-INF/lib should be read.
+     */
+    private boolean mergeJarFiles;
+
+    /**
+     * Chunks read and not taken yet.
+     */
+    private BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+
+    /**
+     * Chunks which can still be read ahead.
+     */
+    private Semaphore readAhead = new Semaphore(READ_AHEAD_CHUNKS);
+
+    /**
+     * @param details WAR file to read, with its merge options.
+     * @param excluded Entries not to read at all.
+     * @param mergeJarFiles Whether the JAR files in WEB-INF/lib should be read.
+     */
+    WarEntryReader(MergeWarFileDetails details, Set<String> excluded, boolean mergeJarFiles)
+    {
+        this.details = details;
+        this.excluded = excluded;
+        this.mergeJarFiles = mergeJarFiles;
+    }
+
+    /**
+     * Reads all entries. Failures are not thrown but handed over to the writing thread.
+     * @return Nothing.
+     */
+    @Override
+    public Void call()
+    {
+        try
+        {
+            WarArchive archive = this.details.getWarFile();
+            try (JarInputStream in = openContent(archive))
+            {
+                if (in != null)
+                {
+                    JarEntry entry = in.getNextJarEntry();
+                    while (entry != null)
+                    {
+                        if (accept(entry.getName()))
+                        {
+                            read(entry.getName(), in);
+                        }
+                        entry = in.getNextJarEntry();
+                    }
+                }
+                else
+                {
+                    for (String name : archive.getResources(""))
+                    {
+                        if (accept(name))
+                        {
+                            try (InputStream resource = archive.getResource(name))
+                            {
+                                if (resource != null)
+                                {
+                                    read(name, resource);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            this.chunks.add(new Chunk(null, null, 0, null));
+        }
+        catch (Exception e)
+        {
+            this.chunks.add(new Chunk(null, null, 0, e));
+        }
+        return null;
+    }
+
+    /**
+     * Opens the content of a WAR file, so that it can be read sequentially.
+     * @param archive WAR file.
+     * @return Content of the WAR file, <code>null</code> if the WAR file is not a file which can
+     * be read sequentially, in which case it has to be read resource by resource.
+     * @throws IOException If the WAR file cannot be opened.
+     */
+    static JarInputStream openContent(WarArchive archive) throws IOException
+    {
+        if (archive instanceof DefaultJarArchive)
+        {
+            DefaultJarArchive jarArchive = (DefaultJarArchive) archive;
+            if (jarArchive.getSourceFile() != null)
+            {
+                return new JarInputStream(
+                    jarArchive.getFileHandler().getInputStream(jarArchive.getSourceFile()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the next chunk. After a chunk of entry data has been written, {@link #release()}
+     * must be called.
+     * @return Next chunk.
+     * @throws IOException If interrupted while waiting.
+     */
+    Chunk take() throws IOException
+    {
+        try
+        {
+            return this.chunks.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading "
+                + this.details.getWarFile());
+        }
+    }
+
+    /**
+     * Lets the reader read one more chunk ahead.
+     */
+    void release()
+    {
+        this.readAhead.release();
+    }
+
+    /**
+     * @param name Entry name.
+     * @return <code>true</code> if the entry is to be read.
+     */
+    private boolean accept(String name)
+    {
+        if (name.endsWith("/") || this.excluded.contains(name)
+            || !this.details.accept(new File(name)))
+        {
+            return false;
+        }
+        return this.mergeJarFiles || !name.startsWith("WEB-INF/lib/")
+            || name.indexOf('/', "WEB-INF/lib/".length()) != -1
+            || !name.toLowerCase().endsWith(".jar");
+    }
+
+    /**
+     * Hands an entry over in chunks.
+     * @param name Entry name.
+     * @param in Entry content.
+     * @throws IOException If reading fails.
+     * @throws InterruptedException If interrupted while waiting for the entries to be written.
+     */
+    private void read(String name, InputStream in) throws IOException, InterruptedException
+    {
+        this.chunks.add(new Chunk(name, null, 0, null));
+
+        this.readAhead.acquire();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        int read = in.read(buffer);
+        while (read != -1)
+        {
+            if (read < CHUNK_SIZE / 2)
+            {
+                this.chunks.add(new Chunk(null, Arrays.copyOf(buffer, read), read, null));
+            }
+            else
+            {
+                this.chunks.add(new Chunk(null, buffer, read, null));
+                buffer = new byte[CHUNK_SIZE];
+            }
+
+            this.readAhead.acquire();
+            read = in.read(buffer);
+        }
+        this.readAhead.release();
+    }
+
+    /**
+     * Chunk handed over by the reader: either the start of an entry, entry data, the end of the
+     * WAR file or a failure.
+     */
+    static class Chunk
+    {
+        /**
+         * Name of the entry starting, <code>null</code> if this chunk is not an entry start.
+         */
+        private String entryName;
+
+        /**
+         * Entry data, <code>null</code> if this chunk is not entry data.
+         */
+        private byte[] data;
+
+        /**
+         * Length of the entry data.
+         */
+        private int length;
+
+        /**
+         * Failure, <code>null</code> if none.
+         */
+        private Exception failure;
+
+        /**
+         * @param entryName Name of the entry starting.
+         * @param data Entry data.
+         * @param length Length of the entry data.
+         * @param failure Failure.
+         */
+        Chunk(String entryName, byte[] data, int length, Exception failure)
+        {
+            this.entryName = entryName;
+            this.data = data;
+            this.length = length;
+            this.failure = failure;
+        }
+
+        /**
+         * @return Name of the entry starting, <code>null</code> if this chunk is not an entry
+         * start.
+         */
+        String getEntryName()
+        {
+            return this.entryName;
+        }
+
+        /**
+         * @return Entry data, <code>null</code> if this chunk is not entry data.
+         */
+        byte[] getData()
+        {
+            return this.data;
+        }
+
+        /**
+         * @return Length of the entry data.
+         */
+        int getLength()
+        {
+            return this.length;
+        }
+
+        /**
+         * @return Failure, <code>null</code> if none.
+         */
+        Exception getFailure()
+        {
+            return this.failure;
+        }
+    }
+}
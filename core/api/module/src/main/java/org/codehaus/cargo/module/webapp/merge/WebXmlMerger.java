@@ -22,7 +22,12 @@
  */
 package org.codehaus.cargo.module.webapp.merge;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.codehaus.cargo.module.Descriptor;
 import org.codehaus.cargo.module.XmlMerger;
@@ -34,8 +39,11 @@ import org.codehaus.cargo.module.webapp.WebXml;
 import org.codehaus.cargo.module.webapp.WebXmlType;
 import org.codehaus.cargo.module.webapp.WebXmlUtils;
 import org.codehaus.cargo.module.webapp.WebXmlVersion;
+import org.codehaus.cargo.module.webapp.elements.Filter;
 import org.codehaus.cargo.module.webapp.elements.FilterMapping;
+import org.codehaus.cargo.module.webapp.elements.InitParam;
 import org.codehaus.cargo.module.webapp.elements.MimeMapping;
+import org.codehaus.cargo.module.webapp.elements.Servlet;
 import org.codehaus.cargo.util.CargoException;
 import org.jdom.Element;
 
@@ -183,50 +191,82 @@ public class WebXmlMerger extends XmlMerger
         }
     }
 
+
     /**
      * Merges the servlet definitions from the specified descriptor into the original descriptor.
+     * Filters and filter mappings are looked up by filter name in hash maps built once, so that
+     * merging scales linearly with the size of the descriptors.
      * 
      * @param theWebXml The descriptor that contains the filter definitions that are to be merged
      * into the original descriptor
      */
     protected final void mergeFilters(WebXml theWebXml)
     {
-        List<String> filterNames = WebXmlUtils.getFilterNames(theWebXml);
+        Map<String, Filter> filters = new HashMap<String, Filter>();
+        for (Element element : this.webXml.getTags(WebXmlType.FILTER))
+        {
+            Filter filter = (Filter) element;
+            if (!filters.containsKey(filter.getFilterName()))
+            {
+                filters.put(filter.getFilterName(), filter);
+            }
+        }
+        Map<String, List<FilterMapping>> filterMappings = getFilterMappings(this.webXml);
+        Map<String, List<FilterMapping>> mergedFilterMappings = getFilterMappings(theWebXml);
+
+        List<Element> addedFilters = new ArrayList<Element>();
         int count = 0;
-        for (String filterName : filterNames)
+        for (Element element : theWebXml.getTags(WebXmlType.FILTER))
         {
-            if (!WebXmlUtils.hasFilter(webXml, filterName))
+            Filter filter = (Filter) element;
+            String filterName = filter.getFilterName();
+            Filter existingFilter = filters.get(filterName);
+            if (existingFilter == null)
             {
-                WebXmlUtils.addFilter(this.webXml,
-                    WebXmlUtils.getFilter(theWebXml, filterName));
+                addedFilters.add(filter);
+                filters.put(filterName, filter);
             }
             else
             {
                 // merge the parameters
-                List<String> filterInitParamNames =
-                    WebXmlUtils.getFilterInitParamNames(theWebXml, filterName);
-                for (String paramName : filterInitParamNames)
+                Set<String> existingInitParams = new HashSet<String>();
+                for (InitParam initParam : existingFilter.getInitParams())
+                {
+                    existingInitParams.add(initParam.getParamName());
+                }
+                for (InitParam initParam : new ArrayList<InitParam>(filter.getInitParams()))
                 {
-                    List<String> existingInitParams =
-                        WebXmlUtils.getFilterInitParamNames(this.webXml, filterName);
-                    if (!existingInitParams.contains(paramName))
+                    if (existingInitParams.add(initParam.getParamName()))
                     {
-                        String paramValue =
-                            WebXmlUtils.getFilterInitParam(theWebXml, filterName, paramName);
-                        WebXmlUtils.addFilterInitParam(this.webXml, filterName, paramName,
-                            paramValue);
+                        WebXmlUtils.addTagInitParam(existingFilter, initParam.getParamName(),
+                            initParam.getParamValue());
                     }
                 }
             }
             // merge the mappings
-            List<FilterMapping> mappings =
-                WebXmlUtils.getFilterMappingElements(theWebXml, filterName);
-            for (FilterMapping mapping : mappings)
+            List<FilterMapping> mappings = mergedFilterMappings.get(filterName);
+            if (mappings != null)
             {
-                WebXmlUtils.addFilterMapping(this.webXml, mapping);
+                List<FilterMapping> existingMappings = filterMappings.get(filterName);
+                if (existingMappings == null)
+                {
+                    existingMappings = new ArrayList<FilterMapping>();
+                    filterMappings.put(filterName, existingMappings);
+                }
+                for (FilterMapping mapping : mappings)
+                {
+                    FilterMapping merged =
+                        WebXmlUtils.addFilterMapping(this.webXml, mapping, existingMappings);
+                    if (!existingMappings.contains(merged))
+                    {
+                        existingMappings.add(merged);
+                    }
+                }
             }
             count++;
         }
+        this.webXml.addElements(this.webXml.getDescriptorType().getTagByName(WebXmlType.FILTER),
+            addedFilters, this.webXml.getRootElement());
         getLogger().debug("Merged " + count + " filter definition"
             + (count != 1 ? "s " : " ") + "into the descriptor",
             this.getClass().getName());
@@ -234,6 +274,8 @@ public class WebXmlMerger extends XmlMerger
 
     /**
      * Merges the servlet definitions from the specified descriptor into the original descriptor.
+     * Servlets and servlet mappings are looked up by servlet name in hash maps built once, so
+     * that merging scales linearly with the size of the descriptors.
      * 
      * @param theWebXml The descriptor that contains the servlet definitions that are to be merged
      * into the original descriptor
@@ -243,48 +285,73 @@ public class WebXmlMerger extends XmlMerger
     {
         try
         {
-            List<String> servletNames = WebXmlUtils.getServletNames(theWebXml);
+            Map<String, Servlet> servlets = new HashMap<String, Servlet>();
+            for (Element element : this.webXml.getTags(WebXmlType.SERVLET))
+            {
+                Servlet servlet = (Servlet) element;
+                if (!servlets.containsKey(servlet.getServletName()))
+                {
+                    servlets.put(servlet.getServletName(), servlet);
+                }
+            }
+            Map<String, List<String>> servletMappings = getServletMappings(this.webXml);
+            Map<String, List<String>> mergedServletMappings = getServletMappings(theWebXml);
+
+            List<Element> addedServlets = new ArrayList<Element>();
             int count = 0;
-            for (String servletName : servletNames)
+            for (Element element : theWebXml.getTags(WebXmlType.SERVLET))
             {
-                if (!WebXmlUtils.hasServlet(this.webXml, servletName))
+                Servlet servlet = (Servlet) element;
+                String servletName = servlet.getServletName();
+                Servlet existingServlet = servlets.get(servletName);
+                if (existingServlet == null)
                 {
-                    WebXmlUtils.addServlet(this.webXml,
-                        WebXmlUtils.getServlet(theWebXml, servletName));
+                    addedServlets.add(servlet);
+                    servlets.put(servletName, servlet);
+                    existingServlet = servlet;
                 }
                 else
                 {
                     // merge the parameters
                     List<String> servletInitParamNames =
-                        WebXmlUtils.getServletInitParamNames(theWebXml, servletName);
+                        WebXmlUtils.getServletInitParamNames(theWebXml, servlet);
                     for (String paramName : servletInitParamNames)
                     {
                         String paramValue =
-                            WebXmlUtils.getServletInitParam(theWebXml, servletName, paramName);
+                            WebXmlUtils.getServletInitParam(theWebXml, servlet, paramName);
                         WebXmlUtils.addServletInitParam(this.webXml,
-                            servletName, paramName, paramValue);
+                            existingServlet, paramName, paramValue);
                     }
-                    String roleName =
-                        WebXmlUtils.getServletRunAsRoleName(theWebXml, servletName);
+                    String roleName = WebXmlUtils.getServletRunAsRoleName(theWebXml, servlet);
                     if (roleName != null)
                     {
-                        WebXmlUtils.addServletRunAsRoleName(this.webXml, servletName, roleName);
+                        WebXmlUtils.addServletRunAsRoleName(
+                            this.webXml, existingServlet, roleName);
                     }
                 }
                 // merge the mappings
-                List<String> servletMappings =
-                    WebXmlUtils.getServletMappings(theWebXml, servletName);
-                for (String urlPattern : servletMappings)
+                List<String> urlPatterns = mergedServletMappings.get(servletName);
+                if (urlPatterns != null)
                 {
-                    List<String> existingServletMappings =
-                        WebXmlUtils.getServletMappings(this.webXml, servletName);
-                    if (!existingServletMappings.contains(urlPattern))
+                    Set<String> existingUrlPatterns = new HashSet<String>();
+                    if (servletMappings.containsKey(servletName))
+                    {
+                        existingUrlPatterns.addAll(servletMappings.get(servletName));
+                    }
+                    for (String urlPattern : urlPatterns)
                     {
-                        WebXmlUtils.addServletMapping(this.webXml, servletName, urlPattern);
+                        if (existingUrlPatterns.add(urlPattern))
+                        {
+                            WebXmlUtils.addServletMapping(this.webXml, existingServlet,
+                                urlPattern);
+                        }
                     }
                 }
                 count++;
             }
+            this.webXml.addElements(
+                this.webXml.getDescriptorType().getTagByName(WebXmlType.SERVLET),
+                addedServlets, this.webXml.getRootElement());
             getLogger().debug("Merged " + count + " servlet definition"
                 + (count != 1 ? "s " : " ") + "into the descriptor",
                 this.getClass().getName());
@@ -303,13 +370,16 @@ public class WebXmlMerger extends XmlMerger
      */
     protected final void mergeSecurityRoles(WebXml theWebXml)
     {
+        Set<String> existingSecurityRoleNames =
+            new HashSet<String>(WebXmlUtils.getSecurityRoleNames(this.webXml));
         List<String> securityRoleNames = WebXmlUtils.getSecurityRoleNames(theWebXml);
         int count = 0;
         for (String securityRoleName : securityRoleNames)
         {
-            if (!WebXmlUtils.hasSecurityRole(this.webXml, securityRoleName))
+            if (existingSecurityRoleNames.add(securityRoleName))
             {
                 WebXmlUtils.addSecurityRole(this.webXml, securityRoleName);
+                count++;
             }
         }
         if (count > 0)
@@ -329,27 +399,19 @@ public class WebXmlMerger extends XmlMerger
     {
         int count = 0;
 
-        List<Element> srcItems = webXml.getTags(WebXmlType.MIME_MAPPING);
+        Set<String> extensions = new HashSet<String>();
+        for (Element srcItem : webXml.getTags(WebXmlType.MIME_MAPPING))
+        {
+            extensions.add(((MimeMapping) srcItem).getExtension());
+        }
         List<Element> targetItems = theWebXml.getTags(WebXmlType.MIME_MAPPING);
+        List<Element> addedItems = new ArrayList<Element>();
 
         for (Element targetItem : targetItems)
         {
-            boolean foundItem = false;
-
             MimeMapping targetMimeMapping = (MimeMapping) targetItem;
 
-            for (Element srcItem : srcItems)
-            {
-                MimeMapping srcMimeMapping = (MimeMapping) srcItem;
-
-                if (targetMimeMapping.getExtension().equals(srcMimeMapping.getExtension()))
-                {
-                    foundItem = true;
-                    break;
-                }
-            }
-
-            if (!foundItem)
+            if (extensions.add(targetMimeMapping.getExtension()))
             {
                 MimeMapping mimeMappingElement = (MimeMapping) webXml.getDescriptorType().
                     getTagByName(WebXmlType.MIME_MAPPING).create();
@@ -357,14 +419,69 @@ public class WebXmlMerger extends XmlMerger
                 mimeMappingElement.setExtension(targetMimeMapping.getExtension());
                 mimeMappingElement.setMimeType(targetMimeMapping.getMimeType());
 
-                this.webXml.addElement(mimeMappingElement.getTag(), mimeMappingElement,
-                    this.webXml.getRootElement());
-                this.webXml.addTag(mimeMappingElement);
+                addedItems.add(mimeMappingElement);
+                count++;
             }
         }
+        this.webXml.addElements(
+            this.webXml.getDescriptorType().getTagByName(WebXmlType.MIME_MAPPING),
+            addedItems, this.webXml.getRootElement());
 
         getLogger().debug("Merged " + count + " mime mapping definition"
             + (count != 1 ? "s " : " ") + "into the descriptor",
             this.getClass().getName());
     }
+
+    /**
+     * Gets the filter mappings of a descriptor by filter name.
+     * 
+     * @param theWebXml The descriptor
+     * @return The filter mappings by filter name, in the order they occur in the descriptor
+     */
+    private static Map<String, List<FilterMapping>> getFilterMappings(WebXml theWebXml)
+    {
+        Map<String, List<FilterMapping>> filterMappings =
+            new HashMap<String, List<FilterMapping>>();
+        for (Element element : theWebXml.getTags(WebXmlType.FILTER_MAPPING))
+        {
+            FilterMapping filterMapping = (FilterMapping) element;
+            List<FilterMapping> mappings = filterMappings.get(filterMapping.getFilterName());
+            if (mappings == null)
+            {
+                mappings = new ArrayList<FilterMapping>();
+                filterMappings.put(filterMapping.getFilterName(), mappings);
+            }
+            mappings.add(filterMapping);
+        }
+        return filterMappings;
+    }
+
+    /**
+     * Gets the URL patterns of the servlet mappings of a descriptor by servlet name.
+     * 
+     * @param theWebXml The descriptor
+     * @return The URL patterns by servlet name, in the order they occur in the descriptor
+     */
+    private static Map<String, List<String>> getServletMappings(WebXml theWebXml)
+    {
+        Map<String, List<String>> servletMappings = new HashMap<String, List<String>>();
+        for (Element element : theWebXml.getElements(WebXmlType.SERVLET_MAPPING))
+        {
+            String servletName =
+                element.getChildText(WebXmlType.SERVLET_NAME, element.getNamespace());
+            String urlPattern =
+                element.getChildText(WebXmlType.URL_PATTERN, element.getNamespace());
+            if (servletName != null && urlPattern != null)
+            {
+                List<String> urlPatterns = servletMappings.get(servletName);
+                if (urlPatterns == null)
+                {
+                    urlPatterns = new ArrayList<String>();
+                    servletMappings.put(servletName, urlPatterns);
+                }
+                urlPatterns.add(urlPattern);
+            }
+        }
+        return servletMappings;
+    }
 }
@@ -81,4 +81,15 @@ public class DtdTest extends TestCase
         tag = elementOrder.get(2);
         assertEquals("location", tag.getTagName());
     }
+
+    /**
+     * Test that a DTD is only parsed once.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testParsedOnce() throws Exception
+    {
+        Dtd dtd = new Dtd("http://java.sun.com/dtd/web-app_2_3.dtd");
+        Dtd otherDtd = new Dtd("http://java.sun.com/dtd/web-app_2_3.dtd");
+        assertSame(dtd.getElementOrder("error-page"), otherDtd.getElementOrder("error-page"));
+    }
 }
@@ -22,8 +22,13 @@
  */
 package org.codehaus.cargo.module;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -32,6 +37,7 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemManager;
 import org.apache.commons.vfs2.impl.StandardFileSystemManager;
 import org.codehaus.cargo.util.AbstractResourceTest;
+import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.VFSFileHandler;
 
 /**
@@ -203,4 +209,101 @@ public final class JarArchiveTest extends AbstractResourceTest
         // Verify that the rootResource.txt file has been correctly expanded
         assertTrue(this.fsManager.resolveFile("ram:///test/rootResource.txt").exists());
     }
+
+    /**
+     * Verifies that {@link IndexedJarArchive} behaves like {@link DefaultJarArchive}, both for
+     * archives on disk and for archives in memory.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testIndexedJarArchive() throws Exception
+    {
+        for (String name : new String[] {"test.jar", "randomaccess.jar", "containsclass.jar",
+            "empty.jar"})
+        {
+            String path = getResourcePath(PACKAGE_PATH + name);
+            JarArchive reference = new DefaultJarArchive(path);
+            JarArchive[] indexedArchives = new JarArchive[] {
+                new IndexedJarArchive(new File(path)),
+                new IndexedJarArchive(new FileInputStream(path))
+            };
+
+            for (JarArchive indexed : indexedArchives)
+            {
+                assertEquals(name, reference.getResources(""), indexed.getResources(""));
+                assertEquals(name, reference.getResources("folder1"),
+                    indexed.getResources("folder1"));
+                assertEquals(name, reference.containsClass("test.Test"),
+                    indexed.containsClass("test.Test"));
+                assertEquals(name, reference.findResource("resourceOne.txt"),
+                    indexed.findResource("resourceOne.txt"));
+                assertNull(indexed.getResource("foo"));
+            }
+        }
+
+        JarArchive jar = new IndexedJarArchive(
+            new FileInputStream(getResourcePath(PACKAGE_PATH + "randomaccess.jar")));
+        assertContains(jar.getResource("secondEntry.txt"), "secondEntry");
+        assertContains(jar.getResource("firstEntry.txt"), "firstEntry");
+    }
+
+    /**
+     * Verifies that {@link JarArchiveIo} opens archives through the file handler, reading local
+     * files with random access and other files in memory.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testOpenThroughFileHandler() throws Exception
+    {
+        String path = getResourcePath(PACKAGE_PATH + "randomaccess.jar");
+        JarArchive local = JarArchiveIo.open(path);
+        assertTrue(local instanceof IndexedJarArchive);
+        assertContains(local.getResource("secondEntry.txt"), "secondEntry");
+        assertContains(local.getResource("firstEntry.txt"), "firstEntry");
+
+        VFSFileHandler fileHandler = new VFSFileHandler(this.fsManager);
+        fileHandler.copyFile(path, "ram:///randomaccess.jar");
+        JarArchive virtual = JarArchiveIo.open("ram:///randomaccess.jar", fileHandler);
+        assertTrue(virtual instanceof IndexedJarArchive);
+        assertContains(virtual.getResource("secondEntry.txt"), "secondEntry");
+        assertNull(virtual.getResource("foo"));
+    }
+
+    /**
+     * Verifies that {@link IndexedJarArchive} inflates entries of archives in memory.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testIndexedJarArchiveInMemory() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+        {
+            content.append("Some compressible content ").append(i).append('\n');
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bytes))
+        {
+            zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zos.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+            zos.putNextEntry(new ZipEntry("org/codehaus/Test.class"));
+            zos.write(content.toString().getBytes(StandardCharsets.UTF_8));
+            zos.putNextEntry(new ZipEntry("empty.txt"));
+        }
+
+        JarArchive jar = new IndexedJarArchive(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(Arrays.asList("org/codehaus/Test.class", "empty.txt"),
+            jar.getResources(""));
+        assertTrue(jar.containsClass("org.codehaus.Test"));
+        assertEquals("org/codehaus/Test.class", jar.findResource("Test.class"));
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        try (InputStream in = jar.getResource("org/codehaus/Test.class"))
+        {
+            new DefaultFileHandler().copy(in, read);
+        }
+        assertEquals(content.toString(), new String(read.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(0, jar.getResource("empty.txt").available());
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.module.webapp.WebXml23Type;
+import org.jdom.Document;
+import org.jdom.input.SAXBuilder;
+import org.xml.sax.EntityResolver;
+
+/**
+ * Unit tests for {@link SAXBuilderCache}.
+ */
+public class SAXBuilderCacheTest extends TestCase
+{
+    /**
+     * Test that SAX builders are kept per JDOM factory and reused.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testBuildersAreReused() throws Exception
+    {
+        EntityResolver entityResolver = new XmlEntityResolver();
+        SAXBuilder builder = SAXBuilderCache.getBuilder(null, entityResolver);
+        assertSame(builder, SAXBuilderCache.getBuilder(null, entityResolver));
+        assertNotSame(builder,
+            SAXBuilderCache.getBuilder(WebXml23Type.getInstance(), entityResolver));
+
+        Document first = builder.build(new StringReader("<first/>"));
+        Document second = builder.build(new StringReader("<second/>"));
+        assertEquals("first", first.getRootElement().getName());
+        assertEquals("second", second.getRootElement().getName());
+    }
+
+    /**
+     * Test that the entity resolver is set on every call.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testEntityResolverIsSet() throws Exception
+    {
+        EntityResolver entityResolver = new XmlEntityResolver();
+        EntityResolver otherEntityResolver = new XmlEntityResolver();
+        SAXBuilderCache.getBuilder(null, entityResolver);
+        assertSame(otherEntityResolver,
+            SAXBuilderCache.getBuilder(null, otherEntityResolver).getEntityResolver());
+
+        try
+        {
+            SAXBuilderCache.getBuilder(null, null);
+            fail("A null entity resolver should have been refused");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            // Expected
+        }
+    }
+}
@@ -19,8 +19,12 @@
  */
 package org.codehaus.cargo.module;
 
+import java.io.InputStream;
+
 import junit.framework.TestCase;
 
+import org.xml.sax.InputSource;
+
 /**
  * Unit tests for {@link XmlEntityResolver}.
  */
@@ -53,4 +57,21 @@ public class XmlEntityResolverTest extends TestCase
         String file = resolver.getDtdFileName(pId, sId);
         assertEquals(file, "weblogic610-web-jar.dtd");
     }
+
+    /**
+     * Verifies that grammars which are not in the JAR are not downloaded.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testUnknownGrammarNotDownloaded() throws Exception
+    {
+        String sId = "http://cargo.invalid/dtd/unknown.dtd";
+        XmlEntityResolver resolver = new XmlEntityResolver();
+        InputSource inputSource = resolver.resolveEntity(null, sId);
+        assertEquals(sId, inputSource.getSystemId());
+        try (InputStream in = inputSource.getByteStream())
+        {
+            assertEquals(-1, in.read());
+        }
+    }
 }
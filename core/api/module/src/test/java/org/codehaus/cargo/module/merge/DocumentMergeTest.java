@@ -19,6 +19,10 @@
  */
 package org.codehaus.cargo.module.merge;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -69,4 +73,95 @@ public class DocumentMergeTest extends TestCase
         assertEquals(((Element) list.get(1)).getChildText("value"), "13");
         assertEquals(((Element) list.get(2)).getChildText("value"), "26");
     }
+
+    /**
+     * Test that documents are merged with an XSLT file, which can be shared by several mergers.
+     * 
+     * @throws Exception If anything goes wrong.
+     */
+    public void testMergeByXsltFile() throws Exception
+    {
+        String xslt = "<xsl:stylesheet version=\"1.0\" "
+            + "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/merge\"><topnode>"
+            + "<xsl:copy-of select=\"left/topnode/*\"/><xsl:copy-of select=\"right/topnode/*\"/>"
+            + "</topnode></xsl:template></xsl:stylesheet>";
+        File file = File.createTempFile("cargo-merge-", ".xsl");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write(xslt.getBytes(StandardCharsets.UTF_8));
+        }
+
+        SAXBuilder sb = new SAXBuilder();
+        for (int i = 0; i < 2; i++)
+        {
+            DocumentMergerByXslt merger = new DocumentMergerByXslt(file);
+            merger.addMergeItem(sb.build(new StringReader("<topnode><value>8</value></topnode>")));
+            merger.addMergeItem(sb.build(new StringReader("<topnode><value>13</value></topnode>")));
+
+            Document mergedDoc = (Document) merger.performMerge();
+
+            List<Element> list = mergedDoc.getRootElement().getChildren("value");
+            assertEquals(2, list.size());
+            assertEquals("8", list.get(0).getText());
+            assertEquals("13", list.get(1).getText());
+        }
+    }
+
+    /**
+     * Test that a modified XSLT file is compiled again, replacing the file's previous version.
+     * 
+     * @throws Exception If anything goes wrong.
+     */
+    public void testMergeByModifiedXsltFile() throws Exception
+    {
+        File file = File.createTempFile("cargo-merge-", ".xsl");
+        file.deleteOnExit();
+
+        writeXslt(file, "left");
+        assertEquals("8", mergeByXsltFile(file));
+
+        writeXslt(file, "right");
+        file.setLastModified(file.lastModified() + 2000);
+        assertEquals("13", mergeByXsltFile(file));
+    }
+
+    /**
+     * Writes an XSLT file keeping the values of one side of the merge.
+     * 
+     * @param file XSLT file.
+     * @param side Side of the merge to keep, <code>left</code> or <code>right</code>.
+     * @throws Exception If anything goes wrong.
+     */
+    private void writeXslt(File file, String side) throws Exception
+    {
+        String xslt = "<xsl:stylesheet version=\"1.0\" "
+            + "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/merge\"><topnode>"
+            + "<xsl:copy-of select=\"" + side + "/topnode/*\"/>"
+            + "</topnode></xsl:template></xsl:stylesheet>";
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write(xslt.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Merges two documents with an XSLT file.
+     * 
+     * @param file XSLT file.
+     * @return Text of the value kept by the merge.
+     * @throws Exception If anything goes wrong.
+     */
+    private String mergeByXsltFile(File file) throws Exception
+    {
+        SAXBuilder sb = new SAXBuilder();
+        DocumentMergerByXslt merger = new DocumentMergerByXslt(file);
+        merger.addMergeItem(sb.build(new StringReader("<topnode><value>8</value></topnode>")));
+        merger.addMergeItem(sb.build(new StringReader("<topnode><value>13</value></topnode>")));
+
+        Document mergedDoc = (Document) merger.performMerge();
+        return mergedDoc.getRootElement().getChildText("value");
+    }
 }
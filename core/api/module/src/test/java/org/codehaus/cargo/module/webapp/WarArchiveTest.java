@@ -23,6 +23,12 @@
 package org.codehaus.cargo.module.webapp;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.codehaus.cargo.util.AbstractResourceTest;
 
@@ -88,4 +94,58 @@ public final class WarArchiveTest extends AbstractResourceTest
         WebXml descr = storedWar.getWebXml();
         assertEquals("There should be 1 descriptor", 1, descr.getVendorDescriptors().size());
     }
+
+    /**
+     * Verifies that storing a WAR copies the unchanged entries as they are, without recompressing
+     * them, and replaces the deployment descriptors.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testStoreArchiveCopiesRawEntries() throws Exception
+    {
+        File sourceFile = File.createTempFile("cargo", ".war");
+        File storedFile = File.createTempFile("cargo", ".war");
+        try
+        {
+            byte[] classContent = new byte[100000];
+            for (int i = 0; i < classContent.length; i++)
+            {
+                classContent[i] = (byte) (i % 7);
+            }
+            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(sourceFile)))
+            {
+                zos.setLevel(Deflater.BEST_SPEED);
+                zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+                zos.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+                zos.putNextEntry(new ZipEntry("WEB-INF/classes/test/Test.class"));
+                zos.write(classContent);
+                zos.putNextEntry(new ZipEntry("WEB-INF/web.xml"));
+                zos.write("<web-app/>".getBytes(StandardCharsets.UTF_8));
+            }
+
+            DefaultWarArchive war = new DefaultWarArchive(sourceFile.getPath());
+            WebXmlUtils.addServlet(war.getWebXml(), "stored", "test.Test");
+            war.store(storedFile);
+
+            try (ZipFile source = new ZipFile(sourceFile);
+                ZipFile stored = new ZipFile(storedFile))
+            {
+                ZipEntry sourceClass = source.getEntry("WEB-INF/classes/test/Test.class");
+                ZipEntry storedClass = stored.getEntry("WEB-INF/classes/test/Test.class");
+                assertEquals(sourceClass.getCompressedSize(), storedClass.getCompressedSize());
+                assertEquals(sourceClass.getCrc(), storedClass.getCrc());
+                assertNotNull(stored.getEntry("META-INF/MANIFEST.MF"));
+                assertEquals(3, stored.size());
+            }
+
+            DefaultWarArchive storedWar = new DefaultWarArchive(storedFile.getPath());
+            assertTrue(WebXmlUtils.hasServlet(storedWar.getWebXml(), "stored"));
+            assertTrue(storedWar.containsClass("test.Test"));
+        }
+        finally
+        {
+            sourceFile.delete();
+            storedFile.delete();
+        }
+    }
 }
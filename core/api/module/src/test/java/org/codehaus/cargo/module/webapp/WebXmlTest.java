@@ -25,6 +25,7 @@ package org.codehaus.cargo.module.webapp;
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -1770,4 +1771,85 @@ public final class WebXmlTest extends AbstractDocumentBuilderTest
         return servletElement;
     }
 
+    /**
+     * Test that adding elements skips those already in the descriptor or added before.
+     */
+    public void testAddElementsSkipsSameElements()
+    {
+        WebXml webXml = new WebXml();
+        webXml.getRootElement().addContent(createContextParam("a", "1"));
+
+        addContextParams(webXml, createContextParam("b", "2"), createContextParam("a", "1"),
+            createContextParam("a", "2"), createContextParam("b", "2"));
+
+        assertEquals(Arrays.asList("a=1", "b=2", "a=2"), getContextParams(webXml));
+    }
+
+    /**
+     * Test that adding elements compares them with the descriptor's own
+     * {@link org.codehaus.cargo.module.AbstractDescriptor#sameContent(Element, Element)} when it
+     * does not support element keys.
+     */
+    public void testAddElementsUsesOverriddenComparison()
+    {
+        WebXml webXml = new WebXml(new Element("web-app"), WebXml23Type.getInstance())
+        {
+            @Override
+            protected boolean supportsElementKeys()
+            {
+                return false;
+            }
+
+            @Override
+            protected boolean sameContent(Element element1, Element element2)
+            {
+                return element1.getTextTrim().equals(element2.getTextTrim());
+            }
+        };
+        webXml.getRootElement().addContent(createContextParam("a", "1"));
+
+        addContextParams(webXml, createContextParam(" a ", "1"), createContextParam("b", "2"),
+            createContextParam("b ", " 2"));
+
+        assertEquals(Arrays.asList("a=1", "b=2"), getContextParams(webXml));
+    }
+
+    /**
+     * @param name Parameter name.
+     * @param value Parameter value.
+     * @return Context parameter element.
+     */
+    private Element createContextParam(String name, String value)
+    {
+        Element contextParam = new Element(WebXmlType.CONTEXT_PARAM);
+        contextParam.addContent(new Element(WebXmlType.PARAM_NAME).setText(name));
+        contextParam.addContent(new Element(WebXmlType.PARAM_VALUE).setText(value));
+        return contextParam;
+    }
+
+    /**
+     * @param webXml Descriptor to add the context parameters to.
+     * @param contextParams Context parameters to add.
+     */
+    private void addContextParams(WebXml webXml, Element... contextParams)
+    {
+        webXml.addElements(webXml.getDescriptorType().getTagByName(WebXmlType.CONTEXT_PARAM),
+            Arrays.asList(contextParams), webXml.getRootElement());
+    }
+
+    /**
+     * @param webXml Descriptor.
+     * @return Context parameters of the descriptor, as <code>name=value</code>.
+     */
+    private List<String> getContextParams(WebXml webXml)
+    {
+        List<String> contextParams = new ArrayList<String>();
+        for (Element contextParam : webXml.getTags(WebXmlType.CONTEXT_PARAM))
+        {
+            contextParams.add(contextParam.getChildText(WebXmlType.PARAM_NAME) + "="
+                + contextParam.getChildText(WebXmlType.PARAM_VALUE));
+        }
+        return contextParams;
+    }
+
 }
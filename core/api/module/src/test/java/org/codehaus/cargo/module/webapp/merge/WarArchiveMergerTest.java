@@ -0,0 +1,215 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module.webapp.merge;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.module.webapp.DefaultWarArchive;
+import org.codehaus.cargo.module.webapp.WebXmlUtils;
+
+/**
+ * Unit tests for {@link WarArchiveMerger}.
+ */
+public class WarArchiveMergerTest extends TestCase
+{
+    /**
+     * Verifies that merging WAR files into a new WAR file keeps the entries of the WAR file added
+     * last, merges the web.xml files and adds the extra JAR files.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testPerformMerge() throws Exception
+    {
+        File war1 = File.createTempFile("cargo", ".war");
+        File war2 = File.createTempFile("cargo", ".war");
+        File jar = File.createTempFile("cargo", ".jar");
+        File merged = File.createTempFile("cargo", ".war");
+        try
+        {
+            createArchive(war1, "WEB-INF/web.xml", "<web-app><servlet><servlet-name>s1"
+                + "</servlet-name><servlet-class>test.S1</servlet-class></servlet></web-app>",
+                "index.html", "first", "first.html", "first", "WEB-INF/lib/first.jar", "jar");
+            createArchive(war2, "WEB-INF/web.xml", "<web-app><servlet><servlet-name>s2"
+                + "</servlet-name><servlet-class>test.S2</servlet-class></servlet></web-app>",
+                "index.html", "second", "WEB-INF/lib/second.jar", "jar");
+            createArchive(jar, "test/Test.class", "class");
+
+            WarArchiveMerger merger = new WarArchiveMerger();
+            merger.addMergeItem(new DefaultWarArchive(war1.getPath()));
+            merger.addMergeItem(new DefaultWarArchive(war2.getPath()));
+            merger.addMergeItem(jar);
+            merger.performMerge(merged);
+
+            try (ZipFile zip = new ZipFile(merged))
+            {
+                assertEquals("second", read(zip, "index.html"));
+                assertEquals("first", read(zip, "first.html"));
+                assertNotNull(zip.getEntry("WEB-INF/lib/first.jar"));
+                assertNotNull(zip.getEntry("WEB-INF/lib/second.jar"));
+                assertNotNull(zip.getEntry("WEB-INF/lib/" + jar.getName()));
+            }
+
+            DefaultWarArchive mergedWar = new DefaultWarArchive(merged.getPath());
+            assertTrue(WebXmlUtils.hasServlet(mergedWar.getWebXml(), "s1"));
+            assertTrue(WebXmlUtils.hasServlet(mergedWar.getWebXml(), "s2"));
+            assertTrue(mergedWar.containsClass("test.Test"));
+        }
+        finally
+        {
+            war1.delete();
+            war2.delete();
+            jar.delete();
+            merged.delete();
+        }
+    }
+
+    /**
+     * Verifies that merging WAR files without merging their JAR files leaves out their JAR files
+     * but keeps the extra JAR files.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testPerformMergeWithoutJarFiles() throws Exception
+    {
+        File war = File.createTempFile("cargo", ".war");
+        File jar = File.createTempFile("cargo", ".jar");
+        File merged = File.createTempFile("cargo", ".war");
+        try
+        {
+            createArchive(war, "WEB-INF/web.xml", "<web-app/>", "WEB-INF/lib/lib.jar", "jar",
+                "WEB-INF/lib/lib.txt", "text");
+            createArchive(jar, "test/Test.class", "class");
+
+            WarArchiveMerger merger = new WarArchiveMerger();
+            merger.setMergeJarFiles(false);
+            merger.addMergeItem(new DefaultWarArchive(war.getPath()));
+            merger.addMergeItem(jar);
+            merger.performMerge(merged);
+
+            try (ZipFile zip = new ZipFile(merged))
+            {
+                assertNull(zip.getEntry("WEB-INF/lib/lib.jar"));
+                assertNotNull(zip.getEntry("WEB-INF/lib/lib.txt"));
+                assertNotNull(zip.getEntry("WEB-INF/lib/" + jar.getName()));
+                assertNotNull(zip.getEntry("WEB-INF/web.xml"));
+            }
+        }
+        finally
+        {
+            war.delete();
+            jar.delete();
+            merged.delete();
+        }
+    }
+
+    /**
+     * Verifies that merging WAR files keeps their manifests, merged together with the attributes
+     * of the WAR file added last winning.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testPerformMergeKeepsManifests() throws Exception
+    {
+        File war1 = File.createTempFile("cargo", ".war");
+        File war2 = File.createTempFile("cargo", ".war");
+        File merged = File.createTempFile("cargo", ".war");
+        try
+        {
+            createArchive(war1, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n"
+                + "Implementation-Title: first\r\nBuilt-By: cargo\r\n\r\n",
+                "WEB-INF/web.xml", "<web-app/>");
+            createArchive(war2, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n"
+                + "Implementation-Title: second\r\n\r\n", "WEB-INF/web.xml", "<web-app/>");
+
+            WarArchiveMerger merger = new WarArchiveMerger();
+            merger.addMergeItem(new DefaultWarArchive(war1.getPath()));
+            merger.addMergeItem(new DefaultWarArchive(war2.getPath()));
+            merger.performMerge(merged);
+
+            try (JarFile jar = new JarFile(merged))
+            {
+                Manifest manifest = jar.getManifest();
+                assertNotNull(manifest);
+                assertEquals("second", manifest.getMainAttributes().getValue(
+                    Attributes.Name.IMPLEMENTATION_TITLE));
+                assertEquals("cargo", manifest.getMainAttributes().getValue("Built-By"));
+            }
+        }
+        finally
+        {
+            war1.delete();
+            war2.delete();
+            merged.delete();
+        }
+    }
+
+    /**
+     * @param file Archive to create.
+     * @param entries Names and contents of the entries.
+     * @throws IOException If writing fails.
+     */
+    private void createArchive(File file, String... entries) throws IOException
+    {
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file)))
+        {
+            for (int i = 0; i < entries.length; i += 2)
+            {
+                zos.putNextEntry(new ZipEntry(entries[i]));
+                zos.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * @param zip Archive to read from.
+     * @param name Entry name.
+     * @return Entry content.
+     * @throws IOException If reading fails.
+     */
+    private String read(ZipFile zip, String name) throws IOException
+    {
+        ZipEntry entry = zip.getEntry(name);
+        assertNotNull(name, entry);
+        byte[] content = new byte[(int) entry.getSize()];
+        try (InputStream in = zip.getInputStream(entry))
+        {
+            int offset = 0;
+            while (offset < content.length)
+            {
+                int read = in.read(content, offset, content.length - offset);
+                assertTrue("Truncated entry " + name, read != -1);
+                offset += read;
+            }
+        }
+        return new String(content, StandardCharsets.UTF_8);
+    }
+}
@@ -382,4 +382,48 @@ public final class WebXmlServletMergerTest extends AbstractDocumentBuilderTest
         assertEquals("/s1", servletMappings.get(0));
     }
 
+    /**
+     * Tests merging descriptors with many servlets and servlet mappings, some of which are in both
+     * descriptors.
+     * 
+     * @throws Exception If an unexpected error occurs
+     */
+    public void testMergeManyServletsWithMappings() throws Exception
+    {
+        StringBuilder srcXml = new StringBuilder("<web-app>");
+        StringBuilder mergeXml = new StringBuilder("<web-app>");
+        for (int i = 0; i < 1000; i++)
+        {
+            srcXml.append("<servlet><servlet-name>s" + i + "</servlet-name>"
+                + "<servlet-class>sclass" + i + "</servlet-class></servlet>");
+            mergeXml.append("<servlet><servlet-name>s" + (i + 500) + "</servlet-name>"
+                + "<servlet-class>sclass" + (i + 500) + "</servlet-class></servlet>");
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            srcXml.append("<servlet-mapping><servlet-name>s" + i + "</servlet-name>"
+                + "<url-pattern>/s" + i + "</url-pattern></servlet-mapping>");
+            mergeXml.append("<servlet-mapping><servlet-name>s" + (i + 500) + "</servlet-name>"
+                + "<url-pattern>/s" + (i + 500) + "</url-pattern></servlet-mapping>");
+            mergeXml.append("<servlet-mapping><servlet-name>s" + (i + 500) + "</servlet-name>"
+                + "<url-pattern>/m" + (i + 500) + "</url-pattern></servlet-mapping>");
+        }
+        srcXml.append("</web-app>");
+        mergeXml.append("</web-app>");
+        WebXml srcWebXml = WebXmlIo.parseWebXml(new ByteArrayInputStream(
+            srcXml.toString().getBytes(StandardCharsets.UTF_8)), null);
+        WebXml mergeWebXml = WebXmlIo.parseWebXml(new ByteArrayInputStream(
+            mergeXml.toString().getBytes(StandardCharsets.UTF_8)), null);
+        WebXmlMerger merger = new WebXmlMerger(srcWebXml);
+        merger.merge(mergeWebXml);
+        assertEquals(1500, WebXmlUtils.getServletNames(srcWebXml).size());
+        List<String> servletMappings = WebXmlUtils.getServletMappings(srcWebXml, "s0");
+        assertEquals(1, servletMappings.size());
+        servletMappings = WebXmlUtils.getServletMappings(srcWebXml, "s700");
+        assertEquals(2, servletMappings.size());
+        assertEquals("/s700", servletMappings.get(0));
+        assertEquals("/m700", servletMappings.get(1));
+        servletMappings = WebXmlUtils.getServletMappings(srcWebXml, "s1499");
+        assertEquals(2, servletMappings.size());
+    }
 }
@@ -40,23 +40,15 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
 import java.util.Vector;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.filters.util.ChainReaderHelper;
 import org.apache.tools.ant.taskdefs.Copy;
@@ -71,6 +63,11 @@ import org.codehaus.cargo.util.log.LoggedObject;
  */
 public class DefaultFileHandler extends LoggedObject implements FileHandler
 {
+    /**
+     * Size of the buffer used when writing back files in which tokens have been replaced.
+     */
+    private static final int REPLACE_BUFFER_SIZE = 8192;
+
     /**
      * Counter for creating unique temp directories.
      */
@@ -405,143 +402,88 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
     public void replaceInFile(String file, Map<String, String> replacements, Charset encoding,
         boolean ignoreNonExistingProperties) throws CargoException
     {
-        String fileContents = readTextFile(file, encoding);
+        // Replace in one pass into a temporary file, so that the file is left untouched if a
+        // replacement key is missing. A key is missing if the original file does not contain it.
+        String replacedFile = null;
+        Set<String> found;
+        try
+        {
+            replacedFile = createReplacementFile(file);
+            try (Reader in = newReader(getInputStream(file), encoding);
+                Writer out = newWriter(replacedFile, encoding))
+            {
+                found = new TokenReplacer(replacements).replace(in, out);
+            }
+        }
+        catch (IOException e)
+        {
+            if (replacedFile != null)
+            {
+                delete(replacedFile);
+            }
+            throw new CargoException("Failed to replace in file: " + file, e);
+        }
 
-        for (Map.Entry<String, String> replacement : replacements.entrySet())
+        for (String key : replacements.keySet())
         {
-            if (!fileContents.contains(replacement.getKey()))
+            if (!found.contains(key))
             {
-                String message = "File " + file + " does not contain replacement key "
-                    + replacement.getKey();
+                String message = "File " + file + " does not contain replacement key " + key;
 
                 if (ignoreNonExistingProperties)
                 {
                     getLogger().debug(message, this.getClass().getName());
-                    continue;
                 }
                 else
                 {
+                    delete(replacedFile);
                     throw new CargoException(message);
                 }
             }
-
-            fileContents = fileContents.replace(replacement.getKey(), replacement.getValue());
         }
 
-        writeTextFile(file, fileContents, encoding);
+        try (InputStream in = getInputStream(replacedFile);
+            OutputStream out = getOutputStream(file))
+        {
+            copy(in, out, REPLACE_BUFFER_SIZE);
+        }
+        catch (IOException e)
+        {
+            throw new CargoException("Failed to replace in file: " + file, e);
+        }
+        finally
+        {
+            delete(replacedFile);
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Create an empty temporary file in which the replaced contents of a file are written. The
+     * file is created through this file handler so that it also works for files which are not on
+     * the local file system.
+     * @param file File in which tokens will be replaced.
+     * @return Path to the new temporary file.
      */
-    @Override
-    public void replaceInXmlFile(XmlReplacement... xmlReplacements)
-        throws CargoException
+    private String createReplacementFile(String file)
     {
-        Map<String, Map<XmlReplacementDetails, String>> replacements =
-            new HashMap<String, Map<XmlReplacementDetails, String>>();
-
-        for (XmlReplacement xmlReplacement : xmlReplacements)
-        {
-            Map<XmlReplacementDetails, String> replacementDetails =
-                replacements.get(xmlReplacement.getFile());
-            if (replacementDetails == null)
-            {
-                replacementDetails = new HashMap<XmlReplacementDetails, String>();
-                replacements.put(xmlReplacement.getFile(), replacementDetails);
-            }
-
-            XmlReplacementDetails xmlReplacementDetails = new XmlReplacementDetails(
-                xmlReplacement.getXpathExpression(), xmlReplacement.getAttributeName(),
-                    xmlReplacement.getReplacementBehavior());
-            replacementDetails.put(xmlReplacementDetails, xmlReplacement.getValue());
-        }
-
-        for (Map.Entry<String, Map<XmlReplacementDetails, String>> replacement
-            : replacements.entrySet())
-        {
-            replaceInXmlFile(replacement.getKey(), replacement.getValue());
-        }
+        String replacedFile =
+            getTmpPath(getName(file) + ".replace-" + UUID.randomUUID() + ".tmp");
+        mkdirs(getParent(replacedFile));
+        createFile(replacedFile);
+        return replacedFile;
     }
 
     /**
-     * Replaces using a map of XML replacements in a given file.
-     * 
-     * @param file File to replace in.
-     * @param replacements Map containing XML replacements.
-     * @throws CargoException If anything fails, most notably if one of the replacements does not
-     * exist in the file.
+     * {@inheritDoc}
      */
-    private void replaceInXmlFile(String file, Map<XmlReplacementDetails, String> replacements)
+    @Override
+    public void replaceInXmlFile(XmlReplacement... xmlReplacements)
         throws CargoException
     {
-        XmlUtils domUtils = new XmlUtils(this);
-        Document doc = domUtils.loadXmlFromFile(file);
-
-        try
-        {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-
-            for (Map.Entry<XmlReplacementDetails, String> replacement : replacements.entrySet())
-            {
-                String expression = replacement.getKey().getXpathExpression();
-                String attributeName = replacement.getKey().getAttributeName();
-
-                XPathExpression xPathExpr = xPath.compile(expression);
-
-                Node node = (Node) xPathExpr.evaluate(doc, XPathConstants.NODE);
-
-                if (node == null)
-                {
-                    String message = "Node " + expression + " not found in file " + file;
-
-                    XmlReplacement.ReplacementBehavior replacementBehavior =
-                            replacement.getKey().getReplacementBehavior();
-                    switch (replacementBehavior)
-                    {
-                        case IGNORE_IF_NON_EXISTING:
-                            getLogger().debug(message, this.getClass().getName());
-                            continue;
-
-                        case THROW_EXCEPTION:
-                            throw new CargoException(message);
-
-                        case ADD_MISSING_NODES:
-                            node = new MissingXmlElementAppender(doc, expression).append();
-                            break;
-
-                        default:
-                            throw new IllegalStateException("Unknown ReplacementBehavior ["
-                                + replacementBehavior + "]");
-                    }
-                }
-
-                if (attributeName != null)
-                {
-                    Node attribute = node.getAttributes().getNamedItem(attributeName);
-
-                    if (attribute == null)
-                    {
-                        ((Element) node).setAttribute(attributeName, replacement.getValue());
-                    }
-                    else
-                    {
-                        attribute.setNodeValue(replacement.getValue());
-                    }
-                }
-                else
-                {
-                    node.setTextContent(replacement.getValue());
-                }
-            }
-        }
-        catch (Exception e)
-        {
-            throw new CargoException("Cannot modify XML document " + file, e);
-        }
-
-        domUtils.saveXml(doc, file);
+        XmlReplacementSession session = new XmlReplacementSession(this);
+        session.setLogger(getLogger());
+        session.add(xmlReplacements);
+        session.commit();
     }
 
     /**
@@ -23,11 +23,9 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -102,13 +100,11 @@ public class MissingXmlElementAppender
      */
     private Node getMostCommonNode(LinkedList<String> missingNodes) throws XPathExpressionException
     {
-        XPath xPath = XPathFactory.newInstance().newXPath();
-
         Object evaluate;
         do
         {
             String expression = toXPathString(expressionNodes);
-            XPathExpression xPathExpression = xPath.compile(expression);
+            XPathExpression xPathExpression = XPathCache.compile(expression, null);
             evaluate = xPathExpression.evaluate(document, XPathConstants.NODE);
 
             if (evaluate == null)
@@ -0,0 +1,127 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Provides utility methods to compute SHA-256 digests, written in lower case hexadecimal.
+ */
+public final class Sha256
+{
+    /**
+     * Name of the digest algorithm.
+     */
+    public static final String ALGORITHM = "SHA-256";
+
+    /**
+     * Size of the buffer used to read streams.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Private to prevent unnecessary instantiation.
+     */
+    private Sha256()
+    {
+        // Private to prevent unnecessary instantation
+    }
+
+    /**
+     * @return A new SHA-256 message digest.
+     */
+    public static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new CargoException(ALGORITHM + " is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * Computes the digest of a string, encoded in UTF-8.
+     * 
+     * @param value the string to digest
+     * @return the digest, in hexadecimal
+     */
+    public static String digest(String value)
+    {
+        return toHex(createDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Computes the digest of a stream, reading it until its end. The stream is not closed.
+     * 
+     * @param in the stream to digest
+     * @return the digest, in hexadecimal
+     * @throws IOException if the stream cannot be read
+     */
+    public static String digest(InputStream in) throws IOException
+    {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int bytesRead = in.read(buffer);
+        while (bytesRead != -1)
+        {
+            digest.update(buffer, 0, bytesRead);
+            bytesRead = in.read(buffer);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the digest of a file.
+     * 
+     * @param file the file to digest
+     * @param fileHandler the file handler used to read the file
+     * @return the digest, in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    public static String digest(String file, FileHandler fileHandler) throws IOException
+    {
+        try (InputStream in = fileHandler.getInputStream(file))
+        {
+            return digest(in);
+        }
+    }
+
+    /**
+     * @param bytes the bytes to convert, typically a digest
+     * @return the lower case hexadecimal representation of the bytes
+     */
+    public static String toHex(byte[] bytes)
+    {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
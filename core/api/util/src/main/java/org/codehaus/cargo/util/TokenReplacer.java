@@ -0,0 +1,227 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces any number of tokens in a character stream in one single pass. All tokens are stored
+ * in a trie, so the cost of the replacement depends on the length of the stream and of the longest
+ * token, but not on the number of tokens. At any position, the longest token starting there is
+ * replaced; replacement values are written as-is and are not searched for tokens again.<br>
+ * The tokens found are all the tokens the stream contains, including those overlapped by a longer
+ * token replaced instead, so that checking for missing tokens gives the same result as searching
+ * each of them in the original stream.
+ */
+public class TokenReplacer
+{
+    /**
+     * Minimum size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Root of the trie of tokens.
+     */
+    private TrieNode root = new TrieNode();
+
+    /**
+     * Length of the longest token.
+     */
+    private int longestToken;
+
+    /**
+     * Replacement values, indexed by token.
+     */
+    private Map<String, String> replacements;
+
+    /**
+     * @param replacements Replacement values, indexed by token. Empty tokens are ignored.
+     */
+    public TokenReplacer(Map<String, String> replacements)
+    {
+        this.replacements = new HashMap<String, String>(replacements);
+
+        for (String token : this.replacements.keySet())
+        {
+            if (token == null || token.isEmpty())
+            {
+                continue;
+            }
+
+            TrieNode node = this.root;
+            for (int i = 0; i < token.length(); i++)
+            {
+                node = node.getOrCreateChild(token.charAt(i));
+            }
+            node.token = token;
+            this.longestToken = Math.max(this.longestToken, token.length());
+        }
+    }
+
+    /**
+     * Copies a character stream, replacing all tokens.
+     * @param in Stream to read from.
+     * @param out Stream to write to.
+     * @return Tokens which the stream contains at least once, whether they have been replaced or
+     * overlapped by a longer token which has been replaced.
+     * @throws IOException If reading or writing fails.
+     */
+    public Set<String> replace(Reader in, Writer out) throws IOException
+    {
+        Set<String> found = new HashSet<String>();
+        int lookahead = Math.max(1, this.longestToken);
+        char[] buffer = new char[Math.max(BUFFER_SIZE, 2 * lookahead)];
+
+        // Characters between written and position are unmatched and not written yet; when written
+        // is after position, position is within a replaced token and only looks for tokens
+        int written = 0;
+        int position = 0;
+        int limit = 0;
+        boolean eof = false;
+
+        while (true)
+        {
+            if (!eof && limit - position < lookahead)
+            {
+                if (position > written)
+                {
+                    out.write(buffer, written, position - written);
+                    written = position;
+                }
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                written -= position;
+                position = 0;
+
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read == -1)
+                {
+                    eof = true;
+                }
+                else
+                {
+                    limit += read;
+                }
+                continue;
+            }
+            if (position == limit)
+            {
+                break;
+            }
+
+            String token = match(buffer, position, limit, found);
+            if (token != null && position >= written)
+            {
+                out.write(buffer, written, position - written);
+                out.write(this.replacements.get(token));
+                written = position + token.length();
+            }
+            position++;
+        }
+        if (position > written)
+        {
+            out.write(buffer, written, position - written);
+        }
+
+        return found;
+    }
+
+    /**
+     * @param buffer Characters to match.
+     * @param start Position to match at.
+     * @param limit End of the characters available.
+     * @param found Tokens found so far, to which all tokens starting at the position are added.
+     * @return Longest token starting at the given position, <code>null</code> if none.
+     */
+    private String match(char[] buffer, int start, int limit, Set<String> found)
+    {
+        String token = null;
+        TrieNode node = this.root;
+        for (int i = start; i < limit; i++)
+        {
+            node = node.getChild(buffer[i]);
+            if (node == null)
+            {
+                break;
+            }
+            if (node.token != null)
+            {
+                token = node.token;
+                found.add(token);
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Node of the trie of tokens.
+     */
+    private static class TrieNode
+    {
+        /**
+         * Child nodes, indexed by character. Created lazily, as most nodes have no children.
+         */
+        private Map<Character, TrieNode> children;
+
+        /**
+         * Token ending at this node, <code>null</code> if none.
+         */
+        private String token;
+
+        /**
+         * @param c Character.
+         * @return Child node for the character, <code>null</code> if none.
+         */
+        public TrieNode getChild(char c)
+        {
+            if (this.children == null)
+            {
+                return null;
+            }
+            return this.children.get(c);
+        }
+
+        /**
+         * @param c Character.
+         * @return Child node for the character, created if needed.
+         */
+        public TrieNode getOrCreateChild(char c)
+        {
+            if (this.children == null)
+            {
+                this.children = new HashMap<Character, TrieNode>();
+            }
+            TrieNode child = this.children.get(c);
+            if (child == null)
+            {
+                child = new TrieNode();
+                this.children.put(c, child);
+            }
+            return child;
+        }
+    }
+}
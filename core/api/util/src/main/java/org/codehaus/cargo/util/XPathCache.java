@@ -0,0 +1,121 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * Cache of compiled XPath expressions, keyed by expression and namespaces. Neither
+ * {@link XPathFactory} nor {@link XPathExpression} are thread-safe, hence the cache is kept per
+ * thread.
+ */
+public final class XPathCache
+{
+    /**
+     * Maximum number of compiled expressions kept per thread.
+     */
+    private static final int MAX_SIZE = 256;
+
+    /**
+     * XPath factory of each thread.
+     */
+    private static final ThreadLocal<XPathFactory> FACTORY = new ThreadLocal<XPathFactory>()
+    {
+        @Override
+        protected XPathFactory initialValue()
+        {
+            return XPathFactory.newInstance();
+        }
+    };
+
+    /**
+     * Compiled expressions of each thread, least recently used first.
+     */
+    private static final ThreadLocal<Map<String, XPathExpression>> CACHE =
+        new ThreadLocal<Map<String, XPathExpression>>()
+        {
+            @Override
+            protected Map<String, XPathExpression> initialValue()
+            {
+                return new LinkedHashMap<String, XPathExpression>(16, 0.75f, true)
+                {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest)
+                    {
+                        return size() > MAX_SIZE;
+                    }
+                };
+            }
+        };
+
+    /**
+     * Utility class.
+     */
+    private XPathCache()
+    {
+        // Nothing
+    }
+
+    /**
+     * Returns a compiled XPath expression, compiling it only if the current thread has not
+     * compiled it before with the same namespaces. The returned expression must not be shared with
+     * other threads.
+     * @param expression XPath expression.
+     * @param namespaces Map of prefixes with XML namespaces, can be <code>null</code>.
+     * @return Compiled XPath expression.
+     * @throws XPathExpressionException If the expression cannot be compiled.
+     */
+    public static XPathExpression compile(String expression, Map<String, String> namespaces)
+        throws XPathExpressionException
+    {
+        String key = expression;
+        if (namespaces != null)
+        {
+            key = new TreeMap<String, String>(namespaces) + expression;
+        }
+
+        Map<String, XPathExpression> cache = CACHE.get();
+        XPathExpression compiled = cache.get(key);
+        if (compiled == null)
+        {
+            XPath xPath = FACTORY.get().newXPath();
+            if (namespaces != null)
+            {
+                // Use a copy of the namespaces, as the caller's map might be modified afterwards
+                NamespaceContextImpl namespaceContext = new NamespaceContextImpl();
+                namespaceContext.setNamespaces(new HashMap<String, String>(namespaces));
+                xPath.setNamespaceContext(namespaceContext);
+            }
+            compiled = xPath.compile(expression);
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+}
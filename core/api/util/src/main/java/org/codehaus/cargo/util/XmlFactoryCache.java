@@ -0,0 +1,159 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * Cache of JAXP factories, so that the JAXP service lookup and the factory configuration only
+ * happen once. JAXP factories are not thread-safe, hence the cache is kept per thread.
+ */
+public final class XmlFactoryCache
+{
+    /**
+     * Document builder factories of each thread, the first one not namespace aware and the second
+     * one namespace aware.
+     */
+    private static final ThreadLocal<DocumentBuilderFactory[]> DOCUMENT_BUILDER_FACTORIES =
+        new ThreadLocal<DocumentBuilderFactory[]>()
+        {
+            @Override
+            protected DocumentBuilderFactory[] initialValue()
+            {
+                return new DocumentBuilderFactory[2];
+            }
+        };
+
+    /**
+     * SAX parser factory of each thread.
+     */
+    private static final ThreadLocal<SAXParserFactory> SAX_PARSER_FACTORY =
+        new ThreadLocal<SAXParserFactory>()
+        {
+            @Override
+            protected SAXParserFactory initialValue()
+            {
+                return SAXParserFactory.newInstance();
+            }
+        };
+
+    /**
+     * Transformer factory of each thread.
+     */
+    private static final ThreadLocal<TransformerFactory> TRANSFORMER_FACTORY =
+        new ThreadLocal<TransformerFactory>()
+        {
+            @Override
+            protected TransformerFactory initialValue()
+            {
+                return TransformerFactory.newInstance();
+            }
+        };
+
+    /**
+     * Identity transformer of each thread.
+     */
+    private static final ThreadLocal<Transformer> TRANSFORMER = new ThreadLocal<Transformer>();
+
+    /**
+     * Utility class.
+     */
+    private XmlFactoryCache()
+    {
+        // Nothing
+    }
+
+    /**
+     * Returns the document builder factory of the current thread. The factory does not load
+     * external DTDs, as remote servers sometimes become unreachable. The returned factory must
+     * neither be modified nor shared with other threads.
+     * @param namespaceAware <code>true</code> for a namespace aware factory.
+     * @return Document builder factory.
+     */
+    public static DocumentBuilderFactory getDocumentBuilderFactory(boolean namespaceAware)
+    {
+        DocumentBuilderFactory[] factories = DOCUMENT_BUILDER_FACTORIES.get();
+        int index = namespaceAware ? 1 : 0;
+        if (factories[index] == null)
+        {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(namespaceAware);
+            try
+            {
+                factory.setFeature(
+                    "http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
+                factory.setFeature(
+                    "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            }
+            catch (ParserConfigurationException ignored)
+            {
+                // Ignored
+            }
+            factories[index] = factory;
+        }
+        return factories[index];
+    }
+
+    /**
+     * Returns the SAX parser factory of the current thread. The returned factory must neither be
+     * modified nor shared with other threads.
+     * @return SAX parser factory.
+     */
+    public static SAXParserFactory getSAXParserFactory()
+    {
+        return SAX_PARSER_FACTORY.get();
+    }
+
+    /**
+     * Returns the transformer factory of the current thread. The returned factory must neither be
+     * modified nor shared with other threads.
+     * @return Transformer factory.
+     */
+    public static TransformerFactory getTransformerFactory()
+    {
+        return TRANSFORMER_FACTORY.get();
+    }
+
+    /**
+     * Returns the identity transformer of the current thread, reset to its original state. The
+     * returned transformer must not be shared with other threads.
+     * @return Identity transformer.
+     * @throws TransformerConfigurationException If the transformer cannot be created.
+     */
+    public static Transformer getTransformer() throws TransformerConfigurationException
+    {
+        Transformer transformer = TRANSFORMER.get();
+        if (transformer == null)
+        {
+            transformer = getTransformerFactory().newTransformer();
+            TRANSFORMER.set(transformer);
+        }
+        else
+        {
+            transformer.reset();
+        }
+        return transformer;
+    }
+}
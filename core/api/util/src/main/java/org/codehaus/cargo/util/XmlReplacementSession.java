@@ -0,0 +1,192 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.xpath.XPathConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Batch of XML replacements on any number of files. Replacements are queued with
+ * {@link #add(XmlReplacement...)} and applied by {@link #commit()}, which parses each XML file
+ * once, applies all replacements queued for it and saves it once, whatever the number of
+ * replacements. Sessions are not thread-safe.
+ */
+public class XmlReplacementSession extends LoggedObject
+{
+    /**
+     * File handler used to read and write the XML files.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Queued replacements, indexed by file and then by replacement details. Files are processed in
+     * the order they have been added, as are the replacements of each file.
+     */
+    private Map<String, Map<XmlReplacementDetails, String>> replacements =
+        new LinkedHashMap<String, Map<XmlReplacementDetails, String>>();
+
+    /**
+     * @param fileHandler File handler used to read and write the XML files.
+     */
+    public XmlReplacementSession(FileHandler fileHandler)
+    {
+        this.fileHandler = fileHandler;
+    }
+
+    /**
+     * Queues XML replacements. When the same node and attribute is replaced several times in the
+     * same file, the last value wins.
+     * @param xmlReplacements XML replacements to queue.
+     */
+    public void add(XmlReplacement... xmlReplacements)
+    {
+        for (XmlReplacement xmlReplacement : xmlReplacements)
+        {
+            Map<XmlReplacementDetails, String> replacementDetails =
+                this.replacements.get(xmlReplacement.getFile());
+            if (replacementDetails == null)
+            {
+                replacementDetails = new LinkedHashMap<XmlReplacementDetails, String>();
+                this.replacements.put(xmlReplacement.getFile(), replacementDetails);
+            }
+
+            XmlReplacementDetails xmlReplacementDetails = new XmlReplacementDetails(
+                xmlReplacement.getXpathExpression(), xmlReplacement.getAttributeName(),
+                    xmlReplacement.getReplacementBehavior());
+            replacementDetails.put(xmlReplacementDetails, xmlReplacement.getValue());
+        }
+    }
+
+    /**
+     * @return <code>true</code> if no replacements are queued.
+     */
+    public boolean isEmpty()
+    {
+        return this.replacements.isEmpty();
+    }
+
+    /**
+     * Applies all queued replacements, parsing and saving each file only once. The session is
+     * empty afterwards.
+     * @throws CargoException If anything fails, most notably if one of the replacements does not
+     * exist in the file.
+     */
+    public void commit() throws CargoException
+    {
+        try
+        {
+            for (Map.Entry<String, Map<XmlReplacementDetails, String>> replacement
+                : this.replacements.entrySet())
+            {
+                replaceInXmlFile(replacement.getKey(), replacement.getValue());
+            }
+        }
+        finally
+        {
+            this.replacements.clear();
+        }
+    }
+
+    /**
+     * Replaces using a map of XML replacements in a given file.
+     *
+     * @param file File to replace in.
+     * @param fileReplacements Map containing XML replacements.
+     * @throws CargoException If anything fails, most notably if one of the replacements does not
+     * exist in the file.
+     */
+    private void replaceInXmlFile(String file, Map<XmlReplacementDetails, String> fileReplacements)
+        throws CargoException
+    {
+        XmlUtils domUtils = new XmlUtils(this.fileHandler);
+        Document doc = domUtils.loadXmlFromFile(file);
+
+        try
+        {
+            for (Map.Entry<XmlReplacementDetails, String> replacement
+                : fileReplacements.entrySet())
+            {
+                String expression = replacement.getKey().getXpathExpression();
+                String attributeName = replacement.getKey().getAttributeName();
+
+                Node node = (Node) XPathCache.compile(expression, null).evaluate(
+                    doc, XPathConstants.NODE);
+
+                if (node == null)
+                {
+                    String message = "Node " + expression + " not found in file " + file;
+
+                    XmlReplacement.ReplacementBehavior replacementBehavior =
+                            replacement.getKey().getReplacementBehavior();
+                    switch (replacementBehavior)
+                    {
+                        case IGNORE_IF_NON_EXISTING:
+                            getLogger().debug(message, this.getClass().getName());
+                            continue;
+
+                        case THROW_EXCEPTION:
+                            throw new CargoException(message);
+
+                        case ADD_MISSING_NODES:
+                            node = new MissingXmlElementAppender(doc, expression).append();
+                            break;
+
+                        default:
+                            throw new IllegalStateException("Unknown ReplacementBehavior ["
+                                + replacementBehavior + "]");
+                    }
+                }
+
+                if (attributeName != null)
+                {
+                    Node attribute = node.getAttributes().getNamedItem(attributeName);
+
+                    if (attribute == null)
+                    {
+                        ((Element) node).setAttribute(attributeName, replacement.getValue());
+                    }
+                    else
+                    {
+                        attribute.setNodeValue(replacement.getValue());
+                    }
+                }
+                else
+                {
+                    node.setTextContent(replacement.getValue());
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            throw new CargoException("Cannot modify XML document " + file, e);
+        }
+
+        domUtils.saveXml(doc, file);
+    }
+}
@@ -28,16 +28,11 @@ import java.util.List;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-import javax.xml.xpath.XPath;
 
 import org.apache.tools.ant.util.ReaderInputStream;
 import org.w3c.dom.Document;
@@ -61,11 +56,6 @@ public class XmlUtils
      */
     private DocumentBuilder builder;
 
-    /**
-     * XPath.
-     */
-    private XPath xPath;
-
     /**
      * XML namespaces map.
      */
@@ -115,26 +105,10 @@ public class XmlUtils
         this.fileHandler = fileHandler;
         this.namespaceContext = new NamespaceContextImpl();
         this.namespaceAware = namespaceAware;
-        XPathFactory xPathFactory = XPathFactory.newInstance();
-        this.xPath = xPathFactory.newXPath();
-        this.xPath.setNamespaceContext(namespaceContext);
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        domFactory.setNamespaceAware(namespaceAware);
-        // Do not load remote DTDS as remote servers sometimes become unreachable
-        try
-        {
-            domFactory.setFeature(
-                "http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
-            domFactory.setFeature(
-                "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        }
-        catch (ParserConfigurationException ignored)
-        {
-            // Ignored
-        }
         try
         {
-            this.builder = domFactory.newDocumentBuilder();
+            this.builder =
+                XmlFactoryCache.getDocumentBuilderFactory(namespaceAware).newDocumentBuilder();
         }
         catch (Exception e)
         {
@@ -168,7 +142,7 @@ public class XmlUtils
                     }
                 }
             }
-            XPathExpression xPathExpr = xPath.compile(xpathWithoutNamespace);
+            XPathExpression xPathExpr = XPathCache.compile(xpathWithoutNamespace, namespaces);
             nodelist = (NodeList) xPathExpr.evaluate(toSearch, XPathConstants.NODESET);
         }
         catch (Exception e)
@@ -238,8 +212,7 @@ public class XmlUtils
     {
         try (OutputStream os = getFileHandler().getOutputStream(filename))
         {
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            Transformer transformer = tFactory.newTransformer();
+            Transformer transformer = XmlFactoryCache.getTransformer();
             transformer.transform(new DOMSource(document), new StreamResult(os));
         }
         catch (Exception e)
@@ -20,6 +20,8 @@
 package org.codehaus.cargo.util;
 
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import junit.framework.TestCase;
@@ -84,6 +86,68 @@ public class DefaultFileHandlerTest extends TestCase
             this.fileHandler.exists("target/" + random + "/random.txt"));
     }
 
+    /**
+     * Test replacing tokens in a file.
+     */
+    public void testReplaceInFile()
+    {
+        final String file = "target/replace-in-file.txt";
+        this.fileHandler.writeTextFile(file, "port=@port@\nhost=@host@\nport2=@port@\n",
+            StandardCharsets.UTF_8);
+
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("@port@", "8080");
+        replacements.put("@host@", "@port@");
+        this.fileHandler.replaceInFile(file, replacements, StandardCharsets.UTF_8);
+
+        assertEquals("port=8080\nhost=@port@\nport2=8080\n",
+            this.fileHandler.readTextFile(file, StandardCharsets.UTF_8).replace(
+                System.getProperty("line.separator"), "\n") + "\n");
+    }
+
+    /**
+     * Test replacing a token which is not in a file.
+     */
+    public void testReplaceInFileMissingKey()
+    {
+        final String file = "target/replace-in-file-missing.txt";
+        this.fileHandler.writeTextFile(file, "port=@port@", StandardCharsets.UTF_8);
+
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("@port@", "8080");
+        replacements.put("@missing@", "value");
+        try
+        {
+            this.fileHandler.replaceInFile(file, replacements, StandardCharsets.UTF_8);
+            fail("Missing replacement key not detected");
+        }
+        catch (CargoException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("@missing@"));
+        }
+        assertEquals("port=@port@", this.fileHandler.readTextFile(file, StandardCharsets.UTF_8));
+
+        this.fileHandler.replaceInFile(file, replacements, StandardCharsets.UTF_8, true);
+        assertEquals("port=8080", this.fileHandler.readTextFile(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test that a replacement key contained in a longer key which is replaced is not reported as
+     * missing, as the original file contains it.
+     */
+    public void testReplaceInFileOverlappingKeys()
+    {
+        final String file = "target/replace-in-file-overlapping.txt";
+        this.fileHandler.writeTextFile(file, "http.port=@http.port@", StandardCharsets.UTF_8);
+
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("@http.port@", "8080");
+        replacements.put("port@", "ignored");
+        this.fileHandler.replaceInFile(file, replacements, StandardCharsets.UTF_8);
+
+        assertEquals("http.port=8080", this.fileHandler.readTextFile(file, StandardCharsets.UTF_8));
+    }
+
     /**
      * Test valid XML replacement
      */
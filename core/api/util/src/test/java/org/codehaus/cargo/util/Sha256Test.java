@@ -0,0 +1,64 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link Sha256}.
+ */
+public class Sha256Test extends TestCase
+{
+    /**
+     * Digest of <code>password</code>.
+     */
+    private static final String PASSWORD_DIGEST =
+        "5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8";
+
+    /**
+     * Test the digest of a string.
+     */
+    public void testDigestString()
+    {
+        assertEquals(PASSWORD_DIGEST, Sha256.digest("password"));
+    }
+
+    /**
+     * Test the digest of a stream.
+     * 
+     * @throws Exception should not happen
+     */
+    public void testDigestStream() throws Exception
+    {
+        assertEquals(PASSWORD_DIGEST, Sha256.digest(
+            new ByteArrayInputStream("password".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Test the hexadecimal representation keeps leading zeros.
+     */
+    public void testToHex()
+    {
+        assertEquals("000fa0ff", Sha256.toHex(new byte[] {0, 15, (byte) 0xa0, (byte) 0xff}));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link TokenReplacer}.
+ */
+public class TokenReplacerTest extends TestCase
+{
+    /**
+     * Test that the longest token is replaced when tokens overlap.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLongestTokenWins() throws Exception
+    {
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("@port", "1");
+        replacements.put("@port@", "2");
+        replacements.put("@unused@", "3");
+
+        StringWriter out = new StringWriter();
+        Set<String> found = new TokenReplacer(replacements).replace(
+            new StringReader("a@port@b@portc"), out);
+
+        assertEquals("a2b1c", out.toString());
+        assertEquals(2, found.size());
+        assertFalse(found.contains("@unused@"));
+    }
+
+    /**
+     * Test that tokens overlapped by a longer token which is replaced are found nevertheless.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testOverlappedTokensFound() throws Exception
+    {
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("@port@", "1");
+        replacements.put("@port", "2");
+        replacements.put("port@", "3");
+        replacements.put("@@", "4");
+
+        StringWriter out = new StringWriter();
+        Set<String> found = new TokenReplacer(replacements).replace(
+            new StringReader("a@port@@b"), out);
+
+        assertEquals("a1@b", out.toString());
+        assertEquals(4, found.size());
+    }
+
+    /**
+     * Test that tokens spanning read buffer boundaries are replaced.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTokensAcrossBuffers() throws Exception
+    {
+        StringBuilder in = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+        {
+            in.append("x@cargo.servlet.port@");
+            expected.append("x8080");
+        }
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("@cargo.servlet.port@", "8080");
+
+        StringWriter out = new StringWriter();
+        new TokenReplacer(replacements).replace(new StringReader(in.toString()), out);
+
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    /**
+     * Test copying a stream without any tokens.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testNoTokens() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        Set<String> found = new TokenReplacer(new HashMap<String, String>()).replace(
+            new StringReader("unchanged"), out);
+
+        assertEquals("unchanged", out.toString());
+        assertTrue(found.isEmpty());
+    }
+}
@@ -357,6 +357,24 @@ public class VFSFileHandler extends DefaultFileHandler
         return isDirectory;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getURL(String path)
+    {
+        String url;
+        try
+        {
+            url = getFileSystemManager().resolveFile(path).getName().getURI();
+        }
+        catch (FileSystemException e)
+        {
+            throw new CargoException("Failed to return URL for [" + path + "]", e);
+        }
+        return url;
+    }
+
     /**
      * {@inheritDoc}
      */
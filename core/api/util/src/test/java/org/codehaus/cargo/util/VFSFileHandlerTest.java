@@ -19,6 +19,10 @@
  */
 package org.codehaus.cargo.util;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
 import org.apache.commons.vfs2.FileObject;
@@ -177,4 +181,22 @@ public class VFSFileHandlerTest extends TestCase
         assertTrue(this.fileHandler.exists("ram:///test5"));
         assertTrue(this.fileHandler.isDirectory("ram:///test5"));
     }
+
+    /**
+     * Test the {@link FileHandler#replaceInFile(String, Map, java.nio.charset.Charset)} method
+     * on a file which is not on the local file system.
+     */
+    public void testReplaceInFile()
+    {
+        final String file = "ram:///replace/server.xml";
+        this.fileHandler.writeTextFile(file, "<port>@port@</port>", StandardCharsets.UTF_8);
+
+        Map<String, String> replacements = new HashMap<String, String>();
+        replacements.put("@port@", "8080");
+        this.fileHandler.replaceInFile(file, replacements, StandardCharsets.UTF_8);
+
+        assertEquals("<port>8080</port>",
+            this.fileHandler.readTextFile(file, StandardCharsets.UTF_8));
+        assertEquals(1, this.fileHandler.getChildren("ram:///replace").length);
+    }
 }
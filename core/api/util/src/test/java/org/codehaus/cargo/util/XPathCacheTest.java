@@ -0,0 +1,47 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link XPathCache}.
+ */
+public class XPathCacheTest extends TestCase
+{
+    /**
+     * Test that expressions are compiled once per set of namespaces.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCompiledExpressionsAreCached() throws Exception
+    {
+        Map<String, String> namespaces = new HashMap<String, String>();
+        namespaces.put("j2ee", "http://java.sun.com/xml/ns/j2ee");
+
+        assertSame(XPathCache.compile("//j2ee:servlet", namespaces),
+            XPathCache.compile("//j2ee:servlet", namespaces));
+        assertSame(XPathCache.compile("//servlet", null), XPathCache.compile("//servlet", null));
+        assertNotSame(XPathCache.compile("//servlet", null),
+            XPathCache.compile("//servlet", namespaces));
+    }
+}
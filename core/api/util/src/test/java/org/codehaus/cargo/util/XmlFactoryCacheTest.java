@@ -0,0 +1,74 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link XmlFactoryCache}.
+ */
+public class XmlFactoryCacheTest extends TestCase
+{
+    /**
+     * Test that factories are kept per thread.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testFactoriesAreKeptPerThread() throws Exception
+    {
+        assertSame(XmlFactoryCache.getSAXParserFactory(), XmlFactoryCache.getSAXParserFactory());
+        assertSame(XmlFactoryCache.getDocumentBuilderFactory(true),
+            XmlFactoryCache.getDocumentBuilderFactory(true));
+        assertNotSame(XmlFactoryCache.getDocumentBuilderFactory(true),
+            XmlFactoryCache.getDocumentBuilderFactory(false));
+        assertTrue(XmlFactoryCache.getDocumentBuilderFactory(true).isNamespaceAware());
+        assertFalse(XmlFactoryCache.getDocumentBuilderFactory(false).isNamespaceAware());
+
+        final SAXParserFactory[] otherThreadFactory = new SAXParserFactory[1];
+        Thread otherThread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                otherThreadFactory[0] = XmlFactoryCache.getSAXParserFactory();
+            }
+        };
+        otherThread.start();
+        otherThread.join();
+        assertNotNull(otherThreadFactory[0]);
+        assertNotSame(XmlFactoryCache.getSAXParserFactory(), otherThreadFactory[0]);
+    }
+
+    /**
+     * Test that the identity transformer is reused and reset.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTransformerIsReset() throws Exception
+    {
+        Transformer transformer = XmlFactoryCache.getTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+
+        assertSame(transformer, XmlFactoryCache.getTransformer());
+        assertFalse("yes".equals(transformer.getOutputProperties().getProperty(OutputKeys.INDENT)));
+    }
+}
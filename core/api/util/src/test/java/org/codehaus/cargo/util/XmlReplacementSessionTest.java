@@ -0,0 +1,82 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util;
+
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link XmlReplacementSession}.
+ */
+public class XmlReplacementSessionTest extends TestCase
+{
+    /**
+     * Test that all replacements queued for a file are applied in one go.
+     */
+    public void testCommit()
+    {
+        final String file = "target/jboss-standalone-session.xml";
+        FileHandler fileHandler = new DefaultFileHandler();
+        fileHandler.copyFile("src/test/resources/jboss-standalone.xml", file, true);
+
+        XmlReplacementSession session = new XmlReplacementSession(fileHandler);
+        session.add(new XmlReplacement(file,
+            "//server/socket-binding-group/socket-binding[@name='http']", "port",
+                XmlReplacement.ReplacementBehavior.THROW_EXCEPTION, "8081"));
+        session.add(new XmlReplacement(file,
+            "//server/socket-binding-group/socket-binding[@name='https']", "port",
+                XmlReplacement.ReplacementBehavior.THROW_EXCEPTION, "8444"));
+        session.add(new XmlReplacement(file,
+            "//server/socket-binding-group/socket-binding[@name='missing']", "port",
+                XmlReplacement.ReplacementBehavior.IGNORE_IF_NON_EXISTING, "0"));
+        assertFalse(session.isEmpty());
+
+        session.commit();
+        assertTrue(session.isEmpty());
+
+        String read = fileHandler.readTextFile(file, StandardCharsets.UTF_8);
+        assertTrue(read, read.contains("<socket-binding name=\"http\" port=\"8081\"/>"));
+        assertTrue(read, read.contains("<socket-binding name=\"https\" port=\"8444\"/>"));
+    }
+
+    /**
+     * Test that a missing node fails the commit.
+     */
+    public void testCommitMissingNode()
+    {
+        final String file = "target/jboss-standalone-session-missing.xml";
+        FileHandler fileHandler = new DefaultFileHandler();
+        fileHandler.copyFile("src/test/resources/jboss-standalone.xml", file, true);
+
+        XmlReplacementSession session = new XmlReplacementSession(fileHandler);
+        session.add(new XmlReplacement(file, "//server/missing", null,
+            XmlReplacement.ReplacementBehavior.THROW_EXCEPTION, "value"));
+        try
+        {
+            session.commit();
+            fail("Missing node not detected");
+        }
+        catch (CargoException expected)
+        {
+            assertTrue(expected.getCause().getMessage().contains("//server/missing"));
+        }
+    }
+}
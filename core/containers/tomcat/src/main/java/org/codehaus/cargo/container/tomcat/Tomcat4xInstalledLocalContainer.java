@@ -66,6 +66,16 @@ public class Tomcat4xInstalledLocalContainer extends AbstractCatalinaInstalledLo
         return "Tomcat " + getVersion("4.x");
     }
 
+    /**
+     * Tomcat 4.x neither logs its startup time nor uses the generated
+     * <code>logging.properties</code> file, hence it has no started markers. {@inheritDoc}
+     */
+    @Override
+    protected String[] getStartedMarkers()
+    {
+        return new String[0];
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -23,7 +23,9 @@
 package org.codehaus.cargo.container.tomcat.internal;
 
 import java.io.File;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.Set;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -123,6 +125,25 @@ public abstract class AbstractCatalinaInstalledLocalContainer extends
         return this.capability;
     }
 
+    /**
+     * Tomcat logs <code>Server startup in</code> once started, in English and with the logging
+     * configuration of {@link AbstractCatalinaStandaloneLocalConfiguration}. {@inheritDoc}
+     */
+    @Override
+    protected String[] getStartedMarkers()
+    {
+        String jvmArgs = getConfiguration().getPropertyValue(GeneralPropertySet.JVMARGS);
+        if (!(getConfiguration() instanceof AbstractCatalinaStandaloneLocalConfiguration)
+            || jvmArgs != null && (jvmArgs.contains("java.util.logging.config.file")
+                || jvmArgs.contains("user.language"))
+            || !Locale.ENGLISH.getLanguage().equals(Locale.getDefault().getLanguage()))
+        {
+            // The message might not be logged or be translated, rely on the Cargo Ping Component
+            return new String[0];
+        }
+        return new String[] {"Server startup in"};
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -157,27 +178,23 @@ public abstract class AbstractCatalinaInstalledLocalContainer extends
     }
 
     /**
-     * Checks all ports except for {@link GeneralPropertySet#RMI_PORT}, to avoid bug <a
+     * Waits for all ports except for {@link GeneralPropertySet#RMI_PORT}, to avoid bug <a
      * href="https://codehaus-cargo.atlassian.net/browse/CARGO-1337">CARGO-1337</a>. {@inheritDoc}
      */
     @Override
-    protected void waitForPortShutdown(int port, int connectTimeout, long deadline)
-        throws InterruptedException
+    protected Set<Integer> getPortsToShutdown()
     {
-        int rmiPort = 0;
+        Set<Integer> ports = super.getPortsToShutdown();
         try
         {
-            rmiPort = Integer.parseInt(
-                getConfiguration().getPropertyValue(GeneralPropertySet.RMI_PORT));
+            ports.remove(Integer.valueOf(
+                getConfiguration().getPropertyValue(GeneralPropertySet.RMI_PORT)));
         }
         catch (Throwable ignored)
         {
             // Ignored
         }
-        if (port != rmiPort)
-        {
-            super.waitForPortShutdown(port, connectTimeout, deadline);
-        }
+        return ports;
     }
 
     /**
@@ -21,6 +21,7 @@ package org.codehaus.cargo.container.tomcat.internal;
 
 import org.codehaus.cargo.container.configuration.entry.DataSourceFixture;
 import org.codehaus.cargo.container.configuration.entry.ResourceFixture;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.spi.configuration.builder.AbstractLocalConfigurationWithConfigurationBuilderTest;
 
 /**
@@ -104,6 +105,19 @@ public abstract class AbstractCatalinaStandaloneLocalConfigurationTest extends
         testEscapePath("Documents\\java", "Documents/java");
     }
 
+    /**
+     * Test that there are no started markers when the user provides the logging configuration,
+     * since it might not log the startup time.
+     */
+    public void testNoStartedMarkersWithUserLoggingConfiguration()
+    {
+        configuration.setProperty(GeneralPropertySet.JVMARGS,
+            "-Djava.util.logging.config.file=/tmp/logging.properties");
+
+        assertEquals(0,
+            ((AbstractCatalinaInstalledLocalContainer) container).getStartedMarkers().length);
+    }
+
     /**
      * Setup datasource file and call parent. {@inheritDoc}
      * @param fixture Datasource fixture.
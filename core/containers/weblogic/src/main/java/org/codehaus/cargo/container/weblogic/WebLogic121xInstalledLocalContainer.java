@@ -31,6 +31,7 @@ import org.codehaus.cargo.container.configuration.script.ScriptCommand;
 import org.codehaus.cargo.container.internal.util.ComplexPropertyUtils;
 import org.codehaus.cargo.container.property.User;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.container.startup.ContainerMonitor;
 import org.codehaus.cargo.container.weblogic.internal.AbstractWebLogicInstalledLocalContainer;
 import org.codehaus.cargo.container.weblogic.internal.ConsoleUrlWebLogicMonitor;
 import org.codehaus.cargo.container.weblogic.internal.WebLogicLocalScriptingContainer;
@@ -283,7 +284,12 @@ public class WebLogic121xInstalledLocalContainer extends
     {
         if (waitForStarting)
         {
-            waitForStarting(new ConsoleUrlWebLogicMonitor(this));
+            ContainerMonitor monitor = createStartedMarkersMonitor();
+            if (monitor == null)
+            {
+                monitor = new ConsoleUrlWebLogicMonitor(this);
+            }
+            waitForStarting(monitor);
         }
         else
         {
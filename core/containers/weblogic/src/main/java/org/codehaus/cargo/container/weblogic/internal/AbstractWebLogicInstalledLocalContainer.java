@@ -238,6 +238,15 @@ public abstract class AbstractWebLogicInstalledLocalContainer extends
         }
     }
 
+    /**
+     * WebLogic logs <code>Server started in RUNNING mode</code> once started. {@inheritDoc}
+     */
+    @Override
+    protected String[] getStartedMarkers()
+    {
+        return new String[] {"RUNNING mode"};
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -30,8 +30,9 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.tools.ant.types.Commandline;
-import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.container.internal.util.ProcessUtils;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherException;
+import org.codehaus.cargo.container.spi.jvm.MonitoredJvmLauncher;
 import org.codehaus.cargo.util.log.Logger;
 
 /**
@@ -39,7 +40,7 @@ import org.codehaus.cargo.util.log.Logger;
  * accepting commands (e.g. stop command), thus this implementation relies on
  * {@link java.lang.Process}.
  */
-public class SwarmJvmLauncher implements JvmLauncher
+public class SwarmJvmLauncher implements MonitoredJvmLauncher
 {
 
     /**
@@ -464,6 +465,24 @@ public class SwarmJvmLauncher implements JvmLauncher
         terminateProcess();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JvmLauncherException getFailure()
+    {
+        return ProcessUtils.getFailure(this.process);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning()
+    {
+        return ProcessUtils.isRunning(this.process);
+    }
+
     /**
      * {@inheritDoc}
      */
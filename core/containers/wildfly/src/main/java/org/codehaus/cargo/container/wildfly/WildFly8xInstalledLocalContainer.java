@@ -58,4 +58,15 @@ public class WildFly8xInstalledLocalContainer extends AbstractWildFlyInstalledLo
     {
         return "WildFly " + getVersion("8.x");
     }
+
+    /**
+     * WildFly 8.x logs <code>JBAS015874</code> once started, or <code>JBAS015875</code> once
+     * started with errors, the <code>WFLYSRV</code> message ids only exist since WildFly 9.x.
+     * {@inheritDoc}
+     */
+    @Override
+    protected String[] getStartedMarkers()
+    {
+        return new String[] {"JBAS015874", "JBAS015875"};
+    }
 }
@@ -363,6 +363,16 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
         // Nothing
     }
 
+    /**
+     * WildFly logs <code>WFLYSRV0025</code> once started, or <code>WFLYSRV0026</code> once started
+     * with errors. {@inheritDoc}
+     */
+    @Override
+    protected String[] getStartedMarkers()
+    {
+        return new String[] {"WFLYSRV0025", "WFLYSRV0026"};
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -371,9 +381,14 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
     {
         if (waitForStarting)
         {
-            ContainerMonitor first = new ManagementUrlWildFlyMonitor(this);
-            ContainerMonitor second = new CLIWildFlyMonitor(this);
-            waitForStarting(new CombinedContainerMonitor(this, first, second));
+            ContainerMonitor monitor = createStartedMarkersMonitor();
+            if (monitor == null)
+            {
+                ContainerMonitor first = new ManagementUrlWildFlyMonitor(this);
+                ContainerMonitor second = new CLIWildFlyMonitor(this);
+                monitor = new CombinedContainerMonitor(this, first, second);
+            }
+            waitForStarting(monitor);
         }
         else
         {
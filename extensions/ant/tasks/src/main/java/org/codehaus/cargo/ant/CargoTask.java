@@ -50,7 +50,7 @@ import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.Deployer;
 import org.codehaus.cargo.container.installer.ZipURLInstaller;
-import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.container.spi.deployer.DeployerWatchdogService;
 import org.codehaus.cargo.container.spi.util.ContainerUtils;
 import org.codehaus.cargo.generic.ContainerFactory;
 import org.codehaus.cargo.generic.DefaultContainerFactory;
@@ -1264,17 +1264,19 @@ public class CargoTask extends Task
     {
         if (getConfiguration() != null && getConfiguration().getDeployables() != null)
         {
+            // Watch all deployables at the same time
+            DeployerWatchdogService watchdog = new DeployerWatchdogService();
+            watchdog.setLogger(container.getLogger());
             for (DeployableElement deployableElement : getConfiguration().getDeployables())
             {
                 DeployableMonitor deployableMonitor = deployableElement.createDeployableMonitor();
                 if (deployableMonitor != null)
                 {
-                    DeployerWatchdog watchdog = new DeployerWatchdog(deployableMonitor);
-                    watchdog.setLogger(container.getLogger());
                     deployableMonitor.setLogger(container.getLogger());
-                    watchdog.watch(starting);
+                    watchdog.addMonitor(deployableMonitor);
                 }
             }
+            watchdog.watch(starting);
         }
     }
 }
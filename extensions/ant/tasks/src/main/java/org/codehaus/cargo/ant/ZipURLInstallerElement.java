@@ -49,6 +49,21 @@ public class ZipURLInstallerElement
      */
     private Proxy proxy;
 
+    /**
+     * Number of byte ranges downloaded in parallel.
+     */
+    private int downloadThreads = 1;
+
+    /**
+     * Directory of the installation cache shared with other builds.
+     */
+    private String cacheDir;
+
+    /**
+     * Whether to hard link the files of the shared installation cache instead of copying them.
+     */
+    private boolean cacheHardLinks;
+
     /**
      * @param downloadDir the destination directory where the zipped container install will be
      * downloaded.
@@ -99,6 +114,55 @@ public class ZipURLInstallerElement
         return this.installURL;
     }
 
+    /**
+     * @param downloadThreads the number of byte ranges downloaded in parallel.
+     */
+    public void setDownloadThreads(int downloadThreads)
+    {
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * @return the number of byte ranges downloaded in parallel.
+     */
+    public int getDownloadThreads()
+    {
+        return this.downloadThreads;
+    }
+
+    /**
+     * @param cacheDir the directory of the installation cache shared with other builds.
+     */
+    public void setCacheDir(String cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @return the directory of the installation cache shared with other builds.
+     */
+    public String getCacheDir()
+    {
+        return this.cacheDir;
+    }
+
+    /**
+     * @param cacheHardLinks whether to hard link the files of the shared installation cache
+     * instead of copying them.
+     */
+    public void setCacheHardLinks(boolean cacheHardLinks)
+    {
+        this.cacheHardLinks = cacheHardLinks;
+    }
+
+    /**
+     * @return whether to hard link the files of the shared installation cache.
+     */
+    public boolean isCacheHardLinks()
+    {
+        return this.cacheHardLinks;
+    }
+
     /**
      * @return proxy properties.
      */
@@ -132,6 +196,9 @@ public class ZipURLInstallerElement
         {
             installer.setProxy(getProxy());
         }
+        installer.setDownloadThreads(getDownloadThreads());
+        installer.setCacheDir(getCacheDir());
+        installer.setCacheHardLinks(isCacheHardLinks());
         return installer;
     }
 }
@@ -27,9 +27,13 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.configuration.FileConfig;
@@ -40,6 +44,7 @@ import org.codehaus.cargo.container.deployable.WAR;
 import org.codehaus.cargo.util.Base64;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.Sha256;
 import org.codehaus.cargo.util.XmlReplacement;
 import org.codehaus.cargo.util.log.LoggedObject;
 
@@ -53,6 +58,11 @@ public class DaemonClient extends LoggedObject
      */
     private static final String DAEMON_CLIENT_CHARSET = StandardCharsets.UTF_8.name();
 
+    /**
+     * Suffix of the parameter giving the digest of a file.
+     */
+    private static final String DIGEST_SUFFIX = "Digest";
+
     /**
      * The full URL of the Cargo daemon instance to use.
      */
@@ -87,6 +97,11 @@ public class DaemonClient extends LoggedObject
      */
     private String userAgent;
 
+    /**
+     * Whether files uploaded to Cargo daemon are compressed.
+     */
+    private boolean compressUploads;
+
     /**
      * Creates a Cargo daemon wrapper for the specified URL which has public access (no username
      * nor password required).
@@ -188,6 +203,27 @@ public class DaemonClient extends LoggedObject
         this.userAgent = userAgent;
     }
 
+    /**
+     * Tells whether files uploaded to Cargo daemon are compressed.
+     * 
+     * @return <code>true</code> if files uploaded to Cargo daemon are compressed
+     */
+    public boolean isCompressUploads()
+    {
+        return this.compressUploads;
+    }
+
+    /**
+     * Sets whether files uploaded to Cargo daemon are compressed. Compression saves bandwidth on
+     * slow links, but is of little use for files which are already compressed such as WARs.
+     * 
+     * @param compressUploads <code>true</code> to compress files uploaded to Cargo daemon
+     */
+    public void setCompressUploads(boolean compressUploads)
+    {
+        this.compressUploads = compressUploads;
+    }
+
     /**
      * Starts a container specified by the start request.
      * 
@@ -275,11 +311,86 @@ public class DaemonClient extends LoggedObject
             {
                 parameters.setParameter("containerAppend", "off");
             }
+
+            removeStoredFiles(parameters);
         }
 
         invoke("start", parameters);
     }
 
+    /**
+     * Sends the digests of the files to upload to the daemon, and removes from the parameters the
+     * files which the daemon already has. The files still to upload keep their digest, so that the
+     * daemon stores them for the next start. If the daemon does not keep files by digest, all
+     * files are uploaded.
+     * 
+     * @param parameters The daemon parameters.
+     * @throws IOException If a file cannot be read.
+     */
+    private void removeStoredFiles(DaemonParameters parameters) throws IOException
+    {
+        Map<String, String> digests = new HashMap<String, String>();
+        for (Map.Entry<String, String> file : parameters.getFiles().entrySet())
+        {
+            // The installer ZIP is handled separately, see installed(String)
+            if (!"installerZipFileData".equals(file.getKey()))
+            {
+                digests.put(file.getKey(), Sha256.digest(file.getValue(), fileHandler));
+            }
+        }
+        if (digests.isEmpty())
+        {
+            return;
+        }
+
+        StringBuilder digestList = new StringBuilder();
+        for (String digest : new HashSet<String>(digests.values()))
+        {
+            if (digestList.length() != 0)
+            {
+                digestList.append(',');
+            }
+            digestList.append(digest);
+        }
+
+        DaemonParameters missingParameters = new DaemonParameters();
+        missingParameters.setParameter("digests", digestList.toString());
+
+        Set<String> missing;
+        try
+        {
+            String response = invoke("missing", missingParameters);
+            missing = new HashSet<String>(
+                Arrays.asList(response.substring("OK -".length()).trim().split(",")));
+        }
+        catch (DaemonException e)
+        {
+            getLogger().info("Cargo daemon cannot tell which files it has, uploading all files",
+                this.getClass().getName());
+            return;
+        }
+
+        int stored = 0;
+        Iterator<Map.Entry<String, String>> files = parameters.getFiles().entrySet().iterator();
+        while (files.hasNext())
+        {
+            Map.Entry<String, String> file = files.next();
+            String digest = digests.get(file.getKey());
+            if (digest != null)
+            {
+                parameters.setParameter(file.getKey() + DIGEST_SUFFIX, digest);
+                if (!missing.contains(digest))
+                {
+                    files.remove();
+                    stored++;
+                }
+            }
+        }
+        getLogger().info(stored + " of " + digests.size()
+            + " files are already on Cargo daemon and will not be uploaded",
+                this.getClass().getName());
+    }
+
     /**
      * Setup the additional classpath for the container.
      * 
@@ -878,9 +989,20 @@ public class DaemonClient extends LoggedObject
 
             for (Map.Entry<String, String> entry : parameters.getFiles().entrySet())
             {
-                writer.writeFile(entry.getKey(), "application/octet-stream",
-                    fileHandler.getName(entry.getValue()),
-                    fileHandler.getInputStream(entry.getValue()));
+                String fileName = fileHandler.getName(entry.getValue());
+                InputStream fileData = fileHandler.getInputStream(entry.getValue());
+
+                // Only daemons which keep files by digest accept compressed files
+                if (this.compressUploads
+                    && parameters.getParameters().containsKey(entry.getKey() + DIGEST_SUFFIX))
+                {
+                    writer.writeCompressedFile(entry.getKey(), fileName, fileData);
+                }
+                else
+                {
+                    writer.writeFile(entry.getKey(), "application/octet-stream", fileName,
+                        fileData);
+                }
             }
             writer.close();
         }
@@ -22,9 +22,11 @@ package org.codehaus.cargo.tools.daemon;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Represents a form writer capable of sending files and form data as multipart chunks.
@@ -139,24 +141,7 @@ public class MultipartFormWriter
         {
             throw new IllegalArgumentException("Input stream cannot be null.");
         }
-        if (fileName == null || fileName.isEmpty())
-        {
-            throw new IllegalArgumentException("File name cannot be null or empty.");
-        }
-        // write boundary
-        out.writeBytes(PREFIX);
-        out.writeBytes(boundary);
-        out.writeBytes(NEWLINE);
-        // write content header
-        out.writeBytes("Content-Disposition: form-data; name=\"" + name + "\"; filename=\""
-            + fileName + "\"");
-        out.writeBytes(NEWLINE);
-        if (mimeType != null)
-        {
-            out.writeBytes("Content-Type: " + mimeType);
-            out.writeBytes(NEWLINE);
-        }
-        out.writeBytes(NEWLINE);
+        writeFileHeader(name, mimeType, fileName);
         // write content
         byte[] data = new byte[1024];
         int r = 0;
@@ -170,6 +155,52 @@ public class MultipartFormWriter
         out.flush();
     }
 
+    /**
+     * Writes a input stream's contents compressed with GZIP, with the
+     * <code>application/x-gzip</code> content type.
+     * 
+     * @param name The field name
+     * @param fileName The file name (required)
+     * @param is The input stream, closed once written
+     * @throws IOException on input/output errors
+     */
+    public void writeCompressedFile(String name, String fileName, InputStream is)
+        throws IOException
+    {
+        if (is == null)
+        {
+            throw new IllegalArgumentException("Input stream cannot be null.");
+        }
+        writeFileHeader(name, "application/x-gzip", fileName);
+        // write compressed content, keeping the underlying stream open
+        OutputStream body = new FilterOutputStream(out)
+        {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                flush();
+            }
+        };
+        try (InputStream in = is; GZIPOutputStream gzip = new GZIPOutputStream(body, 65536))
+        {
+            byte[] data = new byte[65536];
+            int r = in.read(data, 0, data.length);
+            while (r != -1)
+            {
+                gzip.write(data, 0, r);
+                r = in.read(data, 0, data.length);
+            }
+        }
+        out.writeBytes(NEWLINE);
+        out.flush();
+    }
+
     /**
      * Writes the given bytes.
      * 
@@ -186,6 +217,24 @@ public class MultipartFormWriter
         {
             throw new IllegalArgumentException("Data cannot be null.");
         }
+        writeFileHeader(name, mimeType, fileName);
+        // write content
+        out.write(data, 0, data.length);
+        out.writeBytes(NEWLINE);
+        out.flush();
+    }
+
+    /**
+     * Writes the boundary and the headers of a file.
+     * 
+     * @param name the field name
+     * @param mimeType the file content type (optional, recommended)
+     * @param fileName the file name (required)
+     * @throws IOException on input/output errors
+     */
+    private void writeFileHeader(String name, String mimeType, String fileName)
+        throws IOException
+    {
         if (fileName == null || fileName.isEmpty())
         {
             throw new IllegalArgumentException("File name cannot be null or empty.");
@@ -208,10 +257,6 @@ public class MultipartFormWriter
             out.writeBytes(NEWLINE);
         }
         out.writeBytes(NEWLINE);
-        // write content
-        out.write(data, 0, data.length);
-        out.writeBytes(NEWLINE);
-        out.flush();
     }
 
     /**
@@ -280,7 +280,7 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 if (startRequest == null)
                 {
                     // Use case: Create new / replace existing handleId with provided configuration
-                    startRequest = new StartRequest().parse(request);
+                    startRequest = new StartRequest().parse(request, fileManager);
                     startRequest.setSave(true);
                 }
 
@@ -424,6 +424,67 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.toString());
             }
         }
+        else if ("taillog".equals(servletPath) || "tailcargolog".equals(servletPath))
+        {
+            // Unlike viewlog and viewcargolog which need to be polled, stream the log as it grows
+            // until the container stops, the client disconnects or the optional timeout is reached
+            String handleId = request.getParameter("handleId");
+            Handle handle = handles.get(handleId);
+            if (handle == null)
+            {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                    "Handle id " + handleId + " not found.");
+                return;
+            }
+
+            String logFilePath;
+            if ("taillog".equals(servletPath))
+            {
+                logFilePath = handle.getContainerOutputPath();
+            }
+            else
+            {
+                logFilePath = handle.getContainerLogPath();
+            }
+
+            long filesize = fileManager.getFileSize(logFilePath);
+            Long offset = getLong(request.getParameter("offset"));
+            long pos;
+            if (offset == null)
+            {
+                // If no offset is specified, only start at the last 1MB
+                pos = Math.max(0, filesize - 1048576);
+            }
+            else
+            {
+                pos = offset;
+            }
+            Long timeout = getLong(request.getParameter("timeout"));
+
+            response.setContentType("text/plain");
+            response.setCharacterEncoding(CargoDaemonServlet.DAEMON_SERVLET_CHARSET);
+            response.setHeader("X-Text-Offset", String.valueOf(pos));
+
+            try
+            {
+                fileManager.tail(logFilePath, response.getOutputStream(), pos, handle,
+                    timeout == null ? 0 : timeout);
+            }
+            catch (IOException e)
+            {
+                // The client has disconnected
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        else if ("missing".equals(servletPath))
+        {
+            response.setContentType("text/plain");
+            response.getWriter().println(
+                "OK - " + getMissingDigests(request.getParameter("digests")));
+        }
         else if ("installed".equals(servletPath))
         {
             String file = request.getParameter("file");
@@ -465,6 +526,34 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
         }
     }
 
+    /**
+     * Tells which of the given digests are not stored, so that only the files with these digests
+     * are uploaded with the next start request. The stored files are marked as used, so that
+     * they are the last to be evicted from the store before that request.
+     * 
+     * @param digests Comma-separated list of SHA-256 digests.
+     * @return Comma-separated list of the digests not stored.
+     */
+    private String getMissingDigests(String digests)
+    {
+        StringBuilder missing = new StringBuilder();
+        if (digests != null)
+        {
+            for (String digest : digests.split(","))
+            {
+                if (!digest.isEmpty() && !fileManager.useStoredFile(digest))
+                {
+                    if (missing.length() != 0)
+                    {
+                        missing.append(',');
+                    }
+                    missing.append(digest);
+                }
+            }
+        }
+        return missing.toString();
+    }
+
     /**
      * Starts the container.
      * 
@@ -994,6 +1083,15 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
         return result;
     }
 
+    /**
+     * @return Database of the handles to deployed containers, <code>null</code> until the servlet
+     * has been initialized.
+     */
+    HandleDatabase getHandleDatabase()
+    {
+        return this.handles;
+    }
+
     /**
      * Converts text to long if possible, otherwise returns 0
      * 
@@ -21,14 +21,40 @@ package org.codehaus.cargo.daemon.file;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
+import org.codehaus.cargo.container.State;
+import org.codehaus.cargo.daemon.CargoDaemonException;
+import org.codehaus.cargo.daemon.Handle;
 import org.codehaus.cargo.daemon.HandleDatabase;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.Sha256;
 
 /**
  * File manager to deal with files and directories in the daemon workspace.
@@ -41,6 +67,23 @@ public class FileManager
      */
     private static final int REFRESH_TIME = 500;
 
+    /**
+     * System property giving the maximum size of the stored files, in bytes.
+     */
+    private static final String STORE_MAX_SIZE_PROPERTY = "cargo.daemon.store.maxsize";
+
+    /**
+     * Default maximum size of the stored files, in bytes.
+     */
+    private static final long DEFAULT_STORE_MAX_SIZE = 1024L * 1024L * 1024L;
+
+    /**
+     * Time during which a stored file cannot be deleted after it has been used, in milliseconds.
+     * This covers the time between a client asking which files are stored and the start request
+     * using them, during which the client uploads the other files.
+     */
+    private static final long STORE_PIN_TIME = TimeUnit.HOURS.toMillis(1);
+
     /**
      * The cargo home directory.
      */
@@ -71,6 +114,17 @@ public class FileManager
      */
     private String handleRecordFile;
 
+    /**
+     * The maximum size of the stored files.
+     */
+    private Long storeMaxSize;
+
+    /**
+     * Stored files which cannot be deleted, with the time until which they are kept, indexed by
+     * digest.
+     */
+    private final Map<String, Long> pinnedStoredFiles = new HashMap<String, Long>();
+
     /**
      * The file handler.
      */
@@ -384,6 +438,229 @@ public class FileManager
         return fileHandler.exists(filepath);
     }
 
+    /**
+     * Get the directory of the stored files. Uploaded files are stored by their digest, so that
+     * files which have not changed since a previous start are not uploaded again, whatever the
+     * container they have been uploaded for. The store keeps the most recently used files, up to
+     * {@link #getStoreMaxSize()} bytes.
+     * 
+     * @return the directory of the stored files
+     */
+    public String getStoreDirectory()
+    {
+        return fileHandler.append(getWorkspaceDirectory(), "store");
+    }
+
+    /**
+     * Get the maximum size of the stored files, set with the
+     * <code>cargo.daemon.store.maxsize</code> system property in bytes and defaulting to 1 GB.
+     * When storing a file makes the store larger, the least recently used files are deleted,
+     * except the files used during the last hour.
+     * 
+     * @return the maximum size of the stored files, in bytes
+     */
+    public long getStoreMaxSize()
+    {
+        if (storeMaxSize == null)
+        {
+            storeMaxSize = DEFAULT_STORE_MAX_SIZE;
+            String maxSize = System.getProperty(STORE_MAX_SIZE_PROPERTY);
+            if (maxSize != null)
+            {
+                try
+                {
+                    storeMaxSize = Long.valueOf(maxSize);
+                }
+                catch (NumberFormatException e)
+                {
+                    // Keep the default
+                }
+            }
+        }
+
+        return storeMaxSize;
+    }
+
+    /**
+     * Check if a file with the given digest is stored.
+     * 
+     * @param digest The SHA-256 digest of the file, in hexadecimal
+     * @return true if the file is stored
+     */
+    public boolean existsStoredFile(String digest)
+    {
+        return isDigest(digest)
+            && fileHandler.exists(fileHandler.append(getStoreDirectory(), digest));
+    }
+
+    /**
+     * Check if a file with the given digest is stored and if so, marks it as used so that it is
+     * the last to be deleted when the store is full. A file which has been used is not deleted
+     * during the next hour, so that a client which has been told the file is stored can still
+     * start a container with it after uploading its other files.
+     * 
+     * @param digest The SHA-256 digest of the file, in hexadecimal
+     * @return true if the file is stored
+     */
+    public synchronized boolean useStoredFile(String digest)
+    {
+        if (!existsStoredFile(digest))
+        {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        new File(fileHandler.append(getStoreDirectory(), digest)).setLastModified(now);
+        pinnedStoredFiles.put(digest, now + STORE_PIN_TIME);
+        return true;
+    }
+
+    /**
+     * Get the input stream of a stored file, and marks the file as used.
+     * 
+     * @param digest The SHA-256 digest of the file, in hexadecimal
+     * @return the input stream, <code>null</code> if no file with this digest is stored
+     * @throws IOException if error happens
+     */
+    public InputStream getStoredFileInputStream(String digest) throws IOException
+    {
+        if (!useStoredFile(digest))
+        {
+            return null;
+        }
+        return new FileInputStream(fileHandler.append(getStoreDirectory(), digest));
+    }
+
+    /**
+     * Stores the input stream as a file with the given digest. The file is only stored if its
+     * content matches the digest, and replaces atomically any file stored before. If the store
+     * then exceeds its maximum size, the least recently used other files are deleted.
+     * 
+     * @param digest The SHA-256 digest of the file, in hexadecimal
+     * @param inputStream The inputstream containing the file contents
+     * @throws IOException if error happens
+     */
+    public void storeFile(String digest, InputStream inputStream) throws IOException
+    {
+        if (!isDigest(digest))
+        {
+            throw new CargoDaemonException("Invalid " + Sha256.ALGORITHM + " digest: " + digest);
+        }
+
+        MessageDigest messageDigest = Sha256.createDigest();
+        File directory = new File(getStoreDirectory());
+        directory.mkdirs();
+        File file = new File(directory, digest);
+        File temporaryFile = File.createTempFile(digest, ".tmp", directory);
+        try
+        {
+            try (OutputStream out = new FileOutputStream(temporaryFile))
+            {
+                byte[] buffer = new byte[64 * 1024];
+                int read = inputStream.read(buffer);
+                while (read != -1)
+                {
+                    messageDigest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    read = inputStream.read(buffer);
+                }
+            }
+
+            String actualDigest = Sha256.toHex(messageDigest.digest());
+            if (!digest.equals(actualDigest))
+            {
+                throw new CargoDaemonException("File uploaded with digest " + digest
+                    + " has digest " + actualDigest);
+            }
+
+            try
+            {
+                Files.move(temporaryFile.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (IOException e)
+            {
+                // A file with the same digest has the same content, it might be open though
+                if (!file.isFile())
+                {
+                    throw e;
+                }
+                file.setLastModified(System.currentTimeMillis());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+
+        evictStoredFiles(file);
+    }
+
+    /**
+     * Deletes the least recently used stored files until the store fits in its maximum size.
+     * Files which cannot be deleted, for example because they are open on Windows, are skipped,
+     * as are files used recently enough to be pinned.
+     * 
+     * @param kept The stored file to keep, even if it does not fit in the store by itself
+     */
+    private synchronized void evictStoredFiles(File kept)
+    {
+        long now = System.currentTimeMillis();
+        Iterator<Long> pinnedUntil = pinnedStoredFiles.values().iterator();
+        while (pinnedUntil.hasNext())
+        {
+            if (pinnedUntil.next() <= now)
+            {
+                pinnedUntil.remove();
+            }
+        }
+
+        File[] storedFiles = new File(getStoreDirectory()).listFiles();
+        if (storedFiles == null)
+        {
+            return;
+        }
+
+        long size = 0;
+        List<File> files = new ArrayList<File>();
+        for (File storedFile : storedFiles)
+        {
+            if (isDigest(storedFile.getName()))
+            {
+                size += storedFile.length();
+                files.add(storedFile);
+            }
+        }
+
+        Collections.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File file1, File file2)
+            {
+                return Long.compare(file1.lastModified(), file2.lastModified());
+            }
+        });
+        Iterator<File> leastRecentlyUsed = files.iterator();
+        while (size > getStoreMaxSize() && leastRecentlyUsed.hasNext())
+        {
+            File storedFile = leastRecentlyUsed.next();
+            long length = storedFile.length();
+            if (!storedFile.equals(kept)
+                && !pinnedStoredFiles.containsKey(storedFile.getName()) && storedFile.delete())
+            {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * @param digest String to check.
+     * @return <code>true</code> if the string is a SHA-256 digest in lower case hexadecimal.
+     */
+    private static boolean isDigest(String digest)
+    {
+        return digest != null && digest.matches("[0-9a-f]{64}");
+    }
+
     /**
      * Get the URL for a filename in the workspace.
      * 
@@ -461,45 +738,132 @@ public class FileManager
             return 0;
         }
 
-        byte[] buf = new byte[64 * 1024];
-        int bytesRead;
         long pos = 0;
-        long remaining = size;
-        try (BufferedInputStream is = new BufferedInputStream(getFileInputStream(filename)))
+        try (FileChannel channel = FileChannel.open(new File(filename).toPath(),
+            StandardOpenOption.READ))
         {
-            if (offset != 0)
+            pos = transfer(channel, offset, Math.min(offset + size, channel.size()), out);
+            out.flush();
+        }
+        catch (Exception e)
+        {
+            // Ignore
+            out.flush();
+        }
+
+        return pos;
+    }
+
+    /**
+     * Streams the given file to the output stream as it grows, until the container of the given
+     * handle is neither starting nor started anymore, the client disconnects or the timeout is
+     * reached. Instead of polling at a fixed rate, waiting for data wakes up as soon as the
+     * directory of the file changes.
+     * 
+     * @param filename The file to stream
+     * @param out The destination output stream, flushed after each transfer
+     * @param offset The starting offset to read from
+     * @param handle The handle of the container writing to the file
+     * @param timeout The maximum time to stream for in milliseconds, 0 for no limit
+     * @return The last position of the file
+     * @throws IOException if error happens, most notably when the client disconnects
+     * @throws InterruptedException if interrupted while waiting for the file to grow
+     */
+    public long tail(String filename, OutputStream out, long offset, Handle handle,
+        long timeout) throws IOException, InterruptedException
+    {
+        Path path = new File(filename).getAbsoluteFile().toPath();
+        long deadline = timeout == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        long pos = offset;
+
+        WatchService watcher = null;
+        try
+        {
+            try
             {
-                is.skip(offset);
-                pos += offset;
+                watcher = FileSystems.getDefault().newWatchService();
+                path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_CREATE);
+            }
+            catch (IOException | UnsupportedOperationException e)
+            {
+                // Wait at the refresh rate
             }
 
-            while (remaining != 0)
+            while (true)
             {
-                int max = buf.length;
-                if (max > remaining)
+                State state = handle.getContainerStatus();
+                boolean last = state != State.STARTING && state != State.STARTED
+                    || System.currentTimeMillis() > deadline;
+
+                if (path.toFile().isFile())
                 {
-                    max = (int) remaining;
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+                    {
+                        long size = channel.size();
+                        if (size < pos)
+                        {
+                            // The file has been truncated, for example by a container restart
+                            pos = 0;
+                        }
+                        pos = transfer(channel, pos, size, out);
+                    }
                 }
+                out.flush();
 
-                bytesRead = is.read(buf, 0, max);
-                if (bytesRead == -1)
+                if (last)
                 {
-                    break;
+                    return pos;
                 }
 
-                out.write(buf, 0, bytesRead);
-                pos += bytesRead;
-                remaining -= bytesRead;
+                if (watcher == null)
+                {
+                    Thread.sleep(REFRESH_TIME);
+                }
+                else
+                {
+                    WatchKey key = watcher.poll(REFRESH_TIME, TimeUnit.MILLISECONDS);
+                    if (key != null)
+                    {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                }
             }
-
-            out.flush();
         }
-        catch (Exception e)
+        finally
         {
-            // Ignore
-            out.flush();
+            if (watcher != null)
+            {
+                watcher.close();
+            }
         }
+    }
 
+    /**
+     * Transfers part of a file to an output stream, letting the channel copy the data.
+     * 
+     * @param channel The file channel to read from
+     * @param start The position to start from
+     * @param end The position to stop at
+     * @param out The destination output stream
+     * @return The position reached
+     * @throws IOException if error happens
+     */
+    private long transfer(FileChannel channel, long start, long end, OutputStream out)
+        throws IOException
+    {
+        WritableByteChannel target = Channels.newChannel(out);
+        long pos = start;
+        while (pos < end)
+        {
+            long transferred = channel.transferTo(pos, end - pos, target);
+            if (transferred <= 0)
+            {
+                break;
+            }
+            pos += transferred;
+        }
         return pos;
     }
 
@@ -34,13 +34,14 @@ import com.sun.jna.platform.win32.Kernel32;
 import com.sun.jna.platform.win32.WinNT.HANDLE;
 
 import org.apache.tools.ant.types.Commandline;
-import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.container.internal.util.ProcessUtils;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherException;
+import org.codehaus.cargo.container.spi.jvm.MonitoredJvmLauncher;
 
 /**
  * A JVM launcher that launches a new Process, that can be forcibly killed if needed.
  */
-class DaemonJvmLauncher implements JvmLauncher
+class DaemonJvmLauncher implements MonitoredJvmLauncher
 {
     /**
      * The working directory.
@@ -460,6 +461,24 @@ class DaemonJvmLauncher implements JvmLauncher
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JvmLauncherException getFailure()
+    {
+        return ProcessUtils.getFailure(this.process);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning()
+    {
+        return ProcessUtils.isRunning(this.process);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -34,6 +35,7 @@ import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.codehaus.cargo.daemon.CargoDaemonException;
+import org.codehaus.cargo.daemon.file.FileManager;
 import org.codehaus.cargo.daemon.properties.PropertyTable;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -44,6 +46,16 @@ import org.json.simple.JSONValue;
  */
 public class StartRequest
 {
+    /**
+     * Suffix of the parameter giving the digest of a file.
+     */
+    private static final String DIGEST_SUFFIX = "Digest";
+
+    /**
+     * Content type of the compressed files.
+     */
+    private static final String GZIP_CONTENT_TYPE = "application/x-gzip";
+
     /**
      * The parameters.
      */
@@ -54,6 +66,16 @@ public class StartRequest
      */
     private Map<String, FileItem> files;
 
+    /**
+     * The file manager storing files by digest, <code>null</code> if files are not stored.
+     */
+    private FileManager fileManager;
+
+    /**
+     * The input streams opened for files.
+     */
+    private List<InputStream> inputStreams = new ArrayList<InputStream>();
+
     /**
      * Tells if this request needs to be saved.
      */
@@ -63,11 +85,14 @@ public class StartRequest
      * Parses the servlet request.
      * 
      * @param request The servlet request.
+     * @param fileManager The file manager storing the files sent with their digest.
      * @return the StartRequest
      */
     @SuppressWarnings("unchecked")
-    public StartRequest parse(HttpServletRequest request)
+    public StartRequest parse(HttpServletRequest request, FileManager fileManager)
     {
+        this.fileManager = fileManager;
+
         ServletFileUpload servletFileUpload = new ServletFileUpload(new DiskFileItemFactory());
 
         parameters = new PropertyTable();
@@ -245,7 +270,9 @@ public class StartRequest
 
 
     /**
-     * Gets the inputstream of a file with key name {@code name}.
+     * Gets the inputstream of a file with key name {@code name}. If the file has been sent with
+     * its digest, it is taken from the file manager's store, after storing it if it has been
+     * uploaded.
      * 
      * @param name The key name.
      * @param required If required {@code true}, otherwise {@code false}
@@ -256,13 +283,36 @@ public class StartRequest
         try
         {
             InputStream inputStream = null;
+            FileItem item = files == null ? null : files.get(name);
+            String digest = fileManager == null ? null : parameters.get(name + DIGEST_SUFFIX);
+
+            if (item != null)
+            {
+                inputStream = item.getInputStream();
+                if (GZIP_CONTENT_TYPE.equals(item.getContentType()))
+                {
+                    inputStream = new GZIPInputStream(inputStream);
+                }
+
+                if (digest != null)
+                {
+                    try (InputStream uploadedInputStream = inputStream)
+                    {
+                        fileManager.storeFile(digest, uploadedInputStream);
+                    }
+                    inputStream = null;
+                    files.remove(name);
+                    item.delete();
+                }
+            }
 
-            if (files != null)
+            if (inputStream == null && digest != null)
             {
-                FileItem item = files.get(name);
-                if (item != null)
+                inputStream = fileManager.getStoredFileInputStream(digest);
+                if (inputStream == null)
                 {
-                    inputStream = item.getInputStream();
+                    throw new CargoDaemonException("Parameter " + name + " has digest " + digest
+                        + ", yet no file with this digest is stored.");
                 }
             }
 
@@ -273,6 +323,10 @@ public class StartRequest
                     throw new CargoDaemonException("Parameter " + name + " is required.");
                 }
             }
+            else
+            {
+                inputStreams.add(inputStream);
+            }
 
             return inputStream;
         }
@@ -289,6 +343,19 @@ public class StartRequest
     {
         try
         {
+            for (InputStream inputStream : inputStreams)
+            {
+                try
+                {
+                    inputStream.close();
+                }
+                catch (IOException ignored)
+                {
+                    // Ignored
+                }
+            }
+            inputStreams.clear();
+
             for (FileItem item : files.values())
             {
                 item.delete();
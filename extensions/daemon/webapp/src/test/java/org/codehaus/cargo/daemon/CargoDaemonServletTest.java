@@ -0,0 +1,283 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.cargo.container.State;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Unit tests for the log endpoints of {@link CargoDaemonServlet}.
+ */
+public class CargoDaemonServletTest extends MockObjectTestCase
+{
+    /**
+     * Identifier of the test handle.
+     */
+    private static final String HANDLE_ID = "test";
+
+    /**
+     * Servlet to test.
+     */
+    private CargoDaemonServlet servlet;
+
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Temporary directory used as Cargo home.
+     */
+    private String cargoHome;
+
+    /**
+     * Cargo home before the test.
+     */
+    private String previousCargoHome;
+
+    /**
+     * Handle of the test container.
+     */
+    private Handle handle;
+
+    /**
+     * {@link ServletOutputStream} writing to memory.
+     */
+    private static class ByteArrayServletOutputStream extends ServletOutputStream
+    {
+        /**
+         * Written bytes.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(int b)
+        {
+            this.bytes.write(b);
+        }
+
+        /**
+         * @return Written bytes, as text.
+         * @throws IOException If anything goes wrong.
+         */
+        public String getText() throws IOException
+        {
+            return this.bytes.toString(StandardCharsets.UTF_8.name());
+        }
+    }
+
+    /**
+     * Initializes the servlet with a temporary Cargo home and adds the test handle, whose
+     * container is stopped. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.fileHandler = new DefaultFileHandler();
+        this.cargoHome = this.fileHandler.createUniqueTmpDirectory();
+        this.previousCargoHome = System.getProperty("cargo.home");
+        System.setProperty("cargo.home", this.cargoHome);
+
+        Mock context = mock(ServletContext.class);
+        context.stubs().method("getResourceAsStream").will(returnValue(null));
+        Mock config = mock(ServletConfig.class);
+        config.stubs().method("getServletContext").will(returnValue(context.proxy()));
+
+        this.servlet = new CargoDaemonServlet();
+        this.servlet.init((ServletConfig) config.proxy());
+
+        this.handle = new Handle();
+        this.handle.setId(HANDLE_ID);
+        this.handle.setContainerOutputPath(createLog("output.log", "0123456789"));
+        this.handle.setContainerLogPath(createLog("cargo.log", "cargo log"));
+        this.servlet.getHandleDatabase().put(HANDLE_ID, this.handle);
+    }
+
+    /**
+     * Destroys the servlet and deletes the temporary Cargo home. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.servlet.destroy();
+        if (this.previousCargoHome == null)
+        {
+            System.clearProperty("cargo.home");
+        }
+        else
+        {
+            System.setProperty("cargo.home", this.previousCargoHome);
+        }
+        this.fileHandler.delete(this.cargoHome);
+        super.tearDown();
+    }
+
+    /**
+     * Creates a log file in the Cargo home.
+     * @param name Name of the log file.
+     * @param text Content of the log file.
+     * @return Path of the log file.
+     * @throws IOException If anything goes wrong.
+     */
+    private String createLog(String name, String text) throws IOException
+    {
+        File log = new File(this.cargoHome, name);
+        try (OutputStream out = new FileOutputStream(log))
+        {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return log.getPath();
+    }
+
+    /**
+     * Creates a request to a log endpoint for the test handle.
+     * @param endpoint Log endpoint.
+     * @param offset Offset parameter, may be <code>null</code>.
+     * @param timeout Timeout parameter, may be <code>null</code>.
+     * @param handleId Identifier of the handle.
+     * @return Request mock.
+     */
+    private Mock mockRequest(String endpoint, String offset, String timeout, String handleId)
+    {
+        Mock request = mock(HttpServletRequest.class);
+        request.stubs().method("getServletPath").will(returnValue("/" + endpoint));
+        request.stubs().method("getParameter").with(eq("handleId")).will(returnValue(handleId));
+        request.stubs().method("getParameter").with(eq("offset")).will(returnValue(offset));
+        request.stubs().method("getParameter").with(eq("timeout")).will(returnValue(timeout));
+        return request;
+    }
+
+    /**
+     * Creates a response which expects a streamed log.
+     * @param offset Expected starting offset.
+     * @param out Output stream of the response.
+     * @return Response mock.
+     */
+    private Mock mockResponse(long offset, ServletOutputStream out)
+    {
+        Mock response = mock(HttpServletResponse.class);
+        response.expects(once()).method("setContentType").with(eq("text/plain"));
+        response.stubs().method("setCharacterEncoding");
+        response.expects(once()).method("setHeader")
+            .with(eq("X-Text-Offset"), eq(String.valueOf(offset)));
+        response.stubs().method("getOutputStream").will(returnValue(out));
+        return response;
+    }
+
+    /**
+     * Test tailing the container output from an offset.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailLogFromOffset() throws Exception
+    {
+        Mock request = mockRequest("taillog", "2", null, HANDLE_ID);
+        ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+        Mock response = mockResponse(2, out);
+
+        this.servlet.service(
+            (HttpServletRequest) request.proxy(), (HttpServletResponse) response.proxy());
+
+        assertEquals("23456789", out.getText());
+    }
+
+    /**
+     * Test tailing the Cargo log without offset.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailCargoLog() throws Exception
+    {
+        Mock request = mockRequest("tailcargolog", null, null, HANDLE_ID);
+        ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+        Mock response = mockResponse(0, out);
+
+        this.servlet.service(
+            (HttpServletRequest) request.proxy(), (HttpServletResponse) response.proxy());
+
+        assertEquals("cargo log", out.getText());
+    }
+
+    /**
+     * Test that tailing the log of a running container ends with the timeout.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailLogTimeout() throws Exception
+    {
+        Handle runningHandle = new Handle()
+        {
+            @Override
+            public State getContainerStatus()
+            {
+                return State.STARTED;
+            }
+        };
+        runningHandle.setContainerOutputPath(this.handle.getContainerOutputPath());
+        this.servlet.getHandleDatabase().put("running", runningHandle);
+        Mock request = mockRequest("taillog", "0", "500", "running");
+        ByteArrayServletOutputStream out = new ByteArrayServletOutputStream();
+        Mock response = mockResponse(0, out);
+
+        long start = System.currentTimeMillis();
+        this.servlet.service(
+            (HttpServletRequest) request.proxy(), (HttpServletResponse) response.proxy());
+        long duration = System.currentTimeMillis() - start;
+
+        assertTrue("Timing " + duration + " too short", duration >= 500);
+        assertTrue("Timing " + duration + " too long", duration < 10000);
+        assertEquals("0123456789", out.getText());
+    }
+
+    /**
+     * Test that tailing the log of an unknown handle fails.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailLogUnknownHandle() throws Exception
+    {
+        Mock request = mockRequest("taillog", null, null, "unknown");
+        Mock response = mock(HttpServletResponse.class);
+        response.expects(once()).method("sendError")
+            .with(eq(HttpServletResponse.SC_NOT_FOUND), ANYTHING);
+
+        this.servlet.service(
+            (HttpServletRequest) request.proxy(), (HttpServletResponse) response.proxy());
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
+import org.codehaus.cargo.container.stub.StandaloneLocalConfigurationStub;
+import org.codehaus.cargo.daemon.file.FileManager;
+import org.codehaus.cargo.daemon.request.StartRequest;
+import org.codehaus.cargo.tools.daemon.DaemonClient;
+import org.codehaus.cargo.tools.daemon.DaemonException;
+import org.codehaus.cargo.tools.daemon.DaemonParameters;
+import org.codehaus.cargo.tools.daemon.DaemonStart;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.Sha256;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Round-trip tests of the file uploads from {@link DaemonClient} to the Cargo daemon: the
+ * <code>missing</code> endpoint, the upload of files with their digest and their compression.
+ * Starting the container is replaced by reading back the deployable from the start request.
+ */
+public class CargoDaemonUploadTest extends MockObjectTestCase
+{
+    /**
+     * Name of the deployable file parameter.
+     */
+    private static final String DEPLOYABLE_PARAMETER = "deployableFileData_0";
+
+    /**
+     * Servlet answering the <code>missing</code> endpoint.
+     */
+    private CargoDaemonServlet servlet;
+
+    /**
+     * File manager reading the start requests.
+     */
+    private FileManager fileManager;
+
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Temporary directory used as Cargo home.
+     */
+    private String cargoHome;
+
+    /**
+     * Cargo home before the test.
+     */
+    private String previousCargoHome;
+
+    /**
+     * HTTP server forwarding the client requests.
+     */
+    private HttpServer server;
+
+    /**
+     * Deployable file to upload.
+     */
+    private File deployable;
+
+    /**
+     * Whether the daemon has the <code>missing</code> endpoint.
+     */
+    private boolean missingEndpoint = true;
+
+    /**
+     * Bodies of the start requests received.
+     */
+    private List<String> startRequests = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Deployables read back from the start requests received.
+     */
+    private List<String> deployables = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * HTTP handler passing the <code>missing</code> requests to the servlet and reading back the
+     * deployable of the <code>start</code> requests.
+     */
+    private class DaemonHandler implements HttpHandler
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handle(HttpExchange exchange) throws IOException
+        {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            fileHandler.copy(exchange.getRequestBody(), body);
+            HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[] {HttpServletRequest.class},
+                    new Request(exchange, body.toByteArray()));
+            String path = exchange.getRequestURI().getPath();
+
+            Response response = new Response();
+            try
+            {
+                if (this.isMissing(path))
+                {
+                    servlet.service(request, (HttpServletResponse) Proxy.newProxyInstance(
+                        getClass().getClassLoader(), new Class[] {HttpServletResponse.class},
+                            response));
+                }
+                else if ("/start".equals(path))
+                {
+                    startRequests.add(body.toString(StandardCharsets.ISO_8859_1.name()));
+                    StartRequest startRequest = new StartRequest().parse(request, fileManager);
+                    try
+                    {
+                        ByteArrayOutputStream file = new ByteArrayOutputStream();
+                        fileHandler.copy(startRequest.getFile(DEPLOYABLE_PARAMETER, true), file);
+                        deployables.add(file.toString(StandardCharsets.UTF_8.name()));
+                    }
+                    finally
+                    {
+                        startRequest.cleanup();
+                    }
+                    response.text.print("OK - STARTED");
+                }
+                else
+                {
+                    response.status = HttpServletResponse.SC_NOT_FOUND;
+                }
+            }
+            catch (Exception e)
+            {
+                response.status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                response.text.print(e.toString());
+            }
+
+            byte[] responseBody = response.getText().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response.status, responseBody.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(responseBody);
+            }
+        }
+
+        /**
+         * @param path Request path.
+         * @return <code>true</code> if the request is for the <code>missing</code> endpoint.
+         */
+        private boolean isMissing(String path)
+        {
+            return missingEndpoint && "/missing".equals(path);
+        }
+    }
+
+    /**
+     * {@link HttpServletRequest} implementation for an {@link HttpExchange}.
+     */
+    private static class Request implements InvocationHandler
+    {
+        /**
+         * HTTP exchange.
+         */
+        private final HttpExchange exchange;
+
+        /**
+         * Request body.
+         */
+        private final byte[] body;
+
+        /**
+         * URL-encoded form parameters of the request.
+         */
+        private final Map<String, String> parameters = new HashMap<String, String>();
+
+        /**
+         * @param exchange HTTP exchange.
+         * @param body Request body.
+         * @throws IOException If anything goes wrong.
+         */
+        Request(HttpExchange exchange, byte[] body) throws IOException
+        {
+            this.exchange = exchange;
+            this.body = body;
+
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null
+                && contentType.startsWith("application/x-www-form-urlencoded"))
+            {
+                for (String parameter : new String(body, StandardCharsets.UTF_8).split("&"))
+                {
+                    int equals = parameter.indexOf('=');
+                    if (equals != -1)
+                    {
+                        this.parameters.put(
+                            URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+                    }
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            Object result = null;
+            switch (method.getName())
+            {
+                case "getServletPath":
+                    result = this.exchange.getRequestURI().getPath();
+                    break;
+                case "getMethod":
+                    result = this.exchange.getRequestMethod();
+                    break;
+                case "getContentType":
+                    result = this.exchange.getRequestHeaders().getFirst("Content-Type");
+                    break;
+                case "getContentLength":
+                    result = this.body.length;
+                    break;
+                case "getHeader":
+                    result = this.exchange.getRequestHeaders().getFirst((String) args[0]);
+                    break;
+                case "getParameter":
+                    result = this.parameters.get(args[0]);
+                    break;
+                case "getInputStream":
+                    final InputStream in = new ByteArrayInputStream(this.body);
+                    result = new ServletInputStream()
+                    {
+                        @Override
+                        public int read() throws IOException
+                        {
+                            return in.read();
+                        }
+                    };
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * {@link HttpServletResponse} implementation recording the status and text.
+     */
+    private static class Response implements InvocationHandler
+    {
+        /**
+         * Response status.
+         */
+        private int status = HttpServletResponse.SC_OK;
+
+        /**
+         * Response text.
+         */
+        private final StringWriter writer = new StringWriter();
+
+        /**
+         * Writer of the response text.
+         */
+        private final PrintWriter text = new PrintWriter(this.writer);
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "getWriter":
+                    return this.text;
+                case "sendError":
+                    this.status = (Integer) args[0];
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return Response text.
+         */
+        public String getText()
+        {
+            this.text.flush();
+            return this.writer.toString();
+        }
+    }
+
+    /**
+     * Starts the servlet and the HTTP server, with a temporary Cargo home. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.fileHandler = new DefaultFileHandler();
+        this.cargoHome = this.fileHandler.createUniqueTmpDirectory();
+        this.previousCargoHome = System.getProperty("cargo.home");
+        System.setProperty("cargo.home", this.cargoHome);
+
+        Mock context = mock(ServletContext.class);
+        context.stubs().method("getResourceAsStream").will(returnValue(null));
+        Mock config = mock(ServletConfig.class);
+        config.stubs().method("getServletContext").will(returnValue(context.proxy()));
+        this.servlet = new CargoDaemonServlet();
+        this.servlet.init((ServletConfig) config.proxy());
+        this.fileManager = new FileManager();
+
+        this.deployable = new File(this.cargoHome, "test.war");
+        writeDeployable("deployable content");
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", new DaemonHandler());
+        this.server.start();
+    }
+
+    /**
+     * Stops the HTTP server and the servlet, and deletes the temporary Cargo home.
+     * {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.server.stop(0);
+        this.servlet.destroy();
+        if (this.previousCargoHome == null)
+        {
+            System.clearProperty("cargo.home");
+        }
+        else
+        {
+            System.setProperty("cargo.home", this.previousCargoHome);
+        }
+        this.fileHandler.delete(this.cargoHome);
+        super.tearDown();
+    }
+
+    /**
+     * Writes the deployable file.
+     * @param content Content of the deployable.
+     * @throws IOException If anything goes wrong.
+     */
+    private void writeDeployable(String content) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(this.deployable))
+        {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return Client of the test HTTP server.
+     * @throws Exception If anything goes wrong.
+     */
+    private DaemonClient createClient() throws Exception
+    {
+        return new DaemonClient(
+            new URL("http://localhost:" + this.server.getAddress().getPort() + "/"));
+    }
+
+    /**
+     * @return Start of a container with the deployable.
+     */
+    private DaemonStart createStart()
+    {
+        InstalledLocalContainerStub container = new InstalledLocalContainerStub(
+            new StandaloneLocalConfigurationStub(new File(this.cargoHome, "conf").getPath()))
+        {
+            @Override
+            public long getTimeout()
+            {
+                return 0;
+            }
+        };
+        container.setOutput("output.log");
+        container.setSystemProperties(new HashMap<String, String>());
+
+        List<Deployable> deployableList = new ArrayList<Deployable>();
+        deployableList.add(new WAR(this.deployable.getPath()));
+
+        DaemonStart start = new DaemonStart();
+        start.setHandleId("test");
+        start.setContainer(container);
+        start.setDeployables(deployableList);
+        return start;
+    }
+
+    /**
+     * Test that a file is uploaded with its digest once, and then taken from the store.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testUploadOnlyMissingFiles() throws Exception
+    {
+        String digest = Sha256.digest(this.deployable.getPath(), this.fileHandler);
+        DaemonClient client = createClient();
+
+        client.start(createStart());
+        assertTrue("File not stored", this.fileManager.existsStoredFile(digest));
+        client.start(createStart());
+
+        assertEquals(2, this.startRequests.size());
+        assertTrue(this.startRequests.get(0).contains("filename=\"test.war\""));
+        assertTrue(this.startRequests.get(0).contains(digest));
+        assertFalse("Stored file uploaded again",
+            this.startRequests.get(1).contains("filename=\"test.war\""));
+        assertTrue(this.startRequests.get(1).contains(digest));
+        assertEquals("deployable content", this.deployables.get(0));
+        assertEquals("deployable content", this.deployables.get(1));
+    }
+
+    /**
+     * Test that a changed file is uploaded again.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testUploadChangedFile() throws Exception
+    {
+        DaemonClient client = createClient();
+
+        client.start(createStart());
+        writeDeployable("changed content");
+        client.start(createStart());
+
+        assertTrue(this.startRequests.get(1).contains("filename=\"test.war\""));
+        assertEquals("changed content", this.deployables.get(1));
+    }
+
+    /**
+     * Test that files are compressed when asked to, and decompressed by the daemon.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCompressedUpload() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+        {
+            content.append("compressible content ");
+        }
+        writeDeployable(content.toString());
+        DaemonClient client = createClient();
+        client.setCompressUploads(true);
+
+        client.start(createStart());
+
+        assertTrue(this.startRequests.get(0).contains("Content-Type: application/x-gzip"));
+        assertFalse(this.startRequests.get(0).contains("compressible content"));
+        assertEquals(content.toString(), this.deployables.get(0));
+    }
+
+    /**
+     * Test that a file which does not match its digest is rejected and not stored.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testUploadWithWrongDigest() throws Exception
+    {
+        String digest = Sha256.digest(this.deployable.getPath(), this.fileHandler);
+        DaemonClient client = new DaemonClient(
+            new URL("http://localhost:" + this.server.getAddress().getPort() + "/"))
+        {
+            @Override
+            protected String invoke(String path, DaemonParameters parameters)
+                throws DaemonException, IOException
+            {
+                if ("start".equals(path))
+                {
+                    // The file changes after its digest has been computed
+                    writeDeployable("changed content");
+                }
+                return super.invoke(path, parameters);
+            }
+        };
+
+        try
+        {
+            client.start(createStart());
+            fail("File not matching its digest accepted");
+        }
+        catch (DaemonException expected)
+        {
+            assertTrue(this.deployables.isEmpty());
+        }
+        assertFalse(this.fileManager.existsStoredFile(digest));
+        assertFalse(this.fileManager.existsStoredFile(
+            Sha256.digest(this.deployable.getPath(), this.fileHandler)));
+    }
+
+    /**
+     * Test that all files are uploaded uncompressed and without digest to a daemon which does not
+     * have the <code>missing</code> endpoint.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testUploadToDaemonWithoutStore() throws Exception
+    {
+        this.missingEndpoint = false;
+        DaemonClient client = createClient();
+        client.setCompressUploads(true);
+
+        client.start(createStart());
+
+        assertTrue(this.startRequests.get(0).contains("filename=\"test.war\""));
+        assertFalse(this.startRequests.get(0).contains("Digest\""));
+        assertFalse(this.startRequests.get(0).contains("application/x-gzip"));
+        assertEquals("deployable content", this.deployables.get(0));
+    }
+}
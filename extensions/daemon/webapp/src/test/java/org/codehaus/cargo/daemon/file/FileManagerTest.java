@@ -0,0 +1,438 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.State;
+import org.codehaus.cargo.daemon.CargoDaemonException;
+import org.codehaus.cargo.daemon.Handle;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.Sha256;
+
+/**
+ * Unit tests for {@link FileManager}.
+ */
+public class FileManagerTest extends TestCase
+{
+    /**
+     * File manager to test.
+     */
+    private FileManager fileManager;
+
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Temporary directory of the test.
+     */
+    private String testDirectory;
+
+    /**
+     * Log file the container writes to.
+     */
+    private File logFile;
+
+    /**
+     * State of the container writing to the log file.
+     */
+    private volatile State containerState;
+
+    /**
+     * Handle of the container writing to the log file.
+     */
+    private Handle handle;
+
+    /**
+     * Cargo home before the test.
+     */
+    private String previousCargoHome;
+
+    /**
+     * Creates the file manager with a temporary Cargo home, and the handle of the container
+     * writing to the log file. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.fileHandler = new DefaultFileHandler();
+        this.testDirectory = this.fileHandler.createUniqueTmpDirectory();
+        this.previousCargoHome = System.getProperty("cargo.home");
+        System.setProperty("cargo.home", this.testDirectory);
+        this.fileManager = new FileManager();
+        this.logFile = new File(this.testDirectory, "output.log");
+
+        this.containerState = State.STARTED;
+        this.handle = new Handle()
+        {
+            @Override
+            public State getContainerStatus()
+            {
+                return containerState;
+            }
+        };
+    }
+
+    /**
+     * Restores the system properties and deletes the temporary directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        System.clearProperty("cargo.daemon.store.maxsize");
+        if (this.previousCargoHome == null)
+        {
+            System.clearProperty("cargo.home");
+        }
+        else
+        {
+            System.setProperty("cargo.home", this.previousCargoHome);
+        }
+        this.fileHandler.delete(this.testDirectory);
+        super.tearDown();
+    }
+
+    /**
+     * Appends text to the log file.
+     * @param text Text to append.
+     * @throws IOException If anything goes wrong.
+     */
+    private void append(String text) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(this.logFile, true))
+        {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Test copying part of a file.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCopy() throws Exception
+    {
+        append("0123456789");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long pos = this.fileManager.copy(this.logFile.getPath(), out, 2, 5);
+
+        assertEquals(7, pos);
+        assertEquals("23456", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * Test that copying more than the size of a file stops at its end.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCopyPastEnd() throws Exception
+    {
+        append("0123456789");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long pos = this.fileManager.copy(this.logFile.getPath(), out, 8, 100);
+
+        assertEquals(10, pos);
+        assertEquals("89", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * Test that copying a file which cannot be read returns 0.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCopyMissingFile() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long pos = this.fileManager.copy(this.logFile.getPath(), out, 5, 10);
+
+        assertEquals(0, pos);
+        assertEquals(0, out.size());
+    }
+
+    /**
+     * Test that tailing a log streams what is appended to it until the container stops.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailFollowsGrowth() throws Exception
+    {
+        append("before\n");
+        final String logFilePath = this.logFile.getPath();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long[] pos = new long[1];
+        Thread tail = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pos[0] = fileManager.tail(logFilePath, out, 7, handle, 0);
+                }
+                catch (Exception e)
+                {
+                    pos[0] = -1;
+                }
+            }
+        };
+        tail.start();
+
+        Thread.sleep(200);
+        append("first\n");
+        Thread.sleep(200);
+        append("second\n");
+        this.containerState = State.STOPPED;
+        tail.join(10000);
+
+        assertFalse("Tail did not stop with the container", tail.isAlive());
+        assertEquals(this.logFile.length(), pos[0]);
+        assertEquals("first\nsecond\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * Test that tailing a log starts over when the log is truncated, as when the container
+     * restarts.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailRestartsOnTruncation() throws Exception
+    {
+        append("output of the previous run\n");
+        final String logFilePath = this.logFile.getPath();
+        final long offset = this.logFile.length();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long[] pos = new long[1];
+        Thread tail = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pos[0] = fileManager.tail(logFilePath, out, offset, handle, 0);
+                }
+                catch (Exception e)
+                {
+                    pos[0] = -1;
+                }
+            }
+        };
+        tail.start();
+
+        Thread.sleep(200);
+        try (RandomAccessFile file = new RandomAccessFile(this.logFile, "rw"))
+        {
+            file.setLength(0);
+        }
+        append("new run\n");
+        this.containerState = State.STOPPED;
+        tail.join(10000);
+
+        assertFalse("Tail did not stop with the container", tail.isAlive());
+        assertEquals(this.logFile.length(), pos[0]);
+        assertEquals("new run\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * Test that tailing a log of a container which keeps running stops after the timeout.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailStopsAfterTimeout() throws Exception
+    {
+        append("running\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long start = System.currentTimeMillis();
+        long pos = this.fileManager.tail(this.logFile.getPath(), out, 0, this.handle, 1000);
+        long duration = System.currentTimeMillis() - start;
+
+        assertTrue("Timing " + duration + " too short", duration >= 1000);
+        assertTrue("Timing " + duration + " too long", duration < 10000);
+        assertEquals(this.logFile.length(), pos);
+        assertEquals("running\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * Test that tailing the log of a stopped container copies the log once and returns.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTailStoppedContainer() throws Exception
+    {
+        append("stopped\n");
+        this.containerState = State.STOPPED;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long pos = this.fileManager.tail(this.logFile.getPath(), out, 0, this.handle, 0);
+
+        assertEquals(this.logFile.length(), pos);
+        assertEquals("stopped\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * Stores a text in the file manager's store.
+     * @param text Text to store.
+     * @return Digest of the text.
+     * @throws IOException If anything goes wrong.
+     */
+    private String store(String text) throws IOException
+    {
+        String digest = Sha256.digest(text);
+        this.fileManager.storeFile(digest,
+            new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        return digest;
+    }
+
+    /**
+     * Test storing a file and reading it back by its digest.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStoreFile() throws Exception
+    {
+        String digest = store("stored content");
+
+        assertTrue(this.fileManager.existsStoredFile(digest));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = this.fileManager.getStoredFileInputStream(digest))
+        {
+            this.fileHandler.copy(in, out);
+        }
+        assertEquals("stored content", out.toString(StandardCharsets.UTF_8.name()));
+        assertNull(this.fileManager.getStoredFileInputStream(Sha256.digest("other content")));
+    }
+
+    /**
+     * Test that a file which does not match its digest is not stored.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStoreFileWithWrongDigest() throws Exception
+    {
+        String digest = Sha256.digest("expected content");
+        try
+        {
+            this.fileManager.storeFile(digest,
+                new ByteArrayInputStream("actual content".getBytes(StandardCharsets.UTF_8)));
+            fail("File not matching its digest stored");
+        }
+        catch (CargoDaemonException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(digest));
+        }
+
+        assertFalse(this.fileManager.existsStoredFile(digest));
+        assertEquals("Temporary file left", 0,
+            new File(this.fileManager.getStoreDirectory()).list().length);
+    }
+
+    /**
+     * Test that only SHA-256 digests in lower case hexadecimal are accepted as stored file names.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStoreFileWithInvalidDigest() throws Exception
+    {
+        String digest = Sha256.digest("content");
+        for (String invalidDigest : new String[] {null, "", "../handle.properties",
+            digest.toUpperCase(Locale.ENGLISH), digest.substring(1)})
+        {
+            try
+            {
+                this.fileManager.storeFile(invalidDigest,
+                    new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)));
+                fail("Invalid digest " + invalidDigest + " accepted");
+            }
+            catch (CargoDaemonException expected)
+            {
+                assertFalse(this.fileManager.existsStoredFile(invalidDigest));
+            }
+        }
+    }
+
+    /**
+     * Test that storing a file deletes the least recently used files when the store is full.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStoreEvictsLeastRecentlyUsedFiles() throws Exception
+    {
+        System.setProperty("cargo.daemon.store.maxsize", "25");
+        this.fileManager = new FileManager();
+        assertEquals(25, this.fileManager.getStoreMaxSize());
+
+        long now = System.currentTimeMillis();
+        String first = store("first-file");
+        new File(this.fileManager.getStoreDirectory(), first).setLastModified(now - 20000);
+        String second = store("secondfile");
+        new File(this.fileManager.getStoreDirectory(), second).setLastModified(now - 10000);
+        assertTrue(this.fileManager.useStoredFile(first));
+        String third = store("third-file");
+
+        assertTrue(this.fileManager.existsStoredFile(first));
+        assertFalse("Least recently used file kept", this.fileManager.existsStoredFile(second));
+        assertTrue(this.fileManager.existsStoredFile(third));
+    }
+
+    /**
+     * Test that the file just stored is kept even if it is larger than the store.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStoreKeepsFileLargerThanStore() throws Exception
+    {
+        System.setProperty("cargo.daemon.store.maxsize", "5");
+        this.fileManager = new FileManager();
+
+        String small = store("small");
+        String large = store("larger than the store");
+
+        assertFalse(this.fileManager.existsStoredFile(small));
+        assertTrue(this.fileManager.existsStoredFile(large));
+    }
+
+    /**
+     * Test that a file the daemon said it has is not deleted before the start request uses it,
+     * even if the store is full.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStoreKeepsUsedFile() throws Exception
+    {
+        System.setProperty("cargo.daemon.store.maxsize", "15");
+        this.fileManager = new FileManager();
+
+        String used = store("used-file");
+        assertTrue(this.fileManager.useStoredFile(used));
+        String other = store("other-file");
+
+        assertTrue("Used file deleted", this.fileManager.existsStoredFile(used));
+        assertTrue(this.fileManager.existsStoredFile(other));
+    }
+}
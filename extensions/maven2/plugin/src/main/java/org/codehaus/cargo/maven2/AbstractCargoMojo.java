@@ -52,7 +52,7 @@ import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.configuration.RuntimeConfiguration;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
-import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.container.spi.deployer.DeployerWatchdogService;
 import org.codehaus.cargo.maven2.configuration.ArtifactInstaller;
 import org.codehaus.cargo.maven2.configuration.Configuration;
 import org.codehaus.cargo.maven2.configuration.Container;
@@ -192,6 +192,17 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
      */
     private boolean skip;
 
+    /**
+     * Set this to 'true' to reuse the class loaders created for embedded containers by previous
+     * executions (for example in other modules of a reactor build) for the same container and
+     * dependency files, instead of creating new class loaders in each execution. Only the last
+     * class loader of each container is kept, the previous one is closed when the container's
+     * dependency files change.
+     * 
+     * @parameter property="cargo.maven.cacheEmbeddedClassLoaders" default-value="false"
+     */
+    private boolean cacheEmbeddedClassLoaders = false;
+
     /**
      * The artifact factory is used to create valid Maven {@link org.apache.maven.artifact.Artifact}
      * objects. This is used to pass Maven artifacts to the artifact resolver so that it can
@@ -796,6 +807,7 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
             EmbeddedContainerArtifactResolver resolver =
                 new EmbeddedContainerArtifactResolver(this.artifactResolver, this.localRepository,
                     this.repositories, this.artifactFactory);
+            resolver.setCacheClassLoaders(this.cacheEmbeddedClassLoaders);
             ClassLoader classLoader = resolver.resolveDependencies(
                 getContainerElement().getContainerId(),
                     getCargoProject().getEmbeddedClassLoader());
@@ -1062,6 +1074,9 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         {
             Logger watchdogLogger = createLogger();
 
+            // Watch all deployables at the same time
+            DeployerWatchdogService watchdog = new DeployerWatchdogService();
+            watchdog.setLogger(watchdogLogger);
             for (Deployable deployable : getDeployablesElement())
             {
                 DeployableMonitorFactory monitorFactory = new DefaultDeployableMonitorFactory();
@@ -1070,12 +1085,11 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
 
                 if (monitor != null)
                 {
-                    DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
-                    watchdog.setLogger(watchdogLogger);
                     monitor.setLogger(watchdogLogger);
-                    watchdog.watch(starting);
+                    watchdog.addMonitor(monitor);
                 }
             }
+            watchdog.watch(starting);
         }
     }
 
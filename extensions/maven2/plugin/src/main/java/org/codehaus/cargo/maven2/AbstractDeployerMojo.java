@@ -25,6 +25,7 @@ import java.util.List;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.DeployableMonitorListener;
+import org.codehaus.cargo.container.spi.deployer.DeployerWatchdogService;
 import org.codehaus.cargo.generic.deployer.DefaultDeployerFactory;
 import org.codehaus.cargo.generic.deployer.DeployerFactory;
 import org.codehaus.cargo.maven2.configuration.Deployable;
@@ -158,6 +159,12 @@ public abstract class AbstractDeployerMojo extends AbstractCargoMojo
             }
         }
 
+        // When possible, perform the action on all deployables first and then watch all of them
+        // at the same time, so that the wait is the one of the slowest deployable
+        Boolean watchForAvailability = getWatchForAvailability();
+        DeployerWatchdogService watchdog = new DeployerWatchdogService();
+        watchdog.setLogger(createLogger());
+
         for (Deployable deployableElement : deployableElements)
         {
             org.codehaus.cargo.container.deployable.Deployable deployable =
@@ -165,7 +172,31 @@ public abstract class AbstractDeployerMojo extends AbstractCargoMojo
             DeployableMonitor monitor = createDeployableMonitor(container, deployableElement,
                     deployable);
 
-            performDeployerActionOnSingleDeployable(deployer, deployable, monitor);
+            if (monitor != null && watchForAvailability != null)
+            {
+                try
+                {
+                    performDeployerActionOnSingleDeployable(deployer, deployable, null);
+                }
+                catch (RuntimeException e)
+                {
+                    // CARGO-1100: When the action has failed, log the failure and then wait for
+                    // the watchdog to return. If the action was indeed complete, the watchdog
+                    // will detect it; else it will make the method fail.
+                    getLog().info("The deployer action has failed: " + e.toString());
+                    getLog().debug(e);
+                }
+                watchdog.addMonitor(monitor);
+            }
+            else
+            {
+                performDeployerActionOnSingleDeployable(deployer, deployable, monitor);
+            }
+        }
+
+        if (watchForAvailability != null)
+        {
+            watchdog.watch(watchForAvailability);
         }
 
         // Perform deployment action on the autodeployable (if any).
@@ -192,6 +223,20 @@ public abstract class AbstractDeployerMojo extends AbstractCargoMojo
         org.codehaus.cargo.container.deployable.Deployable deployable,
         org.codehaus.cargo.container.deployer.DeployableMonitor monitor);
 
+    /**
+     * Returns whether the deployer action can be performed on all deployables before watching all
+     * of their deployable monitors at the same time, in which case the action is performed with a
+     * <code>null</code> deployable monitor. The default is to watch each deployable right after
+     * its action.
+     * @return {@link Boolean#TRUE} (resp. {@link Boolean#FALSE}) to watch all deployables for
+     * availability (resp. unavailability) after all actions, <code>null</code> to watch each
+     * deployable right after its action.
+     */
+    protected Boolean getWatchForAvailability()
+    {
+        return null;
+    }
+
     /**
      * Create a deployable monitor.
      * @param container Container where is deployable deployed.
@@ -20,10 +20,16 @@
 package org.codehaus.cargo.maven2;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
@@ -87,6 +93,9 @@ public class DependencyCalculator
     /** Container */
     private PlexusContainer container;
 
+    /** File caching the dependency files calculated, <code>null</code> if none. */
+    private File cacheFile;
+
     /**
      * Saves all attributes.
      * @param artifactFactory Artifact factory.
@@ -113,12 +122,59 @@ public class DependencyCalculator
         this.container = container;
     }
 
+    /**
+     * @return File caching the dependency files calculated, <code>null</code> if none.
+     */
+    public File getCacheFile()
+    {
+        return this.cacheFile;
+    }
+
+    /**
+     * Sets the file caching the dependency files calculated. As long as the project, its
+     * dependencies, its resolved artifacts and the cached dependency files are unchanged, the
+     * dependency files are read from the cache instead of being calculated again.
+     * @param cacheFile File caching the dependency files calculated, <code>null</code> for none.
+     */
+    public void setCacheFile(File cacheFile)
+    {
+        this.cacheFile = cacheFile;
+    }
+
     /**
      * Execute the dependency calculator.
      * @return List of dependency files.
      * @throws Exception If anything goes wrong.
      */
     public Set<File> execute() throws Exception
+    {
+        String cacheKey = null;
+        if (cacheFile != null)
+        {
+            cacheKey = getCacheKey();
+            Set<File> cachedFiles = readCache(cacheKey);
+            if (cachedFiles != null)
+            {
+                return cachedFiles;
+            }
+        }
+
+        Set<File> filesToAdd = calculate();
+
+        if (cacheFile != null)
+        {
+            writeCache(cacheKey, filesToAdd);
+        }
+
+        return filesToAdd;
+    }
+
+    /**
+     * Calculates the dependency files, ignoring the cache.
+     * @return List of dependency files.
+     * @throws Exception If anything goes wrong.
+     */
+    protected Set<File> calculate() throws Exception
     {
         ProfileManager profileManager = new DefaultProfileManager(container);
 
@@ -149,6 +205,119 @@ public class DependencyCalculator
         return filesToAdd;
     }
 
+    /**
+     * Computes the key of the cached dependency files, which changes whenever the project's POM,
+     * its dependencies or its resolved artifacts change.
+     * @return Cache key.
+     */
+    protected String getCacheKey()
+    {
+        StringBuilder key = new StringBuilder(mavenProject.getId());
+        key.append('|').append(localRepository.getBasedir());
+        appendFile(key, mavenProject.getFile());
+        for (Object dependency : mavenProject.getDependencies())
+        {
+            Dependency dep = (Dependency) dependency;
+            key.append('|').append(dep.getManagementKey()).append(':')
+                .append(dep.getClassifier()).append(':').append(dep.getVersion()).append(':')
+                .append(dep.getScope()).append(':').append(dep.isOptional());
+        }
+        for (Object artifact : mavenProject.getArtifacts())
+        {
+            Artifact art = (Artifact) artifact;
+            key.append('|').append(art.getId());
+            appendFile(key, art.getFile());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Appends a file, with its size and modification date, to a cache key.
+     * @param key Cache key.
+     * @param file File, can be <code>null</code>.
+     */
+    private static void appendFile(StringBuilder key, File file)
+    {
+        if (file != null)
+        {
+            key.append('@').append(file.getAbsolutePath()).append(':').append(file.length())
+                .append(':').append(file.lastModified());
+        }
+    }
+
+    /**
+     * Reads the cached dependency files.
+     * @param key Cache key.
+     * @return Cached dependency files, <code>null</code> if the cache is missing, has another key
+     * or any of its files changed since.
+     */
+    protected Set<File> readCache(String key)
+    {
+        if (!cacheFile.isFile())
+        {
+            return null;
+        }
+        Properties cache = new Properties();
+        try (InputStream in = new FileInputStream(cacheFile))
+        {
+            cache.load(in);
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            // A malformed cache file is handled as a missing one
+            return null;
+        }
+        if (!key.equals(cache.getProperty("key")))
+        {
+            return null;
+        }
+
+        Set<File> files = new HashSet<File>();
+        for (int i = 0; cache.getProperty("file." + i) != null; i++)
+        {
+            File file = new File(cache.getProperty("file." + i));
+            if (!file.isFile()
+                || !String.valueOf(file.length()).equals(cache.getProperty("file." + i + ".length"))
+                || !String.valueOf(file.lastModified()).equals(
+                    cache.getProperty("file." + i + ".lastModified")))
+            {
+                return null;
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Writes the cached dependency files. Failing to write the cache is not an error, as the
+     * dependency files will simply be calculated again next time.
+     * @param key Cache key.
+     * @param files Dependency files.
+     */
+    protected void writeCache(String key, Set<File> files)
+    {
+        Properties cache = new Properties();
+        cache.setProperty("key", key);
+        int i = 0;
+        for (File file : files)
+        {
+            cache.setProperty("file." + i, file.getAbsolutePath());
+            cache.setProperty("file." + i + ".length", String.valueOf(file.length()));
+            cache.setProperty("file." + i + ".lastModified", String.valueOf(file.lastModified()));
+            i++;
+        }
+
+        cacheFile.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(cacheFile))
+        {
+            cache.store(out, "Dependency files calculated by Cargo");
+        }
+        catch (IOException e)
+        {
+            cacheFile.delete();
+        }
+    }
+
     /**
      * Fixup the project artifact.
      * @throws Exception If anything goes wrong.
@@ -46,4 +46,14 @@ public class DeployerDeployMojo extends AbstractDeployerMojo
             deployer.deploy(deployable);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * @return {@link Boolean#TRUE}, the deployables being watched all at the same time.
+     */
+    @Override
+    protected Boolean getWatchForAvailability()
+    {
+        return Boolean.TRUE;
+    }
 }
@@ -46,4 +46,14 @@ public class DeployerUndeployMojo extends AbstractDeployerMojo
             deployer.undeploy(deployable);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * @return {@link Boolean#FALSE}, the deployables being watched all at the same time.
+     */
+    @Override
+    protected Boolean getWatchForAvailability()
+    {
+        return Boolean.FALSE;
+    }
 }
@@ -240,22 +240,29 @@ public class UberWarMojo extends AbstractUberWarMojo implements Contextualizable
                 doMerge(wam, merge);
             }
 
-            File assembleDir = new File(this.outputDirectory, this.warName);
+            File mergedFile = new File(this.outputDirectory, this.warName + "-merged.war");
             File warFile = new File(this.outputDirectory, this.warName + ".war");
 
-            // Merge to directory
+            // Merge to a WAR file, streaming the entries of all WARs without expanding them
             MergedWarArchive output = (MergedWarArchive) wam.performMerge();
-            output.merge(assembleDir.getAbsolutePath());
+            output.store(mergedFile);
 
             // Archive to WAR file
-            WarArchiver warArchiver = new WarArchiver();
-            warArchiver.addDirectory(assembleDir);
-            warArchiver.setIgnoreWebxml(false);
-
-            MavenArchiver mar = new MavenArchiver();
-            mar.setArchiver(warArchiver);
-            mar.setOutputFile(warFile);
-            mar.createArchive(mavenProject, archive);
+            try
+            {
+                WarArchiver warArchiver = new WarArchiver();
+                warArchiver.addArchivedFileSet(mergedFile);
+                warArchiver.setIgnoreWebxml(false);
+
+                MavenArchiver mar = new MavenArchiver();
+                mar.setArchiver(warArchiver);
+                mar.setOutputFile(warFile);
+                mar.createArchive(mavenProject, archive);
+            }
+            finally
+            {
+                mergedFile.delete();
+            }
 
             getProject().getArtifact().setFile(warFile);
         }
@@ -355,6 +362,7 @@ public class UberWarMojo extends AbstractUberWarMojo implements Contextualizable
         DependencyCalculator dc = new DependencyCalculator(artifactFactory, resolver,
             localRepository, remoteRepositories, mavenProject, mavenProjectBuilder, installer,
             container);
+        dc.setCacheFile(new File(this.outputDirectory, "cargo/uberwar-dependencies.properties"));
 
         try
         {
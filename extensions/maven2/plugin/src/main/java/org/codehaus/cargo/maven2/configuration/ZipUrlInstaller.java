@@ -56,6 +56,21 @@ public class ZipUrlInstaller
      */
     private Proxy proxy;
 
+    /**
+     * Number of byte ranges downloaded in parallel.
+     */
+    private int downloadThreads = 1;
+
+    /**
+     * Directory of the installation cache shared with other builds.
+     */
+    private String cacheDir;
+
+    /**
+     * Whether to hard link the files of the shared installation cache instead of copying them.
+     */
+    private boolean cacheHardLinks;
+
     /**
      * @param downloadDir the destination directory where the zipped container install will be
      * downloaded.
@@ -106,6 +121,55 @@ public class ZipUrlInstaller
         return this.url;
     }
 
+    /**
+     * @param downloadThreads the number of byte ranges downloaded in parallel.
+     */
+    public void setDownloadThreads(int downloadThreads)
+    {
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * @return the number of byte ranges downloaded in parallel.
+     */
+    public int getDownloadThreads()
+    {
+        return this.downloadThreads;
+    }
+
+    /**
+     * @param cacheDir the directory of the installation cache shared with other builds.
+     */
+    public void setCacheDir(String cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @return the directory of the installation cache shared with other builds.
+     */
+    public String getCacheDir()
+    {
+        return this.cacheDir;
+    }
+
+    /**
+     * @param cacheHardLinks whether to hard link the files of the shared installation cache
+     * instead of copying them.
+     */
+    public void setCacheHardLinks(boolean cacheHardLinks)
+    {
+        this.cacheHardLinks = cacheHardLinks;
+    }
+
+    /**
+     * @return whether to hard link the files of the shared installation cache.
+     */
+    public boolean isCacheHardLinks()
+    {
+        return this.cacheHardLinks;
+    }
+
     /**
      * @return Proxy properties.
      */
@@ -145,6 +209,9 @@ public class ZipUrlInstaller
         {
             installer.setProxy(getProxy());
         }
+        installer.setDownloadThreads(getDownloadThreads());
+        installer.setCacheDir(getCacheDir());
+        installer.setCacheHardLinks(isCacheHardLinks());
         return installer;
     }
 
@@ -20,8 +20,6 @@
 package org.codehaus.cargo.maven2.merge;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 
 import org.codehaus.cargo.maven2.Merge;
 import org.codehaus.cargo.module.merge.DocumentMergerByXslt;
@@ -65,9 +63,7 @@ public class MergeXslt implements MergeProcessorFactory
 
             File file = new File(workingDirectory, filename);
 
-            InputStream is = new FileInputStream(file);
-
-            DocumentMergerByXslt documentMergerByXslt = new DocumentMergerByXslt(is);
+            DocumentMergerByXslt documentMergerByXslt = new DocumentMergerByXslt(file);
 
             return documentMergerByXslt;
         }
@@ -19,6 +19,8 @@
  */
 package org.codehaus.cargo.maven2.util;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
@@ -38,6 +40,16 @@ import org.codehaus.cargo.container.internal.util.JdkUtils;
  */
 public class EmbeddedContainerArtifactResolver
 {
+    /**
+     * Last class loader without parent created for each container id, when caching is enabled. As
+     * this class is loaded once per plugin realm, these are shared by all modules of a build, and
+     * by all builds when the plugin realm is kept by a Maven daemon. A class loader is closed when
+     * it is replaced because the dependency files of its container have changed, so there is at
+     * most one class loader per container id.
+     */
+    private static final Map<String, CachedClassLoader> CLASSLOADERS =
+        new HashMap<String, CachedClassLoader>();
+
     /**
      * Artifact resolver.
      */
@@ -58,6 +70,11 @@ public class EmbeddedContainerArtifactResolver
      */
     private ArtifactFactory artifactFactory;
 
+    /**
+     * Whether class loaders are reused across calls, disabled by default.
+     */
+    private boolean cacheClassLoaders = false;
+
     /**
      * Map of embedded container dependencies.
      */
@@ -98,6 +115,33 @@ public class EmbeddedContainerArtifactResolver
         }
     }
 
+    /**
+     * Class loader without parent, with the dependency files it was created for.
+     */
+    private static class CachedClassLoader
+    {
+        /**
+         * Paths, sizes and modification dates of the dependency files.
+         */
+        private final String files;
+
+        /**
+         * Class loader of the dependency files.
+         */
+        private final URLClassLoader classLoader;
+
+        /**
+         * Save all attributes.
+         * @param files Paths, sizes and modification dates of the dependency files.
+         * @param classLoader Class loader of the dependency files.
+         */
+        public CachedClassLoader(String files, URLClassLoader classLoader)
+        {
+            this.files = files;
+            this.classLoader = classLoader;
+        }
+    }
+
     /**
      * Save all attributes.
      * @param artifactResolver Artifact resolver.
@@ -383,6 +427,28 @@ public class EmbeddedContainerArtifactResolver
         this.containerDependencies.put("tomcat10x", tomcat10xDependencies);
     }
 
+    /**
+     * @return Whether class loaders without parent are reused across calls.
+     */
+    public boolean isCacheClassLoaders()
+    {
+        return this.cacheClassLoaders;
+    }
+
+    /**
+     * Sets whether class loaders without parent are reused across calls, including calls from
+     * other modules of the build, when the container id and the resolved dependency files (with
+     * their size and modification date) are the same. This saves loading and warming up the
+     * embedded container again for each module. Only the last class loader of each container id
+     * is kept: when the dependency files change, the previous class loader is closed, and
+     * containers still running from it can no longer load classes. Disabled by default.
+     * @param cacheClassLoaders Whether class loaders without parent are reused across calls.
+     */
+    public void setCacheClassLoaders(boolean cacheClassLoaders)
+    {
+        this.cacheClassLoaders = cacheClassLoaders;
+    }
+
     /**
      * Resolve dependencies.
      * @param containerId Container id.
@@ -403,24 +469,37 @@ public class EmbeddedContainerArtifactResolver
 
         try
         {
-            List<URL> urls = new ArrayList<URL>(dependencies.size() + 1);
+            List<File> files = new ArrayList<File>(dependencies.size() + 1);
             for (Dependency dependency : dependencies)
             {
                 Artifact artifact = this.artifactFactory.createArtifact(dependency.groupId,
                     dependency.artifactId, dependency.version, "compile", "jar");
                 this.artifactResolver.resolve(artifact, this.repositories, this.localRepository);
-                urls.add(artifact.getFile().toURI().toURL());
+                files.add(artifact.getFile());
             }
 
             // On OSX, the tools.jar classes are included in the classes.jar so there is no need to
             // include any tools.jar file to the cp. On Java 9, there is no more tools.jar.
             if (!JdkUtils.isOSX() && JdkUtils.getMajorJavaVersion() < 9)
             {
-                urls.add(JdkUtils.getToolsJar().toURI().toURL());
+                files.add(JdkUtils.getToolsJar());
+            }
+
+            List<URL> urls = new ArrayList<URL>(files.size());
+            StringBuilder filesKey = new StringBuilder();
+            for (File file : files)
+            {
+                urls.add(file.toURI().toURL());
+                filesKey.append('|').append(file.getAbsolutePath()).append(':')
+                    .append(file.length()).append(':').append(file.lastModified());
             }
 
             URL[] urlArray = (URL[]) urls.toArray(new URL[urls.size()]);
-            if (parent == null)
+            if (parent == null && this.cacheClassLoaders)
+            {
+                classloader = getCachedClassLoader(containerId, filesKey.toString(), urlArray);
+            }
+            else if (parent == null)
             {
                 classloader = new URLClassLoader(urlArray);
             }
@@ -436,4 +515,34 @@ public class EmbeddedContainerArtifactResolver
 
         return classloader;
     }
+
+    /**
+     * Returns the cached class loader of a container if it was created for the same dependency
+     * files, else creates a new one and closes the one it replaces.
+     * @param containerId Container id.
+     * @param files Paths, sizes and modification dates of the dependency files.
+     * @param urls URLs of the dependency files.
+     * @return Class loader of the dependency files, without parent.
+     * @throws IOException If closing the replaced class loader fails.
+     */
+    private static URLClassLoader getCachedClassLoader(String containerId, String files,
+        URL[] urls) throws IOException
+    {
+        synchronized (CLASSLOADERS)
+        {
+            CachedClassLoader cached = CLASSLOADERS.get(containerId);
+            if (cached != null && cached.files.equals(files))
+            {
+                return cached.classLoader;
+            }
+
+            URLClassLoader classloader = new URLClassLoader(urls);
+            CLASSLOADERS.put(containerId, new CachedClassLoader(files, classloader));
+            if (cached != null)
+            {
+                cached.classLoader.close();
+            }
+            return classloader;
+        }
+    }
 }
@@ -0,0 +1,274 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.maven2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Unit tests for the dependency files cache of {@link DependencyCalculator}.
+ */
+public class DependencyCalculatorTest extends MockObjectTestCase
+{
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * Temporary directory.
+     */
+    private File testDirectory;
+
+    /**
+     * POM of the project.
+     */
+    private File pom;
+
+    /**
+     * Dependency file calculated.
+     */
+    private File dependencyFile;
+
+    /**
+     * Resolved artifact of the project.
+     */
+    private File artifactFile;
+
+    /**
+     * Project whose dependency files are calculated.
+     */
+    private MavenProject project;
+
+    /**
+     * Local repository.
+     */
+    private ArtifactRepository localRepository;
+
+    /**
+     * Cache file.
+     */
+    private File cacheFile;
+
+    /**
+     * Number of times the dependency files were calculated.
+     */
+    private int calculations;
+
+    /**
+     * Creates the project and its files. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.testDirectory = new File(this.fileHandler.createUniqueTmpDirectory());
+        this.pom = writeFile("pom.xml", "<project/>");
+        this.dependencyFile = writeFile("dependency.jar", "dependency");
+        this.artifactFile = writeFile("artifact.war", "artifact");
+        this.cacheFile = new File(this.testDirectory, "cache/dependencies.properties");
+
+        Model model = new Model();
+        model.setGroupId("org.codehaus.cargo");
+        model.setArtifactId("uberwar");
+        model.setVersion("1.0");
+        model.setPackaging("uberwar");
+        model.addDependency(createDependency("war1", "1.0"));
+        this.project = new MavenProject(model);
+        this.project.setFile(this.pom);
+
+        Mock artifact = mock(Artifact.class);
+        artifact.stubs().method("getId").will(returnValue("org.codehaus.cargo:war1:war:1.0"));
+        artifact.stubs().method("getFile").will(returnValue(this.artifactFile));
+        this.project.setArtifacts(Collections.singleton(artifact.proxy()));
+
+        Mock repository = mock(ArtifactRepository.class);
+        repository.stubs().method("getBasedir").will(returnValue(this.testDirectory.getPath()));
+        this.localRepository = (ArtifactRepository) repository.proxy();
+    }
+
+    /**
+     * Deletes the temporary directory. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.fileHandler.delete(this.testDirectory.getPath());
+
+        super.tearDown();
+    }
+
+    /**
+     * Test that the dependency files are calculated once, then read from the cache.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCacheHit() throws Exception
+    {
+        Set<File> files = execute();
+        assertEquals(Collections.singleton(this.dependencyFile), files);
+        assertTrue(this.cacheFile.isFile());
+
+        assertEquals(files, execute());
+        assertEquals(1, this.calculations);
+    }
+
+    /**
+     * Test that the dependency files are calculated again when the POM changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCacheMissAfterPomChange() throws Exception
+    {
+        execute();
+        this.pom.setLastModified(this.pom.lastModified() - 10000);
+        execute();
+        assertEquals(2, this.calculations);
+
+        execute();
+        assertEquals(2, this.calculations);
+    }
+
+    /**
+     * Test that the dependency files are calculated again when a dependency changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCacheMissAfterDependencyChange() throws Exception
+    {
+        execute();
+        this.project.getDependencies().set(0, createDependency("war1", "1.1"));
+        execute();
+        assertEquals(2, this.calculations);
+
+        this.project.getModel().addDependency(createDependency("war2", "1.0"));
+        execute();
+        assertEquals(3, this.calculations);
+
+        this.artifactFile.setLastModified(this.artifactFile.lastModified() - 10000);
+        execute();
+        assertEquals(4, this.calculations);
+    }
+
+    /**
+     * Test that the dependency files are calculated again when a cached dependency file changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCacheMissAfterDependencyFileChange() throws Exception
+    {
+        execute();
+        this.dependencyFile.setLastModified(this.dependencyFile.lastModified() - 10000);
+        execute();
+        assertEquals(2, this.calculations);
+
+        this.dependencyFile.delete();
+        execute();
+        assertEquals(3, this.calculations);
+    }
+
+    /**
+     * Test that a corrupt cache file is ignored and replaced.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCorruptCacheFile() throws Exception
+    {
+        this.cacheFile.getParentFile().mkdirs();
+        writeFile("cache/dependencies.properties", "key=\\u00zz\nfile.0=");
+        assertEquals(Collections.singleton(this.dependencyFile), execute());
+        assertEquals(1, this.calculations);
+
+        execute();
+        assertEquals(1, this.calculations);
+
+        writeFile("cache/dependencies.properties", "\u0000\u00ff garbage");
+        assertEquals(Collections.singleton(this.dependencyFile), execute());
+        assertEquals(2, this.calculations);
+    }
+
+    /**
+     * Runs a dependency calculator whose calculation returns {@link #dependencyFile}.
+     * @return Dependency files.
+     * @throws Exception If anything goes wrong.
+     */
+    private Set<File> execute() throws Exception
+    {
+        DependencyCalculator calculator = new DependencyCalculator(null, null,
+            this.localRepository, new ArrayList<ArtifactRepository>(), this.project, null, null,
+            null)
+        {
+            @Override
+            protected Set<File> calculate()
+            {
+                calculations++;
+                return new HashSet<File>(Collections.singleton(dependencyFile));
+            }
+        };
+        calculator.setCacheFile(this.cacheFile);
+        return calculator.execute();
+    }
+
+    /**
+     * @param artifactId Artifact id of the dependency.
+     * @param version Version of the dependency.
+     * @return WAR dependency.
+     */
+    private Dependency createDependency(String artifactId, String version)
+    {
+        Dependency dependency = new Dependency();
+        dependency.setGroupId("org.codehaus.cargo");
+        dependency.setArtifactId(artifactId);
+        dependency.setVersion(version);
+        dependency.setType("war");
+        return dependency;
+    }
+
+    /**
+     * @param name Name of the file, relative to the temporary directory.
+     * @param content Content of the file.
+     * @return File written.
+     * @throws IOException If anything goes wrong.
+     */
+    private File writeFile(String name, String content) throws IOException
+    {
+        File file = new File(this.testDirectory, name);
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write(content.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return file;
+    }
+}
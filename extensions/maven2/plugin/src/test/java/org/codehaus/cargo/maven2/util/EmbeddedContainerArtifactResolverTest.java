@@ -0,0 +1,161 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2020 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.maven2.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Unit tests for {@link EmbeddedContainerArtifactResolver}.
+ */
+public class EmbeddedContainerArtifactResolverTest extends MockObjectTestCase
+{
+    /**
+     * Name of the resource in the dependency file.
+     */
+    private static final String RESOURCE =
+        EmbeddedContainerArtifactResolverTest.class.getName() + ".txt";
+
+    /**
+     * Dependency file all container dependencies resolve to.
+     */
+    private File dependency;
+
+    /**
+     * Creates the dependency file. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.dependency = File.createTempFile("cargo-embedded-", ".jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(this.dependency)))
+        {
+            out.putNextEntry(new ZipEntry(RESOURCE));
+            out.write(RESOURCE.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * Deletes the dependency file. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.dependency.delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Test that class loaders are not reused by default.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testClassLoadersNotCachedByDefault() throws Exception
+    {
+        EmbeddedContainerArtifactResolver resolver = createResolver();
+        assertFalse(resolver.isCacheClassLoaders());
+
+        URLClassLoader first = (URLClassLoader) resolver.resolveDependencies("jetty6x", null);
+        URLClassLoader second = (URLClassLoader) resolver.resolveDependencies("jetty6x", null);
+
+        assertNotSame(first, second);
+        assertNotNull(first.getResource(RESOURCE));
+    }
+
+    /**
+     * Test that a cached class loader is reused for the same container and dependency files.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testClassLoaderReused() throws Exception
+    {
+        ClassLoader first = createResolver(true).resolveDependencies("jetty7x", null);
+        ClassLoader second = createResolver(true).resolveDependencies("jetty7x", null);
+
+        assertSame(first, second);
+        assertNotSame(first, createResolver(true).resolveDependencies("jetty8x", null));
+        assertNotSame(first, createResolver(true).resolveDependencies("jetty7x",
+            getClass().getClassLoader()));
+    }
+
+    /**
+     * Test that a cached class loader is replaced and closed when a dependency file changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testClassLoaderReplacedWhenDependencyChanges() throws Exception
+    {
+        URLClassLoader first =
+            (URLClassLoader) createResolver(true).resolveDependencies("jetty9x", null);
+        assertNotNull(first.getResource(RESOURCE));
+
+        this.dependency.setLastModified(this.dependency.lastModified() - 10000);
+        URLClassLoader second =
+            (URLClassLoader) createResolver(true).resolveDependencies("jetty9x", null);
+
+        assertNotSame(first, second);
+        assertNull("Replaced class loader not closed", first.getResource(RESOURCE));
+        assertNotNull(second.getResource(RESOURCE));
+        assertSame(second, createResolver(true).resolveDependencies("jetty9x", null));
+    }
+
+    /**
+     * @return Resolver resolving all dependencies to {@link #dependency}, without caching.
+     */
+    private EmbeddedContainerArtifactResolver createResolver()
+    {
+        return createResolver(false);
+    }
+
+    /**
+     * @param cacheClassLoaders Whether the resolver reuses class loaders.
+     * @return Resolver resolving all dependencies to {@link #dependency}.
+     */
+    private EmbeddedContainerArtifactResolver createResolver(boolean cacheClassLoaders)
+    {
+        Mock artifact = mock(Artifact.class);
+        artifact.stubs().method("getFile").will(returnValue(this.dependency));
+        Mock artifactFactory = mock(ArtifactFactory.class);
+        artifactFactory.stubs().method("createArtifact").will(returnValue(artifact.proxy()));
+        Mock artifactResolver = mock(ArtifactResolver.class);
+        artifactResolver.stubs().method("resolve");
+
+        EmbeddedContainerArtifactResolver resolver = new EmbeddedContainerArtifactResolver(
+            (ArtifactResolver) artifactResolver.proxy(),
+            (ArtifactRepository) mock(ArtifactRepository.class).proxy(),
+            new ArrayList<ArtifactRepository>(), (ArtifactFactory) artifactFactory.proxy());
+        resolver.setCacheClassLoaders(cacheClassLoaders);
+        return resolver;
+    }
+}